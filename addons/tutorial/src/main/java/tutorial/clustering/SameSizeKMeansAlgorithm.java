@@ -103,14 +103,13 @@ public class SameSizeKMeansAlgorithm<V extends NumberVector> extends AbstractKMe
    *
    * @param database Database
    * @param relation relation to use
+   * @param means initial means
    * @return result
    */
   @Override
-  public Clustering<MeanModel> run(Database database, Relation<V> relation) {
+  public Clustering<MeanModel> run(Database database, Relation<V> relation, double[][] means) {
     // Database objects to process
     final DBIDs ids = relation.getDBIDs();
-    // Choose initial means
-    double[][] means = initializer.chooseInitialMeans(database, relation, k, getDistanceFunction());
     // Setup cluster assignment store
     List<ModifiableDBIDs> clusters = new ArrayList<>();
     for(int i = 0; i < k; i++) {
@@ -0,0 +1,620 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.Centroid;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.EpanechnikovKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.IntegerArray;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.IncompatibleDataException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Approximate mean-shift clustering, using binned seeds for numerical data
+ * and Lp-norms.
+ * <p>
+ * Instead of shifting every point until convergence, as in
+ * {@link NaiveMeanShiftClustering}, the points are first put into the bins of
+ * a grid, and mean-shift is started only from the mean of each bin with at
+ * least the given number of points. The seeds are shifted in parallel, using
+ * the range query of the database for the kernel windows, which benefits
+ * from index structures. Modes closer than the bandwidth are merged in the
+ * order of decreasing density, using a grid hash with a cell width of the
+ * bandwidth. Every point is assigned to the mode of the seed of its bin.
+ * Points in bins with fewer points, or whose seed has an empty kernel window,
+ * are assigned to the nearest mode within the bandwidth, or are noise.
+ * <p>
+ * The number of adjacent grid cells grows exponentially with the
+ * dimensionality, so this is intended for low-dimensional data.
+ * <p>
+ * Reference:
+ * <p>
+ * Y. Cheng<br>
+ * Mean shift, mode seeking, and clustering<br>
+ * IEEE Transactions on Pattern Analysis and Machine Intelligence 17-8
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "Y. Cheng", //
+    title = "Mean shift, mode seeking, and clustering", //
+    booktitle = "IEEE Transactions on Pattern Analysis and Machine Intelligence 17-8", //
+    url = "https://doi.org/10.1109/34.400568", //
+    bibkey = "DBLP:journals/pami/Cheng95")
+public class MeanShiftClustering<V extends NumberVector> extends AbstractDistanceBasedAlgorithm<V, Clustering<MeanModel>> implements ClusteringAlgorithm<Clustering<MeanModel>> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(MeanShiftClustering.class);
+
+  /**
+   * Density estimation kernel.
+   */
+  KernelDensityFunction kernel = EpanechnikovKernelDensityFunction.KERNEL;
+
+  /**
+   * Range of the kernel.
+   */
+  double bandwidth;
+
+  /**
+   * Width of the bins used for seeding.
+   */
+  double binsize;
+
+  /**
+   * Minimum number of points in a bin to be used as seed.
+   */
+  int minbinfreq;
+
+  /**
+   * Relative convergence threshold.
+   */
+  private static final double THRESHOLD = 1e-3;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param kernel Kernel function
+   * @param range Kernel radius
+   * @param binsize Width of the bins for seeding
+   * @param minbinfreq Minimum number of points in a bin to be used as seed
+   */
+  public MeanShiftClustering(DistanceFunction<? super V> distanceFunction, KernelDensityFunction kernel, double range, double binsize, int minbinfreq) {
+    super(distanceFunction);
+    this.kernel = kernel;
+    this.bandwidth = range;
+    this.binsize = binsize;
+    this.minbinfreq = minbinfreq;
+  }
+
+  /**
+   * Run the mean-shift clustering algorithm.
+   *
+   * @param database Database
+   * @param relation Data relation
+   * @return Clustering result
+   */
+  public Clustering<MeanModel> run(Database database, Relation<V> relation) {
+    final DistanceQuery<V> distq = database.getDistanceQuery(relation, getDistanceFunction());
+    final RangeQuery<V> rangeq = database.getRangeQuery(distq);
+    final NumberVector.Factory<V> factory = RelationUtil.getNumberVectorFactory(relation);
+    final int dim = RelationUtil.dimensionality(relation);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    final String key = getClass().getName();
+
+    // Bounding box, in parallel blocks.
+    double[] min = new double[dim], max = new double[dim];
+    for(int d = 0; d < dim; d++) {
+      min[d] = Double.POSITIVE_INFINITY;
+      max[d] = Double.NEGATIVE_INFINITY;
+    }
+    for(double[] part : ParallelExecutor.runBlocks(size, (start, end) -> {
+      double[] mm = new double[dim << 1];
+      for(int d = 0; d < dim; d++) {
+        mm[d] = Double.POSITIVE_INFINITY;
+        mm[dim + d] = Double.NEGATIVE_INFINITY;
+      }
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        final V vec = relation.get(it);
+        for(int d = 0; d < dim; d++) {
+          final double v = vec.doubleValue(d);
+          mm[d] = v < mm[d] ? v : mm[d];
+          mm[dim + d] = v > mm[dim + d] ? v : mm[dim + d];
+        }
+      }
+      return mm;
+    })) {
+      for(int d = 0; d < dim; d++) {
+        min[d] = part[d] < min[d] ? part[d] : min[d];
+        max[d] = part[dim + d] > max[d] ? part[dim + d] : max[d];
+      }
+    }
+
+    // Bin the points, and sort them by bin.
+    final Grid bins = new Grid(min, max, binsize);
+    final long[] binkeys = new long[size];
+    ParallelExecutor.runBlocks(size, (start, end) -> {
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        binkeys[it.getOffset()] = bins.key(relation.get(it));
+      }
+      return null;
+    });
+    int[] order = new int[size];
+    for(int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    IntegerArrayQuickSort.sort(order, (a, b) -> {
+      final int c = Long.compare(binkeys[a], binkeys[b]);
+      return c != 0 ? c : Integer.compare(a, b);
+    });
+    // Seeds: means of the sufficiently populated bins.
+    final int[] seedOf = new int[size];
+    List<V> seeds = new ArrayList<>();
+    DBIDArrayIter it = ids.iter();
+    for(int i = 0; i < size;) {
+      int j = i + 1;
+      while(j < size && binkeys[order[j]] == binkeys[order[i]]) {
+        ++j;
+      }
+      final int seed = j - i >= minbinfreq ? seeds.size() : -1;
+      if(seed >= 0) {
+        Centroid centroid = new Centroid(dim);
+        for(int k = i; k < j; k++) {
+          centroid.put(relation.get(it.seek(order[k])));
+        }
+        seeds.add(factory.newNumberVector(centroid.getArrayRef()));
+      }
+      for(int k = i; k < j; k++) {
+        seedOf[order[k]] = seed;
+      }
+      i = j;
+    }
+    final int numseeds = seeds.size();
+    LOG.statistics(new LongStatistic(key + ".seeds", numseeds));
+
+    // Shift the seeds to their modes, in parallel.
+    final double threshold = bandwidth * THRESHOLD;
+    final List<V> modes = new ArrayList<>(seeds);
+    final double[] density = new double[numseeds];
+    long iterations = 0;
+    for(long iters : ParallelExecutor.runBlocks(numseeds, 1, (start, end) -> {
+      long its = 0;
+      for(int s = start; s < end; s++) {
+        V position = modes.get(s);
+        for(int j = 1;; j++) {
+          ++its;
+          DoubleDBIDList neigh = rangeq.getRangeForObject(position, bandwidth);
+          Centroid newpos = new Centroid(dim);
+          double wsum = 0.;
+          for(DoubleDBIDListIter niter = neigh.iter(); niter.valid(); niter.advance()) {
+            final double weight = kernel.density(niter.doubleValue() / bandwidth);
+            if(weight > 0) {
+              newpos.put(relation.get(niter), weight);
+              wsum += weight;
+            }
+          }
+          if(!(wsum > 0)) {
+            break; // Isolated seed.
+          }
+          V newvec = factory.newNumberVector(newpos.getArrayRef());
+          final double delta = distq.distance(position, newvec);
+          position = newvec;
+          density[s] = wsum;
+          if(j == NaiveMeanShiftClustering.MAXITER || !(delta >= threshold)) {
+            if(j == NaiveMeanShiftClustering.MAXITER) {
+              LOG.warning("No convergence after " + NaiveMeanShiftClustering.MAXITER + " iterations. Distance: " + delta);
+            }
+            break;
+          }
+        }
+        modes.set(s, position);
+      }
+      return its;
+    })) {
+      iterations += iters;
+    }
+    LOG.statistics(new LongStatistic(key + ".iterations", iterations));
+
+    // Merge modes within the bandwidth, by decreasing density.
+    int[] byDensity = new int[numseeds];
+    for(int s = 0; s < numseeds; s++) {
+      byDensity[s] = s;
+    }
+    IntegerArrayQuickSort.sort(byDensity, (a, b) -> {
+      final int c = Double.compare(density[b], density[a]);
+      return c != 0 ? c : Integer.compare(a, b);
+    });
+    final ModeGrid<V> merged = new ModeGrid<>(new Grid(min, max, bandwidth), distq, bandwidth, Math.pow(3, dim) <= numseeds);
+    final int[] seedCluster = new int[numseeds];
+    for(int s : byDensity) {
+      if(!(density[s] > 0)) {
+        seedCluster[s] = -1; // Isolated seed.
+        continue;
+      }
+      final int c = merged.nearest(modes.get(s));
+      seedCluster[s] = c >= 0 ? c : merged.add(modes.get(s));
+    }
+    final int numclusters = merged.modes.size();
+    LOG.statistics(new LongStatistic(key + ".modes", numclusters));
+
+    // Assign the points, in parallel.
+    final int[] assignment = new int[size];
+    ParallelExecutor.runBlocks(size, (start, end) -> {
+      for(DBIDArrayIter iter = ids.iter().seek(start); iter.getOffset() < end; iter.advance()) {
+        final int o = iter.getOffset(), s = seedOf[o];
+        final int c = s >= 0 ? seedCluster[s] : -1;
+        assignment[o] = c >= 0 ? c : merged.nearest(relation.get(iter));
+      }
+      return null;
+    });
+    List<ModifiableDBIDs> members = new ArrayList<>(numclusters);
+    for(int c = 0; c < numclusters; c++) {
+      members.add(DBIDUtil.newArray());
+    }
+    ModifiableDBIDs noise = DBIDUtil.newArray();
+    for(it.seek(0); it.valid(); it.advance()) {
+      final int c = assignment[it.getOffset()];
+      (c >= 0 ? members.get(c) : noise).add(it);
+    }
+    List<Cluster<MeanModel>> cs = new ArrayList<>(numclusters + 1);
+    for(int c = 0; c < numclusters; c++) {
+      cs.add(new Cluster<>(members.get(c), new MeanModel(merged.modes.get(c).toArray())));
+    }
+    if(noise.size() > 0) {
+      cs.add(new Cluster<MeanModel>(noise, true));
+    }
+    return new Clustering<>("Mean-shift Clustering", "mean-shift-clustering", cs);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Regular grid over the bounding box of the data, with exact cell keys.
+   *
+   * @author Erich Schubert
+   */
+  private static class Grid {
+    /**
+     * Minimum of the bounding box.
+     */
+    double[] min;
+
+    /**
+     * Cell width.
+     */
+    double width;
+
+    /**
+     * Number of cells per dimension.
+     */
+    int[] cells;
+
+    /**
+     * Multiplier of each dimension in the cell key.
+     */
+    long[] mult;
+
+    /**
+     * Constructor.
+     *
+     * @param min Minimum of the bounding box
+     * @param max Maximum of the bounding box
+     * @param width Cell width
+     */
+    Grid(double[] min, double[] max, double width) {
+      final int dim = min.length;
+      this.min = min;
+      this.width = width;
+      this.cells = new int[dim];
+      this.mult = new long[dim];
+      long total = 1;
+      for(int d = 0; d < dim; d++) {
+        if(!(max[d] - min[d] < Double.POSITIVE_INFINITY)) {
+          throw new IncompatibleDataException("Dimension " + d + " contains non-finite values.");
+        }
+        final double c = Math.floor((max[d] - min[d]) / width) + 1;
+        if(c >= Integer.MAX_VALUE || c > Long.MAX_VALUE / total) {
+          throw new IncompatibleDataException("Too many grid cells, use larger bins.");
+        }
+        cells[d] = (int) c;
+        mult[d] = total;
+        total *= cells[d];
+      }
+    }
+
+    /**
+     * Cell coordinate of a value.
+     *
+     * @param v Value
+     * @param d Dimension
+     * @return Cell coordinate
+     */
+    int coordinate(double v, int d) {
+      final int c = (int) ((v - min[d]) / width);
+      return c < 0 ? 0 : c >= cells[d] ? cells[d] - 1 : c;
+    }
+
+    /**
+     * Cell key of a vector.
+     *
+     * @param vec Vector
+     * @return Cell key
+     */
+    long key(NumberVector vec) {
+      long key = 0;
+      for(int d = 0; d < min.length; d++) {
+        key += coordinate(vec.doubleValue(d), d) * mult[d];
+      }
+      return key;
+    }
+  }
+
+  /**
+   * Grid hash of the merged modes, for finding the nearest mode within the
+   * bandwidth.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  private static class ModeGrid<V extends NumberVector> {
+    /**
+     * Grid, with a cell width of the bandwidth.
+     */
+    Grid grid;
+
+    /**
+     * Modes in each cell.
+     */
+    Long2ObjectOpenHashMap<IntegerArray> cells = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Merged modes.
+     */
+    List<V> modes = new ArrayList<>();
+
+    /**
+     * Distance query.
+     */
+    DistanceQuery<V> distq;
+
+    /**
+     * Maximum distance.
+     */
+    double bandwidth;
+
+    /**
+     * Enumerate the adjacent cells, instead of a linear scan.
+     */
+    boolean enumerate;
+
+    /**
+     * Constructor.
+     *
+     * @param grid Grid
+     * @param distq Distance query
+     * @param bandwidth Maximum distance
+     * @param enumerate Enumerate adjacent cells, instead of a linear scan
+     */
+    ModeGrid(Grid grid, DistanceQuery<V> distq, double bandwidth, boolean enumerate) {
+      this.grid = grid;
+      this.distq = distq;
+      this.bandwidth = bandwidth;
+      this.enumerate = enumerate;
+    }
+
+    /**
+     * Add a new mode.
+     *
+     * @param mode Mode
+     * @return Mode number
+     */
+    int add(V mode) {
+      final int c = modes.size();
+      modes.add(mode);
+      final long key = grid.key(mode);
+      IntegerArray cell = cells.get(key);
+      if(cell == null) {
+        cells.put(key, cell = new IntegerArray());
+      }
+      cell.add(c);
+      return c;
+    }
+
+    /**
+     * Find the nearest mode within the bandwidth.
+     *
+     * @param vec Query vector
+     * @return Mode number, or -1
+     */
+    int nearest(V vec) {
+      double bestd = Double.POSITIVE_INFINITY;
+      int best = -1;
+      if(!enumerate) {
+        for(int c = 0; c < modes.size(); c++) {
+          final double d = distq.distance(vec, modes.get(c));
+          if(d <= bandwidth && d < bestd) {
+            bestd = d;
+            best = c;
+          }
+        }
+        return best;
+      }
+      final int dim = grid.min.length;
+      int[] lo = new int[dim], hi = new int[dim], probe = new int[dim];
+      for(int d = 0; d < dim; d++) {
+        final int c = grid.coordinate(vec.doubleValue(d), d);
+        probe[d] = lo[d] = c > 0 ? c - 1 : 0;
+        hi[d] = c < grid.cells[d] - 1 ? c + 1 : c;
+      }
+      while(true) {
+        long key = 0;
+        for(int d = 0; d < dim; d++) {
+          key += probe[d] * grid.mult[d];
+        }
+        IntegerArray cell = cells.get(key);
+        if(cell != null) {
+          for(int i = 0; i < cell.size; i++) {
+            final int c = cell.data[i];
+            final double d = distq.distance(vec, modes.get(c));
+            if(d <= bandwidth && (d < bestd || (d == bestd && c < best))) {
+              bestd = d;
+              best = c;
+            }
+          }
+        }
+        int d = dim - 1;
+        while(d >= 0 && probe[d] == hi[d]) {
+          probe[d] = lo[d];
+          --d;
+        }
+        if(d < 0) {
+          return best;
+        }
+        ++probe[d];
+      }
+    }
+  }
+
+  /**
+   * Parameterizer.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractDistanceBasedAlgorithm.Parameterizer<V> {
+    /**
+     * Parameter for the bin width used for seeding.
+     */
+    public static final OptionID BINSIZE_ID = new OptionID("meanshift.binsize", "Width of the grid bins used for seeding; defaults to the bandwidth.");
+
+    /**
+     * Parameter for the minimum number of points in a bin.
+     */
+    public static final OptionID MINBINFREQ_ID = new OptionID("meanshift.minbinfreq", "Minimum number of points in a bin to be used as seed.");
+
+    /**
+     * Kernel function.
+     */
+    KernelDensityFunction kernel = EpanechnikovKernelDensityFunction.KERNEL;
+
+    /**
+     * Kernel radius.
+     */
+    double range;
+
+    /**
+     * Bin width.
+     */
+    double binsize;
+
+    /**
+     * Minimum number of points in a bin.
+     */
+    int minbinfreq;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Disabled: super.makeOptions(config);
+      // Because we currently only allow Lp norms:
+      ObjectParameter<DistanceFunction<? super V>> distanceFunctionP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, LPNormDistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+      }
+      ObjectParameter<KernelDensityFunction> kernelP = new ObjectParameter<>(NaiveMeanShiftClustering.Parameterizer.KERNEL_ID, KernelDensityFunction.class, EpanechnikovKernelDensityFunction.class);
+      if(config.grab(kernelP)) {
+        kernel = kernelP.instantiateClass(config);
+      }
+      DoubleParameter rangeP = new DoubleParameter(NaiveMeanShiftClustering.Parameterizer.RANGE_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(rangeP)) {
+        range = rangeP.getValue();
+      }
+      DoubleParameter binsizeP = new DoubleParameter(BINSIZE_ID) //
+          .setOptional(true) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      binsize = config.grab(binsizeP) ? binsizeP.getValue() : range;
+      IntParameter minbinfreqP = new IntParameter(MINBINFREQ_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(minbinfreqP)) {
+        minbinfreq = minbinfreqP.getValue();
+      }
+    }
+
+    @Override
+    protected MeanShiftClustering<V> makeInstance() {
+      return new MeanShiftClustering<>(distanceFunction, kernel, range, binsize, minbinfreq);
+    }
+  }
+}
@@ -0,0 +1,669 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.ClusterModel;
+import de.lmu.ifi.dbs.elki.data.model.Model;
+import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.WeightedNumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.LPNormDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.unionfind.ConcurrentQuickUnionInteger;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.IncompatibleDataException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Exact parallel DBSCAN for numerical data and Lp-norms, using a grid of cells
+ * with width epsilon.
+ * <p>
+ * Every point is assigned to a grid cell; neighbors within epsilon can then
+ * only be in the same or in adjacent cells. Core points are found in parallel
+ * on blocks of cells, and core points within epsilon are joined using a
+ * lock-free union-find data structure, which makes the result independent of
+ * the processing order. Border points are assigned to the first core point
+ * found in the lexicographic order of the cells, which is deterministic, but
+ * may differ from the order of cluster expansion in {@link DBSCAN}. The
+ * clustering of core points and noise is identical to DBSCAN.
+ * <p>
+ * Because the cells are computed on the raw coordinates, this version does not
+ * make use of indexes. Weighted Lp-norms are not supported, as a neighbor
+ * within epsilon may then be more than epsilon apart in a single coordinate. The number of adjacent cells grows exponentially with
+ * the dimensionality, so this is best used on low-dimensional data.
+ * <p>
+ * References:
+ * <p>
+ * M. M. A. Patwary, D. Palsetia, A. Agrawal, W.-k. Liao, F. Manne, A.
+ * Choudhary<br>
+ * A new scalable parallel DBSCAN algorithm using the disjoint-set data
+ * structure<br>
+ * Proc. Int. Conf. High Performance Computing, Networking, Storage and
+ * Analysis (SC 2012)
+ * <p>
+ * J. Gan, Y. Tao<br>
+ * DBSCAN Revisited: Mis-Claim, Un-Fixability, and Approximation<br>
+ * Proc. 2015 ACM SIGMOD Int. Conf. on Management of Data
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <V> the type of vector the algorithm is applied to
+ */
+@Reference(authors = "M. M. A. Patwary, D. Palsetia, A. Agrawal, W.-k. Liao, F. Manne, A. Choudhary", //
+    title = "A new scalable parallel DBSCAN algorithm using the disjoint-set data structure", //
+    booktitle = "Proc. Int. Conf. High Performance Computing, Networking, Storage and Analysis (SC 2012)", //
+    url = "https://doi.org/10.1109/SC.2012.9", //
+    bibkey = "DBLP:conf/sc/PatwaryPALMC12")
+@Reference(authors = "J. Gan, Y. Tao", //
+    title = "DBSCAN Revisited: Mis-Claim, Un-Fixability, and Approximation", //
+    booktitle = "Proc. 2015 ACM SIGMOD Int. Conf. on Management of Data", //
+    url = "https://doi.org/10.1145/2723372.2737792", //
+    bibkey = "DBLP:conf/sigmod/GanT15")
+public class ParallelGridDBSCAN<V extends NumberVector> extends AbstractDistanceBasedAlgorithm<V, Clustering<Model>> implements ClusteringAlgorithm<Clustering<Model>> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelGridDBSCAN.class);
+
+  /**
+   * Holds the epsilon radius threshold.
+   */
+  protected double epsilon;
+
+  /**
+   * Holds the minimum cluster size.
+   */
+  protected int minpts;
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distanceFunction Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts parameter
+   */
+  public ParallelGridDBSCAN(DistanceFunction<? super V> distanceFunction, double epsilon, int minpts) {
+    super(distanceFunction);
+    this.epsilon = epsilon;
+    this.minpts = minpts;
+  }
+
+  /**
+   * Performs the DBSCAN algorithm on the given database.
+   *
+   * @param relation Relation to process
+   * @return Clustering
+   */
+  public Clustering<Model> run(Relation<V> relation) {
+    if(!isSupported(getDistanceFunction())) {
+      throw new AbortException("Grid-based DBSCAN requires an unweighted Lp-norm.");
+    }
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    // Degenerate result:
+    if(ids.size() < minpts) {
+      Clustering<Model> result = new Clustering<>("DBSCAN Clustering", "dbscan-clustering");
+      result.addToplevelCluster(new Cluster<Model>(ids, true, ClusterModel.CLUSTER));
+      return result;
+    }
+    return new Instance<V>(relation, ids, getDistanceFunction().instantiate(relation), epsilon, minpts).run();
+  }
+
+  /**
+   * Test whether the grid is exact for a distance function: for unweighted
+   * Lp-norms, points within epsilon differ by at most epsilon in every
+   * coordinate.
+   *
+   * @param df Distance function
+   * @return {@code true} if supported
+   */
+  protected static boolean isSupported(DistanceFunction<?> df) {
+    return df instanceof LPNormDistanceFunction && !(df instanceof WeightedNumberVectorDistanceFunction);
+  }
+
+  /**
+   * Instance, for a single run.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  protected static class Instance<V extends NumberVector> {
+    /**
+     * Object ids, in processing order.
+     */
+    protected ArrayDBIDs ids;
+
+    /**
+     * Data vectors, by offset in ids.
+     */
+    protected List<V> data;
+
+    /**
+     * Distance query.
+     */
+    protected DistanceQuery<V> dq;
+
+    /**
+     * Holds the epsilon radius threshold.
+     */
+    protected double epsilon;
+
+    /**
+     * Holds the minimum cluster size.
+     */
+    protected int minpts;
+
+    /**
+     * Dimensionality.
+     */
+    protected int dim;
+
+    /**
+     * Grid cell coordinates of each point.
+     */
+    protected int[][] coords;
+
+    /**
+     * Point offsets, sorted by grid cell.
+     */
+    protected int[] members;
+
+    /**
+     * Start of each cell in members; has one additional entry for the end.
+     */
+    protected int[] cellStart;
+
+    /**
+     * Non-empty adjacent cells of each cell (including itself), in ascending
+     * order.
+     */
+    protected int[][] neighbors;
+
+    /**
+     * Core point flags, by offset.
+     */
+    protected boolean[] core;
+
+    /**
+     * Core point each point is assigned to, or -1 for noise.
+     */
+    protected int[] assign;
+
+    /**
+     * Union-find of core points.
+     */
+    protected ConcurrentQuickUnionInteger uf;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param ids Object ids
+     * @param dq Distance query
+     * @param epsilon Epsilon
+     * @param minpts MinPts
+     */
+    public Instance(Relation<V> relation, ArrayDBIDs ids, DistanceQuery<V> dq, double epsilon, int minpts) {
+      this.ids = ids;
+      this.dq = dq;
+      this.epsilon = epsilon;
+      this.minpts = minpts;
+      this.dim = RelationUtil.dimensionality(relation);
+      this.data = new ArrayList<>(ids.size());
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        data.add(relation.get(it));
+      }
+    }
+
+    /**
+     * Run the clustering.
+     *
+     * @return Clustering
+     */
+    public Clustering<Model> run() {
+      final int size = ids.size();
+      buildGrid();
+      final int numcells = cellStart.length - 1;
+      computeNeighbors();
+      if(LOG.isStatistics()) {
+        long adj = 0;
+        for(int[] n : neighbors) {
+          adj += n.length;
+        }
+        LOG.statistics(new LongStatistic(ParallelGridDBSCAN.class.getName() + ".used-cells", numcells));
+        LOG.statistics(new LongStatistic(ParallelGridDBSCAN.class.getName() + ".adjacent-cells", adj));
+      }
+      // Find core points, in parallel over blocks of cells.
+      core = new boolean[size];
+      long ncore = 0;
+      for(int c : ParallelExecutor.runBlocks(numcells, (start, end) -> {
+        int cnt = 0;
+        for(int c = start; c < end; c++) {
+          for(int i = cellStart[c], e = cellStart[c + 1]; i < e; i++) {
+            final int p = members[i];
+            core[p] = isCore(p, c);
+            cnt += core[p] ? 1 : 0;
+          }
+        }
+        return cnt;
+      })) {
+        ncore += c;
+      }
+      LOG.statistics(new LongStatistic(ParallelGridDBSCAN.class.getName() + ".core-points", ncore));
+      // Connect core points, and assign border points.
+      uf = new ConcurrentQuickUnionInteger(size);
+      assign = new int[size];
+      ParallelExecutor.runBlocks(numcells, (start, end) -> {
+        for(int c = start; c < end; c++) {
+          for(int i = cellStart[c], e = cellStart[c + 1]; i < e; i++) {
+            final int p = members[i];
+            if(core[p]) {
+              assign[p] = p;
+              connectCore(p, i, c);
+            }
+            else {
+              assign[p] = findCore(p, c);
+            }
+          }
+        }
+        return null;
+      });
+      return buildClustering();
+    }
+
+    /**
+     * Assign each point to a grid cell, and sort the points by cell.
+     */
+    protected void buildGrid() {
+      final int size = ids.size();
+      // Minimum and maximum per dimension, in parallel blocks.
+      double[] min = new double[dim], max = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        min[d] = Double.POSITIVE_INFINITY;
+        max[d] = Double.NEGATIVE_INFINITY;
+      }
+      for(double[] part : ParallelExecutor.runBlocks(size, (start, end) -> {
+        double[] mm = new double[dim << 1];
+        for(int d = 0; d < dim; d++) {
+          mm[d] = Double.POSITIVE_INFINITY;
+          mm[dim + d] = Double.NEGATIVE_INFINITY;
+        }
+        for(int i = start; i < end; i++) {
+          final V vec = data.get(i);
+          for(int d = 0; d < dim; d++) {
+            final double v = vec.doubleValue(d);
+            mm[d] = v < mm[d] ? v : mm[d];
+            mm[dim + d] = v > mm[dim + d] ? v : mm[dim + d];
+          }
+        }
+        return mm;
+      })) {
+        for(int d = 0; d < dim; d++) {
+          min[d] = part[d] < min[d] ? part[d] : min[d];
+          max[d] = part[dim + d] > max[d] ? part[dim + d] : max[d];
+        }
+      }
+      for(int d = 0; d < dim; d++) {
+        if(!(max[d] - min[d] < Double.POSITIVE_INFINITY)) {
+          throw new IncompatibleDataException("Dimension " + d + " contains non-finite values.");
+        }
+        if((max[d] - min[d]) / epsilon >= Integer.MAX_VALUE) {
+          throw new IncompatibleDataException("Dimension " + d + " has too many grid cells for this epsilon.");
+        }
+      }
+      // Cell coordinates, in parallel.
+      coords = new int[size][];
+      ParallelExecutor.runBlocks(size, (start, end) -> {
+        for(int i = start; i < end; i++) {
+          final V vec = data.get(i);
+          int[] co = coords[i] = new int[dim];
+          for(int d = 0; d < dim; d++) {
+            co[d] = (int) ((vec.doubleValue(d) - min[d]) / epsilon);
+          }
+        }
+        return null;
+      });
+      // Sort points by cell, lexicographically.
+      members = new int[size];
+      for(int i = 0; i < size; i++) {
+        members[i] = i;
+      }
+      IntegerArrayQuickSort.sort(members, (a, b) -> {
+        final int c = compare(coords[a], coords[b]);
+        return c != 0 ? c : Integer.compare(a, b);
+      });
+      int numcells = 1;
+      for(int i = 1; i < size; i++) {
+        if(compare(coords[members[i - 1]], coords[members[i]]) != 0) {
+          ++numcells;
+        }
+      }
+      cellStart = new int[numcells + 1];
+      for(int i = 1, c = 1; i < size; i++) {
+        if(compare(coords[members[i - 1]], coords[members[i]]) != 0) {
+          cellStart[c++] = i;
+        }
+      }
+      cellStart[numcells] = size;
+    }
+
+    /**
+     * Find the non-empty adjacent cells of each cell, in parallel.
+     */
+    protected void computeNeighbors() {
+      final int numcells = cellStart.length - 1;
+      // Enumerate the 3^d offsets, unless there are fewer cells.
+      double adjacent = Math.pow(3, dim);
+      final boolean enumerate = adjacent <= numcells;
+      neighbors = new int[numcells][];
+      ParallelExecutor.runBlocks(numcells, (start, end) -> {
+        int[] buf = new int[Math.min(numcells, (int) Math.min(adjacent, Integer.MAX_VALUE))];
+        int[] probe = new int[dim];
+        for(int c = start; c < end; c++) {
+          final int[] co = coords[members[cellStart[c]]];
+          int n = 0;
+          if(enumerate) {
+            // Offsets in lexicographic order yield cells in ascending order.
+            for(int d = 0; d < dim; d++) {
+              probe[d] = co[d] - 1;
+            }
+            while(true) {
+              final int cell = findCell(probe);
+              if(cell >= 0) {
+                buf[n++] = cell;
+              }
+              int d = dim - 1;
+              while(d >= 0 && probe[d] == co[d] + 1) {
+                probe[d] = co[d] - 1;
+                --d;
+              }
+              if(d < 0) {
+                break;
+              }
+              ++probe[d];
+            }
+          }
+          else {
+            for(int o = 0; o < numcells; o++) {
+              if(isAdjacent(co, coords[members[cellStart[o]]])) {
+                buf[n++] = o;
+              }
+            }
+          }
+          int[] ns = neighbors[c] = new int[n];
+          System.arraycopy(buf, 0, ns, 0, n);
+        }
+        return null;
+      });
+    }
+
+    /**
+     * Find a cell by its coordinates, using binary search.
+     *
+     * @param probe Cell coordinates
+     * @return Cell number, or -1
+     */
+    private int findCell(int[] probe) {
+      int lo = 0, hi = cellStart.length - 2;
+      while(lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        final int c = compare(coords[members[cellStart[mid]]], probe);
+        if(c < 0) {
+          lo = mid + 1;
+        }
+        else if(c > 0) {
+          hi = mid - 1;
+        }
+        else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Test if a point is a core point.
+     *
+     * @param p Point offset
+     * @param c Cell of the point
+     * @return {@code true} if the point has at least minpts neighbors
+     */
+    private boolean isCore(int p, int c) {
+      final V vec = data.get(p);
+      int count = 0;
+      for(int o : neighbors[c]) {
+        for(int j = cellStart[o], e = cellStart[o + 1]; j < e; j++) {
+          if(dq.distance(vec, data.get(members[j])) <= epsilon && ++count >= minpts) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Join a core point with all core points within epsilon, that come later
+     * in the cell order.
+     *
+     * @param p Core point offset
+     * @param i Position of the point in members
+     * @param c Cell of the point
+     */
+    private void connectCore(int p, int i, int c) {
+      final V vec = data.get(p);
+      for(int o : neighbors[c]) {
+        if(o < c) {
+          continue; // Handled by the other cell.
+        }
+        for(int j = o == c ? i + 1 : cellStart[o], e = cellStart[o + 1]; j < e; j++) {
+          final int q = members[j];
+          if(core[q] && !uf.isConnected(p, q) && dq.distance(vec, data.get(q)) <= epsilon) {
+            uf.union(p, q);
+          }
+        }
+      }
+    }
+
+    /**
+     * Find the first core point within epsilon of a non-core point.
+     *
+     * @param p Point offset
+     * @param c Cell of the point
+     * @return Core point, or -1 for noise
+     */
+    private int findCore(int p, int c) {
+      final V vec = data.get(p);
+      for(int o : neighbors[c]) {
+        for(int j = cellStart[o], e = cellStart[o + 1]; j < e; j++) {
+          final int q = members[j];
+          if(core[q] && dq.distance(vec, data.get(q)) <= epsilon) {
+            return q;
+          }
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Build the final clustering, with clusters ordered by their first member.
+     *
+     * @return Clustering
+     */
+    protected Clustering<Model> buildClustering() {
+      final int size = ids.size();
+      int[] clusterOf = new int[size];
+      for(int i = 0; i < size; i++) {
+        clusterOf[i] = -1;
+      }
+      List<ArrayModifiableDBIDs> clusters = new ArrayList<>();
+      ArrayModifiableDBIDs noise = DBIDUtil.newArray();
+      DBIDArrayIter it = ids.iter();
+      for(int i = 0; i < size; i++) {
+        it.seek(i);
+        if(assign[i] < 0) {
+          noise.add(it);
+          continue;
+        }
+        final int root = uf.find(assign[i]);
+        int cid = clusterOf[root];
+        if(cid < 0) {
+          cid = clusterOf[root] = clusters.size();
+          clusters.add(DBIDUtil.newArray());
+        }
+        clusters.get(cid).add(it);
+      }
+      Clustering<Model> result = new Clustering<>("DBSCAN Clustering", "dbscan-clustering");
+      for(ArrayModifiableDBIDs cluster : clusters) {
+        result.addToplevelCluster(new Cluster<Model>(cluster, ClusterModel.CLUSTER));
+      }
+      if(noise.size() > 0) {
+        result.addToplevelCluster(new Cluster<Model>(noise, true, ClusterModel.CLUSTER));
+      }
+      return result;
+    }
+
+    /**
+     * Lexicographic comparison of cell coordinates.
+     *
+     * @param a First
+     * @param b Second
+     * @return Comparison result
+     */
+    private static int compare(int[] a, int[] b) {
+      for(int d = 0; d < a.length; d++) {
+        if(a[d] != b[d]) {
+          return a[d] < b[d] ? -1 : +1;
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Test if two cells are adjacent (or identical).
+     *
+     * @param a First
+     * @param b Second
+     * @return {@code true} if no coordinate differs by more than one
+     */
+    private static boolean isAdjacent(int[] a, int[] b) {
+      for(int d = 0; d < a.length; d++) {
+        if(a[d] - b[d] > 1 || b[d] - a[d] > 1) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    // We strictly need a vector field of fixed dimensionality!
+    TypeInformation type = new CombinedTypeInformation(TypeUtil.NUMBER_VECTOR_FIELD, getDistanceFunction().getInputTypeRestriction());
+    return TypeUtil.array(type);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Vector type to use
+   */
+  public static class Parameterizer<O extends NumberVector> extends AbstractDistanceBasedAlgorithm.Parameterizer<O> {
+    /**
+     * Holds the epsilon radius threshold.
+     */
+    protected double epsilon;
+
+    /**
+     * Holds the minimum cluster size.
+     */
+    protected int minpts;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Disabled: super.makeOptions(config);
+      // Because we currently only allow Lp norms:
+      ObjectParameter<DistanceFunction<? super O>> distanceFunctionP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, LPNormDistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+        if(distanceFunction != null && !isSupported(distanceFunction)) {
+          config.reportError(new WrongParameterValueException("Grid-based DBSCAN requires an unweighted Lp-norm."));
+        }
+      }
+
+      DoubleParameter epsilonP = new DoubleParameter(DBSCAN.Parameterizer.EPSILON_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(epsilonP)) {
+        epsilon = epsilonP.getValue();
+      }
+
+      IntParameter minptsP = new IntParameter(DBSCAN.Parameterizer.MINPTS_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(minptsP)) {
+        minpts = minptsP.getValue();
+        if(minpts <= 2) {
+          LOG.warning("DBSCAN with minPts <= 2 is equivalent to single-link clustering at a single height. Consider using larger values of minPts.");
+        }
+      }
+    }
+
+    @Override
+    protected ParallelGridDBSCAN<O> makeInstance() {
+      return new ParallelGridDBSCAN<>(distanceFunction, epsilon, minpts);
+    }
+  }
+}
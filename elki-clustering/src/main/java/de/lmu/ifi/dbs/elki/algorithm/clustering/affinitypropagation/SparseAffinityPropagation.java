@@ -0,0 +1,412 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.affinitypropagation;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.model.MedoidModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListIter;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.progress.MutableProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Sparse affinity propagation, which passes messages only along the edges of
+ * the k-nearest-neighbor graph.
+ * <p>
+ * Instead of the dense similarity, responsibility and availability matrices
+ * of {@link AffinityPropagationClusteringAlgorithm}, the similarities are only
+ * stored for the k nearest neighbors of every object (plus the preference on
+ * the diagonal), and all other similarities are treated as minus infinity.
+ * The neighbors are obtained from the kNN query of the database, so index
+ * structures (and approximate kNN preprocessors) are used if available. This
+ * needs only O(nk) memory. Responsibilities are updated row by row and
+ * availabilities column by column, both in parallel.
+ * <p>
+ * The preference is the given quantile of the kNN similarities, which are
+ * larger than the full similarities; hence this tends to produce more
+ * clusters than the dense algorithm, and a lower quantile may be needed.
+ * <p>
+ * Reference:
+ * <p>
+ * B. J. Frey, D. Dueck<br>
+ * Clustering by Passing Messages Between Data Points<br>
+ * Science Vol 315
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <O> object type
+ */
+@Reference(title = "Clustering by Passing Messages Between Data Points", //
+    authors = "B. J. Frey, D. Dueck", //
+    booktitle = "Science Vol 315", //
+    url = "https://doi.org/10.1126/science.1136800", //
+    bibkey = "doi:10.1126/science.1136800")
+public class SparseAffinityPropagation<O> extends AbstractDistanceBasedAlgorithm<O, Clustering<MedoidModel>> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(SparseAffinityPropagation.class);
+
+  /**
+   * Number of neighbors.
+   */
+  int k;
+
+  /**
+   * Quantile of the similarities to use as preference.
+   */
+  double quantile;
+
+  /**
+   * Damping factor lambda.
+   */
+  double lambda = 0.5;
+
+  /**
+   * Terminate after 10 iterations with no changes.
+   */
+  int convergence = 10;
+
+  /**
+   * Maximum number of iterations.
+   */
+  int maxiter = 1000;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param k Number of neighbors
+   * @param quantile Quantile for the preference
+   * @param lambda Damping factor
+   * @param convergence Termination threshold (Number of stable iterations)
+   * @param maxiter Maximum number of iterations
+   */
+  public SparseAffinityPropagation(DistanceFunction<? super O> distanceFunction, int k, double quantile, double lambda, int convergence, int maxiter) {
+    super(distanceFunction);
+    this.k = k;
+    this.quantile = quantile;
+    this.lambda = lambda;
+    this.convergence = convergence;
+    this.maxiter = maxiter;
+  }
+
+  /**
+   * Perform affinity propagation clustering.
+   *
+   * @param db Database
+   * @param relation Relation
+   * @return Clustering result
+   */
+  public Clustering<MedoidModel> run(Database db, Relation<O> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size(), k = Math.min(this.k, size - 1);
+    // Every row has the object itself first, then exactly k neighbors.
+    final int stride = k + 1;
+    if((long) size * stride > Integer.MAX_VALUE - 8) {
+      throw new AbortException("Too many objects and neighbors to store all similarities.");
+    }
+    final int[] col = new int[size * stride];
+    final double[] s = new double[size * stride];
+    buildGraph(db, relation, ids, k, col, s);
+
+    // Transposed edge index, for column-wise access:
+    final int[] colStart = new int[size + 1], colEdge = new int[col.length];
+    for(int c : col) {
+      ++colStart[c + 1];
+    }
+    for(int i = 0; i < size; i++) {
+      colStart[i + 1] += colStart[i];
+    }
+    int[] pos = colStart.clone();
+    for(int e = 0; e < col.length; e++) {
+      colEdge[pos[col[e]]++] = e;
+    }
+    pos = null;
+
+    final double[] r = new double[s.length], a = new double[s.length];
+    final int[] assignment = new int[size];
+
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Affinity Propagation Iteration", LOG) : null;
+    MutableProgress aprog = LOG.isVerbose() ? new MutableProgress("Stable assignments", size + 1, LOG) : null;
+
+    int inactive = 0, iteration = 0;
+    for(; iteration < maxiter && inactive < convergence; iteration++) {
+      // Update responsibilities, row-wise:
+      ParallelExecutor.runBlocks(size, (start, end) -> {
+        for(int i = start; i < end; i++) {
+          final int rs = i * stride, re = rs + stride;
+          double max1 = Double.NEGATIVE_INFINITY, max2 = Double.NEGATIVE_INFINITY;
+          int maxe = -1;
+          for(int e = rs; e < re; e++) {
+            double val = a[e] + s[e];
+            if(val > max1) {
+              max2 = max1;
+              max1 = val;
+              maxe = e;
+            }
+            else if(val > max2) {
+              max2 = val;
+            }
+          }
+          for(int e = rs; e < re; e++) {
+            double val = s[e] - ((e != maxe) ? max1 : max2);
+            r[e] = r[e] * lambda + val * (1. - lambda);
+          }
+        }
+        return null;
+      });
+      // Update availabilities, column-wise:
+      ParallelExecutor.runBlocks(size, (start, end) -> {
+        for(int c = start; c < end; c++) {
+          // The diagonal entry is the first in the row of c.
+          final int cs = colStart[c], ce = colStart[c + 1], diag = c * stride;
+          // Sum of max(0, r_ic), but r_cc without the max.
+          double colposum = 0.;
+          for(int j = cs; j < ce; j++) {
+            final int e = colEdge[j];
+            if(e == diag || r[e] > 0.) {
+              colposum += r[e];
+            }
+          }
+          for(int j = cs; j < ce; j++) {
+            final int e = colEdge[j];
+            double val = colposum;
+            // Adjust column sum by the one extra term.
+            if(e == diag || r[e] > 0.) {
+              val -= r[e];
+            }
+            if(e != diag && val > 0.) { // min
+              val = 0.;
+            }
+            a[e] = a[e] * lambda + val * (1 - lambda);
+          }
+        }
+        return null;
+      });
+      // Update the assignment, preferring the object itself on ties:
+      int changed = 0;
+      for(int c : ParallelExecutor.runBlocks(size, (start, end) -> {
+        int ch = 0;
+        for(int i = start; i < end; i++) {
+          final int rs = i * stride, re = rs + stride;
+          double max = a[rs] + r[rs];
+          int maxe = rs;
+          for(int e = rs + 1; e < re; e++) {
+            double v = a[e] + r[e];
+            if(v > max) {
+              max = v;
+              maxe = e;
+            }
+          }
+          if(assignment[i] != col[maxe]) {
+            ch += 1;
+            assignment[i] = col[maxe];
+          }
+        }
+        return ch;
+      })) {
+        changed += c;
+      }
+      inactive = (changed > 0) ? 0 : (inactive + 1);
+      LOG.incrementProcessed(prog);
+      if(aprog != null) {
+        aprog.setProcessed(size - changed, LOG);
+      }
+    }
+    if(aprog != null) {
+      aprog.setProcessed(aprog.getTotal(), LOG);
+    }
+    LOG.setCompleted(prog);
+    LOG.statistics(new LongStatistic(getClass().getName() + ".iterations", iteration));
+    return AffinityPropagationClusteringAlgorithm.buildClustering(ids, assignment);
+  }
+
+  /**
+   * Build the sparse similarity graph from the k nearest neighbors.
+   *
+   * @param db Database
+   * @param relation Data relation
+   * @param ids Object ids
+   * @param k Number of neighbors (excluding the object itself)
+   * @param col Output: target offset of each edge
+   * @param s Output: similarity of each edge
+   */
+  private void buildGraph(Database db, Relation<O> relation, ArrayDBIDs ids, int k, int[] col, double[] s) {
+    final int size = ids.size(), stride = k + 1;
+    DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
+    KNNQuery<O> knnq = db.getKNNQuery(dq, k + 1);
+    WritableIntegerDataStore offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      offsets.putInt(it, it.getOffset());
+    }
+    ParallelExecutor.runBlocks(size, 64, (start, end) -> {
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        int e = it.getOffset() * stride, last = e + k;
+        col[e] = it.getOffset(); // Diagonal, preference is set below.
+        for(DoubleDBIDListIter n = knnq.getKNNForDBID(it, k + 1).iter(); n.valid() && e < last; n.advance()) {
+          if(!DBIDUtil.equal(it, n)) {
+            col[++e] = offsets.intValue(n);
+            s[e] = -n.doubleValue();
+          }
+        }
+      }
+      return null;
+    });
+    offsets.destroy();
+    // Preference: quantile of the neighbor similarities.
+    double[] flat = new double[size * k];
+    for(int i = 0, j = 0; i < size; i++) {
+      System.arraycopy(s, i * stride + 1, flat, j, k);
+      j += k;
+    }
+    final double preference = size > 1 ? QuickSelect.quantile(flat, quantile) : 0.;
+    for(int i = 0; i < size; i++) {
+      s[i * stride] = preference;
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(getDistanceFunction().getInputTypeRestriction());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> object type
+   */
+  public static class Parameterizer<O> extends AbstractParameterizer {
+    /**
+     * Number of neighbors to use for the similarity graph.
+     */
+    public static final OptionID K_ID = new OptionID("ap.k", "Number of nearest neighbors to keep the similarities of.");
+
+    /**
+     * Distance function.
+     */
+    DistanceFunction<? super O> distanceFunction;
+
+    /**
+     * Number of neighbors.
+     */
+    int k;
+
+    /**
+     * Quantile to use.
+     */
+    double quantile;
+
+    /**
+     * Dampening parameter.
+     */
+    double lambda = .5;
+
+    /**
+     * Number of stable iterations for convergence.
+     */
+    int convergence;
+
+    /**
+     * Maximum number of iterations.
+     */
+    int maxiter;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      ObjectParameter<DistanceFunction<? super O>> distanceFunctionP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, DistanceFunction.class, SquaredEuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        distanceFunction = distanceFunctionP.instantiateClass(config);
+      }
+      IntParameter kP = new IntParameter(K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.intValue();
+      }
+      DoubleParameter quantileP = new DoubleParameter(AffinityPropagationInitialization.QUANTILE_ID, .5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+          .addConstraint(CommonConstraints.LESS_EQUAL_ONE_DOUBLE);
+      if(config.grab(quantileP)) {
+        quantile = quantileP.doubleValue();
+      }
+      final DoubleParameter lambdaP = new DoubleParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.LAMBDA_ID, .5) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .addConstraint(CommonConstraints.LESS_THAN_ONE_DOUBLE);
+      if(config.grab(lambdaP)) {
+        lambda = lambdaP.doubleValue();
+      }
+      final IntParameter convergenceP = new IntParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.CONVERGENCE_ID, 15) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(convergenceP)) {
+        convergence = convergenceP.intValue();
+      }
+      final IntParameter maxiterP = new IntParameter(AffinityPropagationClusteringAlgorithm.Parameterizer.MAXITER_ID, 1000);
+      if(config.grab(maxiterP)) {
+        maxiter = maxiterP.intValue();
+      }
+    }
+
+    @Override
+    protected SparseAffinityPropagation<O> makeInstance() {
+      return new SparseAffinityPropagation<>(distanceFunction, k, quantile, lambda, convergence, maxiter);
+    }
+  }
+}
@@ -116,6 +116,21 @@ public class DiagonalGaussianModel implements EMClusterModel<EMModel> {
 
   @Override
   public void updateE(NumberVector vec, double wei) {
+    wsum = updateE(mean, variances, nmea, wsum, vec, wei);
+  }
+
+  /**
+   * Incremental update of the mean and the (unnormalized) variances.
+   *
+   * @param mean Mean, updated
+   * @param variances Variances, updated
+   * @param nmea Temporary storage
+   * @param wsum Current weight sum
+   * @param vec Vector to add
+   * @param wei Weight of the vector
+   * @return New weight sum
+   */
+  private static double updateE(double[] mean, double[] variances, double[] nmea, double wsum, NumberVector vec, double wei) {
     assert (vec.getDimensionality() == mean.length);
     final double nwsum = wsum + wei;
     // Compute new means
@@ -132,8 +147,47 @@ public class DiagonalGaussianModel implements EMClusterModel<EMModel> {
       variances[i] += (vi - nmea[i]) * (vi - mean[i]) * wei;
     }
     // Use new values.
-    wsum = nwsum;
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
+    return nwsum;
+  }
+
+  @Override
+  public Accumulator newAccumulator() {
+    return new VarianceAccumulator(mean.length);
+  }
+
+  @Override
+  public void mergeE(Accumulator other, double scale) {
+    VarianceAccumulator acc = (VarianceAccumulator) other;
+    final double awsum = acc.wsum * scale;
+    if(!(awsum > 0.)) {
+      return;
+    }
+    final int dim = mean.length;
+    if(!(wsum > 0.)) {
+      wsum = awsum;
+      System.arraycopy(acc.mean, 0, mean, 0, dim);
+      for(int i = 0; i < dim; i++) {
+        variances[i] = acc.variances[i] * scale;
+      }
+      return;
+    }
+    // Combine the moments of both partitions, as in Chan et al.
+    final double nwsum = wsum + awsum, f = awsum / nwsum, g = wsum * f;
+    for(int i = 0; i < dim; i++) {
+      final double delta = acc.mean[i] - mean[i];
+      variances[i] += acc.variances[i] * scale + delta * delta * g;
+      mean[i] += delta * f;
+    }
+    wsum = nwsum;
+  }
+
+  @Override
+  public void retainE(double weight) {
+    wsum = weight;
+    for(int i = 0; i < variances.length; i++) {
+      variances[i] *= weight;
+    }
   }
 
   @Override
@@ -194,4 +248,37 @@ public class DiagonalGaussianModel implements EMClusterModel<EMModel> {
   public EMModel finalizeCluster() {
     return new EMModel(mean, diagonal(variances));
   }
+
+  /**
+   * Partial mean and variances of a subset of the data.
+   *
+   * @author Erich Schubert
+   */
+  private static class VarianceAccumulator implements Accumulator {
+    /**
+     * Mean vector, variances, and temporary storage.
+     */
+    double[] mean, variances, nmea;
+
+    /**
+     * Weight sum.
+     */
+    double wsum;
+
+    /**
+     * Constructor.
+     *
+     * @param dim Dimensionality
+     */
+    VarianceAccumulator(int dim) {
+      this.mean = new double[dim];
+      this.variances = new double[dim];
+      this.nmea = new double[dim];
+    }
+
+    @Override
+    public void updateE(NumberVector vec, double wei) {
+      wsum = DiagonalGaussianModel.updateE(mean, variances, nmea, wsum, vec, wei);
+    }
+  }
 }
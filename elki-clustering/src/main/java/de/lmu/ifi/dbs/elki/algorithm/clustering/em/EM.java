@@ -20,9 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.em;
 
-import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.argmax;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
@@ -39,6 +38,8 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
@@ -48,11 +49,13 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanD
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Description;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -149,6 +152,11 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
    */
   private static final double MIN_LOGLIKELIHOOD = -100000;
 
+  /**
+   * Minimum number of objects per block for parallel processing.
+   */
+  private static final int MIN_BLOCK = 256;
+
   /**
    * Soft assignment result type.
    */
@@ -216,8 +224,14 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
     }
     // initial models
     List<? extends EMClusterModel<M>> models = mfactory.buildInitialModels(database, relation, k, SquaredEuclideanDistanceFunction.STATIC);
-    WritableDataStore<double[]> probClusterIGivenX = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
-    double loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
+    final boolean mergeable = isMergeable(models);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    if((long) ids.size() * k > Integer.MAX_VALUE - 8) {
+      throw new AbortException("Too many objects and clusters to store all probabilities.");
+    }
+    // Probabilities of all objects, k values per object.
+    double[] probClusterIGivenX = new double[ids.size() * k];
+    double loglikelihood = assignProbabilitiesToInstances(relation, ids, models, probClusterIGivenX);
     DoubleStatistic likestat = LOG.isStatistics() ? new DoubleStatistic(this.getClass().getName() + ".loglikelihood") : null;
     if(LOG.isStatistics()) {
       LOG.statistics(likestat.setDouble(loglikelihood));
@@ -228,9 +242,9 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
     double bestloglikelihood = loglikelihood; // For detecting instabilities.
     for(++it; it < maxiter || maxiter < 0; it++) {
       final double oldloglikelihood = loglikelihood;
-      recomputeCovarianceMatrices(relation, probClusterIGivenX, models, prior);
+      recomputeCovarianceMatrices(relation, ids, probClusterIGivenX, models, prior, mergeable);
       // reassign probabilities
-      loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
+      loglikelihood = assignProbabilitiesToInstances(relation, ids, models, probClusterIGivenX);
 
       if(LOG.isStatistics()) {
         LOG.statistics(likestat.setDouble(loglikelihood));
@@ -254,19 +268,25 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
     }
 
     // provide a hard clustering
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      hardClusters.get(argmax(probClusterIGivenX.get(iditer))).add(iditer);
+    WritableDataStore<double[]> softClusters = isSoft() ? DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class) : null;
+    int off = 0;
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance(), off += k) {
+      int best = 0;
+      for(int i = 1; i < k; i++) {
+        best = probClusterIGivenX[off + i] > probClusterIGivenX[off + best] ? i : best;
+      }
+      hardClusters.get(best).add(iditer);
+      if(softClusters != null) {
+        softClusters.put(iditer, Arrays.copyOfRange(probClusterIGivenX, off, off + k));
+      }
     }
     Clustering<M> result = new Clustering<>("EM Clustering", "em-clustering");
     // provide models within the result
     for(int i = 0; i < k; i++) {
       result.addToplevelCluster(new Cluster<>(hardClusters.get(i), models.get(i).finalizeCluster()));
     }
-    if(isSoft()) {
-      result.addChildResult(new MaterializedRelation<>("cluster assignments", "em-soft-score", SOFT_TYPE, probClusterIGivenX, relation.getDBIDs()));
-    }
-    else {
-      probClusterIGivenX.destroy();
+    if(softClusters != null) {
+      result.addChildResult(new MaterializedRelation<>("cluster assignments", "em-soft-score", SOFT_TYPE, softClusters, relation.getDBIDs()));
     }
     return result;
   }
@@ -281,6 +301,71 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
    */
   public static void recomputeCovarianceMatrices(Relation<? extends NumberVector> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<?>> models, double prior) {
     final int k = models.size();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    double[] probs = new double[ids.size() * k];
+    int off = 0;
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance(), off += k) {
+      System.arraycopy(probClusterIGivenX.get(iditer), 0, probs, off, k);
+    }
+    recomputeCovarianceMatrices(relation, ids, probs, models, prior, isMergeable(models));
+  }
+
+  /**
+   * Assigns the current probability values to the instances in the database and
+   * compute the expectation value of the current mixture of distributions.
+   * 
+   * Computed as the sum of the logarithms of the prior probability of each
+   * instance.
+   * 
+   * @param relation the database used for assignment to instances
+   * @param models Cluster models
+   * @param probClusterIGivenX Output storage for cluster probabilities
+   * @return the expectation value of the current mixture of distributions
+   */
+  public static double assignProbabilitiesToInstances(Relation<? extends NumberVector> relation, List<? extends EMClusterModel<?>> models, WritableDataStore<double[]> probClusterIGivenX) {
+    final int k = models.size();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    double[] probs = new double[ids.size() * k];
+    final double emSum = assignProbabilitiesToInstances(relation, ids, models, probs);
+    int off = 0;
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance(), off += k) {
+      probClusterIGivenX.put(iditer, Arrays.copyOfRange(probs, off, off + k));
+    }
+    return emSum;
+  }
+
+  /**
+   * Test if all models support partial aggregation, for processing the E step
+   * in parallel blocks.
+   *
+   * @param models Cluster models
+   * @return {@code true} if all models provide accumulators
+   */
+  public static boolean isMergeable(List<? extends EMClusterModel<?>> models) {
+    for(EMClusterModel<?> m : models) {
+      if(m.newAccumulator() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Recompute the covariance matrixes.
+   * <p>
+   * If all models support partial aggregation (c.f. {@link #isMergeable}),
+   * the data is processed in parallel blocks, which are merged in order.
+   *
+   * @param relation Vector data
+   * @param ids Object ids, in the order of the probabilities
+   * @param probClusterIGivenX Object probabilities, k per object
+   * @param models Cluster models to update
+   * @param prior MAP prior (use 0 for MLE)
+   * @param mergeable Process in parallel blocks, requires all models to
+   *        support partial aggregation
+   */
+  public static void recomputeCovarianceMatrices(Relation<? extends NumberVector> relation, ArrayDBIDs ids, double[] probClusterIGivenX, List<? extends EMClusterModel<?>> models, double prior, boolean mergeable) {
+    final int k = models.size(), size = ids.size();
     boolean needsTwoPass = false;
     for(EMClusterModel<?> m : models) {
       m.beginEStep();
@@ -288,11 +373,11 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
     }
     // First pass, only for two-pass models.
     if(needsTwoPass) {
-      for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-        double[] clusterProbabilities = probClusterIGivenX.get(iditer);
+      int off = 0;
+      for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance(), off += k) {
         NumberVector instance = relation.get(iditer);
-        for(int i = 0; i < clusterProbabilities.length; i++) {
-          final double prob = clusterProbabilities[i];
+        for(int i = 0; i < k; i++) {
+          final double prob = probClusterIGivenX[off + i];
           if(prob > 1e-10) {
             models.get(i).firstPassE(instance, prob);
           }
@@ -303,20 +388,47 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
       }
     }
     double[] wsum = new double[k];
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      double[] clusterProbabilities = probClusterIGivenX.get(iditer);
-      NumberVector instance = relation.get(iditer);
-      for(int i = 0; i < clusterProbabilities.length; i++) {
-        final double prob = clusterProbabilities[i];
-        if(prob > 1e-10) {
-          models.get(i).updateE(instance, prob);
+    if(mergeable && !needsTwoPass) {
+      List<Partial> parts = ParallelExecutor.runBlocks(size, MIN_BLOCK, (start, end) -> {
+        Partial part = new Partial(models);
+        final EMClusterModel.Accumulator[] accs = part.accumulators;
+        final double[] pwsum = part.wsum;
+        DBIDArrayIter iditer = ids.iter().seek(start);
+        for(int o = start, off = start * k; o < end; o++, off += k, iditer.advance()) {
+          NumberVector instance = relation.get(iditer);
+          for(int i = 0; i < k; i++) {
+            final double prob = probClusterIGivenX[off + i];
+            if(prob > 1e-10) {
+              accs[i].updateE(instance, prob);
+            }
+            pwsum[i] += prob;
+          }
+        }
+        return part;
+      });
+      for(Partial part : parts) {
+        for(int i = 0; i < k; i++) {
+          models.get(i).mergeE(part.accumulators[i]);
+          wsum[i] += part.wsum[i];
+        }
+      }
+    }
+    else {
+      int off = 0;
+      for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance(), off += k) {
+        NumberVector instance = relation.get(iditer);
+        for(int i = 0; i < k; i++) {
+          final double prob = probClusterIGivenX[off + i];
+          if(prob > 1e-10) {
+            models.get(i).updateE(instance, prob);
+          }
+          wsum[i] += prob;
         }
-        wsum[i] += prob;
       }
     }
-    for(int i = 0; i < models.size(); i++) {
+    for(int i = 0; i < k; i++) {
       // MLE / MAP
-      final double weight = prior <= 0. ? wsum[i] / relation.size() : (wsum[i] + prior - 1) / (relation.size() + prior * k - k);
+      final double weight = prior <= 0. ? wsum[i] / size : (wsum[i] + prior - 1) / (size + prior * k - k);
       models.get(i).finalizeEStep(weight, prior);
     }
   }
@@ -324,34 +436,54 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
   /**
    * Assigns the current probability values to the instances in the database and
    * compute the expectation value of the current mixture of distributions.
-   * 
-   * Computed as the sum of the logarithms of the prior probability of each
-   * instance.
-   * 
+   * <p>
+   * The objects are processed in parallel blocks.
+   *
    * @param relation the database used for assignment to instances
+   * @param ids Object ids, in the order of the probabilities
    * @param models Cluster models
-   * @param probClusterIGivenX Output storage for cluster probabilities
+   * @param probClusterIGivenX Output storage for cluster probabilities, k per
+   *        object
    * @return the expectation value of the current mixture of distributions
    */
-  public static double assignProbabilitiesToInstances(Relation<? extends NumberVector> relation, List<? extends EMClusterModel<?>> models, WritableDataStore<double[]> probClusterIGivenX) {
+  public static double assignProbabilitiesToInstances(Relation<? extends NumberVector> relation, ArrayDBIDs ids, List<? extends EMClusterModel<?>> models, double[] probClusterIGivenX) {
     final int k = models.size();
-    double emSum = 0.;
-
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      NumberVector vec = relation.get(iditer);
+    List<Double> sums = ParallelExecutor.runBlocks(ids.size(), MIN_BLOCK, (start, end) -> {
       double[] probs = new double[k];
-      for(int i = 0; i < k; i++) {
-        double v = models.get(i).estimateLogDensity(vec);
-        probs[i] = v > MIN_LOGLIKELIHOOD ? v : MIN_LOGLIKELIHOOD;
-      }
-      final double logP = logSumExp(probs);
-      for(int i = 0; i < k; i++) {
-        probs[i] = FastMath.exp(probs[i] - logP);
+      double emSum = 0.;
+      DBIDArrayIter iditer = ids.iter().seek(start);
+      for(int o = start, off = start * k; o < end; o++, off += k, iditer.advance()) {
+        emSum += assignProbabilities(relation.get(iditer), models, probs);
+        System.arraycopy(probs, 0, probClusterIGivenX, off, k);
       }
-      probClusterIGivenX.put(iditer, probs);
-      emSum += logP;
+      return emSum;
+    });
+    double emSum = 0.;
+    for(double sum : sums) {
+      emSum += sum;
+    }
+    return emSum / ids.size();
+  }
+
+  /**
+   * Compute the cluster probabilities of a single object.
+   *
+   * @param vec Object
+   * @param models Cluster models
+   * @param probs Output storage for the cluster probabilities
+   * @return Log likelihood of the object
+   */
+  static double assignProbabilities(NumberVector vec, List<? extends EMClusterModel<?>> models, double[] probs) {
+    final int k = models.size();
+    for(int i = 0; i < k; i++) {
+      double v = models.get(i).estimateLogDensity(vec);
+      probs[i] = v > MIN_LOGLIKELIHOOD ? v : MIN_LOGLIKELIHOOD;
+    }
+    final double logP = logSumExp(probs);
+    for(int i = 0; i < k; i++) {
+      probs[i] = FastMath.exp(probs[i] - logP);
     }
-    return emSum / relation.size();
+    return logP;
   }
 
   /**
@@ -401,6 +533,37 @@ public class EM<V extends NumberVector, M extends MeanModel> extends AbstractAlg
     this.soft = soft;
   }
 
+  /**
+   * Partial aggregation of a block of the data in the E step.
+   *
+   * @author Erich Schubert
+   */
+  private static class Partial {
+    /**
+     * Accumulators, one per cluster.
+     */
+    EMClusterModel.Accumulator[] accumulators;
+
+    /**
+     * Weight sums, one per cluster.
+     */
+    double[] wsum;
+
+    /**
+     * Constructor.
+     *
+     * @param models Cluster models
+     */
+    Partial(List<? extends EMClusterModel<?>> models) {
+      final int k = models.size();
+      this.accumulators = new EMClusterModel.Accumulator[k];
+      for(int i = 0; i < k; i++) {
+        accumulators[i] = models.get(i).newAccumulator();
+      }
+      this.wsum = new double[k];
+    }
+  }
+
   /**
    * Parameterization class.
    * 
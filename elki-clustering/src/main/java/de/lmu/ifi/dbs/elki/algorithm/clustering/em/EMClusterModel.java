@@ -73,6 +73,57 @@ public interface EMClusterModel<M extends MeanModel> {
    */
   void updateE(NumberVector vec, double weight);
 
+  /**
+   * Create a new, empty accumulator for processing a partition of the data in
+   * the E step (in parallel). The accumulators are combined with
+   * {@link #mergeE} after {@link #beginEStep()} or {@link #retainE}.
+   * <p>
+   * By default, this is not supported, and the data is processed with
+   * {@link #updateE} sequentially. Models returning {@code null} here do not
+   * need to implement {@link #mergeE} and {@link #retainE}.
+   *
+   * @return Accumulator, or {@code null} if not supported
+   */
+  default Accumulator newAccumulator() {
+    return null;
+  }
+
+  /**
+   * Merge the statistics of a partition into this model in the E step.
+   * Partitions should be merged in a fixed order for reproducible results.
+   *
+   * @param acc Accumulator obtained from {@link #newAccumulator()}
+   */
+  default void mergeE(Accumulator acc) {
+    mergeE(acc, 1.);
+  }
+
+  /**
+   * Merge the statistics of a partition into this model in the E step, with
+   * all weights of the partition multiplied by a scaling factor.
+   * <p>
+   * By default, this is not used (c.f. {@link #newAccumulator()}).
+   *
+   * @param acc Accumulator obtained from {@link #newAccumulator()}
+   * @param scale Scaling factor for the weights of the partition
+   */
+  default void mergeE(Accumulator acc, double scale) {
+    // empty.
+  }
+
+  /**
+   * Begin the E step, but retain the current parameters as statistics of the
+   * given total weight, which are then updated with {@link #mergeE}. This is
+   * used instead of {@link #beginEStep()} for stepwise (online) EM.
+   * <p>
+   * By default, this is not used (c.f. {@link #newAccumulator()}).
+   *
+   * @param weight Weight of the current parameters
+   */
+  default void retainE(double weight) {
+    // empty.
+  }
+
   /**
    * Finalize the E step.
    * 
@@ -109,4 +160,19 @@ public interface EMClusterModel<M extends MeanModel> {
    * @param weight Cluster weight
    */
   void setWeight(double weight);
+
+  /**
+   * Partial aggregation of the E step on a subset of the data.
+   *
+   * @author Erich Schubert
+   */
+  interface Accumulator {
+    /**
+     * Process one data point.
+     *
+     * @param vec Vector to process
+     * @param weight Weight of point ("responsibility" of the cluster)
+     */
+    void updateE(NumberVector vec, double weight);
+  }
 }
@@ -124,11 +124,26 @@ public class MultivariateGaussianModel implements EMClusterModel<EMModel> {
 
   @Override
   public void updateE(NumberVector vec, double wei) {
+    wsum = updateE(mean, covariance, nmea, wsum, vec, wei);
+  }
+
+  /**
+   * Incremental update of the mean and the (unnormalized) covariance.
+   *
+   * @param mean Mean, updated
+   * @param covariance Lower triangle of the covariance, updated
+   * @param nmea Temporary storage
+   * @param wsum Current weight sum
+   * @param vec Vector to add
+   * @param wei Weight of the vector
+   * @return New weight sum
+   */
+  private static double updateE(double[] mean, double[][] covariance, double[] nmea, double wsum, NumberVector vec, double wei) {
     final int dim = mean.length;
     assert (vec.getDimensionality() == dim);
     assert (wei >= 0 && wei < Double.POSITIVE_INFINITY) : wei;
     if(wei < Double.MIN_NORMAL) {
-      return;
+      return wsum;
     }
     final double nwsum = wsum + wei;
     final double f = wei / nwsum; // Do division only once
@@ -151,8 +166,61 @@ public class MultivariateGaussianModel implements EMClusterModel<EMModel> {
       // Other half is NOT updated here, but in finalizeEStep!
     }
     // Use new values.
-    wsum = nwsum;
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
+    return nwsum;
+  }
+
+  @Override
+  public Accumulator newAccumulator() {
+    return new CovarianceAccumulator(mean.length);
+  }
+
+  @Override
+  public void mergeE(Accumulator other, double scale) {
+    CovarianceAccumulator acc = (CovarianceAccumulator) other;
+    final double awsum = acc.wsum * scale;
+    if(!(awsum > 0.)) {
+      return;
+    }
+    final int dim = mean.length;
+    if(!(wsum > 0.)) {
+      wsum = awsum;
+      System.arraycopy(acc.mean, 0, mean, 0, dim);
+      for(int i = 0; i < dim; i++) {
+        final double[] cov_i = covariance[i], acc_i = acc.covariance[i];
+        for(int j = 0; j <= i; j++) {
+          cov_i[j] = acc_i[j] * scale;
+        }
+      }
+      return;
+    }
+    // Combine the co-moments of both partitions, as in Chan et al.
+    final double nwsum = wsum + awsum, f = awsum / nwsum, g = wsum * f;
+    for(int i = 0; i < dim; i++) {
+      nmea[i] = acc.mean[i] - mean[i];
+    }
+    for(int i = 0; i < dim; i++) {
+      final double[] cov_i = covariance[i], acc_i = acc.covariance[i];
+      final double delta_i = nmea[i] * g;
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += acc_i[j] * scale + delta_i * nmea[j];
+      }
+    }
+    for(int i = 0; i < dim; i++) {
+      mean[i] += nmea[i] * f;
+    }
+    wsum = nwsum;
+  }
+
+  @Override
+  public void retainE(double weight) {
+    wsum = weight;
+    for(int i = 0; i < covariance.length; i++) {
+      final double[] cov_i = covariance[i];
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] *= weight;
+      }
+    }
   }
 
   @Override
@@ -267,4 +335,42 @@ public class MultivariateGaussianModel implements EMClusterModel<EMModel> {
   public EMModel finalizeCluster() {
     return new EMModel(mean, covariance);
   }
+
+  /**
+   * Partial mean and covariance of a subset of the data.
+   *
+   * @author Erich Schubert
+   */
+  private static class CovarianceAccumulator implements Accumulator {
+    /**
+     * Mean vector and temporary storage.
+     */
+    double[] mean, nmea;
+
+    /**
+     * Lower triangle of the unnormalized covariance.
+     */
+    double[][] covariance;
+
+    /**
+     * Weight sum.
+     */
+    double wsum;
+
+    /**
+     * Constructor.
+     *
+     * @param dim Dimensionality
+     */
+    CovarianceAccumulator(int dim) {
+      this.mean = new double[dim];
+      this.nmea = new double[dim];
+      this.covariance = new double[dim][dim];
+    }
+
+    @Override
+    public void updateE(NumberVector vec, double wei) {
+      wsum = MultivariateGaussianModel.updateE(mean, covariance, nmea, wsum, vec, wei);
+    }
+  }
 }
@@ -102,6 +102,24 @@ public class SphericalGaussianModel implements EMClusterModel<EMModel> {
 
   @Override
   public void updateE(NumberVector vec, double wei) {
+    final double nwsum = updateMean(mean, nmea, wsum, vec, wei);
+    variance = updateVariance(mean, nmea, vec, wei, variance);
+    // Use new values.
+    wsum = nwsum;
+    System.arraycopy(nmea, 0, mean, 0, nmea.length);
+  }
+
+  /**
+   * Compute the new mean after adding a vector.
+   *
+   * @param mean Old mean
+   * @param nmea Output: new mean
+   * @param wsum Current weight sum
+   * @param vec Vector to add
+   * @param wei Weight of the vector
+   * @return New weight sum
+   */
+  private static double updateMean(double[] mean, double[] nmea, double wsum, NumberVector vec, double wei) {
     assert (vec.getDimensionality() == mean.length);
     final double nwsum = wsum + wei;
     // Compute new means
@@ -110,16 +128,64 @@ public class SphericalGaussianModel implements EMClusterModel<EMModel> {
       final double rval = delta * wei / nwsum;
       nmea[i] = mean[i] + rval;
     }
-    // Update variances
+    return nwsum;
+  }
+
+  /**
+   * Update the (unnormalized) variance.
+   *
+   * @param mean Old mean
+   * @param nmea New mean
+   * @param vec Vector to add
+   * @param wei Weight of the vector
+   * @param variance Current variance
+   * @return New variance
+   */
+  private static double updateVariance(double[] mean, double[] nmea, NumberVector vec, double wei, double variance) {
     for(int i = 0; i < mean.length; i++) {
       // We DO want to use the new mean once and the old mean once!
       // It does not matter which one is which.
       double vi = vec.doubleValue(i);
       variance += (vi - nmea[i]) * (vi - mean[i]) * wei;
     }
-    // Use new values.
+    return variance;
+  }
+
+  @Override
+  public Accumulator newAccumulator() {
+    return new VarianceAccumulator(mean);
+  }
+
+  @Override
+  public void mergeE(Accumulator other, double scale) {
+    VarianceAccumulator acc = (VarianceAccumulator) other;
+    final double awsum = acc.wsum * scale;
+    if(!(awsum > 0.)) {
+      return;
+    }
+    final int dim = mean.length;
+    if(!(wsum > 0.)) {
+      wsum = awsum;
+      System.arraycopy(acc.mean, 0, mean, 0, dim);
+      variance = acc.variance * scale;
+      return;
+    }
+    // Combine the moments of both partitions, as in Chan et al.
+    final double nwsum = wsum + awsum, f = awsum / nwsum;
+    double sqdelta = 0.;
+    for(int i = 0; i < dim; i++) {
+      final double delta = acc.mean[i] - mean[i];
+      sqdelta += delta * delta;
+      mean[i] += delta * f;
+    }
+    variance += acc.variance * scale + sqdelta * wsum * f;
     wsum = nwsum;
-    System.arraycopy(nmea, 0, mean, 0, nmea.length);
+  }
+
+  @Override
+  public void retainE(double weight) {
+    wsum = weight;
+    variance *= weight * mean.length;
   }
 
   @Override
@@ -187,4 +253,44 @@ public class SphericalGaussianModel implements EMClusterModel<EMModel> {
   public EMModel finalizeCluster() {
     return new EMModel(mean, timesEquals(identity(nmea.length, nmea.length), variance));
   }
+
+  /**
+   * Partial mean and variance of a subset of the data.
+   *
+   * @author Erich Schubert
+   */
+  private static class VarianceAccumulator implements Accumulator {
+    /**
+     * Mean vector and temporary storage.
+     */
+    double[] mean, nmea;
+
+    /**
+     * Unnormalized variance.
+     */
+    double variance;
+
+    /**
+     * Weight sum.
+     */
+    double wsum;
+
+    /**
+     * Constructor.
+     *
+     * @param mean Initial mean
+     */
+    VarianceAccumulator(double[] mean) {
+      this.mean = mean.clone();
+      this.nmea = new double[mean.length];
+    }
+
+    @Override
+    public void updateE(NumberVector vec, double wei) {
+      final double nwsum = updateMean(mean, nmea, wsum, vec, wei);
+      variance = updateVariance(mean, nmea, vec, wei, variance);
+      wsum = nwsum;
+      System.arraycopy(nmea, 0, mean, 0, nmea.length);
+    }
+  }
 }
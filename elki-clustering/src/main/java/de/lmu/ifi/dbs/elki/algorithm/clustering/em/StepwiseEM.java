@@ -0,0 +1,593 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.em;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithm;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.GreaterConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Stepwise (online) EM for Gaussian mixture models, which updates the
+ * mixture from mini-batches instead of full passes over the data.
+ * <p>
+ * After the E step on a batch, the statistics of the batch are interpolated
+ * with the statistics of the current model, with a decaying step size
+ * \(\eta_t=(t+2)^{-\alpha}\) for the t-th batch. Only the maximum likelihood
+ * estimate is supported, and the cluster models must support partial
+ * aggregation ({@link EMClusterModel#newAccumulator()}), as the multivariate,
+ * diagonal and spherical Gaussian models do.
+ * <p>
+ * {@link #run(BundleStreamSource)} initializes the models on a prefix of the
+ * stream, and only keeps a single batch in memory. The resulting
+ * {@link Mixture} can be updated with further data later on, for example with
+ * {@link #update(Mixture, BundleStreamSource)}, instead of refitting from
+ * scratch. When run on a relation, the data is processed once in random order,
+ * and a final pass assigns all points to the most likely cluster.
+ * <p>
+ * Reference:
+ * <p>
+ * P. Liang, D. Klein<br>
+ * Online EM for Unsupervised Models<br>
+ * Proc. Human Language Technologies (NAACL-HLT 2009)
+ * <p>
+ * O. Cappé, E. Moulines<br>
+ * On-line expectation-maximization algorithm for latent data models<br>
+ * J. Royal Statistical Society: Series B 71(3)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @composed - - - EMClusterModelFactory
+ * @has - - - Mixture
+ *
+ * @param <V> vector type to analyze
+ * @param <M> model type to produce
+ */
+@Reference(authors = "P. Liang, D. Klein", //
+    title = "Online EM for Unsupervised Models", //
+    booktitle = "Proc. Human Language Technologies (NAACL-HLT 2009)", //
+    url = "http://aclweb.org/anthology/N09-1069", //
+    bibkey = "DBLP:conf/naacl/LiangK09")
+@Reference(authors = "O. Cappé, E. Moulines", //
+    title = "On-line expectation-maximization algorithm for latent data models", //
+    booktitle = "J. Royal Statistical Society: Series B 71(3)", //
+    url = "https://doi.org/10.1111/j.1467-9868.2009.00698.x", //
+    bibkey = "doi:10.1111/j.1467-9868.2009.00698.x")
+public class StepwiseEM<V extends NumberVector, M extends MeanModel> extends AbstractAlgorithm<Clustering<M>> implements ClusteringAlgorithm<Clustering<M>> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(StepwiseEM.class);
+
+  /**
+   * Key for statistics logging.
+   */
+  private static final String KEY = StepwiseEM.class.getName();
+
+  /**
+   * Minimum number of objects per block for parallel processing.
+   */
+  private static final int MIN_BLOCK = 256;
+
+  /**
+   * Number of clusters
+   */
+  private int k;
+
+  /**
+   * Factory for producing the initial cluster model.
+   */
+  private EMClusterModelFactory<V, M> mfactory;
+
+  /**
+   * Number of points used for initialization.
+   */
+  private int initsize;
+
+  /**
+   * Batch size.
+   */
+  private int batchsize;
+
+  /**
+   * Step size decay exponent.
+   */
+  private double alpha;
+
+  /**
+   * Random generator for the processing order of a relation.
+   */
+  private RandomFactory random;
+
+  /**
+   * Constructor.
+   *
+   * @param k k parameter
+   * @param mfactory EM cluster model factory
+   * @param initsize Number of points used for initialization of a stream
+   * @param batchsize Batch size
+   * @param alpha Step size decay exponent, in (0.5;1]
+   * @param random Random generator for the processing order of a relation
+   */
+  public StepwiseEM(int k, EMClusterModelFactory<V, M> mfactory, int initsize, int batchsize, double alpha, RandomFactory random) {
+    super();
+    this.k = k;
+    this.mfactory = mfactory;
+    this.initsize = initsize;
+    this.batchsize = batchsize;
+    this.alpha = alpha;
+    this.random = random;
+  }
+
+  /**
+   * Run stepwise EM on a relation.
+   *
+   * @param database Database
+   * @param relation Relation
+   * @return Clustering result
+   */
+  public Clustering<M> run(Database database, Relation<V> relation) {
+    if(relation.size() == 0) {
+      throw new IllegalArgumentException("database empty: must contain elements");
+    }
+    Mixture<M> mixture = new Mixture<>(mfactory.buildInitialModels(database, relation, k, SquaredEuclideanDistanceFunction.STATIC), alpha);
+    ArrayModifiableDBIDs ids = DBIDUtil.newArray(relation.getDBIDs());
+    DBIDUtil.randomShuffle(ids, random);
+    List<NumberVector> batch = new ArrayList<>(Math.min(batchsize, ids.size()));
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      batch.add(relation.get(it));
+      if(batch.size() >= batchsize) {
+        mixture.update(batch);
+        batch.clear();
+      }
+    }
+    mixture.update(batch);
+    LOG.statistics(new LongStatistic(KEY + ".batches", mixture.getSteps()));
+
+    // Assign every point to the most likely cluster.
+    final List<? extends EMClusterModel<M>> models = mixture.getModels();
+    double[] probs = new double[ids.size() * k];
+    double loglikelihood = EM.assignProbabilitiesToInstances(relation, ids, models, probs);
+    LOG.statistics(new DoubleStatistic(KEY + ".loglikelihood", loglikelihood));
+    List<ModifiableDBIDs> hardClusters = new ArrayList<>(k);
+    for(int i = 0; i < k; i++) {
+      hardClusters.add(DBIDUtil.newArray());
+    }
+    int off = 0;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance(), off += k) {
+      int best = 0;
+      for(int i = 1; i < k; i++) {
+        best = probs[off + i] > probs[off + best] ? i : best;
+      }
+      hardClusters.get(best).add(it);
+    }
+    Clustering<M> result = new Clustering<>("Stepwise EM Clustering", "stepwise-em-clustering");
+    for(int i = 0; i < k; i++) {
+      result.addToplevelCluster(new Cluster<>(hardClusters.get(i), models.get(i).finalizeCluster()));
+    }
+    return result;
+  }
+
+  /**
+   * Fit a mixture model to a data stream, in a single pass.
+   *
+   * @param source Data stream
+   * @return Mixture model
+   */
+  public Mixture<M> run(BundleStreamSource source) {
+    return process(null, source);
+  }
+
+  /**
+   * Update an existing mixture model with the data of a stream.
+   *
+   * @param mixture Mixture model to update
+   * @param source Data stream
+   */
+  public void update(Mixture<M> mixture, BundleStreamSource source) {
+    process(mixture, source);
+  }
+
+  /**
+   * Process a data stream in batches.
+   *
+   * @param mixture Mixture model, {@code null} to initialize on a prefix
+   * @param source Data stream
+   * @return Mixture model
+   */
+  private Mixture<M> process(Mixture<M> mixture, BundleStreamSource source) {
+    List<NumberVector> buf = new ArrayList<>(mixture == null ? initsize : batchsize);
+    SimpleTypeInformation<?> type = null;
+    int col = -1;
+    long size = 0;
+    loop: while(true) {
+      switch(source.nextEvent()){
+      case META_CHANGED:
+        BundleMeta meta = source.getMeta();
+        col = -1;
+        for(int i = 0; i < meta.size(); i++) {
+          if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+            type = meta.get(i);
+            col = i;
+            break;
+          }
+        }
+        break;
+      case NEXT_OBJECT:
+        if(col < 0) {
+          throw new AbortException("No number vector column in the data stream.");
+        }
+        buf.add((NumberVector) source.data(col));
+        ++size;
+        if(mixture == null ? buf.size() >= initsize : buf.size() >= batchsize) {
+          if(mixture == null) {
+            mixture = initialize(buf, type);
+          }
+          update(mixture, buf);
+          buf.clear();
+        }
+        break;
+      case END_OF_STREAM:
+        break loop;
+      }
+    }
+    if(mixture == null) {
+      if(buf.size() < k) {
+        throw new AbortException("The data stream contains less than k=" + k + " objects.");
+      }
+      mixture = initialize(buf, type);
+    }
+    update(mixture, buf);
+    LOG.statistics(new LongStatistic(KEY + ".objects", size));
+    LOG.statistics(new LongStatistic(KEY + ".batches", mixture.getSteps()));
+    return mixture;
+  }
+
+  /**
+   * Build the initial models on the buffered prefix of the stream.
+   *
+   * @param buf Buffered vectors
+   * @param type Vector type
+   * @return Initial mixture
+   */
+  @SuppressWarnings("unchecked")
+  private Mixture<M> initialize(List<NumberVector> buf, SimpleTypeInformation<?> type) {
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(buf.size());
+    WritableDataStore<V> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, NumberVector.class);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      store.put(it, (V) buf.get(it.getOffset()));
+    }
+    Relation<V> rel = new MaterializedRelation<>((SimpleTypeInformation<V>) type, ids, "stream prefix", store);
+    Mixture<M> mixture = new Mixture<>(mfactory.buildInitialModels(new ProxyDatabase(ids, rel), rel, k, SquaredEuclideanDistanceFunction.STATIC), alpha);
+    DBIDUtil.deallocateDBIDRange(ids);
+    return mixture;
+  }
+
+  /**
+   * Process buffered vectors, in batches.
+   *
+   * @param mixture Mixture to update
+   * @param buf Buffered vectors
+   */
+  private void update(Mixture<M> mixture, List<NumberVector> buf) {
+    for(int start = 0; start < buf.size(); start += batchsize) {
+      mixture.update(buf.subList(start, Math.min(start + batchsize, buf.size())));
+    }
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Gaussian mixture model, updated stepwise from batches of data.
+   * <p>
+   * This object holds the complete state of the fit, and can be kept to
+   * continue the fit with new data later.
+   *
+   * @author Erich Schubert
+   *
+   * @param <M> model type
+   */
+  public static class Mixture<M extends MeanModel> {
+    /**
+     * Cluster models.
+     */
+    private List<? extends EMClusterModel<M>> models;
+
+    /**
+     * Step size decay exponent.
+     */
+    private double alpha;
+
+    /**
+     * Number of batches processed.
+     */
+    private long steps;
+
+    /**
+     * Constructor.
+     *
+     * @param models Initial cluster models
+     * @param alpha Step size decay exponent, in (0.5;1]
+     */
+    public Mixture(List<? extends EMClusterModel<M>> models, double alpha) {
+      this.models = models;
+      this.alpha = alpha;
+      if(!EM.isMergeable(models)) {
+        throw new AbortException("Stepwise EM requires cluster models that support partial aggregation.");
+      }
+    }
+
+    /**
+     * Update the mixture with a batch of data.
+     *
+     * @param batch Batch of vectors
+     * @return Average log likelihood of the batch, before the update
+     */
+    public double update(List<? extends NumberVector> batch) {
+      final int size = batch.size(), k = models.size();
+      if(size == 0) {
+        return 0.;
+      }
+      // Parallel E step on the batch, with the current models.
+      List<Partial> parts = ParallelExecutor.runBlocks(size, MIN_BLOCK, (start, end) -> {
+        Partial part = new Partial(models);
+        final EMClusterModel.Accumulator[] accs = part.accumulators;
+        double[] probs = new double[k];
+        for(int o = start; o < end; o++) {
+          final NumberVector vec = batch.get(o);
+          part.loglikelihood += EM.assignProbabilities(vec, models, probs);
+          for(int i = 0; i < k; i++) {
+            final double prob = probs[i];
+            if(prob > 1e-10) {
+              accs[i].updateE(vec, prob);
+            }
+            part.wsum[i] += prob;
+          }
+        }
+        return part;
+      });
+      double[] wsum = new double[k];
+      double loglikelihood = 0.;
+      for(Partial part : parts) {
+        loglikelihood += part.loglikelihood;
+        for(int i = 0; i < k; i++) {
+          wsum[i] += part.wsum[i];
+        }
+      }
+      // Interpolate the statistics with the step size.
+      final double eta = FastMath.pow(steps + 2, -alpha), scale = eta / size;
+      for(int i = 0; i < k; i++) {
+        EMClusterModel<M> m = models.get(i);
+        final double weight = (1 - eta) * m.getWeight();
+        m.retainE(weight);
+        for(Partial part : parts) {
+          m.mergeE(part.accumulators[i], scale);
+        }
+        m.finalizeEStep(weight + wsum[i] * scale, 0.);
+      }
+      ++steps;
+      return loglikelihood / size;
+    }
+
+    /**
+     * Get the cluster models.
+     *
+     * @return Cluster models
+     */
+    public List<? extends EMClusterModel<M>> getModels() {
+      return models;
+    }
+
+    /**
+     * Get the number of batches processed so far.
+     *
+     * @return Number of batches
+     */
+    public long getSteps() {
+      return steps;
+    }
+  }
+
+  /**
+   * Partial aggregation of a block of a batch.
+   *
+   * @author Erich Schubert
+   */
+  private static class Partial {
+    /**
+     * Accumulators, one per cluster.
+     */
+    EMClusterModel.Accumulator[] accumulators;
+
+    /**
+     * Weight sums, one per cluster.
+     */
+    double[] wsum;
+
+    /**
+     * Log likelihood sum.
+     */
+    double loglikelihood;
+
+    /**
+     * Constructor.
+     *
+     * @param models Cluster models
+     */
+    Partial(List<? extends EMClusterModel<?>> models) {
+      final int k = models.size();
+      this.accumulators = new EMClusterModel.Accumulator[k];
+      for(int i = 0; i < k; i++) {
+        accumulators[i] = models.get(i).newAccumulator();
+      }
+      this.wsum = new double[k];
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> vector type
+   * @param <M> model type
+   */
+  public static class Parameterizer<V extends NumberVector, M extends MeanModel> extends AbstractParameterizer {
+    /**
+     * Parameter for the number of points used for initialization.
+     */
+    public static final OptionID INITSIZE_ID = new OptionID("em.stepwise.initsize", "Number of points at the beginning of the stream used for initialization.");
+
+    /**
+     * Parameter for the batch size.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("em.stepwise.batchsize", "Number of points in each mini-batch.");
+
+    /**
+     * Parameter for the step size decay.
+     */
+    public static final OptionID ALPHA_ID = new OptionID("em.stepwise.alpha", "Decay exponent alpha of the step size (t+2)^-alpha, in (0.5;1].");
+
+    /**
+     * Parameter for the random generator.
+     */
+    public static final OptionID RANDOM_ID = new OptionID("em.stepwise.seed", "Random generator seed for the processing order of a relation.");
+
+    /**
+     * Number of clusters.
+     */
+    protected int k;
+
+    /**
+     * Initialization method
+     */
+    protected EMClusterModelFactory<V, M> initializer;
+
+    /**
+     * Number of points used for initialization.
+     */
+    protected int initsize;
+
+    /**
+     * Batch size.
+     */
+    protected int batchsize;
+
+    /**
+     * Step size decay exponent.
+     */
+    protected double alpha;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory random;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter kP = new IntParameter(EM.Parameterizer.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(kP)) {
+        k = kP.getValue();
+      }
+      ObjectParameter<EMClusterModelFactory<V, M>> initialP = new ObjectParameter<>(EM.Parameterizer.INIT_ID, EMClusterModelFactory.class, MultivariateGaussianModelFactory.class);
+      if(config.grab(initialP)) {
+        initializer = initialP.instantiateClass(config);
+      }
+      IntParameter initsizeP = new IntParameter(INITSIZE_ID, 10000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(initsizeP)) {
+        initsize = initsizeP.intValue();
+      }
+      IntParameter batchsizeP = new IntParameter(BATCHSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(batchsizeP)) {
+        batchsize = batchsizeP.intValue();
+      }
+      DoubleParameter alphaP = new DoubleParameter(ALPHA_ID, 0.7) //
+          .addConstraint(new GreaterConstraint(0.5)) //
+          .addConstraint(CommonConstraints.LESS_EQUAL_ONE_DOUBLE);
+      if(config.grab(alphaP)) {
+        alpha = alphaP.doubleValue();
+      }
+      RandomParameter randomP = new RandomParameter(RANDOM_ID);
+      if(config.grab(randomP)) {
+        random = randomP.getValue();
+      }
+    }
+
+    @Override
+    protected StepwiseEM<V, M> makeInstance() {
+      return new StepwiseEM<>(k, initializer, initsize, batchsize, alpha, random);
+    }
+  }
+}
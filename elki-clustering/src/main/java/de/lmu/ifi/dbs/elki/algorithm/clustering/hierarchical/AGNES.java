@@ -37,10 +37,12 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.EnumParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -112,11 +114,23 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
    */
   private static final Logging LOG = Logging.getLogger(AGNES.class);
 
+  /**
+   * Minimum block size for parallel scans and updates of the matrix. A single
+   * merge step only touches one row of the matrix, so the blocks need to be
+   * large to amortize the dispatch to the thread pool.
+   */
+  static final int MIN_BLOCK = 1 << 15;
+
   /**
    * Current linkage method in use.
    */
   Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Storage of the distance matrix.
+   */
+  MatrixParadigm.Storage storage = MatrixParadigm.Storage.DOUBLE;
+
   /**
    * Constructor.
    *
@@ -124,8 +138,20 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
    * @param linkage Linkage method
    */
   public AGNES(DistanceFunction<? super O> distanceFunction, Linkage linkage) {
+    this(distanceFunction, linkage, MatrixParadigm.Storage.DOUBLE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function to use
+   * @param linkage Linkage method
+   * @param storage Storage of the distance matrix
+   */
+  public AGNES(DistanceFunction<? super O> distanceFunction, Linkage linkage, MatrixParadigm.Storage storage) {
     super(distanceFunction);
     this.linkage = linkage;
+    this.storage = storage;
   }
 
   /**
@@ -144,7 +170,7 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
     DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
 
     // Compute the initial (lower triangular) distance matrix.
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = MatrixParadigm.create(ids, storage);
     initializeDistanceMatrix(mat, dq, linkage);
 
     // Initialize space for result:
@@ -184,33 +210,15 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
   }
 
   /**
-   * Initialize a distance matrix.
+   * Initialize a distance matrix (in parallel).
    *
    * @param mat Matrix
    * @param dq Distance query
    * @param linkage Linkage method
    */
   protected static void initializeDistanceMatrix(MatrixParadigm mat, DistanceQuery<?> dq, Linkage linkage) {
-    final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
     final boolean issquare = dq.getDistanceFunction().isSquared();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", matrix.length, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert (pos == MatrixParadigm.triangleSize(x));
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = linkage.initial(dq.distance(ix, iy), issquare);
-      }
-      if(prog != null) {
-        prog.setProcessed(pos, LOG);
-      }
-    }
-    // Avoid logging errors in case scratch space was too large:
-    if(prog != null) {
-      prog.setProcessed(matrix.length, LOG);
-    }
-    LOG.ensureCompleted(prog);
+    mat.initializeWithDistances(dq, d -> linkage.initial(d, issquare), LOG);
   }
 
   /**
@@ -224,11 +232,11 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
   protected int findMerge(int end, MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder) {
     assert (end > 0);
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
     double mindist = Double.POSITIVE_INFINITY;
     int x = -1, y = -1;
     // Find minimum:
-    for(int ox = 0, xbase = 0; ox < end; xbase += ox++) {
+    long xbase = 0;
+    for(int ox = 0; ox < end; xbase += ox++) {
       // Skip if object has already joined a cluster:
       if(builder.isLinked(ix.seek(ox))) {
         continue;
@@ -239,7 +247,7 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
         if(builder.isLinked(iy.seek(oy))) {
           continue;
         }
-        final double dist = matrix[xbase + oy];
+        final double dist = mat.get(xbase + oy);
         if(dist <= mindist) { // Prefer later on ==, to truncate more often.
           mindist = dist;
           x = ox;
@@ -293,40 +301,23 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
    */
   protected void updateMatrix(int end, MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
     // Update distance matrix. Note: y < x
-    final int xbase = MatrixParadigm.triangleSize(x);
-    final int ybase = MatrixParadigm.triangleSize(y);
-    double[] scratch = mat.matrix;
-    DBIDArrayIter ij = mat.ix;
-
-    // Write to (y, j), with j < y
-    int j = 0;
-    for(; j < y; j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      assert (j < y); // Otherwise, ybase + j is the wrong position!
-      final int yb = ybase + j;
-      scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], builder.getSize(ij), mindist);
-    }
-    j++; // Skip y
-    // Write to (j, y), with y < j < x
-    int jbase = MatrixParadigm.triangleSize(j);
-    for(; j < x; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], builder.getSize(ij), mindist);
-    }
-    jbase += j++; // Skip x
-    // Write to (j, y), with y < x < j
-    for(; j < end; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
+    final long xbase = MatrixParadigm.triangleSize(x);
+    final long ybase = MatrixParadigm.triangleSize(y);
+    // Every j writes only (y, j) or (j, y), so blocks can run in parallel.
+    ParallelExecutor.runBlocks(end, MIN_BLOCK, (start, stop) -> {
+      final DBIDArrayIter ij = mat.iter();
+      for(int j = start; j < stop; j++) {
+        if(j == y || j == x || builder.isLinked(ij.seek(j))) {
+          continue;
+        }
+        final long jbase = MatrixParadigm.triangleSize(j);
+        // Position of (y, j) or (j, y), and of (x, j) or (j, x):
+        final long yj = j < y ? ybase + j : jbase + y;
+        final long xj = j < x ? xbase + j : jbase + x;
+        mat.set(yj, linkage.combine(sizex, mat.get(xj), sizey, mat.get(yj), builder.getSize(ij), mindist));
       }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], builder.getSize(ij), mindist);
-    }
+      return null;
+    });
   }
 
   @Override
@@ -355,11 +346,21 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
      */
     public static final OptionID LINKAGE_ID = new OptionID("hierarchical.linkage", "Linkage method to use (e.g. Ward, Single-Link)");
 
+    /**
+     * Option ID for the storage of the distance matrix.
+     */
+    public static final OptionID STORAGE_ID = new OptionID("hierarchical.matrix", "Storage of the distance matrix: double or float precision on the heap, or in a memory-mapped temporary file for data sets that exceed the heap.");
+
     /**
      * Current linkage in use.
      */
     protected Linkage linkage;
 
+    /**
+     * Storage of the distance matrix.
+     */
+    protected MatrixParadigm.Storage storage;
+
     @Override
     protected void makeOptions(Parameterization config) {
       // We don't call super, because we want a different default distance.
@@ -373,11 +374,16 @@ public class AGNES<O> extends AbstractDistanceBasedAlgorithm<O, PointerHierarchy
       if(config.grab(linkageP)) {
         linkage = linkageP.instantiateClass(config);
       }
+
+      EnumParameter<MatrixParadigm.Storage> storageP = new EnumParameter<>(STORAGE_ID, MatrixParadigm.Storage.class, MatrixParadigm.Storage.DOUBLE);
+      if(config.grab(storageP)) {
+        storage = storageP.getValue();
+      }
     }
 
     @Override
     protected AGNES<O> makeInstance() {
-      return new AGNES<>(distanceFunction, linkage);
+      return new AGNES<>(distanceFunction, linkage, storage);
     }
   }
 }
@@ -42,6 +42,7 @@ import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.EnumParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -88,6 +89,11 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
    */
   Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Storage of the distance matrix.
+   */
+  MatrixParadigm.Storage storage = MatrixParadigm.Storage.DOUBLE;
+
   /**
    * Constructor.
    *
@@ -95,8 +101,20 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
    * @param linkage Linkage method
    */
   public AnderbergHierarchicalClustering(DistanceFunction<? super O> distanceFunction, Linkage linkage) {
+    this(distanceFunction, linkage, MatrixParadigm.Storage.DOUBLE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function to use
+   * @param linkage Linkage method
+   * @param storage Storage of the distance matrix
+   */
+  public AnderbergHierarchicalClustering(DistanceFunction<? super O> distanceFunction, Linkage linkage, MatrixParadigm.Storage storage) {
     super(distanceFunction);
     this.linkage = linkage;
+    this.storage = storage;
   }
 
   /**
@@ -112,7 +130,7 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
     }
     DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
     final DBIDs ids = relation.getDBIDs();
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = MatrixParadigm.create(ids, storage);
     final int size = ids.size();
 
     // Position counter - must agree with computeOffset!
@@ -121,7 +139,7 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
     // Arrays used for caching:
     double[] bestd = new double[size];
     int[] besti = new int[size];
-    initializeNNCache(mat.matrix, bestd, besti);
+    initializeNNCache(mat, bestd, besti);
 
     // Initialize space for result:
     PointerHierarchyRepresentationBuilder builder = new PointerHierarchyRepresentationBuilder(ids, dq.getDistanceFunction().isSquared());
@@ -142,20 +160,21 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
   /**
    * Initialize the NN cache.
    *
-   * @param scratch Scratch space
+   * @param mat Matrix paradigm
    * @param bestd Best distance
    * @param besti Best index
    */
-  private static void initializeNNCache(double[] scratch, double[] bestd, int[] besti) {
+  private static void initializeNNCache(MatrixParadigm mat, double[] bestd, int[] besti) {
     final int size = bestd.length;
     Arrays.fill(bestd, Double.POSITIVE_INFINITY);
     Arrays.fill(besti, -1);
-    for(int x = 0, p = 0; x < size; x++) {
+    long p = 0;
+    for(int x = 0; x < size; x++) {
       assert (p == MatrixParadigm.triangleSize(x));
       double bestdx = Double.POSITIVE_INFINITY;
       int bestix = -1;
       for(int y = 0; y < x; y++, p++) {
-        final double v = scratch[p];
+        final double v = mat.get(p);
         if(v < bestd[y]) {
           bestd[y] = v;
           besti[y] = x;
@@ -235,9 +254,9 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
     besti[x] = -1;
 
     // Note: this changes iy.
-    updateMatrix(size, mat.matrix, iy, bestd, besti, builder, mindist, x, y, sizex, sizey);
+    updateMatrix(size, mat, iy, bestd, besti, builder, mindist, x, y, sizex, sizey);
     if(besti[y] == x) {
-      findBest(size, mat.matrix, bestd, besti, y);
+      findBest(size, mat, bestd, besti, y);
     }
   }
 
@@ -245,7 +264,7 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
    * Update the scratch distance matrix.
    *
    * @param size Data set size
-   * @param scratch Scratch matrix.
+   * @param mat Matrix paradigm
    * @param ij Iterator to reuse
    * @param bestd Best distance
    * @param besti Index of best distance
@@ -256,10 +275,10 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
    * @param sizex Old size of first cluster
    * @param sizey Old size of second cluster
    */
-  protected void updateMatrix(int size, double[] scratch, DBIDArrayIter ij, double[] bestd, int[] besti, PointerHierarchyRepresentationBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
+  protected void updateMatrix(int size, MatrixParadigm mat, DBIDArrayIter ij, double[] bestd, int[] besti, PointerHierarchyRepresentationBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
     // Update distance matrix. Note: miny < minx
-    final int xbase = MatrixParadigm.triangleSize(x);
-    final int ybase = MatrixParadigm.triangleSize(y);
+    final long xbase = MatrixParadigm.triangleSize(x);
+    final long ybase = MatrixParadigm.triangleSize(y);
 
     // Write to (y, j), with j < y
     int j = 0;
@@ -268,21 +287,23 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
         continue;
       }
       final int sizej = builder.getSize(ij);
-      final int yb = ybase + j;
-      final double d = scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], sizej, mindist);
-      updateCache(size, scratch, bestd, besti, x, y, j, d);
+      final long yb = ybase + j;
+      final double d = linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(yb), sizej, mindist);
+      mat.set(yb, d);
+      updateCache(size, mat, bestd, besti, x, y, j, d);
     }
     j++; // Skip y
     // Write to (j, y), with y < j < x
-    int jbase = MatrixParadigm.triangleSize(j);
+    long jbase = MatrixParadigm.triangleSize(j);
     for(; j < x; jbase += j++) {
       if(builder.isLinked(ij.seek(j))) {
         continue;
       }
       final int sizej = builder.getSize(ij);
-      final int jb = jbase + y;
-      final double d = scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], sizej, mindist);
-      updateCache(size, scratch, bestd, besti, x, y, j, d);
+      final long jb = jbase + y;
+      final double d = linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(jb), sizej, mindist);
+      mat.set(jb, d);
+      updateCache(size, mat, bestd, besti, x, y, j, d);
     }
     jbase += j++; // Skip x
     // Write to (j, y), with y < x < j
@@ -291,9 +312,10 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
         continue;
       }
       final int sizej = builder.getSize(ij);
-      final int jb = jbase + y;
-      final double d = scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], sizej, mindist);
-      updateCache(size, scratch, bestd, besti, x, y, j, d);
+      final long jb = jbase + y;
+      final double d = linkage.combine(sizex, mat.get(jbase + x), sizey, mat.get(jb), sizej, mindist);
+      mat.set(jb, d);
+      updateCache(size, mat, bestd, besti, x, y, j, d);
     }
   }
 
@@ -301,7 +323,7 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
    * Update the cache.
    *
    * @param size Working set size
-   * @param scratch Scratch matrix
+   * @param mat Matrix paradigm
    * @param bestd Best distance
    * @param besti Best index
    * @param x First cluster
@@ -309,7 +331,7 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
    * @param j Updated value d(y, j)
    * @param d New distance
    */
-  private void updateCache(int size, double[] scratch, double[] bestd, int[] besti, int x, int y, int j, double d) {
+  private void updateCache(int size, MatrixParadigm mat, double[] bestd, int[] besti, int x, int y, int j, double d) {
     // New best
     if(d <= bestd[j]) {
       bestd[j] = d;
@@ -318,31 +340,33 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
     }
     // Needs slow update.
     if(besti[j] == x || besti[j] == y) {
-      findBest(size, scratch, bestd, besti, j);
+      findBest(size, mat, bestd, besti, j);
     }
   }
 
-  protected void findBest(int size, double[] scratch, double[] bestd, int[] besti, int j) {
-    final int jbase = MatrixParadigm.triangleSize(j);
+  protected void findBest(int size, MatrixParadigm mat, double[] bestd, int[] besti, int j) {
+    final long jbase = MatrixParadigm.triangleSize(j);
     // The distance has increased, we may no longer be the best merge.
     double bestdj = Double.POSITIVE_INFINITY;
     int bestij = -1;
-    for(int i = 0, o = jbase; i < j; i++, o++) {
+    long o = jbase;
+    for(int i = 0; i < j; i++, o++) {
       if(besti[i] < 0) {
         continue;
       }
-      final double dist = scratch[o];
+      final double dist = mat.get(o);
       if(dist <= bestdj) {
         bestdj = dist;
         bestij = i;
       }
     }
-    for(int i = j + 1, o = jbase + j + j; i < size; o += i, i++) {
+    o = jbase + j + j;
+    for(int i = j + 1; i < size; o += i, i++) {
       // assert(o == MatrixParadigm.triangleSize(i) + j);
       if(besti[i] < 0) {
         continue;
       }
-      final double dist = scratch[o];
+      final double dist = mat.get(o);
       if(dist <= bestdj) {
         bestdj = dist;
         bestij = i;
@@ -378,6 +402,11 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
      */
     protected Linkage linkage;
 
+    /**
+     * Storage of the distance matrix.
+     */
+    protected MatrixParadigm.Storage storage;
+
     @Override
     protected void makeOptions(Parameterization config) {
       // We don't call super, because we want a different default distance.
@@ -391,11 +420,16 @@ public class AnderbergHierarchicalClustering<O> extends AbstractDistanceBasedAlg
       if(config.grab(linkageP)) {
         linkage = linkageP.instantiateClass(config);
       }
+
+      EnumParameter<MatrixParadigm.Storage> storageP = new EnumParameter<>(AGNES.Parameterizer.STORAGE_ID, MatrixParadigm.Storage.class, MatrixParadigm.Storage.DOUBLE);
+      if(config.grab(storageP)) {
+        storage = storageP.getValue();
+      }
     }
 
     @Override
     protected AnderbergHierarchicalClustering<O> makeInstance() {
-      return new AnderbergHierarchicalClustering<>(distanceFunction, linkage);
+      return new AnderbergHierarchicalClustering<>(distanceFunction, linkage, storage);
     }
   }
 }
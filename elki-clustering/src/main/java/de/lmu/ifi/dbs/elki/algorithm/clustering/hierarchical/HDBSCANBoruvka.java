@@ -0,0 +1,676 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.DistanceBasedAlgorithm;
+import de.lmu.ifi.dbs.elki.data.HyperBoundingBox;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.CombinedTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDBIDDataStore;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.query.DatabaseQuery;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.knn.KNNQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.SpatialPrimitiveDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.DoubleMaxHeap;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.unionfind.WeightedQuickUnionInteger;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * HDBSCAN clustering, with the minimum spanning tree of the mutual
+ * reachability graph computed by Borůvka's algorithm on a kd-tree.
+ * <p>
+ * The core distances are computed in parallel, using an index if available,
+ * and the kd-tree otherwise.
+ * Then in every Borůvka round, each point searches its nearest neighbor in a
+ * different component with respect to mutual reachability. This search uses a
+ * kd-tree over the data, and prunes subtrees that are entirely in the same
+ * component as the query point, or whose lower bound (bounding box distance
+ * and minimum core distance) cannot improve the result. The searches run in
+ * parallel; the shortest edge of every component is then added sequentially,
+ * so the result does not depend on the number of threads. The number of
+ * components at least halves in every round.
+ * <p>
+ * This needs only linear memory, and for low-dimensional data it avoids the
+ * quadratic number of distance computations of {@link HDBSCANLinearMemory}.
+ * The result uses the same pointer representation, for use with
+ * {@link de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.HDBSCANHierarchyExtraction}.
+ * <p>
+ * References:
+ * <p>
+ * L. McInnes, J. Healy<br>
+ * Accelerated Hierarchical Density Based Clustering<br>
+ * IEEE Int. Conf. Data Mining Workshops (ICDMW)
+ * <p>
+ * W. B. March, P. Ram, A. G. Gray<br>
+ * Fast Euclidean minimum spanning tree: algorithm, analysis, and
+ * applications<br>
+ * Proc. 16th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @has - - - PointerDensityHierarchyRepresentationResult
+ *
+ * @param <V> Vector type
+ */
+@Title("HDBSCAN with Borůvka minimum spanning tree")
+@Reference(authors = "L. McInnes, J. Healy", //
+    title = "Accelerated Hierarchical Density Based Clustering", //
+    booktitle = "IEEE Int. Conf. Data Mining Workshops (ICDMW)", //
+    url = "https://doi.org/10.1109/ICDMW.2017.12", //
+    bibkey = "DBLP:conf/icdm/McInnesH17")
+@Reference(authors = "W. B. March, P. Ram, A. G. Gray", //
+    title = "Fast Euclidean minimum spanning tree: algorithm, analysis, and applications", //
+    booktitle = "Proc. 16th ACM SIGKDD Int. Conf. Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/1835804.1835882", //
+    bibkey = "DBLP:conf/kdd/MarchRG10")
+public class HDBSCANBoruvka<V extends NumberVector> extends AbstractHDBSCAN<V, PointerDensityHierarchyRepresentationResult> implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(HDBSCANBoruvka.class);
+
+  /**
+   * Maximum number of points in a leaf.
+   */
+  private static final int LEAFSIZE = 16;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param minPts Minimum number of points for density
+   */
+  public HDBSCANBoruvka(SpatialPrimitiveDistanceFunction<? super V> distanceFunction, int minPts) {
+    super(distanceFunction, minPts);
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param db Database
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public PointerDensityHierarchyRepresentationResult run(Database db, Relation<V> relation) {
+    final DistanceQuery<V> distQ = db.getDistanceQuery(relation, getDistanceFunction());
+    @SuppressWarnings("unchecked")
+    final SpatialPrimitiveDistanceFunction<? super V> df = (SpatialPrimitiveDistanceFunction<? super V>) getDistanceFunction();
+    // We need array addressing later.
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    List<V> data = new ArrayList<>(size);
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      data.add(relation.get(iter));
+    }
+    Instance<V> inst = new Instance<>(data, df, RelationUtil.dimensionality(relation));
+
+    // 1. Compute the core distances, in parallel.
+    // Use an index if available, our tree otherwise.
+    final KNNQuery<V> knnQ = db.getKNNQuery(distQ, minPts, DatabaseQuery.HINT_OPTIMIZED_ONLY);
+    final double[] core = new double[size];
+    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Computing core sizes", size, LOG) : null;
+    ParallelExecutor.runBlocks(size, (start, end) -> {
+      DBIDArrayIter iter = ids.iter();
+      DoubleMaxHeap heap = knnQ == null ? new DoubleMaxHeap(minPts + 1) : null;
+      for(int i = start; i < end; i++) {
+        core[i] = knnQ != null ? knnQ.getKNNForDBID(iter.seek(i), minPts).getKNNDistance() : inst.coreDistance(i, minPts, heap);
+        LOG.incrementProcessed(cprog);
+      }
+      return null;
+    });
+    LOG.ensureCompleted(cprog);
+    final WritableDoubleDataStore coredists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      coredists.putDouble(iter, core[iter.getOffset()]);
+    }
+
+    // 2. Build spanning tree.
+    DoubleLongHeap heap = new DoubleLongMinHeap(size > 1 ? size - 1 : 1);
+    inst.setCoreDistances(core);
+    inst.run(heap);
+
+    // Storage for pointer representation:
+    WritableDBIDDataStore pi = DataStoreUtil.makeDBIDStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC);
+    WritableDoubleDataStore lambda = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_STATIC, Double.POSITIVE_INFINITY);
+    convertToPointerRepresentation(ids, heap, pi, lambda);
+
+    return new PointerDensityHierarchyRepresentationResult(ids, pi, lambda, distQ.getDistanceFunction().isSquared(), coredists);
+  }
+
+  /**
+   * Borůvka minimum spanning tree computation for a single data set.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  protected static class Instance<V extends NumberVector> {
+    /**
+     * Data vectors, by offset.
+     */
+    final List<V> data;
+
+    /**
+     * Core distances, by offset.
+     */
+    double[] core;
+
+    /**
+     * Distance function.
+     */
+    final SpatialPrimitiveDistanceFunction<? super V> df;
+
+    /**
+     * Point offsets, arranged by the tree.
+     */
+    final int[] idx;
+
+    /**
+     * Split dimensions, -1 for leaves; nodes in heap order.
+     */
+    final int[] splitdim;
+
+    /**
+     * Split values.
+     */
+    final double[] splitval;
+
+    /**
+     * Node ranges, start and end.
+     */
+    final int[] start, end;
+
+    /**
+     * Bounding boxes of the nodes.
+     */
+    final HyperBoundingBox[] box;
+
+    /**
+     * Minimum core distance in each node.
+     */
+    final double[] minCore;
+
+    /**
+     * Component of all points in a node, or -1 if mixed.
+     */
+    final int[] nodeComp;
+
+    /**
+     * Component of each point.
+     */
+    final int[] comp;
+
+    /**
+     * Nearest point in a different component.
+     */
+    final int[] nearest;
+
+    /**
+     * Mutual reachability distance to the nearest point.
+     */
+    final double[] nearestDist;
+
+    /**
+     * Constructor, builds the tree.
+     *
+     * @param data Data vectors
+     * @param df Distance function
+     * @param dim Dimensionality
+     */
+    public Instance(List<V> data, SpatialPrimitiveDistanceFunction<? super V> df, int dim) {
+      this.data = data;
+      this.df = df;
+      final int size = data.size();
+      this.idx = new int[size];
+      for(int i = 0; i < size; i++) {
+        idx[i] = i;
+      }
+      // Depth of the tree, as median splits halve the node sizes:
+      int depth = 0;
+      while((size + (1 << depth) - 1) >> depth > LEAFSIZE) {
+        ++depth;
+      }
+      final int nodes = 2 << depth;
+      this.splitdim = new int[nodes];
+      this.splitval = new double[nodes];
+      this.start = new int[nodes];
+      this.end = new int[nodes];
+      this.box = new HyperBoundingBox[nodes];
+      this.minCore = new double[nodes];
+      this.nodeComp = new int[nodes];
+      this.comp = new int[size];
+      this.nearest = new int[size];
+      this.nearestDist = new double[size];
+      for(int i = 0; i < size; i++) {
+        nearest[i] = -1;
+      }
+      if(size > 0) {
+        build(0, 0, size, dim);
+      }
+    }
+
+    /**
+     * Build a subtree.
+     *
+     * @param node Node number
+     * @param s Start
+     * @param e End
+     * @param dim Dimensionality
+     */
+    private void build(int node, int s, int e, int dim) {
+      start[node] = s;
+      end[node] = e;
+      splitdim[node] = -1;
+      double[] min = new double[dim], max = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        min[d] = Double.POSITIVE_INFINITY;
+        max[d] = Double.NEGATIVE_INFINITY;
+      }
+      for(int i = s; i < e; i++) {
+        final V vec = data.get(idx[i]);
+        for(int d = 0; d < dim; d++) {
+          final double v = vec.doubleValue(d);
+          min[d] = v < min[d] ? v : min[d];
+          max[d] = v > max[d] ? v : max[d];
+        }
+      }
+      box[node] = new HyperBoundingBox(min, max);
+      if(e - s <= LEAFSIZE) {
+        return;
+      }
+      // Dimension of largest extent:
+      int best = 0;
+      double bestwidth = -1.;
+      for(int d = 0; d < dim; d++) {
+        if(max[d] - min[d] > bestwidth) {
+          best = d;
+          bestwidth = max[d] - min[d];
+        }
+      }
+      if(bestwidth <= 0.) {
+        return; // All points identical, keep as leaf.
+      }
+      final int d = best, mid = (s + e) >>> 1;
+      QuickSelect.quickSelect(idx, new QuickSelect.Adapter<int[]>() {
+        @Override
+        public void swap(int[] arr, int i, int j) {
+          int t = arr[i];
+          arr[i] = arr[j];
+          arr[j] = t;
+        }
+
+        @Override
+        public boolean compareGreater(int[] arr, int i, int j) {
+          return data.get(arr[i]).doubleValue(d) > data.get(arr[j]).doubleValue(d);
+        }
+      }, s, e, mid);
+      splitdim[node] = d;
+      splitval[node] = data.get(idx[mid]).doubleValue(d);
+      build(2 * node + 1, s, mid, dim);
+      build(2 * node + 2, mid, e, dim);
+    }
+
+    /**
+     * Compute the core distance of a point, using the tree.
+     *
+     * @param p Point
+     * @param k Number of neighbors, including the point itself
+     * @param heap Reusable heap
+     * @return Core distance, infinity if there are fewer than k points
+     */
+    public double coreDistance(int p, int k, DoubleMaxHeap heap) {
+      heap.clear();
+      knnSearch(0, data.get(p), k, heap);
+      return heap.size() < k ? Double.POSITIVE_INFINITY : heap.peek();
+    }
+
+    /**
+     * kNN search in a subtree.
+     *
+     * @param node Node number
+     * @param vec Query vector
+     * @param k Number of neighbors
+     * @param heap Heap of neighbor distances
+     */
+    private void knnSearch(int node, V vec, int k, DoubleMaxHeap heap) {
+      if(heap.size() >= k && df.minDist(vec, box[node]) > heap.peek()) {
+        return;
+      }
+      final int d = splitdim[node];
+      if(d < 0) {
+        for(int i = start[node], e = end[node]; i < e; i++) {
+          heap.add(df.distance(vec, data.get(idx[i])), k);
+        }
+        return;
+      }
+      // Visit the side of the query point first.
+      final int left = 2 * node + 1, right = left + 1;
+      if(vec.doubleValue(d) < splitval[node]) {
+        knnSearch(left, vec, k, heap);
+        knnSearch(right, vec, k, heap);
+      }
+      else {
+        knnSearch(right, vec, k, heap);
+        knnSearch(left, vec, k, heap);
+      }
+    }
+
+    /**
+     * Set the core distances, and compute the minimum of every node.
+     *
+     * @param core Core distances, by offset
+     */
+    public void setCoreDistances(double[] core) {
+      this.core = core;
+      if(!data.isEmpty()) {
+        updateMinCore(0);
+      }
+    }
+
+    /**
+     * Compute the minimum core distances of a subtree.
+     *
+     * @param node Node
+     * @return Minimum core distance
+     */
+    private double updateMinCore(int node) {
+      double mc = Double.POSITIVE_INFINITY;
+      if(splitdim[node] < 0) {
+        for(int i = start[node], e = end[node]; i < e; i++) {
+          mc = core[idx[i]] < mc ? core[idx[i]] : mc;
+        }
+      }
+      else {
+        mc = Math.min(updateMinCore(2 * node + 1), updateMinCore(2 * node + 2));
+      }
+      return minCore[node] = mc;
+    }
+
+    /**
+     * Compute the minimum spanning tree.
+     *
+     * @param heap Output heap of edges
+     */
+    public void run(DoubleLongHeap heap) {
+      final int size = data.size();
+      WeightedQuickUnionInteger uf = new WeightedQuickUnionInteger();
+      for(int i = 0; i < size; i++) {
+        uf.nextIndex(1);
+      }
+      int[] compBest = new int[size];
+      int components = size, rounds = 0;
+      long diststat = 0;
+      FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Computing minimum spanning tree (n-1 edges)", size > 0 ? size - 1 : 0, LOG) : null;
+      while(components > 1) {
+        ++rounds;
+        for(int i = 0; i < size; i++) {
+          comp[i] = uf.find(i);
+          compBest[i] = -1;
+        }
+        labelNodes(0);
+        // Nearest neighbor in a different component, in parallel.
+        for(long c : ParallelExecutor.runBlocks(size, (start, end) -> {
+          Query q = new Query();
+          for(int p = start; p < end; p++) {
+            nearestOther(p, q);
+          }
+          return q.diststat;
+        })) {
+          diststat += c;
+        }
+        // Shortest edge of each component.
+        for(int p = 0; p < size; p++) {
+          if(nearest[p] < 0) {
+            continue;
+          }
+          final int c = comp[p], b = compBest[c];
+          if(b < 0 || isShorter(p, b)) {
+            compBest[c] = p;
+          }
+        }
+        // Add the edges, skipping duplicates and ties that would form cycles.
+        for(int c = 0; c < size; c++) {
+          final int p = compBest[c];
+          if(p < 0) {
+            continue;
+          }
+          final int q = nearest[p];
+          if(uf.isConnected(p, q)) {
+            continue;
+          }
+          uf.union(p, q);
+          heap.add(nearestDist[p], (((long) p) << 31) | q);
+          --components;
+          LOG.incrementProcessed(mprog);
+        }
+      }
+      LOG.ensureCompleted(mprog);
+      LOG.statistics(new LongStatistic(HDBSCANBoruvka.class.getName() + ".rounds", rounds));
+      LOG.statistics(new LongStatistic(HDBSCANBoruvka.class.getName() + ".distance-computations", diststat));
+    }
+
+    /**
+     * Compare the candidate edges of two points, with ties broken by the point
+     * indexes.
+     *
+     * @param p First point
+     * @param b Second point
+     * @return {@code true} if the edge of p is shorter
+     */
+    private boolean isShorter(int p, int b) {
+      if(nearestDist[p] != nearestDist[b]) {
+        return nearestDist[p] < nearestDist[b];
+      }
+      final int p1 = Math.min(p, nearest[p]), b1 = Math.min(b, nearest[b]);
+      return p1 != b1 ? p1 < b1 : Math.max(p, nearest[p]) < Math.max(b, nearest[b]);
+    }
+
+    /**
+     * Update the component labels of the tree nodes.
+     *
+     * @param node Node
+     * @return Component, or -1 if mixed
+     */
+    private int labelNodes(int node) {
+      if(splitdim[node] < 0) {
+        final int c = comp[idx[start[node]]];
+        for(int i = start[node] + 1, e = end[node]; i < e; i++) {
+          if(comp[idx[i]] != c) {
+            return nodeComp[node] = -1;
+          }
+        }
+        return nodeComp[node] = c;
+      }
+      final int c1 = labelNodes(2 * node + 1), c2 = labelNodes(2 * node + 2);
+      return nodeComp[node] = c1 == c2 ? c1 : -1;
+    }
+
+    /**
+     * Find the nearest point in a different component.
+     *
+     * @param p Query point
+     * @param q Search state
+     */
+    private void nearestOther(int p, Query q) {
+      final V vec = data.get(p);
+      q.best = Double.POSITIVE_INFINITY;
+      q.bestp = -1;
+      // The previous neighbor, if still in a different component, is a good
+      // initial bound.
+      final int prev = nearest[p];
+      if(prev >= 0 && comp[prev] != comp[p]) {
+        q.best = MathUtil.max(core[p], core[prev], df.distance(vec, data.get(prev)));
+        q.bestp = prev;
+        ++q.diststat;
+      }
+      search(0, p, vec, q);
+      nearest[p] = q.bestp;
+      nearestDist[p] = q.best;
+    }
+
+    /**
+     * Search a subtree.
+     *
+     * @param node Node number
+     * @param p Query point
+     * @param vec Query vector
+     * @param q Search state
+     */
+    private void search(int node, int p, V vec, Query q) {
+      final int cp = comp[p];
+      if(nodeComp[node] == cp) {
+        return;
+      }
+      final double cc = core[p];
+      final double lb = MathUtil.max(cc, minCore[node], df.minDist(vec, box[node]));
+      // Note: core distances may be infinite if there are fewer than minPts
+      // points, so we must always accept the first candidate.
+      if(q.bestp >= 0 && lb >= q.best) {
+        return;
+      }
+      final int d = splitdim[node];
+      if(d < 0) {
+        for(int i = start[node], e = end[node]; i < e; i++) {
+          final int r = idx[i];
+          if(comp[r] == cp || (q.bestp >= 0 && core[r] >= q.best)) {
+            continue;
+          }
+          final double dist = MathUtil.max(cc, core[r], df.distance(vec, data.get(r)));
+          ++q.diststat;
+          if(dist < q.best || q.bestp < 0) {
+            q.best = dist;
+            q.bestp = r;
+          }
+        }
+        return;
+      }
+      // Visit the side of the query point first.
+      final int left = 2 * node + 1, right = left + 1;
+      if(vec.doubleValue(d) < splitval[node]) {
+        search(left, p, vec, q);
+        search(right, p, vec, q);
+      }
+      else {
+        search(right, p, vec, q);
+        search(left, p, vec, q);
+      }
+    }
+  }
+
+  /**
+   * Search state of a single thread.
+   *
+   * @author Erich Schubert
+   */
+  private static class Query {
+    /**
+     * Best mutual reachability distance.
+     */
+    double best;
+
+    /**
+     * Best point.
+     */
+    int bestp;
+
+    /**
+     * Distance computations.
+     */
+    long diststat;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    // We strictly need a vector field of fixed dimensionality!
+    return TypeUtil.array(new CombinedTypeInformation(TypeUtil.NUMBER_VECTOR_FIELD, getDistanceFunction().getInputTypeRestriction()));
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractHDBSCAN.Parameterizer<V> {
+    /**
+     * Distance function, with bounding box support.
+     */
+    protected SpatialPrimitiveDistanceFunction<? super V> spatialDistance;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      // Disabled: super.makeOptions(config);
+      // Because we need bounding box distances:
+      ObjectParameter<SpatialPrimitiveDistanceFunction<? super V>> distanceFunctionP = new ObjectParameter<>(DistanceBasedAlgorithm.DISTANCE_FUNCTION_ID, SpatialPrimitiveDistanceFunction.class, EuclideanDistanceFunction.class);
+      if(config.grab(distanceFunctionP)) {
+        spatialDistance = distanceFunctionP.instantiateClass(config);
+      }
+
+      IntParameter minptsP = new IntParameter(MIN_PTS_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT);
+      if(config.grab(minptsP)) {
+        minPts = minptsP.getValue();
+      }
+    }
+
+    @Override
+    protected HDBSCANBoruvka<V> makeInstance() {
+      return new HDBSCANBoruvka<>(spatialDistance, minPts);
+    }
+  }
+}
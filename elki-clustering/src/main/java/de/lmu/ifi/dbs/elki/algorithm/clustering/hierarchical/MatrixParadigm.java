@@ -20,11 +20,25 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.DoubleUnaryOperator;
+
 import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 
 /**
@@ -37,19 +51,61 @@ import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
  *
  * While this will usually store (merge-) distances when clustering, it can
  * store arbitrary doubles.
+ * <p>
+ * The lower triangle is addressed with long positions, and stored in segments
+ * of at most {@code 2^27} entries, so it is not limited by the maximum Java
+ * array size. Besides double precision on the heap, it can be stored in single
+ * precision (half the memory), or in a memory-mapped temporary file to go
+ * beyond the available heap.
  *
  * @author Erich Schubert
  */
-public class MatrixParadigm {
+public abstract class MatrixParadigm {
+  /**
+   * Storage options for the matrix.
+   *
+   * @author Erich Schubert
+   */
+  public enum Storage {
+    /** Double precision, on the Java heap. */
+    DOUBLE,
+    /** Single precision, on the Java heap. */
+    FLOAT,
+    /** Double precision, in a memory-mapped temporary file. */
+    MAPPED_DOUBLE,
+    /** Single precision, in a memory-mapped temporary file. */
+    MAPPED_FLOAT,
+  }
+
+  /**
+   * Segment size (as power of two), in entries.
+   */
+  protected static final int SEGMENT_SHIFT = 27;
+
+  /**
+   * Mask for the position within a segment.
+   */
+  protected static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+  /**
+   * Maximum size of a single array.
+   */
+  private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+  /**
+   * Minimum number of row pairs per parallel block.
+   */
+  private static final int MIN_BLOCK = 64;
+
   /**
    * Two iterators to reference to objects.
    */
   public final DBIDArrayIter ix, iy;
 
   /**
-   * Distance matrix (<b>modifiable</b>).
+   * Objects, in matrix order.
    */
-  public final double[] matrix;
+  protected final ArrayDBIDs ids;
 
   /**
    * Number of rows/columns.
@@ -61,17 +117,53 @@ public class MatrixParadigm {
    *
    * @param ids Database ids.
    */
-  public MatrixParadigm(DBIDs ids) {
+  protected MatrixParadigm(DBIDs ids) {
     size = ids.size();
-    if(size > 0x10000) {
-      throw new AbortException("This implementation does not scale to data sets larger than " + //
-          0x10000 // = 65535
-          + " instances (~16 GB RAM), at which point the Java maximum array size is reached.");
+    this.ids = DBIDUtil.ensureArray(ids);
+    ix = this.ids.iter();
+    iy = this.ids.iter();
+  }
+
+  /**
+   * Create a matrix in double precision on the Java heap.
+   *
+   * @param ids Database ids.
+   * @return Matrix
+   */
+  public static MatrixParadigm create(DBIDs ids) {
+    return create(ids, Storage.DOUBLE);
+  }
+
+  /**
+   * Create a matrix.
+   *
+   * @param ids Database ids.
+   * @param storage Storage type
+   * @return Matrix
+   */
+  public static MatrixParadigm create(DBIDs ids, Storage storage) {
+    switch(storage){
+    case DOUBLE:
+      return triangleSize(ids.size()) <= MAX_ARRAY ? new DoubleArrayMatrix(ids) : new DoubleMatrix(ids);
+    case FLOAT:
+      return new FloatMatrix(ids);
+    case MAPPED_DOUBLE:
+      return new MappedDoubleMatrix(ids);
+    case MAPPED_FLOAT:
+      return new MappedFloatMatrix(ids);
+    default:
+      throw new AbortException("Unsupported matrix storage: " + storage);
     }
-    ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
-    ix = aids.iter();
-    iy = aids.iter();
-    matrix = new double[triangleSize(size)];
+  }
+
+  /**
+   * Get a new iterator over the objects, e.g., for use in parallel blocks,
+   * where {@link #ix} and {@link #iy} cannot be shared.
+   *
+   * @return Iterator
+   */
+  public DBIDArrayIter iter() {
+    return ids.iter();
   }
 
   /**
@@ -80,8 +172,33 @@ public class MatrixParadigm {
    * @param x Offset
    * @return Size of complete triangle
    */
-  public static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  public static long triangleSize(int x) {
+    return (x * (long) (x - 1)) >>> 1;
+  }
+
+  /**
+   * Number of segments needed for the triangle.
+   *
+   * @param total Total number of entries
+   * @return Number of segments
+   */
+  protected static int numSegments(long total) {
+    final long segs = (total + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+    if(segs > Integer.MAX_VALUE) {
+      throw new AbortException("Distance matrix too large.");
+    }
+    return (int) segs;
+  }
+
+  /**
+   * Size of a segment.
+   *
+   * @param total Total number of entries
+   * @param i Segment number
+   * @return Number of entries in this segment
+   */
+  protected static int segmentSize(long total, int i) {
+    return (int) Math.min(total - (((long) i) << SEGMENT_SHIFT), SEGMENT_MASK + 1);
   }
 
   /**
@@ -96,10 +213,28 @@ public class MatrixParadigm {
    */
   public double get(int x, int y) {
     return (x == y) ? 0 : (x < y) //
-        ? matrix[MatrixParadigm.triangleSize(y) + x] //
-        : matrix[MatrixParadigm.triangleSize(x) + y];
+        ? get(MatrixParadigm.triangleSize(y) + x) //
+        : get(MatrixParadigm.triangleSize(x) + y);
   }
 
+  /**
+   * Get the value at a position of the lower triangle,
+   * {@code triangleSize(x) + y} for {@code y < x}.
+   *
+   * @param pos Position
+   * @return Value
+   */
+  public abstract double get(long pos);
+
+  /**
+   * Set the value at a position of the lower triangle,
+   * {@code triangleSize(x) + y} for {@code y < x}.
+   *
+   * @param pos Position
+   * @param val New value
+   */
+  public abstract void set(long pos, double val);
+
   /**
    * Initialize a distance matrix.
    *
@@ -107,16 +242,264 @@ public class MatrixParadigm {
    * @return this
    */
   public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq) {
-    final DBIDArrayIter ix = this.ix, iy = this.iy;
-    final double[] matrix = this.matrix;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert (pos == triangleSize(x));
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = dq.distance(ix, iy);
+    return initializeWithDistances(dq, null, null);
+  }
+
+  /**
+   * Initialize a distance matrix, in parallel.
+   * <p>
+   * Rows {@code i} and {@code size-1-i} are processed together, to balance the
+   * work of the triangle across blocks. Every row is written by exactly one
+   * thread, so the result does not depend on the number of threads.
+   *
+   * @param dq Distance query
+   * @param transform Transformation of the distances, may be {@code null}
+   * @param log Logger for progress, may be {@code null}
+   * @return this
+   */
+  public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq, DoubleUnaryOperator transform, Logging log) {
+    final FiniteProgress prog = log != null && log.isVerbose() ? new FiniteProgress("Distance matrix computation", size, log) : null;
+    ParallelExecutor.runBlocks((size + 1) >>> 1, MIN_BLOCK, (start, end) -> {
+      final DBIDArrayIter px = ids.iter(), py = ids.iter();
+      for(int i = start; i < end; i++) {
+        initializeRow(px.seek(i), py, dq, transform);
+        final int j = size - 1 - i;
+        if(j != i) {
+          initializeRow(px.seek(j), py, dq, transform);
+        }
+        if(prog != null) {
+          prog.incrementProcessed(log);
+          if(j != i) {
+            prog.incrementProcessed(log);
+          }
+        }
       }
+      return null;
+    });
+    if(log != null) {
+      log.ensureCompleted(prog);
     }
     return this;
   }
+
+  /**
+   * Compute one row of the lower triangle.
+   *
+   * @param px Row object
+   * @param py Column iterator
+   * @param dq Distance query
+   * @param transform Transformation of the distances, may be {@code null}
+   */
+  private void initializeRow(DBIDArrayIter px, DBIDArrayIter py, DistanceQuery<?> dq, DoubleUnaryOperator transform) {
+    final int x = px.getOffset();
+    long pos = triangleSize(x);
+    for(py.seek(0); py.getOffset() < x; py.advance()) {
+      final double d = dq.distance(px, py);
+      set(pos++, transform != null ? transform.applyAsDouble(d) : d);
+    }
+  }
+
+  /**
+   * Double precision storage on the heap, in a single array.
+   *
+   * @author Erich Schubert
+   */
+  private static final class DoubleArrayMatrix extends MatrixParadigm {
+    /**
+     * Distance matrix (<b>modifiable</b>).
+     */
+    private final double[] matrix;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Database ids.
+     */
+    private DoubleArrayMatrix(DBIDs ids) {
+      super(ids);
+      matrix = new double[(int) triangleSize(size)];
+    }
+
+    @Override
+    public double get(long pos) {
+      return matrix[(int) pos];
+    }
+
+    @Override
+    public void set(long pos, double val) {
+      matrix[(int) pos] = val;
+    }
+  }
+
+  /**
+   * Double precision storage on the heap, in segments.
+   *
+   * @author Erich Schubert
+   */
+  private static final class DoubleMatrix extends MatrixParadigm {
+    /**
+     * Matrix segments (<b>modifiable</b>).
+     */
+    private final double[][] segments;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Database ids.
+     */
+    private DoubleMatrix(DBIDs ids) {
+      super(ids);
+      final long total = triangleSize(size);
+      segments = new double[numSegments(total)][];
+      for(int i = 0; i < segments.length; i++) {
+        segments[i] = new double[segmentSize(total, i)];
+      }
+    }
+
+    @Override
+    public double get(long pos) {
+      return segments[(int) (pos >>> SEGMENT_SHIFT)][(int) pos & SEGMENT_MASK];
+    }
+
+    @Override
+    public void set(long pos, double val) {
+      segments[(int) (pos >>> SEGMENT_SHIFT)][(int) pos & SEGMENT_MASK] = val;
+    }
+  }
+
+  /**
+   * Single precision storage on the heap.
+   *
+   * @author Erich Schubert
+   */
+  private static final class FloatMatrix extends MatrixParadigm {
+    /**
+     * Matrix segments (<b>modifiable</b>).
+     */
+    private final float[][] segments;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Database ids.
+     */
+    private FloatMatrix(DBIDs ids) {
+      super(ids);
+      final long total = triangleSize(size);
+      segments = new float[numSegments(total)][];
+      for(int i = 0; i < segments.length; i++) {
+        segments[i] = new float[segmentSize(total, i)];
+      }
+    }
+
+    @Override
+    public double get(long pos) {
+      return segments[(int) (pos >>> SEGMENT_SHIFT)][(int) pos & SEGMENT_MASK];
+    }
+
+    @Override
+    public void set(long pos, double val) {
+      segments[(int) (pos >>> SEGMENT_SHIFT)][(int) pos & SEGMENT_MASK] = (float) val;
+    }
+  }
+
+  /**
+   * Map a temporary file into memory, in segments.
+   * <p>
+   * The file is deleted when the channel is closed; the mappings remain valid
+   * until they are garbage collected.
+   *
+   * @param total Total number of entries
+   * @param bytes Bytes per entry
+   * @return Mapped segments
+   */
+  protected static MappedByteBuffer[] mapSegments(long total, int bytes) {
+    MappedByteBuffer[] buffers = new MappedByteBuffer[numSegments(total)];
+    try {
+      Path tmp = Files.createTempFile("elki-matrix", ".bin");
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+        for(int i = 0; i < buffers.length; i++) {
+          final long offset = (((long) i) << SEGMENT_SHIFT) * bytes;
+          buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, segmentSize(total, i) * (long) bytes);
+          buffers[i].order(ByteOrder.nativeOrder());
+        }
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not map the distance matrix into memory.", e);
+    }
+    return buffers;
+  }
+
+  /**
+   * Double precision storage in a memory-mapped file.
+   *
+   * @author Erich Schubert
+   */
+  private static final class MappedDoubleMatrix extends MatrixParadigm {
+    /**
+     * Matrix segments (<b>modifiable</b>).
+     */
+    private final DoubleBuffer[] segments;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Database ids.
+     */
+    private MappedDoubleMatrix(DBIDs ids) {
+      super(ids);
+      MappedByteBuffer[] buffers = mapSegments(triangleSize(size), Double.BYTES);
+      segments = new DoubleBuffer[buffers.length];
+      for(int i = 0; i < buffers.length; i++) {
+        segments[i] = buffers[i].asDoubleBuffer();
+      }
+    }
+
+    @Override
+    public double get(long pos) {
+      return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) pos & SEGMENT_MASK);
+    }
+
+    @Override
+    public void set(long pos, double val) {
+      segments[(int) (pos >>> SEGMENT_SHIFT)].put((int) pos & SEGMENT_MASK, val);
+    }
+  }
+
+  /**
+   * Single precision storage in a memory-mapped file.
+   *
+   * @author Erich Schubert
+   */
+  private static final class MappedFloatMatrix extends MatrixParadigm {
+    /**
+     * Matrix segments (<b>modifiable</b>).
+     */
+    private final FloatBuffer[] segments;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Database ids.
+     */
+    private MappedFloatMatrix(DBIDs ids) {
+      super(ids);
+      MappedByteBuffer[] buffers = mapSegments(triangleSize(size), Float.BYTES);
+      segments = new FloatBuffer[buffers.length];
+      for(int i = 0; i < buffers.length; i++) {
+        segments[i] = buffers[i].asFloatBuffer();
+      }
+    }
+
+    @Override
+    public double get(long pos) {
+      return segments[(int) (pos >>> SEGMENT_SHIFT)].get((int) pos & SEGMENT_MASK);
+    }
+
+    @Override
+    public void set(long pos, double val) {
+      segments[(int) (pos >>> SEGMENT_SHIFT)].put((int) pos & SEGMENT_MASK, (float) val);
+    }
+  }
 }
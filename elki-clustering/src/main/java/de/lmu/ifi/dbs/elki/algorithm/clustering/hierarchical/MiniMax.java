@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.algorithm.AbstractDistanceBasedAlgorithm;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
@@ -31,7 +33,9 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
@@ -71,6 +75,11 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
    */
   private static final Logging LOG = Logging.getLogger(MiniMax.class);
 
+  /**
+   * Minimum block size for parallel updates.
+   */
+  private static final int MIN_BLOCK = 64;
+
   /**
    * Constructor.
    *
@@ -97,8 +106,8 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
     Int2ObjectOpenHashMap<ModifiableDBIDs> clusters = new Int2ObjectOpenHashMap<>(size);
 
     // Allocate working space:
-    MatrixParadigm mat = new MatrixParadigm(ids);
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(MatrixParadigm.triangleSize(size));
+    ArrayModifiableDBIDs prots = newPrototypeArray(size);
+    MatrixParadigm mat = MatrixParadigm.create(ids);
     initializeMatrices(mat, prots, dq);
 
     DBIDArrayMIter protiter = prots.iter();
@@ -113,6 +122,22 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
     return (PointerPrototypeHierarchyRepresentationResult) builder.complete();
   }
 
+  /**
+   * Allocate the array of prototypes, which (unlike the distance matrix) is
+   * limited to the maximum Java array size.
+   *
+   * @param size Data set size
+   * @return Empty array of prototypes
+   */
+  protected static ArrayModifiableDBIDs newPrototypeArray(int size) {
+    if(size > 0x10000) {
+      throw new AbortException("This implementation does not scale to data sets larger than " + //
+          0x10000 // = 65535
+          + " instances, at which point the Java maximum array size is reached.");
+    }
+    return DBIDUtil.newArray((int) MatrixParadigm.triangleSize(size));
+  }
+
   /**
    * Initializes the inter-cluster distance matrix of possible merges
    * 
@@ -120,17 +145,14 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
    * @param dq The distance query
    */
   protected static <O> void initializeMatrices(MatrixParadigm mat, ArrayModifiableDBIDs prots, DistanceQuery<O> dq) {
+    mat.initializeWithDistances(dq, null, LOG);
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
-    int pos = 0;
     for(ix.seek(0); ix.valid(); ix.advance()) {
       for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
-        distances[pos] = dq.distance(ix, iy);
         prots.add(iy);
-        pos++;
       }
     }
-    assert (prots.size() == pos);
+    assert (prots.size() == MatrixParadigm.triangleSize(mat.size));
   }
 
   /**
@@ -145,7 +167,6 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
    */
   protected static int findMerge(int end, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<?> dq) {
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
     double mindist = Double.POSITIVE_INFINITY;
     int x = -1, y = -1;
 
@@ -154,7 +175,7 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
       if(builder.isLinked(ix.seek(dx))) {
         continue;
       }
-      final int xoffset = MatrixParadigm.triangleSize(dx);
+      final long xoffset = MatrixParadigm.triangleSize(dx);
 
       for(int dy = 0; dy < dx; dy++) {
         // Skip if object is already linked
@@ -162,7 +183,7 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
           continue;
         }
 
-        double dist = distances[xoffset + dy];
+        double dist = mat.get(xoffset + dy);
         if(dist < mindist) {
           mindist = dist;
           x = dx;
@@ -192,11 +213,10 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
   protected static void merge(int size, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<?> dq, int x, int y) {
     assert (y < x);
     final DBIDArrayIter ix = mat.ix.seek(x), iy = mat.iy.seek(y);
-    final double[] distances = mat.matrix;
-    int offset = MatrixParadigm.triangleSize(x) + y;
+    final long offset = MatrixParadigm.triangleSize(x) + y;
 
     if(LOG.isDebuggingFine()) {
-      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + distances[offset]);
+      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + mat.get(offset));
     }
 
     ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
@@ -216,7 +236,7 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
     clusters.put(y, cy);
 
     // parent of x is set to y
-    builder.add(ix, distances[offset], iy, prots.seek(offset));
+    builder.add(ix, mat.get(offset), iy, prots.seek((int) offset));
 
     updateMatrices(size, mat, prots, builder, clusters, dq, y);
   }
@@ -234,28 +254,35 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
    * @param c the cluster to update distances to
    */
   protected static <O> void updateMatrices(int size, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<O> dq, int c) {
-    final DBIDArrayIter ix = mat.ix, iy = mat.iy;
     // c is the new cluster.
     // Update entries (at (x,y) with x > y) in the matrix where x = c or y = c
-
-    // Update entries at (c,y) with y < c
-    ix.seek(c);
-    for(iy.seek(0); iy.getOffset() < c; iy.advance()) {
-      // Skip entry if already merged
-      if(builder.isLinked(iy)) {
-        continue;
+    // The prototype searches are independent, and run in parallel blocks; the
+    // prototypes are collected, and stored afterwards in the same order.
+    List<ArrayModifiableDBIDs> found = ParallelExecutor.runBlocks(size, MIN_BLOCK, (start, end) -> {
+      final DBIDArrayIter ix = mat.iter(), iy = mat.iter();
+      ArrayModifiableDBIDs protos = DBIDUtil.newArray();
+      DBIDVar prototype = DBIDUtil.newVar();
+      for(int j = start; j < end; j++) {
+        // Skip entry if already merged
+        if(j == c || builder.isLinked(iy.seek(j))) {
+          continue;
+        }
+        final int x = j < c ? c : j, y = j < c ? j : c;
+        mat.set(MatrixParadigm.triangleSize(x) + y, computeEntry(ix, iy, clusters, dq, x, y, prototype));
+        protos.add(prototype);
       }
-      updateEntry(mat, prots, clusters, dq, c, iy.getOffset());
-    }
-
-    // Update entries at (x,c) with x > c
-    iy.seek(c);
-    for(ix.seek(c + 1); ix.valid(); ix.advance()) {
-      // Skip entry if already merged
-      if(builder.isLinked(ix)) {
-        continue;
+      return protos;
+    });
+    final DBIDArrayIter ij = mat.iy;
+    int j = 0;
+    for(ArrayModifiableDBIDs protos : found) {
+      for(DBIDIter it = protos.iter(); it.valid(); it.advance(), j++) {
+        while(j == c || builder.isLinked(ij.seek(j))) {
+          j++;
+        }
+        final long offset = j < c ? MatrixParadigm.triangleSize(c) + j : MatrixParadigm.triangleSize(j) + c;
+        prots.seek((int) offset).setDBID(it);
       }
-      updateEntry(mat, prots, clusters, dq, ix.getOffset(), c);
     }
   }
 
@@ -270,12 +297,30 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
    * @param y index of cluster, {@code y < x}
    */
   protected static void updateEntry(MatrixParadigm mat, DBIDArrayMIter prots, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<?> dq, int x, int y) {
+    DBIDVar prototype = DBIDUtil.newVar();
+    final double minMaxDist = computeEntry(mat.ix, mat.iy, clusters, dq, x, y, prototype);
+    final long offset = MatrixParadigm.triangleSize(x) + y;
+    mat.set(offset, minMaxDist);
+    prots.seek((int) offset).setDBID(prototype);
+  }
+
+  /**
+   * Compute the minimax distance and prototype of the clusters x and y.
+   *
+   * @param ix Iterator to use for x
+   * @param iy Iterator to use for y
+   * @param clusters the clusters
+   * @param dq distance query on the data set
+   * @param x index of cluster, {@code x > y}
+   * @param y index of cluster, {@code y < x}
+   * @param prototype Output variable for the prototype
+   * @return Minimax distance
+   */
+  protected static double computeEntry(DBIDArrayIter ix, DBIDArrayIter iy, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<?> dq, int x, int y, DBIDVar prototype) {
     assert (y < x);
-    final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
     ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
 
-    DBIDVar prototype = DBIDUtil.newVar(ix.seek(x)); // Default prototype
+    prototype.set(ix.seek(x)); // Default prototype
     double minMaxDist;
     // Two "real" clusters:
     if(cx != null && cy != null) {
@@ -294,10 +339,7 @@ public class MiniMax<O> extends AbstractDistanceBasedAlgorithm<O, PointerPrototy
       minMaxDist = dq.distance(ix.seek(x), iy.seek(y));
       prototype.set(ix);
     }
-
-    final int offset = MatrixParadigm.triangleSize(x) + y;
-    distances[offset] = minMaxDist;
-    prots.seek(offset).setDBID(prototype);
+    return minMaxDist;
   }
 
   /**
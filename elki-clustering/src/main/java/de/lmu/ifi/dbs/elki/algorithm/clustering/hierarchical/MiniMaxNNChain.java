@@ -96,8 +96,8 @@ public class MiniMaxNNChain<O> extends AbstractDistanceBasedAlgorithm<O, Pointer
     PointerHierarchyRepresentationBuilder builder = new PointerHierarchyRepresentationBuilder(ids, dq.getDistanceFunction().isSquared());
     Int2ObjectOpenHashMap<ModifiableDBIDs> clusters = new Int2ObjectOpenHashMap<>(ids.size());
 
-    MatrixParadigm mat = new MatrixParadigm(ids);
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(MatrixParadigm.triangleSize(ids.size()));
+    ArrayModifiableDBIDs prots = MiniMax.newPrototypeArray(ids.size());
+    MatrixParadigm mat = MatrixParadigm.create(ids);
 
     MiniMax.initializeMatrices(mat, prots, dq);
 
@@ -118,7 +118,6 @@ public class MiniMaxNNChain<O> extends AbstractDistanceBasedAlgorithm<O, Pointer
    */
   private void nnChainCore(MatrixParadigm mat, DBIDArrayMIter prots, DistanceQuery<O> dq, PointerHierarchyRepresentationBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters) {
     final DBIDArrayIter ix = mat.ix;
-    final double[] distances = mat.matrix;
     final int size = mat.size;
     // The maximum chain size = number of ids + 1
     IntegerArray chain = new IntegerArray(size + 1);
@@ -152,26 +151,8 @@ public class MiniMaxNNChain<O> extends AbstractDistanceBasedAlgorithm<O, Pointer
       // For ties, always prefer the second-last element b:
       double minDist = mat.get(a, b);
       do {
-        int c = b;
-        final int ta = MatrixParadigm.triangleSize(a);
-        for(int i = 0; i < a; i++) {
-          if(i != b && !builder.isLinked(ix.seek(i))) {
-            double dist = distances[ta + i];
-            if(dist < minDist) {
-              minDist = dist;
-              c = i;
-            }
-          }
-        }
-        for(int i = a + 1; i < size; i++) {
-          if(i != b && !builder.isLinked(ix.seek(i))) {
-            double dist = distances[MatrixParadigm.triangleSize(i) + a];
-            if(dist < minDist) {
-              minDist = dist;
-              c = i;
-            }
-          }
-        }
+        final int c = NNChain.findNearest(mat, builder, end, a, b, minDist);
+        minDist = mat.get(a, c);
 
         b = a;
         a = c;
@@ -188,7 +169,7 @@ public class MiniMaxNNChain<O> extends AbstractDistanceBasedAlgorithm<O, Pointer
       }
       assert (minDist == mat.get(a, b));
       assert (b < a);
-      MiniMax.merge(size, mat, prots, builder, clusters, dq, a, b);
+      MiniMax.merge(end, mat, prots, builder, clusters, dq, a, b);
       end = AGNES.shrinkActiveSet(ix, builder, end, a); // Shrink working set
       LOG.incrementProcessed(progress);
     }
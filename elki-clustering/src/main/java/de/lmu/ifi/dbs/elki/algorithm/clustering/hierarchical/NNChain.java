@@ -20,8 +20,14 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical;
 
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.linkage.CompleteLinkage;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.linkage.GroupAverageLinkage;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.linkage.Linkage;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.linkage.SingleLinkage;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.linkage.WardLinkage;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.linkage.WeightedAverageLinkage;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
@@ -30,12 +36,21 @@ import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.IntegerArray;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 
 /**
  * NNchain clustering algorithm.
  * <p>
+ * Optionally, for reducible linkages, reciprocal nearest neighbors are first
+ * merged in parallel rounds, until the rounds become too small; then the chain
+ * takes over. This needs more nearest neighbor searches, so it only pays off
+ * on multiple cores.
+ * <p>
  * Reference:
  * <p>
  * F. Murtagh<br>
@@ -66,6 +81,11 @@ public class NNChain<O> extends AGNES<O> {
    */
   private static final Logging LOG = Logging.getLogger(NNChain.class);
 
+  /**
+   * Merge reciprocal nearest neighbors in parallel rounds first.
+   */
+  protected boolean batch = false;
+
   /**
    * Constructor.
    *
@@ -75,6 +95,31 @@ public class NNChain<O> extends AGNES<O> {
     super(distanceFunction, linkage);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param linkage Linkage method
+   * @param storage Storage of the distance matrix
+   */
+  public NNChain(DistanceFunction<? super O> distanceFunction, Linkage linkage, MatrixParadigm.Storage storage) {
+    super(distanceFunction, linkage, storage);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param linkage Linkage method
+   * @param storage Storage of the distance matrix
+   * @param batch Merge reciprocal nearest neighbors in parallel rounds first
+   *        (reducible linkages only)
+   */
+  public NNChain(DistanceFunction<? super O> distanceFunction, Linkage linkage, MatrixParadigm.Storage storage, boolean batch) {
+    super(distanceFunction, linkage, storage);
+    this.batch = batch;
+  }
+
   /**
    * Run the algorithm
    * 
@@ -88,7 +133,7 @@ public class NNChain<O> extends AGNES<O> {
     }
     DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
     final DBIDs ids = relation.getDBIDs();
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = MatrixParadigm.create(ids, storage);
 
     // Compute the initial (lower triangular) distance matrix.
     initializeDistanceMatrix(mat, dq, linkage);
@@ -109,13 +154,19 @@ public class NNChain<O> extends AGNES<O> {
    */
   private void nnChainCore(MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder) {
     final DBIDArrayIter ix = mat.ix;
-    final double[] distances = mat.matrix;
     final int size = mat.size;
     // The maximum chain size = number of ids + 1
     IntegerArray chain = new IntegerArray(size + 1);
 
     FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Running NNChain", size - 1, LOG) : null;
-    for(int k = 1, end = size; k < size; k++) {
+    int k = 1, end = size;
+    if(batch && isReducible(linkage)) {
+      k += mergeReciprocalPairs(mat, builder, progress);
+      while(end > 1 && builder.isLinked(ix.seek(end - 1))) {
+        --end; // Shrink working set
+      }
+    }
+    for(; k < size; k++) {
       int a = -1, b = -1;
       if(chain.size() <= 3) {
         // Accessing two arbitrary not yet merged elements could be optimized to
@@ -143,26 +194,8 @@ public class NNChain<O> extends AGNES<O> {
       // For ties, always prefer the second-last element b:
       double minDist = mat.get(a, b);
       do {
-        int c = b;
-        final int ta = MatrixParadigm.triangleSize(a);
-        for(int i = 0; i < a; i++) {
-          if(i != b && !builder.isLinked(ix.seek(i))) {
-            double dist = distances[ta + i];
-            if(dist < minDist) {
-              minDist = dist;
-              c = i;
-            }
-          }
-        }
-        for(int i = a + 1; i < size; i++) {
-          if(i != b && !builder.isLinked(ix.seek(i))) {
-            double dist = distances[MatrixParadigm.triangleSize(i) + a];
-            if(dist < minDist) {
-              minDist = dist;
-              c = i;
-            }
-          }
-        }
+        final int c = findNearest(mat, builder, end, a, b, minDist);
+        minDist = mat.get(a, c);
 
         b = a;
         a = c;
@@ -179,13 +212,196 @@ public class NNChain<O> extends AGNES<O> {
       }
       assert (minDist == mat.get(a, b));
       assert (b < a);
-      merge(size, mat, builder, minDist, a, b);
+      merge(end, mat, builder, minDist, a, b);
       end = AGNES.shrinkActiveSet(ix, builder, end, a); // Shrink working set
       LOG.incrementProcessed(progress);
     }
     LOG.ensureCompleted(progress);
   }
 
+  /**
+   * Merge reciprocal nearest neighbors in rounds, while a round merges at
+   * least 1/16 of the active clusters, and at most 8 nearest neighbors need to
+   * be recomputed per merge. This keeps the total cost in O(n²): otherwise, a
+   * "hub" cluster that is the nearest neighbor of all others would merge one
+   * pair per round, and all nearest neighbors would be recomputed every round.
+   * <p>
+   * For reducible linkages, merging two reciprocal nearest neighbors cannot
+   * bring the merged cluster closer to any other cluster than its current
+   * nearest neighbor. Hence all reciprocal pairs of a round can be merged, and
+   * a nearest neighbor only needs to be recomputed for the merged clusters,
+   * and where the distance to the (now merged) nearest neighbor changed. These
+   * searches are independent, and run in parallel.
+   *
+   * @param mat Matrix view
+   * @param builder Result builder
+   * @param progress Progress log
+   * @return Number of merges performed
+   */
+  private int mergeReciprocalPairs(MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder, FiniteProgress progress) {
+    final DBIDArrayIter ix = mat.ix;
+    final int size = mat.size;
+    // Nearest neighbors, and the objects where they need to be recomputed:
+    final int[] nn = new int[size], stale = new int[size];
+    final double[] nd = new double[size];
+    for(int i = 0; i < size; i++) {
+      stale[i] = i;
+    }
+    int numstale = size, end = size, merged = 0;
+    while(merged < size - 1) {
+      final int e = end;
+      ParallelExecutor.runBlocks(numstale, Math.max(1, MIN_BLOCK / e), (start, stop) -> {
+        final DBIDArrayIter it = mat.iter();
+        for(int s = start; s < stop; s++) {
+          final int a = stale[s], b = findNearest(mat, builder, it, e, a);
+          nn[a] = b;
+          nd[a] = b >= 0 ? mat.get(a, b) : Double.POSITIVE_INFINITY;
+        }
+        return null;
+      });
+      // Merge all reciprocal pairs, the larger into the smaller index:
+      int m = 0;
+      for(int a = 1; a < end; a++) {
+        final int b = nn[a];
+        if(b >= 0 && b < a && nn[b] == a && !builder.isLinked(ix.seek(a))) {
+          merge(end, mat, builder, nd[a], a, b);
+          nn[b] = -1; // Recompute; nn[a] keeps pointing to b.
+          LOG.incrementProcessed(progress);
+          ++m;
+        }
+      }
+      if(m * 16 < size - merged) {
+        merged += m;
+        break; // Too few pairs, continue with the chain.
+      }
+      merged += m;
+      while(builder.isLinked(ix.seek(end - 1))) {
+        --end; // Shrink working set
+      }
+      numstale = 0;
+      for(int a = 0; a < end; a++) {
+        if(builder.isLinked(ix.seek(a))) {
+          continue;
+        }
+        int b = nn[a];
+        if(b >= 0 && builder.isLinked(ix.seek(b))) {
+          b = nn[a] = nn[b]; // b was merged into nn[b]
+        }
+        // Merged clusters, and neighbors merged at a different distance:
+        if(b < 0 || nn[b] < 0 && mat.get(a, b) != nd[a]) {
+          stale[numstale++] = a;
+        }
+      }
+      if(numstale > 8 * m) {
+        break; // Too many searches per merge, continue with the chain.
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Find the nearest unlinked neighbor of a, preferring the smallest index on
+   * ties.
+   *
+   * @param mat Matrix view
+   * @param builder Result builder, to skip merged objects
+   * @param it Iterator (for thread safety)
+   * @param end Active set size
+   * @param a Object to find the nearest neighbor of
+   * @return Nearest neighbor of a, -1 if none
+   */
+  private static int findNearest(MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder, DBIDArrayIter it, int end, int a) {
+    final long ta = MatrixParadigm.triangleSize(a);
+    double best = Double.POSITIVE_INFINITY;
+    int besti = -1, i = 0;
+    for(; i < a; i++) {
+      if(!builder.isLinked(it.seek(i))) {
+        final double dist = mat.get(ta + i);
+        if(dist < best) {
+          best = dist;
+          besti = i;
+        }
+      }
+    }
+    for(long ti = MatrixParadigm.triangleSize(++i) + a; i < end; ti += i++) {
+      if(!builder.isLinked(it.seek(i))) {
+        final double dist = mat.get(ti);
+        if(dist < best) {
+          best = dist;
+          besti = i;
+        }
+      }
+    }
+    return besti;
+  }
+
+  /**
+   * Test whether a linkage is reducible, i.e., merging two clusters never
+   * yields a cluster closer to a third cluster than either of the two was.
+   *
+   * @param linkage Linkage
+   * @return {@code true} if reciprocal nearest neighbors can be merged early
+   */
+  private static boolean isReducible(Linkage linkage) {
+    return linkage instanceof SingleLinkage || linkage instanceof CompleteLinkage //
+        || linkage instanceof GroupAverageLinkage || linkage instanceof WeightedAverageLinkage //
+        || linkage instanceof WardLinkage;
+  }
+
+  /**
+   * Find the nearest unlinked neighbor of a, scanning blocks in parallel.
+   * <p>
+   * Every block returns its first strict minimum, and the blocks are combined
+   * in order, so ties are resolved exactly as in a sequential scan.
+   *
+   * @param mat Matrix view
+   * @param builder Result builder, to skip merged objects
+   * @param end Active set size
+   * @param a Object to find the nearest neighbor of
+   * @param b Previous chain element, preferred on ties
+   * @param minDist Distance of a and b
+   * @return Nearest neighbor of a
+   */
+  static int findNearest(MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder, int end, int a, int b, double minDist) {
+    List<Integer> cands = ParallelExecutor.runBlocks(end, MIN_BLOCK, (start, stop) -> {
+      final DBIDArrayIter it = mat.iter();
+      final long ta = MatrixParadigm.triangleSize(a);
+      double best = Double.POSITIVE_INFINITY;
+      int besti = -1, i = start;
+      for(final int e = Math.min(stop, a); i < e; i++) {
+        if(i != b && !builder.isLinked(it.seek(i))) {
+          final double dist = mat.get(ta + i);
+          if(dist < best) {
+            best = dist;
+            besti = i;
+          }
+        }
+      }
+      i = Math.max(i, a + 1);
+      for(long ti = MatrixParadigm.triangleSize(i) + a; i < stop; ti += i++) {
+        if(i != b && !builder.isLinked(it.seek(i))) {
+          final double dist = mat.get(ti);
+          if(dist < best) {
+            best = dist;
+            besti = i;
+          }
+        }
+      }
+      return besti;
+    });
+    int c = b;
+    for(int cand : cands) {
+      if(cand >= 0) {
+        final double dist = mat.get(a, cand);
+        if(dist < minDist) {
+          minDist = dist;
+          c = cand;
+        }
+      }
+    }
+    return c;
+  }
+
   /**
    * Find an unlinked object.
    *
@@ -220,9 +436,28 @@ public class NNChain<O> extends AGNES<O> {
    * @param <O> Object type
    */
   public static class Parameterizer<O> extends AGNES.Parameterizer<O> {
+    /**
+     * Option ID to merge reciprocal nearest neighbors in parallel rounds.
+     */
+    public static final OptionID BATCH_ID = new OptionID("nnchain.batch", "Merge reciprocal nearest neighbors in parallel rounds first (for single, complete, average and Ward linkage). This needs more nearest neighbor searches, and only pays off on multiple cores.");
+
+    /**
+     * Merge reciprocal nearest neighbors in parallel rounds first.
+     */
+    protected boolean batch;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      Flag batchF = new Flag(BATCH_ID);
+      if(config.grab(batchF)) {
+        batch = batchF.isTrue();
+      }
+    }
+
     @Override
     protected NNChain<O> makeInstance() {
-      return new NNChain<>(distanceFunction, linkage);
+      return new NNChain<>(distanceFunction, linkage, storage, batch);
     }
   }
 }
@@ -31,12 +31,14 @@ import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.model.MeanModel;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -102,9 +104,19 @@ public class BIRCHLeafClustering extends AbstractAlgorithm<Clustering<MeanModel>
     // The CFTree does not store points. We have to reassign them (and the
     // quality is better than if we used the initial assignment, because centers
     // move in particular in the beginning, so we always had many outliers.
+    // The tree is not modified anymore, so we can search it in parallel.
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final ClusteringFeature[] assignment = new ClusteringFeature[aids.size()];
+    ParallelExecutor.runBlocks(aids.size(), (start, end) -> {
+      DBIDArrayIter it = aids.iter();
+      for(it.seek(start); it.getOffset() < end; it.advance()) {
+        assignment[it.getOffset()] = tree.findLeaf(relation.get(it));
+      }
+      return null;
+    });
     Map<ClusteringFeature, ModifiableDBIDs> idmap = new HashMap<ClusteringFeature, ModifiableDBIDs>(tree.leaves);
-    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
-      ClusteringFeature cf = tree.findLeaf(relation.get(iter));
+    for(DBIDArrayIter iter = aids.iter(); iter.valid(); iter.advance()) {
+      ClusteringFeature cf = assignment[iter.getOffset()];
       ModifiableDBIDs ids = idmap.get(cf);
       if(ids == null) {
         idmap.put(cf, ids = DBIDUtil.newArray(cf.n));
@@ -23,14 +23,25 @@ package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.birch;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.iterator.Iter;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -161,11 +172,35 @@ public class CFTree {
     }
   }
 
+  /**
+   * Insert a leaf entry (e.g., of another tree) into the tree.
+   *
+   * @param leaf Leaf entry, may be absorbed by an existing leaf
+   */
+  private void insertLeaf(ClusteringFeature leaf) {
+    final int dim = leaf.getDimensionality();
+    // No root created yet:
+    if(root == null) {
+      root = new TreeNode(dim, capacity);
+      root.children[0] = leaf;
+      root.addToStatistics(leaf);
+      ++leaves;
+      return;
+    }
+    TreeNode other = insert(root, leaf);
+    // Handle root overflow:
+    if(other != null) {
+      TreeNode newnode = new TreeNode(dim, capacity);
+      newnode.addToStatistics(newnode.children[0] = root);
+      newnode.addToStatistics(newnode.children[1] = other);
+      root = newnode;
+    }
+  }
+
   /**
    * Rebuild the CFTree to condense it to approximately half the size.
    */
   protected void rebuildTree() {
-    final int dim = root.getDimensionality();
     double t = estimateThreshold(root) / leaves;
     t *= t;
     // Never decrease the threshold.
@@ -174,23 +209,10 @@ public class CFTree {
 
     LeafIterator iter = new LeafIterator(root); // Will keep the old root.
     assert (iter.valid());
-    ClusteringFeature first = iter.get();
-
     leaves = 0;
-    // Make a new root node:
-    root = new TreeNode(dim, capacity);
-    root.children[0] = first;
-    root.addToStatistics(first);
-    ++leaves;
-    for(iter.advance(); iter.valid(); iter.advance()) {
-      TreeNode other = insert(root, iter.get());
-      // Handle root overflow:
-      if(other != null) {
-        TreeNode newnode = new TreeNode(dim, capacity);
-        newnode.addToStatistics(newnode.children[0] = root);
-        newnode.addToStatistics(newnode.children[1] = other);
-        root = newnode;
-      }
+    root = null;
+    for(; iter.valid(); iter.advance()) {
+      insertLeaf(iter.get());
     }
   }
 
@@ -622,6 +644,11 @@ public class CFTree {
      */
     double maxleaves;
 
+    /**
+     * Number of partitions to build trees on in parallel.
+     */
+    int partitions;
+
     /**
      * Constructor.
      *
@@ -632,38 +659,158 @@ public class CFTree {
      * @param maxleaves Maximum number of leaves
      */
     public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves) {
+      this(distance, absorption, threshold, branchingFactor, maxleaves, 1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance to use
+     * @param absorption Absorption criterion (diameter, distance).
+     * @param threshold Distance threshold
+     * @param branchingFactor Maximum branching factor.
+     * @param maxleaves Maximum number of leaves
+     * @param partitions Number of partitions to build trees on in parallel
+     */
+    public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves, int partitions) {
       this.distance = distance;
       this.absorption = absorption;
       this.threshold = threshold;
       this.branchingFactor = branchingFactor;
       this.maxleaves = maxleaves;
+      this.partitions = partitions;
     }
 
     /**
      * Make a new tree.
+     * <p>
+     * With more than one partition, independent trees are built on
+     * consecutive partitions of the data in parallel, and their leaf entries
+     * are then inserted into the first tree, in partition order. The result
+     * depends on the number of partitions, but not on the number of threads.
      *
      * @param ids DBIDs to insert
      * @param relation Data relation
      * @return New tree
      */
     public CFTree newTree(DBIDs ids, Relation<? extends NumberVector> relation) {
-      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
       final double max = maxleaves <= 1 ? maxleaves * ids.size() : maxleaves;
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building tree", relation.size(), LOG) : null;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-        tree.insert(relation.get(it));
-        if(tree.leaves > max) {
-          if(LOG.isVerbose()) {
-            LOG.verbose("Compacting CF-tree.");
-          }
-          tree.rebuildTree();
+      if(partitions <= 1) {
+        CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+        for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+          insert(tree, relation.get(it), max);
+          LOG.incrementProcessed(prog);
         }
-        LOG.incrementProcessed(prog);
+        LOG.ensureCompleted(prog);
+        return tree;
       }
+      final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+      final int size = aids.size(), parts = Math.max(1, Math.min(partitions, size));
+      List<CFTree[]> blocks = ParallelExecutor.runBlocks(parts, 1, (start, end) -> {
+        CFTree[] trees = new CFTree[end - start];
+        DBIDArrayIter it = aids.iter();
+        for(int p = start; p < end; p++) {
+          final int begin = (int) (p * (long) size / parts), stop = (int) ((p + 1) * (long) size / parts);
+          final double pmax = maxleaves <= 1 ? maxleaves * (stop - begin) : maxleaves;
+          CFTree tree = trees[p - start] = new CFTree(distance, absorption, threshold, branchingFactor);
+          for(it.seek(begin); it.getOffset() < stop; it.advance()) {
+            insert(tree, relation.get(it), pmax);
+            if(prog != null) {
+              prog.incrementProcessed(LOG);
+            }
+          }
+        }
+        return trees;
+      });
       LOG.ensureCompleted(prog);
+      // Start the merged tree with the largest threshold reached by any
+      // partition, otherwise it would need to be rebuilt repeatedly.
+      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+      for(CFTree[] trees : blocks) {
+        for(CFTree other : trees) {
+          tree.thresholdsq = other.thresholdsq > tree.thresholdsq ? other.thresholdsq : tree.thresholdsq;
+        }
+      }
+      // Merge the leaves in partition order:
+      for(CFTree[] trees : blocks) {
+        for(CFTree other : trees) {
+          if(other.root == null) {
+            continue;
+          }
+          for(LeafIterator iter = other.leafIterator(); iter.valid(); iter.advance()) {
+            tree.insertLeaf(iter.get());
+            if(tree.leaves > max) {
+              if(LOG.isVerbose()) {
+                LOG.verbose("Compacting CF-tree.");
+              }
+              tree.rebuildTree();
+            }
+          }
+        }
+      }
+      return tree;
+    }
+
+    /**
+     * Build a tree from a data stream, in a single pass, without keeping the
+     * data in memory.
+     * <p>
+     * As the data size is not known in advance, a relative maximum number of
+     * leaves refers to the number of objects read so far (but at least the
+     * branching factor).
+     *
+     * @param source Data stream
+     * @return New tree
+     */
+    public CFTree newTree(BundleStreamSource source) {
+      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+      int col = -1;
+      long size = 0;
+      loop: while(true) {
+        switch(source.nextEvent()){
+        case META_CHANGED:
+          BundleMeta meta = source.getMeta();
+          col = -1;
+          for(int i = 0; i < meta.size(); i++) {
+            if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+              col = i;
+              break;
+            }
+          }
+          break;
+        case NEXT_OBJECT:
+          if(col < 0) {
+            throw new AbortException("No number vector column in the data stream.");
+          }
+          ++size;
+          insert(tree, (NumberVector) source.data(col), maxleaves <= 1 ? Math.max(maxleaves * size, branchingFactor) : maxleaves);
+          break;
+        case END_OF_STREAM:
+          break loop;
+        }
+      }
+      LOG.statistics(new LongStatistic(CFTree.class.getName() + ".objects", size));
       return tree;
     }
 
+    /**
+     * Insert a vector, and compact the tree if necessary.
+     *
+     * @param tree Tree
+     * @param nv Vector
+     * @param max Maximum number of leaves
+     */
+    private static void insert(CFTree tree, NumberVector nv, double max) {
+      tree.insert(nv);
+      if(tree.leaves > max) {
+        if(LOG.isVerbose()) {
+          LOG.verbose("Compacting CF-tree.");
+        }
+        tree.rebuildTree();
+      }
+    }
+
     /**
      * Parameterization class for CFTrees.
      *
@@ -695,6 +842,11 @@ public class CFTree {
        */
       public static final OptionID MAXLEAVES_ID = new OptionID("cftree.maxleaves", "Maximum number of leaves (if less than 1, the values is assumed to be relative)");
 
+      /**
+       * Number of partitions.
+       */
+      public static final OptionID PARTITIONS_ID = new OptionID("cftree.partitions", "Number of data partitions to build CF-trees on in parallel, which are then merged. The result depends on the number of partitions, but not on the number of threads.");
+
       /**
        * BIRCH distance function to use
        */
@@ -720,6 +872,11 @@ public class CFTree {
        */
       double maxleaves;
 
+      /**
+       * Number of partitions.
+       */
+      int partitions;
+
       @Override
       protected void makeOptions(Parameterization config) {
         ObjectParameter<BIRCHDistance> distanceP = new ObjectParameter<>(DISTANCE_ID, BIRCHDistance.class, VarianceIncreaseDistance.class);
@@ -752,11 +909,17 @@ public class CFTree {
         if(config.grab(maxleavesP)) {
           maxleaves = maxleavesP.doubleValue();
         }
+
+        IntParameter partitionsP = new IntParameter(PARTITIONS_ID, 1) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+        if(config.grab(partitionsP)) {
+          partitions = partitionsP.intValue();
+        }
       }
 
       @Override
       protected CFTree.Factory makeInstance() {
-        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves);
+        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves, partitions);
       }
     }
   }
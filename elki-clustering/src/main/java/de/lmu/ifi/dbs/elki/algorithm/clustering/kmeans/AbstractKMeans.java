@@ -41,7 +41,10 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
@@ -56,6 +59,8 @@ import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.logging.statistics.Duration;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor.BlockTask;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -63,6 +68,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.jafama.FastMath;
 
 /**
@@ -176,25 +182,58 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
 
   /**
    * Similar to VMath.plusEquals, but accepts a number vector.
+   * <p>
+   * Double and float vectors are added directly from their backing arrays.
    *
    * @param sum Aggregation array
    * @param vec Vector to add
    */
   public static void plusEquals(double[] sum, NumberVector vec) {
-    for(int d = 0; d < sum.length; d++) {
-      sum[d] += vec.doubleValue(d);
+    if(vec instanceof DoubleVector) {
+      final double[] v = ((DoubleVector) vec).unwrap();
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] += v[d];
+      }
+    }
+    else if(vec instanceof FloatVector) {
+      final float[] v = ((FloatVector) vec).unwrap();
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] += v[d];
+      }
+    }
+    else {
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] += vec.doubleValue(d);
+      }
     }
   }
 
   /**
    * Similar to VMath.minusEquals, but accepts a number vector.
+   * <p>
+   * Double and float vectors are subtracted directly from their backing
+   * arrays.
    *
    * @param sum Aggregation array
    * @param vec Vector to subtract
    */
   public static void minusEquals(double[] sum, NumberVector vec) {
-    for(int d = 0; d < sum.length; d++) {
-      sum[d] -= vec.doubleValue(d);
+    if(vec instanceof DoubleVector) {
+      final double[] v = ((DoubleVector) vec).unwrap();
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] -= v[d];
+      }
+    }
+    else if(vec instanceof FloatVector) {
+      final float[] v = ((FloatVector) vec).unwrap();
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] -= v[d];
+      }
+    }
+    else {
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] -= vec.doubleValue(d);
+      }
     }
   }
 
@@ -206,13 +245,71 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
    * @param vec Vector to subtract
    */
   public static void plusMinusEquals(double[] add, double[] sub, NumberVector vec) {
-    for(int d = 0; d < add.length; d++) {
-      final double v = vec.doubleValue(d);
-      add[d] += v;
-      sub[d] -= v;
+    if(vec instanceof DoubleVector) {
+      final double[] v = ((DoubleVector) vec).unwrap();
+      for(int d = 0; d < add.length; d++) {
+        final double vd = v[d];
+        add[d] += vd;
+        sub[d] -= vd;
+      }
+    }
+    else if(vec instanceof FloatVector) {
+      final float[] v = ((FloatVector) vec).unwrap();
+      for(int d = 0; d < add.length; d++) {
+        final double vd = v[d];
+        add[d] += vd;
+        sub[d] -= vd;
+      }
+    }
+    else {
+      for(int d = 0; d < add.length; d++) {
+        final double vd = vec.doubleValue(d);
+        add[d] += vd;
+        sub[d] -= vd;
+      }
     }
   }
 
+  /**
+   * Squared Euclidean distance of a vector to a mean, on the backing arrays of
+   * double and float vectors.
+   * <p>
+   * The summation order is the same as in
+   * {@link SquaredEuclideanDistanceFunction}, so the results are identical.
+   *
+   * @param x Data vector
+   * @param y Mean vector
+   * @return Squared Euclidean distance
+   */
+  protected static double squaredEuclidean(NumberVector x, NumberVector y) {
+    if(y instanceof DoubleVector) {
+      final double[] b = ((DoubleVector) y).unwrap();
+      if(x instanceof DoubleVector) {
+        final double[] a = ((DoubleVector) x).unwrap();
+        if(a.length == b.length) {
+          double agg = 0.;
+          for(int d = 0; d < a.length; d++) {
+            final double delta = a[d] - b[d];
+            agg += delta * delta;
+          }
+          return agg;
+        }
+      }
+      else if(x instanceof FloatVector) {
+        final float[] a = ((FloatVector) x).unwrap();
+        if(a.length == b.length) {
+          double agg = 0.;
+          for(int d = 0; d < a.length; d++) {
+            final double delta = a[d] - b[d];
+            agg += delta * delta;
+          }
+          return agg;
+        }
+      }
+    }
+    return SquaredEuclideanDistanceFunction.STATIC.distance(x, y);
+  }
+
   /**
    * Returns the mean vectors of the given clusters in the given database.
    *
@@ -298,9 +395,47 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
     this.initializer = init;
   }
 
+  @Override
+  public Clustering<M> run(Database database, Relation<V> relation) {
+    return run(database, relation, initialMeans(database, relation));
+  }
+
+  /**
+   * Run k-means with the given initial means, e.g., chosen in advance by
+   * {@link #initialMeans} for concurrent trials. This bypasses the initializer
+   * of the algorithm, which is not thread-safe.
+   *
+   * @param database Database
+   * @param relation Relation
+   * @param means Initial means, may be modified
+   * @return Clustering result
+   */
+  public abstract Clustering<M> run(Database database, Relation<V> relation, double[][] means);
+
+  /**
+   * Check whether the result only depends on the initial means, so that
+   * multiple runs with precomputed initial means can be executed concurrently
+   * with deterministic results.
+   *
+   * @return {@code false} if the algorithm uses additional randomness
+   */
+  protected boolean isDeterministicGivenInitialMeans() {
+    return true;
+  }
+
+  /**
+   * Minimum block size for partitioned parallel processing.
+   */
+  protected static final int BLOCKSIZE = 256;
+
   /**
    * Inner instance for a run, for better encapsulation, that encapsulates the
    * standard flow of most (but not all) k-means variations.
+   * <p>
+   * Assignment passes can be partitioned into blocks with
+   * {@link #assignBlocks}, which are processed in parallel when the data stores
+   * permit; changes to cluster sums and memberships are collected per block and
+   * merged in block order afterwards.
    *
    * @author Erich Schubert
    */
@@ -350,11 +485,27 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
      */
     protected final boolean isSquared;
 
+    /**
+     * Use the (squared) Euclidean kernel on raw arrays.
+     */
+    private final boolean euclidean;
+
     /**
      * Key for statistics logging.
      */
     protected String key;
 
+    /**
+     * Object ids, for partitioned processing.
+     */
+    protected ArrayDBIDs ids;
+
+    /**
+     * Minimum block size for partitioned processing; the size of the data set
+     * if the data stores do not permit concurrent writes.
+     */
+    protected int blocksize;
+
     /**
      * Constructor.
      *
@@ -365,6 +516,7 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
       this.relation = relation;
       this.df = df;
       this.isSquared = df.isSquared();
+      this.euclidean = df instanceof SquaredEuclideanDistanceFunction || df instanceof EuclideanDistanceFunction;
       this.means = means;
       this.k = means.length;
       final int guessedsize = (int) (relation.size() * 2. / k);
@@ -375,6 +527,9 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
       this.assignment = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
       this.varsum = new double[k];
       this.key = this.getClass().getName().replace("$Instance", "");
+      this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      // Only array-backed data stores can be written concurrently.
+      this.blocksize = relation.getDBIDs() instanceof DBIDRange ? BLOCKSIZE : Math.max(1, ids.size());
     }
 
     /**
@@ -386,7 +541,79 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
      */
     protected double distance(NumberVector x, NumberVector y) {
       ++diststat;
-      return df.distance(x, y);
+      return uncountedDistance(x, y);
+    }
+
+    /**
+     * Compute a distance, using the raw array kernel for Euclidean distances.
+     *
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    private double uncountedDistance(NumberVector x, NumberVector y) {
+      if(!euclidean) {
+        return df.distance(x, y);
+      }
+      final double d = squaredEuclidean(x, y);
+      return isSquared ? d : FastMath.sqrt(d);
+    }
+
+    /**
+     * Add distance computations that were counted elsewhere, e.g., in parallel
+     * blocks.
+     *
+     * @param count Number of distance computations
+     */
+    protected void countDistances(long count) {
+      diststat += count;
+    }
+
+    /**
+     * Run a partitioned assignment pass over all objects, in parallel if
+     * possible, then merge the partial results in block order.
+     *
+     * @param task Assignment task for a single block
+     * @param sums Cluster sums to update
+     * @return Number of objects reassigned
+     */
+    protected int assignBlocks(BlockAssignment task, double[][] sums) {
+      List<Partition> parts = ParallelExecutor.runBlocks(ids.size(), blocksize, (start, end) -> {
+        Partition p = new Partition();
+        DBIDArrayIter it = ids.iter().seek(start);
+        task.assign(it, end, p);
+        return p;
+      });
+      int changed = 0;
+      DBIDArrayIter it = ids.iter();
+      for(Partition p : parts) {
+        changed += p.changed;
+        diststat += p.diststat;
+        final int[] moves = p.moves.elements();
+        for(int i = 0, e = p.moves.size(); i < e; i += 3) {
+          it.seek(moves[i]);
+          if(moves[i + 1] >= 0) {
+            clusters.get(moves[i + 1]).remove(it);
+          }
+          clusters.get(moves[i + 2]).add(it);
+        }
+        if(p.sums != null) {
+          for(int j = 0; j < k; j++) {
+            VMath.plusEquals(sums[j], p.sums[j]);
+          }
+        }
+      }
+      return changed;
+    }
+
+    /**
+     * Process all objects in blocks, in parallel if possible. Only to be used
+     * for independent per-object updates, such as updating bounds.
+     *
+     * @param task Task for a single block
+     */
+    protected void processBlocks(BlockTask<?> task) {
+      ParallelExecutor.runBlocks(ids.size(), blocksize, task);
     }
 
     /**
@@ -596,6 +823,89 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> ex
      * @return Logger
      */
     abstract Logging getLogger();
+
+    /**
+     * Partial result of a block of an assignment pass: changes to the cluster
+     * sums, reassigned objects, and statistics. Per-object bounds can be
+     * written directly, as the blocks are disjoint.
+     *
+     * @author Erich Schubert
+     */
+    protected class Partition {
+      /**
+       * Changes to the cluster sums, allocated on demand.
+       */
+      double[][] sums;
+
+      /**
+       * Reassigned objects, as triples of offset, old cluster, and new cluster.
+       */
+      IntArrayList moves = new IntArrayList();
+
+      /**
+       * Number of reassigned objects.
+       */
+      int changed;
+
+      /**
+       * Number of distance computations.
+       */
+      long diststat;
+
+      /**
+       * Compute a distance (and count the distance computations).
+       *
+       * @param x First object
+       * @param y Second object
+       * @return Distance
+       */
+      protected double distance(NumberVector x, NumberVector y) {
+        ++diststat;
+        return uncountedDistance(x, y);
+      }
+
+      /**
+       * Record the assignment of an object to a cluster.
+       *
+       * @param it Object position
+       * @param vec Object vector
+       * @param from Previous cluster, -1 if not yet assigned
+       * @param to New cluster
+       */
+      protected void move(DBIDArrayIter it, NumberVector vec, int from, int to) {
+        if(sums == null) {
+          sums = new double[k][means[0].length];
+        }
+        if(from >= 0) {
+          plusMinusEquals(sums[to], sums[from], vec);
+        }
+        else {
+          plusEquals(sums[to], vec);
+        }
+        moves.add(it.getOffset());
+        moves.add(from);
+        moves.add(to);
+        assignment.putInt(it, to);
+        ++changed;
+      }
+    }
+
+    /**
+     * Assignment task for a single block of objects.
+     *
+     * @author Erich Schubert
+     */
+    @FunctionalInterface
+    protected interface BlockAssignment {
+      /**
+       * Assign the objects of the block.
+       *
+       * @param it Iterator, positioned at the beginning of the block
+       * @param end End offset (exclusive)
+       * @param p Partition for partial results
+       */
+      void assign(DBIDArrayIter it, int end, Partition p);
+    }
   }
 
   /**
@@ -20,6 +20,10 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.algorithm.AbstractAlgorithm;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.quality.KMeansQualityMeasure;
@@ -34,6 +38,7 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunctio
 import de.lmu.ifi.dbs.elki.distance.distancefunction.PrimitiveDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -44,6 +49,10 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Run K-Means multiple times, and keep the best run.
+ * <p>
+ * The initial means of all trials are chosen upfront, in trial order, and the
+ * trials are then run concurrently. The result is the same as when running
+ * the trials one after another.
  *
  * @author Stephan Baier
  * @author Erich Schubert
@@ -95,6 +104,9 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> e
     if(!(innerkMeans.getDistanceFunction() instanceof PrimitiveDistanceFunction)) {
       throw new AbortException("K-Means results can only be evaluated for primitive distance functions, got: " + innerkMeans.getDistanceFunction().getClass());
     }
+    if(supportsPresetMeans(innerkMeans)) {
+      return run(database, relation, presetMeans(this, database, relation));
+    }
     @SuppressWarnings("unchecked")
     final NumberVectorDistanceFunction<? super NumberVector> df = (NumberVectorDistanceFunction<? super NumberVector>) innerkMeans.getDistanceFunction();
 
@@ -116,6 +128,103 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> e
     return bestResult;
   }
 
+  /**
+   * Test whether a k-means variant can be run concurrently with precomputed
+   * initial means, see {@link #presetMeans}.
+   *
+   * @param kmeans K-means variant
+   * @return {@code true} if supported
+   */
+  protected static boolean supportsPresetMeans(KMeans<?, ?> kmeans) {
+    if(kmeans instanceof AbstractKMeans) {
+      return ((AbstractKMeans<?, ?>) kmeans).isDeterministicGivenInitialMeans();
+    }
+    return kmeans instanceof BestOfMultipleKMeans && supportsPresetMeans(((BestOfMultipleKMeans<?, ?>) kmeans).innerkMeans);
+  }
+
+  /**
+   * Choose the initial means of a k-means run upfront. For multiple trials,
+   * the initial means of all trials are chosen in trial order.
+   * <p>
+   * Initializers are not thread-safe, and draw their random seeds one after
+   * another from their random factory; choosing all initial means upfront
+   * keeps the per-trial seeds independent of the thread scheduling.
+   *
+   * @param kmeans K-means variant
+   * @param database Database
+   * @param relation Relation
+   * @param <V> Vector type
+   * @param <M> Model type
+   * @return Initial means for each run
+   */
+  protected static <V extends NumberVector, M extends MeanModel> List<double[][]> presetMeans(KMeans<V, M> kmeans, Database database, Relation<V> relation) {
+    if(kmeans instanceof AbstractKMeans) {
+      return Collections.singletonList(((AbstractKMeans<V, M>) kmeans).initialMeans(database, relation));
+    }
+    BestOfMultipleKMeans<V, M> best = (BestOfMultipleKMeans<V, M>) kmeans;
+    List<double[][]> inits = new ArrayList<>();
+    for(int i = 0; i < best.trials; i++) {
+      inits.addAll(presetMeans(best.innerkMeans, database, relation));
+    }
+    return inits;
+  }
+
+  /**
+   * Run k-means with the initial means chosen by {@link #presetMeans}.
+   *
+   * @param kmeans K-means variant
+   * @param database Database
+   * @param relation Relation
+   * @param inits Initial means
+   * @param <V> Vector type
+   * @param <M> Model type
+   * @return Clustering result
+   */
+  protected static <V extends NumberVector, M extends MeanModel> Clustering<M> run(KMeans<V, M> kmeans, Database database, Relation<V> relation, List<double[][]> inits) {
+    if(kmeans instanceof AbstractKMeans) {
+      return ((AbstractKMeans<V, M>) kmeans).run(database, relation, inits.get(0));
+    }
+    return ((BestOfMultipleKMeans<V, M>) kmeans).run(database, relation, inits);
+  }
+
+  /**
+   * Run the trials concurrently, with precomputed initial means.
+   *
+   * @param database Database
+   * @param relation Relation
+   * @param inits Initial means, from {@link #presetMeans}
+   * @return Best clustering
+   */
+  protected Clustering<M> run(Database database, Relation<V> relation, List<double[][]> inits) {
+    @SuppressWarnings("unchecked")
+    final NumberVectorDistanceFunction<? super NumberVector> df = (NumberVectorDistanceFunction<? super NumberVector>) innerkMeans.getDistanceFunction();
+    final int per = inits.size() / trials;
+    @SuppressWarnings("unchecked")
+    final Clustering<M>[] candidates = (Clustering<M>[]) new Clustering<?>[trials];
+    final double[] costs = new double[trials];
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("K-means iterations", trials, LOG) : null;
+    ParallelExecutor.runBlocks(trials, 1, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        candidates[i] = run(innerkMeans, database, relation, inits.subList(i * per, (i + 1) * per));
+        costs[i] = qualityMeasure.quality(candidates[i], df, relation);
+        LOG.incrementProcessed(prog);
+      }
+      return null;
+    });
+    LOG.ensureCompleted(prog);
+    // Choose in trial order, as in the sequential version.
+    Clustering<M> bestResult = null;
+    double bestCost = Double.NaN;
+    for(int i = 0; i < trials; i++) {
+      LOG.verbose("Cost of candidate " + i + ": " + costs[i]);
+      if(qualityMeasure.isBetter(costs[i], bestCost)) {
+        bestResult = candidates[i];
+        bestCost = costs[i];
+      }
+    }
+    return bestResult;
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return innerkMeans.getInputTypeRestriction();
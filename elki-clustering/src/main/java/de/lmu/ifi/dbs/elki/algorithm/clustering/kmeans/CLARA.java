@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithmUtil;
@@ -38,6 +40,8 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -48,15 +52,16 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
 import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 
 /**
  * Clustering Large Applications (CLARA) is a clustering method for large data
  * sets based on PAM, partitioning around medoids ({@link KMedoidsPAM}) based on
  * sampling.
  * <p>
- * TODO: use a triangular distance matrix, rather than a hash-map based cache,
- * for a bit better performance and less memory.
+ * The distances within each sample are precomputed into a float matrix.
+ * Independent samples (without keeping the previous medoids) are processed
+ * concurrently.
  * <p>
  * Reference:
  * <p>
@@ -143,36 +148,61 @@ public class CLARA<V> extends KMedoidsPAM<V> {
       LOG.warning("The sampling size is set to a very small value, it should be much larger than k.");
     }
 
-    CachedDistanceQuery<V> cachedQ = new CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
-
     double best = Double.POSITIVE_INFINITY;
     ArrayModifiableDBIDs bestmedoids = null;
     WritableIntegerDataStore bestclusters = null;
 
     Random rnd = random.getSingleThreadedRandom();
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Processing random samples", numsamples, LOG) : null;
-    for(int j = 0; j < numsamples; j++) {
-      DBIDs rids = randomSample(ids, samplesize, rnd, keepmed ? bestmedoids : null);
-      cachedQ.clear(); // TODO: an actual matrix would be better.
-
-      // Choose initial medoids
-      ArrayModifiableDBIDs medoids = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ));
-      // Setup cluster assignment store
-      WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
-      double score = new /* PAM */Instance(cachedQ, rids, assignment).run(medoids, maxiter) //
-          + assignRemainingToNearestCluster(medoids, ids, rids, assignment, distQ);
-      if(LOG.isStatistics()) {
-        LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
-      }
-      if(score < best) {
-        best = score;
-        bestmedoids = medoids;
-        bestclusters = assignment;
+    // Independent samples are processed concurrently, one per thread, to bound
+    // the memory of the distance matrixes and assignments; otherwise each
+    // sample depends on the best medoids found so far. The samples are drawn
+    // in the same order either way, so the result does not depend on the
+    // number of threads.
+    final int batchsize = keepmed ? 1 : Math.max(1, ParallelCore.getCore().getParallelism());
+    for(int j = 0; j < numsamples; j += batchsize) {
+      final int num = Math.min(batchsize, numsamples - j);
+      // Draw the samples and choose the initial medoids in sample order, as
+      // the random generators are not thread-safe.
+      final List<CachedDistanceQuery<V>> cachedQs = new ArrayList<>(num);
+      final List<ArrayModifiableDBIDs> medoids = new ArrayList<>(num);
+      for(int i = 0; i < num; i++) {
+        DBIDs rids = randomSample(ids, samplesize, rnd, keepmed ? bestmedoids : null);
+        CachedDistanceQuery<V> cachedQ = new CachedDistanceQuery<V>(distQ, rids);
+        cachedQs.add(cachedQ);
+        // Choose initial medoids
+        medoids.add(DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ)));
       }
-      if(cachedQ.hasUncachedQueries()) {
-        LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+      final WritableIntegerDataStore[] assignments = new WritableIntegerDataStore[num];
+      final double[] scores = new double[num];
+      final boolean[] uncached = new boolean[num];
+      ParallelExecutor.runBlocks(num, 1, (start, end) -> {
+        for(int i = start; i < end; i++) {
+          final CachedDistanceQuery<V> cachedQ = cachedQs.get(i);
+          // Setup cluster assignment store
+          assignments[i] = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+          scores[i] = new /* PAM */Instance(cachedQ, cachedQ.sample, assignments[i]).run(medoids.get(i), maxiter) //
+              + assignRemainingToNearestCluster(medoids.get(i), ids, cachedQ.sample, assignments[i], distQ);
+          uncached[i] = cachedQ.hasUncachedQueries();
+          cachedQs.set(i, null); // Release the distance matrix early.
+        }
+        return null;
+      });
+      for(int i = 0; i < num; i++) {
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + (j + i) + ".cost", scores[i]));
+        }
+        if(scores[i] < best) {
+          best = scores[i];
+          bestmedoids = medoids.get(i);
+          bestclusters = assignments[i];
+        }
+        assignments[i] = null; // Only keep the best assignment.
+        if(uncached[i]) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
+        LOG.incrementProcessed(prog);
       }
-      LOG.incrementProcessed(prog);
     }
     LOG.ensureCompleted(prog);
     if(LOG.isStatistics()) {
@@ -230,31 +260,48 @@ public class CLARA<V> extends KMedoidsPAM<V> {
    * @return Sum of distances.
    */
   static double assignRemainingToNearestCluster(ArrayDBIDs means, DBIDs ids, DBIDs rids, WritableIntegerDataStore assignment, DistanceQuery<?> distQ) {
-    rids = DBIDUtil.ensureSet(rids); // Ensure we have fast contains
-    double distsum = 0.;
-    DBIDArrayIter miter = means.iter();
-    for(DBIDIter iditer = distQ.getRelation().iterDBIDs(); iditer.valid(); iditer.advance()) {
-      if(rids.contains(iditer)) {
-        continue;
-      }
-      double mindist = Double.POSITIVE_INFINITY;
-      int minIndex = 0;
-      miter.seek(0); // Reuse iterator.
-      for(int i = 0; miter.valid(); miter.advance(), i++) {
-        double dist = distQ.distance(iditer, miter);
-        if(dist < mindist) {
-          minIndex = i;
-          mindist = dist;
+    final DBIDs sample = DBIDUtil.ensureSet(rids); // Ensure we have fast contains
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    final int[] minIndex = new int[aids.size()];
+    final double[] minDist = new double[aids.size()];
+    ParallelExecutor.runBlocks(aids.size(), (start, end) -> {
+      DBIDArrayIter miter = means.iter();
+      for(DBIDArrayIter iditer = aids.iter().seek(start); iditer.getOffset() < end; iditer.advance()) {
+        if(sample.contains(iditer)) {
+          minIndex[iditer.getOffset()] = -1;
+          continue;
         }
+        double mindist = Double.POSITIVE_INFINITY;
+        int minidx = 0;
+        miter.seek(0); // Reuse iterator.
+        for(int i = 0; miter.valid(); miter.advance(), i++) {
+          double dist = distQ.distance(iditer, miter);
+          if(dist < mindist) {
+            minidx = i;
+            mindist = dist;
+          }
+        }
+        minIndex[iditer.getOffset()] = minidx;
+        minDist[iditer.getOffset()] = mindist;
+      }
+      return null;
+    });
+    // Store the assignment sequentially, as the data store may not be
+    // thread-safe, and aggregate in a deterministic order.
+    double distsum = 0.;
+    for(DBIDArrayIter iditer = aids.iter(); iditer.valid(); iditer.advance()) {
+      final int minidx = minIndex[iditer.getOffset()];
+      if(minidx >= 0) {
+        distsum += minDist[iditer.getOffset()];
+        assignment.put(iditer, minidx);
       }
-      distsum += mindist;
-      assignment.put(iditer, minIndex);
     }
     return distsum;
   }
 
   /**
-   * Cached distance query.
+   * Distance cache for a sample, storing all pairwise distances in a
+   * triangular matrix of floats, which is computed in parallel.
    *
    * @author Erich Schubert
    *
@@ -267,9 +314,20 @@ public class CLARA<V> extends KMedoidsPAM<V> {
     DistanceQuery<V> inner;
 
     /**
-     * Cache
+     * Sample objects.
+     */
+    ArrayDBIDs sample;
+
+    /**
+     * Offsets in the sample, by internal DBID index.
+     */
+    Int2IntOpenHashMap offsets;
+
+    /**
+     * Triangular distance matrix; row i contains the distances to the objects
+     * before i in the sample.
      */
-    Long2DoubleOpenHashMap cache;
+    float[] matrix;
 
     /**
      * Number of uncacheable queries
@@ -280,46 +338,57 @@ public class CLARA<V> extends KMedoidsPAM<V> {
      * Constructor.
      *
      * @param inner Inner query
-     * @param size Initial size of map
+     * @param sample Sample to cache the distances of
      */
-    public CachedDistanceQuery(DistanceQuery<V> inner, int size) {
+    public CachedDistanceQuery(DistanceQuery<V> inner, DBIDs sample) {
       this.inner = inner;
-      this.cache = new Long2DoubleOpenHashMap(size);
-      this.cache.defaultReturnValue(Double.NaN);
+      this.sample = DBIDUtil.ensureArray(sample);
+      final int size = this.sample.size();
+      this.offsets = new Int2IntOpenHashMap(size);
+      this.offsets.defaultReturnValue(-1);
+      for(DBIDArrayIter it = this.sample.iter(); it.valid(); it.advance()) {
+        offsets.put(it.internalGetIndex(), it.getOffset());
+      }
+      this.matrix = new float[(int) (((long) size * (size - 1)) >>> 1)];
+      ParallelExecutor.runBlocks(size, 64, (start, end) -> {
+        DBIDArrayIter a = this.sample.iter(), b = this.sample.iter();
+        for(a.seek(start); a.getOffset() < end; a.advance()) {
+          final int base = row(a.getOffset());
+          for(b.seek(0); b.getOffset() < a.getOffset(); b.advance()) {
+            matrix[base + b.getOffset()] = (float) inner.distance(a, b);
+          }
+        }
+        return null;
+      });
     }
 
     /**
-     * Check if any queries were uncached (not using DBIDs).
+     * Offset of a row in the triangular matrix.
      *
-     * @return True if uncached distances were used
+     * @param i Row
+     * @return Offset
      */
-    public boolean hasUncachedQueries() {
-      return bad > 0;
+    private static int row(int i) {
+      return (int) (((long) i * (i - 1)) >>> 1);
     }
 
     /**
-     * Clear the distance cache.
+     * Check if any queries were uncached (not using DBIDs).
+     *
+     * @return True if uncached distances were used
      */
-    public void clear() {
-      cache.clear();
-      bad = 0;
+    public boolean hasUncachedQueries() {
+      return bad > 0;
     }
 
     @Override
     public double distance(DBIDRef id1, DBIDRef id2) {
-      if(DBIDUtil.equal(id1, id2)) {
-        return 0.;
-      }
-      if(DBIDUtil.compare(id1, id2) > 0) {
-        return distance(id2, id1);
-      }
-      int i = id1.internalGetIndex(), j = id2.internalGetIndex();
-      long idx = (((long) i) << 32) | j;
-      double v = cache.get(idx);
-      if(v != v) {
-        cache.put(idx, v = inner.distance(id1, id2));
+      final int i = offsets.get(id1.internalGetIndex());
+      final int j = offsets.get(id2.internalGetIndex());
+      if(i < 0 || j < 0) { // Not in the sample
+        return DBIDUtil.equal(id1, id2) ? 0. : inner.distance(id1, id2);
       }
-      return v;
+      return i == j ? 0. : i > j ? matrix[row(i) + j] : matrix[row(j) + i];
     }
 
     @Override
@@ -236,7 +236,7 @@ public class CLARANS<V> extends AbstractDistanceBasedAlgorithm<V, Clustering<Med
     /**
      * Ids to process.
      */
-    DBIDs ids;
+    ArrayDBIDs ids;
 
     /**
      * Distance function to use.
@@ -283,7 +283,7 @@ public class CLARANS<V> extends AbstractDistanceBasedAlgorithm<V, Clustering<Med
      */
     public Assignment(DistanceQuery<?> distQ, DBIDs ids, int k) {
       this.distQ = distQ;
-      this.ids = ids;
+      this.ids = DBIDUtil.ensureArray(ids);
       this.medoids = DBIDUtil.newArray(k);
       this.miter = medoids.iter();
       this.assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
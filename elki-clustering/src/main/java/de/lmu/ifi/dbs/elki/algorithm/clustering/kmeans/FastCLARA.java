@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.ClusteringAlgorithmUtil;
@@ -38,6 +40,8 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -53,8 +57,9 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
  * improvements, to increase scalability in the number of clusters. This variant
  * will also default to twice the sample size, to improve quality.
  * <p>
- * TODO: use a triangular distance matrix, rather than a hash-map based cache,
- * for a bit better performance and less memory.
+ * The distances within each sample are precomputed into a float matrix.
+ * Independent samples (without keeping the previous medoids) are processed
+ * concurrently.
  * <p>
  * Reference:
  * <p>
@@ -132,36 +137,61 @@ public class FastCLARA<V> extends KMedoidsFastPAM<V> {
       LOG.warning("The sampling size is set to a very small value, it should be much larger than k.");
     }
 
-    CLARA.CachedDistanceQuery<V> cachedQ = new CLARA.CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
-
     double best = Double.POSITIVE_INFINITY;
     ArrayModifiableDBIDs bestmedoids = null;
     WritableIntegerDataStore bestclusters = null;
 
     Random rnd = random.getSingleThreadedRandom();
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Processing random samples", numsamples, LOG) : null;
-    for(int j = 0; j < numsamples; j++) {
-      DBIDs rids = CLARA.randomSample(ids, samplesize, rnd, keepmed ? bestmedoids : null);
-      cachedQ.clear(); // TODO: an actual matrix would be better.
-
-      // Choose initial medoids
-      ArrayModifiableDBIDs medoids = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ));
-      // Setup cluster assignment store
-      WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
-      double score = new /* PAM */Instance(cachedQ, rids, assignment, fasttol).run(medoids, maxiter) //
-          + CLARA.assignRemainingToNearestCluster(medoids, ids, rids, assignment, distQ);
-      if(LOG.isStatistics()) {
-        LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
-      }
-      if(score < best) {
-        best = score;
-        bestmedoids = medoids;
-        bestclusters = assignment;
+    // Independent samples are processed concurrently, one per thread, to bound
+    // the memory of the distance matrixes and assignments; otherwise each
+    // sample depends on the best medoids found so far. The samples are drawn
+    // in the same order either way, so the result does not depend on the
+    // number of threads.
+    final int batchsize = keepmed ? 1 : Math.max(1, ParallelCore.getCore().getParallelism());
+    for(int j = 0; j < numsamples; j += batchsize) {
+      final int num = Math.min(batchsize, numsamples - j);
+      // Draw the samples and choose the initial medoids in sample order, as
+      // the random generators are not thread-safe.
+      final List<CLARA.CachedDistanceQuery<V>> cachedQs = new ArrayList<>(num);
+      final List<ArrayModifiableDBIDs> medoids = new ArrayList<>(num);
+      for(int i = 0; i < num; i++) {
+        DBIDs rids = CLARA.randomSample(ids, samplesize, rnd, keepmed ? bestmedoids : null);
+        CLARA.CachedDistanceQuery<V> cachedQ = new CLARA.CachedDistanceQuery<V>(distQ, rids);
+        cachedQs.add(cachedQ);
+        // Choose initial medoids
+        medoids.add(DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ)));
       }
-      if(cachedQ.hasUncachedQueries()) {
-        LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+      final WritableIntegerDataStore[] assignments = new WritableIntegerDataStore[num];
+      final double[] scores = new double[num];
+      final boolean[] uncached = new boolean[num];
+      ParallelExecutor.runBlocks(num, 1, (start, end) -> {
+        for(int i = start; i < end; i++) {
+          final CLARA.CachedDistanceQuery<V> cachedQ = cachedQs.get(i);
+          // Setup cluster assignment store
+          assignments[i] = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+          scores[i] = new /* PAM */Instance(cachedQ, cachedQ.sample, assignments[i], fasttol).run(medoids.get(i), maxiter) //
+              + CLARA.assignRemainingToNearestCluster(medoids.get(i), ids, cachedQ.sample, assignments[i], distQ);
+          uncached[i] = cachedQ.hasUncachedQueries();
+          cachedQs.set(i, null); // Release the distance matrix early.
+        }
+        return null;
+      });
+      for(int i = 0; i < num; i++) {
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + (j + i) + ".cost", scores[i]));
+        }
+        if(scores[i] < best) {
+          best = scores[i];
+          bestmedoids = medoids.get(i);
+          bestclusters = assignments[i];
+        }
+        assignments[i] = null; // Only keep the best assignment.
+        if(uncached[i]) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
+        LOG.incrementProcessed(prog);
       }
-      LOG.incrementProcessed(prog);
     }
     LOG.ensureCompleted(prog);
     if(LOG.isStatistics()) {
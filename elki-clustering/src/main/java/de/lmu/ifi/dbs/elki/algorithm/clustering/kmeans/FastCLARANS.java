@@ -35,6 +35,7 @@ import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
@@ -46,6 +47,9 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
  * this means sampling fewer non-medoids, we suggest to increase the subsampling
  * rate slightly to get higher quality than CLARANS, at better runtime.
  * <p>
+ * The cost of each candidate swap is computed in parallel on chunks of the
+ * data set.
+ * <p>
  * Reference:
  * <p>
  * Erich Schubert, Peter J. Rousseeuw<br>
@@ -186,6 +190,12 @@ public class FastCLARANS<V> extends CLARANS<V> {
    * @author Erich Schubert
    */
   protected static class Assignment extends CLARANS.Assignment {
+    /**
+     * Number of objects per chunk of the parallel cost computation. The chunks
+     * do not depend on the number of threads, to keep results reproducible.
+     */
+    private static final int CHUNKSIZE = 4096;
+
     /**
      * Array for storing the per-medoid costs.
      */
@@ -215,10 +225,51 @@ public class FastCLARANS<V> extends CLARANS<V> {
      * @return Cost change
      */
     protected double computeCostDifferential(DBIDRef h) {
+      final int k = cost.length, size = ids.size();
       Arrays.fill(cost, 0);
+      final int nchunks = (size + CHUNKSIZE - 1) / CHUNKSIZE;
+      if(nchunks <= 1) {
+        addCostDifferential(h, 0, size, cost);
+      }
+      else {
+        final DBIDVar hv = DBIDUtil.newVar(h);
+        final double[][] partial = new double[nchunks][];
+        ParallelExecutor.runBlocks(nchunks, 1, (start, end) -> {
+          for(int c = start; c < end; c++) {
+            addCostDifferential(hv, c * CHUNKSIZE, Math.min(size, (c + 1) * CHUNKSIZE), partial[c] = new double[k]);
+          }
+          return null;
+        });
+        // Merge in chunk order, for reproducible results.
+        for(double[] p : partial) {
+          for(int i = 0; i < k; i++) {
+            cost[i] += p[i];
+          }
+        }
+      }
+      double min = cost[0];
+      lastbest = 0;
+      for(int i = 1; i < k; i++) {
+        if(cost[i] < min) {
+          min = cost[i];
+          lastbest = i;
+        }
+      }
+      return min;
+    }
+
+    /**
+     * Add the reassignment costs of a range of objects.
+     *
+     * @param h Current object to swap with any medoid.
+     * @param start First object offset
+     * @param end End offset (exclusive)
+     * @param cost Cost aggregation array, must have size k
+     */
+    private void addCostDifferential(DBIDRef h, int start, int end, double[] cost) {
       final int k = cost.length;
       // Compute costs of reassigning other objects j:
-      for(DBIDIter j = ids.iter(); j.valid(); j.advance()) {
+      for(DBIDArrayIter j = ids.iter().seek(start); j.getOffset() < end; j.advance()) {
         if(DBIDUtil.equal(h, j)) {
           continue;
         }
@@ -240,15 +291,6 @@ public class FastCLARANS<V> extends CLARANS<V> {
           }
         }
       }
-      double min = cost[0];
-      lastbest = 0;
-      for(int i = 1; i < k; i++) {
-        if(cost[i] < min) {
-          min = cost[i];
-          lastbest = i;
-        }
-      }
-      return min;
     }
 
     /**
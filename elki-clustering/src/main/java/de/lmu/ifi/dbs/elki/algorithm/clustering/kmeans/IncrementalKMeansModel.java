@@ -0,0 +1,328 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.MeanModel;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+
+import net.jafama.FastMath;
+
+/**
+ * Incremental k-means model, to assign new objects to the nearest center and
+ * to update the centers online, without re-running k-means on the whole data
+ * set.
+ * <p>
+ * Nearest center lookups use the sorted center-to-center distances (as in
+ * {@link KMeansSort}) and the triangle inequality (as in {@link KMeansElkan})
+ * to skip centers that cannot be closer. Centers are updated MacQueen-style,
+ * with a learning rate of one over the number of objects assigned so far.
+ * After single updates, the distance tables are not recomputed; instead the
+ * bounds are loosened by the distance each center has moved since, until the
+ * tables are rebuilt with {@link #refresh()} or a batch update.
+ * <p>
+ * Lookups only read the model, and may run concurrently with each other;
+ * updates must not run concurrently with other operations.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class IncrementalKMeansModel {
+  /**
+   * Distance function.
+   */
+  private final NumberVectorDistanceFunction<?> df;
+
+  /**
+   * Use the (squared) Euclidean kernel.
+   */
+  private final boolean euclidean;
+
+  /**
+   * The distance is squared, and its square root is a metric.
+   */
+  private final boolean squared;
+
+  /**
+   * The triangle inequality can be used for pruning.
+   */
+  private final boolean prune;
+
+  /**
+   * Cluster centers.
+   */
+  private final double[][] means;
+
+  /**
+   * Number of objects assigned to each center.
+   */
+  private final long[] counts;
+
+  /**
+   * Half center-to-center distances, at the last refresh.
+   */
+  private final double[][] cdist;
+
+  /**
+   * Other centers, sorted by distance.
+   */
+  private final int[][] cnum;
+
+  /**
+   * Distance each center moved since the last refresh.
+   */
+  private final double[] moved;
+
+  /**
+   * Maximum distance moved since the last refresh.
+   */
+  private double maxmoved;
+
+  /**
+   * Scratch buffer for updating a center.
+   */
+  private final double[] buf;
+
+  /**
+   * Constructor.
+   *
+   * @param means Initial centers (will be copied)
+   * @param counts Number of objects represented by each center so far
+   * @param df Distance function
+   */
+  public IncrementalKMeansModel(double[][] means, long[] counts, NumberVectorDistanceFunction<?> df) {
+    final int k = means.length;
+    assert (counts.length == k);
+    this.df = df;
+    this.euclidean = df instanceof SquaredEuclideanDistanceFunction || df instanceof EuclideanDistanceFunction;
+    this.squared = df.isSquared();
+    this.prune = squared || df.isMetric();
+    this.means = new double[k][];
+    for(int i = 0; i < k; i++) {
+      this.means[i] = means[i].clone();
+    }
+    this.counts = counts.clone();
+    this.cdist = new double[k][k];
+    this.cnum = new int[k][k - 1];
+    this.moved = new double[k];
+    this.buf = new double[means[0].length];
+    refresh();
+  }
+
+  /**
+   * Build an incremental model from a k-means result.
+   *
+   * @param clustering Clustering result
+   * @param df Distance function
+   * @return Model, with the cluster sizes as initial counts
+   */
+  public static IncrementalKMeansModel of(Clustering<? extends MeanModel> clustering, NumberVectorDistanceFunction<?> df) {
+    List<? extends Cluster<? extends MeanModel>> clusters = clustering.getAllClusters();
+    double[][] means = new double[clusters.size()][];
+    long[] counts = new long[clusters.size()];
+    for(int i = 0; i < means.length; i++) {
+      Cluster<? extends MeanModel> cluster = clusters.get(i);
+      means[i] = cluster.getModel().getMean();
+      counts[i] = cluster.size();
+    }
+    return new IncrementalKMeansModel(means, counts, df);
+  }
+
+  /**
+   * Recompute the center-to-center distance tables.
+   */
+  public void refresh() {
+    final int k = means.length;
+    for(int i = 1; i < k; i++) {
+      DoubleVector mi = DoubleVector.wrap(means[i]);
+      for(int j = 0; j < i; j++) {
+        cdist[i][j] = cdist[j][i] = .5 * metricDistance(mi, DoubleVector.wrap(means[j]));
+      }
+    }
+    if(k > 1) {
+      AbstractKMeans.nearestMeans(cdist, cnum);
+    }
+    Arrays.fill(moved, 0.);
+    maxmoved = 0.;
+  }
+
+  /**
+   * Find the nearest center.
+   *
+   * @param vec Object
+   * @return Index of the nearest center
+   */
+  public int nearest(NumberVector vec) {
+    return nearest(vec, 0);
+  }
+
+  /**
+   * Find the nearest center, starting with a guess such as the previous
+   * assignment of the object.
+   *
+   * @param vec Object
+   * @param ini Initial guess
+   * @return Index of the nearest center
+   */
+  public int nearest(NumberVector vec, int ini) {
+    final int k = means.length;
+    int minIndex = ini;
+    double mindist = metricDistance(vec, DoubleVector.wrap(means[ini]));
+    if(!prune) {
+      for(int i = 0; i < k; i++) {
+        if(i == ini) {
+          continue;
+        }
+        double dist = metricDistance(vec, DoubleVector.wrap(means[i]));
+        if(dist < mindist) {
+          minIndex = i;
+          mindist = dist;
+        }
+      }
+      return minIndex;
+    }
+    // Centers further than this (in sorted order) cannot be closer:
+    final double threshold = mindist + .5 * (moved[ini] + maxmoved);
+    for(int i : cnum[ini]) {
+      if(cdist[ini][i] >= threshold) { // Sort pruning
+        break;
+      }
+      if(cdist[minIndex][i] - .5 * (moved[minIndex] + moved[i]) >= mindist) {
+        continue; // Triangle inequality pruning
+      }
+      double dist = metricDistance(vec, DoubleVector.wrap(means[i]));
+      if(dist < mindist) {
+        minIndex = i;
+        mindist = dist;
+      }
+    }
+    return minIndex;
+  }
+
+  /**
+   * Find the nearest centers of a batch of objects, in parallel.
+   *
+   * @param batch Objects
+   * @param assign Output array of assignments; valid entries are used as
+   *        initial guesses
+   * @return Assignment array
+   */
+  public int[] nearest(List<? extends NumberVector> batch, int[] assign) {
+    ParallelExecutor.runBlocks(batch.size(), AbstractKMeans.BLOCKSIZE, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        assign[i] = nearest(batch.get(i), assign[i] >= 0 && assign[i] < means.length ? assign[i] : 0);
+      }
+      return null;
+    });
+    return assign;
+  }
+
+  /**
+   * Assign an object to the nearest center, and move this center towards the
+   * object.
+   *
+   * @param vec Object
+   * @return Index of the nearest center
+   */
+  public int learn(NumberVector vec) {
+    final int c = nearest(vec, 0);
+    final double[] mean = means[c];
+    System.arraycopy(mean, 0, buf, 0, mean.length);
+    final double eta = 1. / ++counts[c];
+    for(int d = 0; d < mean.length; d++) {
+      mean[d] += eta * (vec.doubleValue(d) - mean[d]);
+    }
+    if(prune) {
+      final double m = moved[c] += metricDistance(DoubleVector.wrap(buf), DoubleVector.wrap(mean));
+      maxmoved = m > maxmoved ? m : maxmoved;
+    }
+    return c;
+  }
+
+  /**
+   * Assign a batch of objects in parallel, then update the centers in batch
+   * order, and rebuild the distance tables.
+   *
+   * @param batch Objects
+   * @param assign Output array of assignments; valid entries are used as
+   *        initial guesses
+   * @return Assignment array
+   */
+  public int[] learn(List<? extends NumberVector> batch, int[] assign) {
+    nearest(batch, assign);
+    KMeansMiniBatch.updateMeans(batch, assign, means, counts);
+    refresh();
+    return assign;
+  }
+
+  /**
+   * Distance in the metric space, i.e., the square root of squared distances.
+   *
+   * @param x First vector
+   * @param y Second vector
+   * @return Distance
+   */
+  private double metricDistance(NumberVector x, NumberVector y) {
+    if(euclidean) {
+      return FastMath.sqrt(AbstractKMeans.squaredEuclidean(x, y));
+    }
+    final double d = df.distance(x, y);
+    return squared ? FastMath.sqrt(d) : d;
+  }
+
+  /**
+   * Get the number of centers.
+   *
+   * @return Number of centers
+   */
+  public int getK() {
+    return means.length;
+  }
+
+  /**
+   * Get a copy of the current center.
+   *
+   * @param i Center number
+   * @return Center
+   */
+  public double[] getMean(int i) {
+    return means[i].clone();
+  }
+
+  /**
+   * Get the number of objects represented by a center.
+   *
+   * @param i Center number
+   * @return Count
+   */
+  public long getCount(int i) {
+    return counts[i];
+  }
+}
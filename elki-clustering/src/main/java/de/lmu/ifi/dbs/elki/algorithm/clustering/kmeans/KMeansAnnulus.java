@@ -31,7 +31,7 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
@@ -94,8 +94,8 @@ public class KMeansAnnulus<V extends NumberVector> extends KMeansHamerly<V> {
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
@@ -129,15 +129,14 @@ public class KMeansAnnulus<V extends NumberVector> extends KMeansHamerly<V> {
     }
 
     @Override
-    protected int initialAssignToNearestCluster() {
-      assert (k == means.length);
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+    protected void initialAssignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         NumberVector fv = relation.get(it);
         // Find closest center, and distance to two closest centers
         double min1 = Double.POSITIVE_INFINITY, min2 = Double.POSITIVE_INFINITY;
         int minIndex = -1, secIndex = -1;
         for(int i = 0; i < k; i++) {
-          double dist = distance(fv, DoubleVector.wrap(means[i]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[i]));
           if(dist < min1) {
             secIndex = minIndex;
             minIndex = i;
@@ -150,14 +149,11 @@ public class KMeansAnnulus<V extends NumberVector> extends KMeansHamerly<V> {
           }
         }
         // Assign to nearest cluster.
-        clusters.get(minIndex).add(it);
-        assignment.putInt(it, minIndex);
+        p.move(it, fv, -1, minIndex);
         second.putInt(it, secIndex);
-        plusEquals(sums[minIndex], fv);
         upper.putDouble(it, isSquared ? FastMath.sqrt(min1) : min1);
         lower.putDouble(it, isSquared ? FastMath.sqrt(min2) : min2);
       }
-      return relation.size();
     }
 
     /**
@@ -185,8 +181,12 @@ public class KMeansAnnulus<V extends NumberVector> extends KMeansHamerly<V> {
     protected int assignToNearestCluster() {
       assert (k == means.length);
       orderMeans();
-      int changed = 0;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      return assignBlocks(this::assignBlock, sums);
+    }
+
+    @Override
+    protected void assignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         final int cur = assignment.intValue(it);
         // Compute the current bound:
         final double z = lower.doubleValue(it);
@@ -197,14 +197,14 @@ public class KMeansAnnulus<V extends NumberVector> extends KMeansHamerly<V> {
         }
         // Update the upper bound
         NumberVector fv = relation.get(it);
-        double curd2 = distance(fv, DoubleVector.wrap(means[cur]));
+        double curd2 = p.distance(fv, DoubleVector.wrap(means[cur]));
         u = isSquared ? FastMath.sqrt(curd2) : curd2;
         upper.putDouble(it, u);
         if(u <= z || u <= sa) {
           continue;
         }
         final int sec = second.intValue(it);
-        double secd2 = distance(fv, DoubleVector.wrap(means[sec]));
+        double secd2 = p.distance(fv, DoubleVector.wrap(means[sec]));
         double secd = isSquared ? FastMath.sqrt(secd2) : secd2;
         double r = u > secd ? u : secd;
         final double norm = EuclideanDistanceFunction.STATIC.norm(fv);
@@ -229,7 +229,7 @@ public class KMeansAnnulus<V extends NumberVector> extends KMeansHamerly<V> {
           if(d > r) {
             break; // No longer a candidate
           }
-          double dist = distance(fv, DoubleVector.wrap(means[c]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[c]));
           if(dist < min1) {
             secIndex = minIndex;
             minIndex = c;
@@ -242,17 +242,12 @@ public class KMeansAnnulus<V extends NumberVector> extends KMeansHamerly<V> {
           }
         }
         if(minIndex != cur) {
-          clusters.get(minIndex).add(it);
-          clusters.get(cur).remove(it);
-          assignment.putInt(it, minIndex);
+          p.move(it, fv, cur, minIndex);
           second.putInt(it, secIndex);
-          plusMinusEquals(sums[minIndex], sums[cur], fv);
-          ++changed;
           upper.putDouble(it, min1 == curd2 ? u : isSquared ? FastMath.sqrt(min1) : min1);
         }
         lower.putDouble(it, min2 == curd2 ? u : isSquared ? FastMath.sqrt(min2) : min2);
       }
-      return changed;
     }
 
     @Override
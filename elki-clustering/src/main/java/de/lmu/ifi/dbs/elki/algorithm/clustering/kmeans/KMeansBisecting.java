@@ -51,6 +51,11 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
  * partitioning into two clusters, then repeated splitting of the largest
  * cluster to get additional clusters.
  * <p>
+ * The clusters are split one at a time, and the initial means of each split
+ * are chosen when it is performed, so the random seeds are drawn in the same
+ * order as in previous versions. Each split can run in parallel, e.g., the
+ * trials of {@link BestOfMultipleKMeans}.
+ * <p>
  * Reference:
  * <p>
  * M. Steinbach, G. Karypis, V. Kumar<br>
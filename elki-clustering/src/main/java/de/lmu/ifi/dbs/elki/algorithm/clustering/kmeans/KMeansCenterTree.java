@@ -0,0 +1,673 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Hamerly's k-means with a kd-tree over the cluster centers, for very large k.
+ * <p>
+ * Instead of a k×k table of center distances, the centers are indexed with a
+ * small kd-tree that is rebuilt in every iteration. The tree is used to find
+ * the nearest other center (for the separation bound), and the two nearest
+ * centers of objects whose bounds fail. The cost per iteration on the center
+ * side is thus about O(k log k) instead of O(k²).
+ * <p>
+ * Optionally, the initial centers are obtained by clustering a lightweight
+ * coreset, a weighted sample of the data where objects far from the data
+ * mean are sampled with higher probability. The full data set is then only
+ * used for the final refinement.
+ * <p>
+ * This requires (squared) Euclidean distance.
+ * <p>
+ * Reference:
+ * <p>
+ * O. Bachem, M. Lucic, A. Krause<br>
+ * Scalable k-Means Clustering via Lightweight Coresets<br>
+ * Proc. 24th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+@Reference(authors = "O. Bachem, M. Lucic, A. Krause", //
+    title = "Scalable k-Means Clustering via Lightweight Coresets", //
+    booktitle = "Proc. 24th ACM SIGKDD Int. Conf. on Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1145/3219819.3219973", //
+    bibkey = "DBLP:conf/kdd/BachemL018")
+public class KMeansCenterTree<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(KMeansCenterTree.class);
+
+  /**
+   * Maximum number of centers in a leaf of the center tree.
+   */
+  private static final int LEAFSIZE = 8;
+
+  /**
+   * Flag whether to compute the final variance statistic.
+   */
+  protected boolean varstat = false;
+
+  /**
+   * Coreset size, 0 to disable.
+   */
+  protected int coresetsize;
+
+  /**
+   * Random generator for sampling the coreset.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   * @param coresetsize Coreset size, 0 to disable
+   * @param rnd Random generator for sampling the coreset
+   */
+  public KMeansCenterTree(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization initializer, boolean varstat, int coresetsize, RandomFactory rnd) {
+    super(distanceFunction, k, maxiter, initializer);
+    this.varstat = varstat;
+    this.coresetsize = coresetsize;
+    this.rnd = rnd;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
+    if(coresetsize > 0 && coresetsize < relation.size()) {
+      if(!KMeansKDTree.isEuclidean(getDistanceFunction())) {
+        throw new AbortException("The center tree requires Euclidean distance.");
+      }
+      if(coresetsize < k) {
+        throw new AbortException("The coreset size must be at least k=" + k);
+      }
+      // The initial means are chosen on the coreset, not on the full data.
+      return run(database, relation, coresetMeans(relation, rnd.getSingleThreadedRandom()));
+    }
+    return super.run(database, relation);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    if(!KMeansKDTree.isEuclidean(getDistanceFunction())) {
+      throw new AbortException("The center tree requires Euclidean distance.");
+    }
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Cluster a lightweight coreset, to obtain the initial means.
+   *
+   * @param relation Data relation
+   * @param random Random generator for sampling
+   * @return Initial means
+   */
+  protected double[][] coresetMeans(Relation<V> relation, Random random) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int n = ids.size(), dim = RelationUtil.dimensionality(relation);
+    // Data mean, aggregated in block order:
+    double[] mean = new double[dim];
+    for(double[] part : ParallelExecutor.runBlocks(n, (start, end) -> {
+      double[] sum = new double[dim];
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        plusEquals(sum, relation.get(it));
+      }
+      return sum;
+    })) {
+      VMath.plusEquals(mean, part);
+    }
+    VMath.timesEquals(mean, 1. / n);
+    // Squared distances to the mean:
+    final DoubleVector mvec = DoubleVector.wrap(mean);
+    final double[] cum = new double[n];
+    ParallelExecutor.runBlocks(n, (start, end) -> {
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        cum[it.getOffset()] = squaredEuclidean(relation.get(it), mvec);
+      }
+      return null;
+    });
+    double total = 0.;
+    for(double d : cum) {
+      total += d;
+    }
+    // Cumulative sampling distribution q(x) = 1/2n + d(x,mean)^2 / 2 total
+    final double uniform = .5 / n, scale = total > 0 ? .5 / total : 0.;
+    double acc = 0.;
+    for(int i = 0; i < n; i++) {
+      cum[i] = acc += uniform + (total > 0 ? scale * cum[i] : uniform);
+    }
+    // Draw the weighted sample:
+    final int m = coresetsize;
+    List<NumberVector> sample = new ArrayList<>(m);
+    double[] weights = new double[m];
+    DBIDArrayIter it = ids.iter();
+    for(int j = 0; j < m; j++) {
+      int i = Arrays.binarySearch(cum, random.nextDouble() * acc);
+      i = i >= 0 ? i : Math.min(-i - 1, n - 1);
+      sample.add(relation.get(it.seek(i)));
+      weights[j] = acc / (m * (cum[i] - (i > 0 ? cum[i - 1] : 0.)));
+    }
+    double[][] means = sampleMeans(sample, relation.getDataTypeInformation());
+    LOG.statistics(new LongStatistic(getClass().getName() + ".coreset.iterations", weightedKMeans(sample, weights, means)));
+    return means;
+  }
+
+  /**
+   * Choose the initial means on the coreset.
+   *
+   * @param sample Coreset
+   * @param type Vector type
+   * @return Initial means
+   */
+  @SuppressWarnings("unchecked")
+  protected double[][] sampleMeans(List<NumberVector> sample, SimpleTypeInformation<?> type) {
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(sample.size());
+    WritableDataStore<V> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, NumberVector.class);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      store.put(it, (V) sample.get(it.getOffset()));
+    }
+    Relation<V> rel = new MaterializedRelation<>((SimpleTypeInformation<V>) type, ids, "coreset", store);
+    double[][] means = initialMeans(new ProxyDatabase(ids, rel), rel);
+    DBIDUtil.deallocateDBIDRange(ids);
+    return means;
+  }
+
+  /**
+   * Weighted k-means on the coreset, with nearest center search in the center
+   * tree.
+   *
+   * @param sample Coreset
+   * @param weights Weights
+   * @param means Means, updated in-place
+   * @return Number of iterations
+   */
+  protected int weightedKMeans(List<NumberVector> sample, double[] weights, double[][] means) {
+    final int m = sample.size(), dim = means[0].length;
+    final int[] assign = new int[m];
+    Arrays.fill(assign, -1);
+    double[][] sums = new double[k][dim];
+    double[] wsum = new double[k];
+    int iteration = 0;
+    while(++iteration <= maxiter) {
+      final CenterTree tree = new CenterTree(means);
+      int changed = 0;
+      for(int c : ParallelExecutor.runBlocks(m, BLOCKSIZE, (start, end) -> {
+        Query q = new Query();
+        int ch = 0;
+        for(int i = start; i < end; i++) {
+          tree.search(sample.get(i), q.reset());
+          if(q.best != assign[i]) {
+            assign[i] = q.best;
+            ++ch;
+          }
+        }
+        return ch;
+      })) {
+        changed += c;
+      }
+      if(changed == 0) {
+        break;
+      }
+      for(double[] s : sums) {
+        Arrays.fill(s, 0.);
+      }
+      Arrays.fill(wsum, 0.);
+      for(int i = 0; i < m; i++) {
+        final double[] s = sums[assign[i]];
+        final NumberVector vec = sample.get(i);
+        final double w = weights[i];
+        for(int d = 0; d < dim; d++) {
+          s[d] += w * vec.doubleValue(d);
+        }
+        wsum[assign[i]] += w;
+      }
+      for(int c = 0; c < k; c++) {
+        if(wsum[c] > 0) { // Keep empty clusters.
+          VMath.overwriteTimes(means[c], sums[c], 1. / wsum[c]);
+        }
+      }
+    }
+    return iteration;
+  }
+
+  @Override
+  protected boolean isDeterministicGivenInitialMeans() {
+    // The coreset is drawn from a shared random generator.
+    return coresetsize <= 0;
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends KMeansHamerly.Instance {
+    /**
+     * Index over the current centers.
+     */
+    CenterTree tree;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistanceFunction<?> df, double[][] means) {
+      super(relation, df, means);
+    }
+
+    @Override
+    protected int initialAssignToNearestCluster() {
+      tree = new CenterTree(means);
+      return super.initialAssignToNearestCluster();
+    }
+
+    @Override
+    protected void initialAssignBlock(DBIDArrayIter it, int end, Partition p) {
+      Query q = new Query();
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
+        NumberVector fv = relation.get(it);
+        tree.search(fv, q.reset());
+        p.move(it, fv, -1, q.best);
+        upper.putDouble(it, q.min1);
+        lower.putDouble(it, q.min2);
+      }
+      p.diststat += q.diststat;
+    }
+
+    @Override
+    protected void assignBlock(DBIDArrayIter it, int end, Partition p) {
+      Query q = new Query();
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
+        final int cur = assignment.intValue(it);
+        // Compute the current bound:
+        final double z = lower.doubleValue(it);
+        final double sa = sep[cur];
+        double u = upper.doubleValue(it);
+        if(u <= z || u <= sa) {
+          continue;
+        }
+        // Update the upper bound
+        NumberVector fv = relation.get(it);
+        double curd2 = p.distance(fv, DoubleVector.wrap(means[cur]));
+        u = isSquared ? FastMath.sqrt(curd2) : curd2;
+        upper.putDouble(it, u);
+        if(u <= z || u <= sa) {
+          continue;
+        }
+        // Search the two nearest centers, starting with the current:
+        q.reset();
+        q.best = cur;
+        q.min1 = u;
+        tree.search(fv, q);
+        if(q.best != cur) {
+          p.move(it, fv, cur, q.best);
+          upper.putDouble(it, q.min1);
+        }
+        lower.putDouble(it, q.min2);
+      }
+      p.diststat += q.diststat;
+    }
+
+    @Override
+    protected void recomputeSeperation(double[][] means, double[] sep) {
+      tree = new CenterTree(means);
+      for(long c : ParallelExecutor.runBlocks(k, BLOCKSIZE, (start, end) -> {
+        Query q = new Query();
+        for(int i = start; i < end; i++) {
+          q.reset();
+          q.best = i;
+          q.min1 = 0.;
+          tree.search(DoubleVector.wrap(means[i]), q);
+          sep[i] = .5 * q.min2;
+        }
+        return q.diststat;
+      })) {
+        countDistances(c);
+      }
+    }
+
+    @Override
+    protected void meansFromSums(double[][] dst, double[][] sums) {
+      for(int i = 0; i < k; i++) {
+        final int size = clusters.get(i).size();
+        if(size > 0) {
+          VMath.overwriteTimes(dst[i], sums[i], 1. / size);
+        }
+        else { // Keep the mean of empty clusters
+          System.arraycopy(means[i], 0, dst[i], 0, dst[i].length);
+        }
+      }
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  /**
+   * State of a two nearest centers search.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Query {
+    /**
+     * Nearest center.
+     */
+    int best;
+
+    /**
+     * Euclidean distances to the nearest and second nearest center.
+     */
+    double min1, min2;
+
+    /**
+     * Number of distance computations.
+     */
+    long diststat;
+
+    /**
+     * Reset the search state, but not the distance statistics.
+     *
+     * @return this
+     */
+    protected Query reset() {
+      best = -1;
+      min1 = min2 = Double.POSITIVE_INFINITY;
+      return this;
+    }
+  }
+
+  /**
+   * kd-tree over the cluster centers, with median splits in the dimension of
+   * largest extent.
+   *
+   * @author Erich Schubert
+   */
+  protected static class CenterTree {
+    /**
+     * Cluster centers.
+     */
+    final double[][] means;
+
+    /**
+     * Center numbers, arranged by the tree.
+     */
+    final int[] idx;
+
+    /**
+     * Split dimensions, -1 for leaves; nodes in heap order.
+     */
+    final int[] splitdim;
+
+    /**
+     * Split values.
+     */
+    final double[] splitval;
+
+    /**
+     * Node ranges, start and end.
+     */
+    final int[] start, end;
+
+    /**
+     * Build the tree.
+     *
+     * @param means Cluster centers
+     */
+    public CenterTree(double[][] means) {
+      this.means = means;
+      final int k = means.length;
+      this.idx = new int[k];
+      for(int i = 0; i < k; i++) {
+        idx[i] = i;
+      }
+      // Depth of the tree, as median splits halve the node sizes:
+      int depth = 0;
+      while((k + (1 << depth) - 1) >> depth > LEAFSIZE) {
+        ++depth;
+      }
+      final int nodes = 2 << depth;
+      this.splitdim = new int[nodes];
+      this.splitval = new double[nodes];
+      this.start = new int[nodes];
+      this.end = new int[nodes];
+      build(0, 0, k);
+    }
+
+    /**
+     * Build a subtree.
+     *
+     * @param node Node number
+     * @param s Start
+     * @param e End
+     */
+    private void build(int node, int s, int e) {
+      start[node] = s;
+      end[node] = e;
+      splitdim[node] = -1;
+      if(e - s <= LEAFSIZE) {
+        return;
+      }
+      // Dimension of largest extent:
+      final int dim = means[idx[s]].length;
+      int best = 0;
+      double bestwidth = -1.;
+      for(int d = 0; d < dim; d++) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for(int i = s; i < e; i++) {
+          final double v = means[idx[i]][d];
+          min = v < min ? v : min;
+          max = v > max ? v : max;
+        }
+        if(max - min > bestwidth) {
+          best = d;
+          bestwidth = max - min;
+        }
+      }
+      if(bestwidth <= 0.) {
+        return; // All centers identical, keep as leaf.
+      }
+      final int d = best, mid = (s + e) >>> 1;
+      QuickSelect.quickSelect(idx, new QuickSelect.Adapter<int[]>() {
+        @Override
+        public void swap(int[] data, int i, int j) {
+          int t = data[i];
+          data[i] = data[j];
+          data[j] = t;
+        }
+
+        @Override
+        public boolean compareGreater(int[] data, int i, int j) {
+          return means[data[i]][d] > means[data[j]][d];
+        }
+      }, s, e, mid);
+      splitdim[node] = d;
+      splitval[node] = means[idx[mid]][d];
+      build(2 * node + 1, s, mid);
+      build(2 * node + 2, mid, e);
+    }
+
+    /**
+     * Search the two nearest centers. If {@code q.best} is set, this center is
+     * skipped, and {@code q.min1} must be its distance.
+     *
+     * @param vec Query vector
+     * @param q Search state
+     */
+    public void search(NumberVector vec, Query q) {
+      search(0, vec, q, q.best);
+    }
+
+    /**
+     * Search a subtree.
+     *
+     * @param node Node number
+     * @param vec Query vector
+     * @param q Search state
+     * @param skip Center to skip
+     */
+    private void search(int node, NumberVector vec, Query q, int skip) {
+      final int d = splitdim[node];
+      if(d < 0) {
+        for(int i = start[node], e = end[node]; i < e; i++) {
+          final int c = idx[i];
+          if(c == skip) {
+            continue;
+          }
+          final double dist = FastMath.sqrt(squaredEuclidean(vec, DoubleVector.wrap(means[c])));
+          ++q.diststat;
+          if(dist < q.min1) {
+            q.min2 = q.min1;
+            q.min1 = dist;
+            q.best = c;
+          }
+          else if(dist < q.min2) {
+            q.min2 = dist;
+          }
+        }
+        return;
+      }
+      final double diff = vec.doubleValue(d) - splitval[node];
+      final int left = 2 * node + 1, right = left + 1;
+      search(diff < 0 ? left : right, vec, q, skip);
+      if(Math.abs(diff) < q.min2) {
+        search(diff < 0 ? right : left, vec, q, skip);
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Parameter for the coreset size.
+     */
+    public static final OptionID CORESET_ID = new OptionID("kmeans.coreset.size", "Size of the coreset used to choose the initial centers; 0 to disable.");
+
+    /**
+     * Parameter for the coreset sampling seed.
+     */
+    public static final OptionID CORESET_SEED_ID = new OptionID("kmeans.coreset.seed", "Random seed for sampling the coreset.");
+
+    /**
+     * Coreset size.
+     */
+    protected int coresetsize;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected boolean needsMetric() {
+      return true;
+    }
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      if(distanceFunction != null && !KMeansKDTree.isEuclidean(distanceFunction)) {
+        config.reportError(new WrongParameterValueException("The center tree requires Euclidean distance."));
+      }
+      super.getParameterVarstat(config);
+      IntParameter coresetP = new IntParameter(CORESET_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(coresetP)) {
+        coresetsize = coresetP.intValue();
+      }
+      if(coresetsize > 0) {
+        RandomParameter rndP = new RandomParameter(CORESET_SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
+    }
+
+    @Override
+    protected KMeansCenterTree<V> makeInstance() {
+      return new KMeansCenterTree<>(distanceFunction, k, maxiter, initializer, varstat, coresetsize, rnd);
+    }
+  }
+}
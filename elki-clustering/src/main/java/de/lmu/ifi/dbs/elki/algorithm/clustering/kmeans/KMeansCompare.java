@@ -80,8 +80,8 @@ public class KMeansCompare<V extends NumberVector> extends AbstractKMeans<V, KMe
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(maxiter);
     return instance.buildResult();
   }
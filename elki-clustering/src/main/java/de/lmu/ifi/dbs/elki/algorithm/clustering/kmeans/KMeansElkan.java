@@ -26,7 +26,7 @@ import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
 import de.lmu.ifi.dbs.elki.database.Database;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
@@ -80,8 +80,8 @@ public class KMeansElkan<V extends NumberVector> extends KMeansSimplifiedElkan<V
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
@@ -112,8 +112,12 @@ public class KMeansElkan<V extends NumberVector> extends KMeansSimplifiedElkan<V
     protected int assignToNearestCluster() {
       assert (k == means.length);
       recomputeSeperation(sep, cdist); // #1
-      int changed = 0;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      return assignBlocks(this::assignBlock, sums);
+    }
+
+    @Override
+    protected void assignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         final int orig = assignment.intValue(it);
         double u = upper.doubleValue(it);
         // Upper bound check (#2):
@@ -130,7 +134,7 @@ public class KMeansElkan<V extends NumberVector> extends KMeansSimplifiedElkan<V
             continue; // Condition #3 i-iii not satisfied
           }
           if(recompute_u) { // Need to update bound? #3a
-            u = distance(fv, DoubleVector.wrap(means[cur]));
+            u = p.distance(fv, DoubleVector.wrap(means[cur]));
             u = isSquared ? FastMath.sqrt(u) : u;
             upper.putDouble(it, u);
             recompute_u = false; // Once only
@@ -138,7 +142,7 @@ public class KMeansElkan<V extends NumberVector> extends KMeansSimplifiedElkan<V
               continue;
             }
           }
-          double dist = distance(fv, DoubleVector.wrap(means[j]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[j]));
           dist = isSquared ? FastMath.sqrt(dist) : dist;
           l[j] = dist;
           if(dist < u) {
@@ -149,14 +153,9 @@ public class KMeansElkan<V extends NumberVector> extends KMeansSimplifiedElkan<V
         // Object is to be reassigned.
         if(cur != orig) {
           upper.putDouble(it, u); // Remember bound.
-          clusters.get(cur).add(it);
-          clusters.get(orig).remove(it);
-          assignment.putInt(it, cur);
-          plusMinusEquals(sums[cur], sums[orig], fv);
-          ++changed;
+          p.move(it, fv, orig, cur);
         }
       }
-      return changed;
     }
 
     @Override
@@ -29,7 +29,7 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
@@ -80,8 +80,8 @@ public class KMeansExponion<V extends NumberVector> extends KMeansHamerly<V> {
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
@@ -124,8 +124,12 @@ public class KMeansExponion<V extends NumberVector> extends KMeansHamerly<V> {
       assert (k == means.length);
       recomputeSeperation(sep, cdist);
       nearestMeans(cdist, cnum);
-      int changed = 0;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      return assignBlocks(this::assignBlock, sums);
+    }
+
+    @Override
+    protected void assignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         final int cur = assignment.intValue(it);
         // Compute the current bound:
         final double z = lower.doubleValue(it);
@@ -136,7 +140,7 @@ public class KMeansExponion<V extends NumberVector> extends KMeansHamerly<V> {
         }
         // Update the upper bound
         NumberVector fv = relation.get(it);
-        double curd2 = distance(fv, DoubleVector.wrap(means[cur]));
+        double curd2 = p.distance(fv, DoubleVector.wrap(means[cur]));
         u = isSquared ? FastMath.sqrt(curd2) : curd2;
         upper.putDouble(it, u);
         if(u <= z || u <= sa) {
@@ -151,7 +155,7 @@ public class KMeansExponion<V extends NumberVector> extends KMeansHamerly<V> {
           if(cdist[cur][c] > r) {
             break;
           }
-          double dist = distance(fv, DoubleVector.wrap(means[c]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[c]));
           if(dist < min1) {
             minIndex = c;
             min2 = min1;
@@ -162,16 +166,11 @@ public class KMeansExponion<V extends NumberVector> extends KMeansHamerly<V> {
           }
         }
         if(minIndex != cur) {
-          clusters.get(minIndex).add(it);
-          clusters.get(cur).remove(it);
-          assignment.putInt(it, minIndex);
-          plusMinusEquals(sums[minIndex], sums[cur], fv);
-          ++changed;
+          p.move(it, fv, cur, minIndex);
           upper.putDouble(it, min1 == curd2 ? u : isSquared ? FastMath.sqrt(min1) : min1);
         }
         lower.putDouble(it, min2 == curd2 ? u : isSquared ? FastMath.sqrt(min2) : min2);
       }
-      return changed;
     }
 
     @Override
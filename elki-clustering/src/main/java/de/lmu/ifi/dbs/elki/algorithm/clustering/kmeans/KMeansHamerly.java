@@ -31,7 +31,7 @@ import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.Logging;
@@ -87,8 +87,8 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
@@ -158,13 +158,24 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
      */
     protected int initialAssignToNearestCluster() {
       assert (k == means.length);
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      return assignBlocks(this::initialAssignBlock, sums);
+    }
+
+    /**
+     * Perform initial cluster assignment for a block of objects.
+     *
+     * @param it Iterator, positioned at the beginning of the block
+     * @param end End offset (exclusive)
+     * @param p Partition for partial results
+     */
+    protected void initialAssignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         NumberVector fv = relation.get(it);
         // Find closest center, and distance to two closest centers
         double min1 = Double.POSITIVE_INFINITY, min2 = Double.POSITIVE_INFINITY;
         int minIndex = -1;
         for(int i = 0; i < k; i++) {
-          double dist = distance(fv, DoubleVector.wrap(means[i]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[i]));
           if(dist < min1) {
             minIndex = i;
             min2 = min1;
@@ -175,13 +186,10 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
           }
         }
         // Assign to nearest cluster.
-        clusters.get(minIndex).add(it);
-        assignment.putInt(it, minIndex);
-        plusEquals(sums[minIndex], fv);
+        p.move(it, fv, -1, minIndex);
         upper.putDouble(it, isSquared ? FastMath.sqrt(min1) : min1);
         lower.putDouble(it, isSquared ? FastMath.sqrt(min2) : min2);
       }
-      return relation.size();
     }
 
     /**
@@ -193,8 +201,19 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
     protected int assignToNearestCluster() {
       assert (k == means.length);
       recomputeSeperation(means, sep);
-      int changed = 0;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      return assignBlocks(this::assignBlock, sums);
+    }
+
+    /**
+     * Reassign a block of objects, but avoid unnecessary computations based on
+     * their bounds.
+     *
+     * @param it Iterator, positioned at the beginning of the block
+     * @param end End offset (exclusive)
+     * @param p Partition for partial results
+     */
+    protected void assignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         final int cur = assignment.intValue(it);
         // Compute the current bound:
         final double z = lower.doubleValue(it);
@@ -205,7 +224,7 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
         }
         // Update the upper bound
         NumberVector fv = relation.get(it);
-        double curd2 = distance(fv, DoubleVector.wrap(means[cur]));
+        double curd2 = p.distance(fv, DoubleVector.wrap(means[cur]));
         u = isSquared ? FastMath.sqrt(curd2) : curd2;
         upper.putDouble(it, u);
         if(u <= z || u <= sa) {
@@ -218,7 +237,7 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
           if(i == cur) {
             continue;
           }
-          double dist = distance(fv, DoubleVector.wrap(means[i]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[i]));
           if(dist < min1) {
             minIndex = i;
             min2 = min1;
@@ -229,16 +248,11 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
           }
         }
         if(minIndex != cur) {
-          clusters.get(minIndex).add(it);
-          clusters.get(cur).remove(it);
-          assignment.putInt(it, minIndex);
-          plusMinusEquals(sums[minIndex], sums[cur], fv);
-          ++changed;
+          p.move(it, fv, cur, minIndex);
           upper.putDouble(it, min1 == curd2 ? u : isSquared ? FastMath.sqrt(min1) : min1);
         }
         lower.putDouble(it, min2 == curd2 ? u : isSquared ? FastMath.sqrt(min2) : min2);
       }
-      return changed;
     }
 
     /**
@@ -275,11 +289,14 @@ public class KMeansHamerly<V extends NumberVector> extends AbstractKMeans<V, KMe
      * @param delta Maximum center movement.
      */
     protected void updateBounds(double[] move, double delta) {
-      delta = -delta;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-        upper.increment(it, move[assignment.intValue(it)]);
-        lower.increment(it, delta);
-      }
+      final double mdelta = -delta;
+      processBlocks((start, end) -> {
+        for(DBIDArrayIter it = ids.iter().seek(start); it.valid() && it.getOffset() < end; it.advance()) {
+          upper.increment(it, move[assignment.intValue(it)]);
+          lower.increment(it, mdelta);
+        }
+        return null;
+      });
     }
 
     @Override
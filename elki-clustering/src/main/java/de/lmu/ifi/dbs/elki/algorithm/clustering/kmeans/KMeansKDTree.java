@@ -0,0 +1,530 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.overwriteTimes;
+
+import java.util.Arrays;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DoubleDBIDListMIter;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ModifiableDoubleDBIDList;
+import de.lmu.ifi.dbs.elki.database.ids.QuickSelectDBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.EuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.math.linearalgebra.VMath;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * k-means using the filtering algorithm on a kd-tree: every node of the tree
+ * caches the sum and count of its points and its bounding box, and the
+ * candidate centers are filtered while descending the tree. Once a single
+ * candidate remains, the entire subtree is assigned at once.
+ * <p>
+ * This produces the same result as Lloyd's algorithm, but needs far fewer
+ * distance computations on low-dimensional data. It requires (squared)
+ * Euclidean distance.
+ * <p>
+ * Reference:
+ * <p>
+ * T. Kanungo, D. M. Mount, N. S. Netanyahu, C. D. Piatko, R. Silverman, A. Y.
+ * Wu<br>
+ * An efficient k-means clustering algorithm: Analysis and implementation<br>
+ * IEEE Trans. Pattern Analysis and Machine Intelligence 24(7)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+@Title("k-Means with kd-tree Filtering")
+@Reference(authors = "T. Kanungo, D. M. Mount, N. S. Netanyahu, C. D. Piatko, R. Silverman, A. Y. Wu", //
+    title = "An efficient k-means clustering algorithm: Analysis and implementation", //
+    booktitle = "IEEE Trans. Pattern Analysis and Machine Intelligence 24(7)", //
+    url = "https://doi.org/10.1109/TPAMI.2002.1017616", //
+    bibkey = "DBLP:journals/pami/KanungoMNPSW02")
+public class KMeansKDTree<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(KMeansKDTree.class);
+
+  /**
+   * Maximum number of points in a leaf.
+   */
+  protected int leafsize;
+
+  /**
+   * Flag whether to compute the final variance statistic.
+   */
+  protected boolean varstat = false;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param leafsize Maximum number of points in a leaf
+   * @param varstat Compute the variance statistic
+   */
+  public KMeansKDTree(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization initializer, int leafsize, boolean varstat) {
+    super(distanceFunction, k, maxiter, initializer);
+    this.leafsize = leafsize;
+    this.varstat = varstat;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    if(!isEuclidean(getDistanceFunction())) {
+      throw new AbortException("The kd-tree filtering algorithm requires Euclidean distance.");
+    }
+    Instance instance = new Instance(relation, getDistanceFunction(), means, leafsize);
+    instance.run(maxiter);
+    instance.buildClusters();
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Test for (squared) Euclidean distance, required for filtering.
+   *
+   * @param df Distance function
+   * @return {@code true} when (squared) Euclidean
+   */
+  protected static boolean isEuclidean(NumberVectorDistanceFunction<?> df) {
+    return df instanceof SquaredEuclideanDistanceFunction || df instanceof EuclideanDistanceFunction;
+  }
+
+  /**
+   * Node of the kd-tree, with cached aggregates.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Node {
+    /**
+     * Range of points in the sorted list.
+     */
+    int start, end;
+
+    /**
+     * Sum of the points.
+     */
+    double[] sum;
+
+    /**
+     * Bounding box.
+     */
+    double[] min, max;
+
+    /**
+     * Children, {@code null} for leaves.
+     */
+    Node left, right;
+
+    /**
+     * Cluster all points are currently assigned to, or -1.
+     */
+    int owner = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param start First point
+     * @param end End of points (exclusive)
+     */
+    Node(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractKMeans.Instance {
+    /**
+     * Points, sorted by the kd-tree.
+     */
+    ModifiableDoubleDBIDList sorted;
+
+    /**
+     * Root of the kd-tree.
+     */
+    Node root;
+
+    /**
+     * Maximum leaf size.
+     */
+    int leafsize;
+
+    /**
+     * Sums and counts of the new means.
+     */
+    double[][] sums;
+
+    /**
+     * Number of points in each cluster.
+     */
+    int[] counts;
+
+    /**
+     * Candidate buffers, per tree depth.
+     */
+    int[][] candbuf;
+
+    /**
+     * Number of reassigned points in the current iteration.
+     */
+    int changed;
+
+    /**
+     * Distance computations in the current iteration.
+     */
+    long dists;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     * @param leafsize Maximum leaf size
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistanceFunction<?> df, double[][] means, int leafsize) {
+      super(relation, df, means);
+      this.leafsize = leafsize;
+      final int dim = means[0].length;
+      sums = new double[k][dim];
+      counts = new int[k];
+      sorted = DBIDUtil.newDistanceDBIDList(relation.size());
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        sorted.add(0., it);
+      }
+      int depth = buildTree();
+      candbuf = new int[depth + 2][k];
+    }
+
+    /**
+     * Build the kd-tree.
+     *
+     * @return Depth of the tree
+     */
+    private int buildTree() {
+      DoubleDBIDListMIter iter = sorted.iter();
+      root = new Node(0, sorted.size());
+      int maxdepth = 0;
+      Node[] stack = new Node[64];
+      int[] depths = new int[64];
+      int sp = 0;
+      stack[sp] = root;
+      depths[sp++] = 0;
+      while(sp > 0) {
+        final Node node = stack[--sp];
+        final int depth = depths[sp];
+        maxdepth = Math.max(maxdepth, depth);
+        final int dim = means[0].length;
+        double[] sum = new double[dim], min = new double[dim], max = new double[dim];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for(iter.seek(node.start); iter.getOffset() < node.end; iter.advance()) {
+          NumberVector vec = relation.get(iter);
+          for(int d = 0; d < dim; d++) {
+            final double v = vec.doubleValue(d);
+            sum[d] += v;
+            min[d] = v < min[d] ? v : min[d];
+            max[d] = v > max[d] ? v : max[d];
+          }
+        }
+        node.sum = sum;
+        node.min = min;
+        node.max = max;
+        if(node.end - node.start <= leafsize) {
+          continue;
+        }
+        // Split the widest dimension at the median.
+        int axis = 0;
+        for(int d = 1; d < dim; d++) {
+          axis = max[d] - min[d] > max[axis] - min[axis] ? d : axis;
+        }
+        if(!(max[axis] > min[axis])) {
+          continue; // All points are identical.
+        }
+        for(iter.seek(node.start); iter.getOffset() < node.end; iter.advance()) {
+          iter.setDouble(relation.get(iter).doubleValue(axis));
+        }
+        final int middle = (node.start + node.end) >>> 1;
+        QuickSelectDBIDs.quickSelect(sorted, node.start, node.end, middle);
+        node.left = new Node(node.start, middle);
+        node.right = new Node(middle, node.end);
+        if(sp + 2 > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length << 1);
+          depths = Arrays.copyOf(depths, depths.length << 1);
+        }
+        stack[sp] = node.left;
+        depths[sp++] = depth + 1;
+        stack[sp] = node.right;
+        depths[sp++] = depth + 1;
+      }
+      return maxdepth;
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      for(double[] sum : sums) {
+        Arrays.fill(sum, 0.);
+      }
+      Arrays.fill(counts, 0);
+      changed = 0;
+      dists = 0;
+      int[] cands = candbuf[0];
+      for(int i = 0; i < k; i++) {
+        cands[i] = i;
+      }
+      filter(root, cands, k, 1);
+      countDistances(dists);
+      // Update the means; keep the old mean for empty clusters.
+      for(int i = 0; i < k; i++) {
+        if(counts[i] > 0) {
+          overwriteTimes(means[i], sums[i], 1. / counts[i]);
+        }
+      }
+      return changed;
+    }
+
+    /**
+     * Filter the candidates for a node, and assign its points.
+     *
+     * @param node Node
+     * @param cands Candidate centers, in index order
+     * @param ncand Number of candidates
+     * @param depth Depth of the children
+     */
+    private void filter(Node node, int[] cands, int ncand, int depth) {
+      if(ncand > 1) {
+        // Candidate closest to the midpoint of the cell.
+        int zstar = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for(int i = 0; i < ncand; i++) {
+          final double[] mean = means[cands[i]];
+          double d = 0.;
+          for(int j = 0; j < mean.length; j++) {
+            final double v = mean[j] - .5 * (node.min[j] + node.max[j]);
+            d += v * v;
+          }
+          if(d < best) {
+            best = d;
+            zstar = cands[i];
+          }
+        }
+        // Remove candidates farther than zstar from every point in the cell.
+        int[] next = candbuf[depth];
+        int nnext = 0;
+        for(int i = 0; i < ncand; i++) {
+          if(cands[i] == zstar || !isFarther(means[cands[i]], means[zstar], node)) {
+            next[nnext++] = cands[i];
+          }
+        }
+        dists += ncand << 1;
+        cands = next;
+        ncand = nnext;
+      }
+      if(ncand == 1) {
+        assignAll(node, cands[0]);
+        return;
+      }
+      if(node.left == null) {
+        assignLeaf(node, cands, ncand);
+        return;
+      }
+      node.owner = -1;
+      filter(node.left, cands, ncand, depth + 1);
+      filter(node.right, cands, ncand, depth + 1);
+    }
+
+    /**
+     * Test whether z is farther than zstar from every point in the cell, by
+     * checking the extreme vertex of the cell in the direction of z.
+     *
+     * @param z Candidate
+     * @param zstar Best candidate
+     * @param node Cell
+     * @return {@code true} when z can be pruned
+     */
+    private static boolean isFarther(double[] z, double[] zstar, Node node) {
+      double dz = 0., dzstar = 0.;
+      for(int j = 0; j < z.length; j++) {
+        final double v = z[j] > zstar[j] ? node.max[j] : node.min[j];
+        final double a = z[j] - v, b = zstar[j] - v;
+        dz += a * a;
+        dzstar += b * b;
+      }
+      return dz > dzstar;
+    }
+
+    /**
+     * Assign all points in a subtree to a single cluster.
+     *
+     * @param node Subtree
+     * @param c Cluster
+     */
+    private void assignAll(Node node, int c) {
+      VMath.plusEquals(sums[c], node.sum);
+      counts[c] += node.end - node.start;
+      if(node.owner == c) {
+        return; // Unchanged.
+      }
+      DoubleDBIDListMIter iter = sorted.iter();
+      for(iter.seek(node.start); iter.getOffset() < node.end; iter.advance()) {
+        if(assignment.putInt(iter, c) != c) {
+          ++changed;
+        }
+      }
+      setOwner(node, c);
+    }
+
+    /**
+     * Set the owner of a subtree.
+     *
+     * @param node Subtree
+     * @param c Cluster
+     */
+    private static void setOwner(Node node, int c) {
+      node.owner = c;
+      if(node.left != null) {
+        setOwner(node.left, c);
+        setOwner(node.right, c);
+      }
+    }
+
+    /**
+     * Assign the points of a leaf individually.
+     *
+     * @param node Leaf
+     * @param cands Candidate centers
+     * @param ncand Number of candidates
+     */
+    private void assignLeaf(Node node, int[] cands, int ncand) {
+      int owner = -2;
+      DoubleDBIDListMIter iter = sorted.iter();
+      for(iter.seek(node.start); iter.getOffset() < node.end; iter.advance()) {
+        NumberVector fv = relation.get(iter);
+        double mindist = Double.POSITIVE_INFINITY;
+        int minIndex = cands[0];
+        for(int i = 0; i < ncand; i++) {
+          double dist = distance(fv, DoubleVector.wrap(means[cands[i]]));
+          if(dist < mindist) {
+            minIndex = cands[i];
+            mindist = dist;
+          }
+        }
+        plusEquals(sums[minIndex], fv);
+        counts[minIndex]++;
+        if(assignment.putInt(iter, minIndex) != minIndex) {
+          ++changed;
+        }
+        owner = owner == -2 || owner == minIndex ? minIndex : -1;
+      }
+      node.owner = owner;
+    }
+
+    /**
+     * Build the cluster memberships from the assignment.
+     */
+    protected void buildClusters() {
+      for(ModifiableDBIDs cluster : clusters) {
+        cluster.clear();
+      }
+      DoubleDBIDListMIter iter = sorted.iter();
+      for(; iter.valid(); iter.advance()) {
+        clusters.get(assignment.intValue(iter)).add(iter);
+      }
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Parameter for the maximum leaf size.
+     */
+    public static final OptionID LEAFSIZE_ID = new OptionID("kmeans.kdtree.leafsize", "Maximum number of points in a leaf of the kd-tree.");
+
+    /**
+     * Maximum leaf size.
+     */
+    protected int leafsize;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      if(distanceFunction != null && !isEuclidean(distanceFunction)) {
+        config.reportError(new WrongParameterValueException("The kd-tree filtering algorithm requires Euclidean distance."));
+      }
+      IntParameter leafsizeP = new IntParameter(LEAFSIZE_ID, 16) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(leafsizeP)) {
+        leafsize = leafsizeP.intValue();
+      }
+      super.getParameterVarstat(config);
+    }
+
+    @Override
+    protected KMeansKDTree<V> makeInstance() {
+      return new KMeansKDTree<>(distanceFunction, k, maxiter, initializer, leafsize, varstat);
+    }
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Mini-batch k-means: in each iteration, a small random sample of the data is
+ * assigned to the nearest centers, which are then moved towards the assigned
+ * points with a per-center learning rate of one over the number of points
+ * assigned so far.
+ * <p>
+ * Each iteration only touches the mini-batch, so this converges much faster
+ * than the full-batch variants on large data sets, at the cost of a slightly
+ * worse solution. A final full pass assigns all points to the nearest center.
+ * The batch assignment is computed in parallel.
+ * <p>
+ * Reference:
+ * <p>
+ * D. Sculley<br>
+ * Web-scale k-means clustering<br>
+ * Proc. 19th Int. Conf. on World Wide Web (WWW 2010)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+@Title("Mini-Batch k-Means")
+@Reference(authors = "D. Sculley", //
+    title = "Web-scale k-means clustering", //
+    booktitle = "Proc. 19th Int. Conf. on World Wide Web (WWW 2010)", //
+    url = "https://doi.org/10.1145/1772690.1772862", //
+    bibkey = "DBLP:conf/www/Sculley10")
+public class KMeansMiniBatch<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(KMeansMiniBatch.class);
+
+  /**
+   * Mini-batch size.
+   */
+  protected int batchsize;
+
+  /**
+   * Random generator for drawing the batches.
+   */
+  protected RandomFactory random;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param batchsize Mini-batch size
+   * @param random Random generator for drawing the batches
+   */
+  public KMeansMiniBatch(NumberVectorDistanceFunction<? super V> distanceFunction, int k, int maxiter, KMeansInitialization initializer, int batchsize, RandomFactory random) {
+    super(distanceFunction, k, maxiter, initializer);
+    this.batchsize = batchsize;
+    this.random = random;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means, batchsize, random.getSingleThreadedRandom());
+    instance.run(maxiter);
+    instance.assignToNearestCluster();
+    return instance.buildResult();
+  }
+
+  /**
+   * Assign a batch of vectors to the nearest centers, in parallel for batches
+   * of at least {@link #BLOCKSIZE} vectors.
+   *
+   * @param batch Batch of vectors
+   * @param means Current centers
+   * @param df Distance function
+   * @param assign Output array of assignments
+   * @return Number of distance computations
+   */
+  protected static long assignBatch(List<? extends NumberVector> batch, double[][] means, NumberVectorDistanceFunction<?> df, int[] assign) {
+    if(batch.size() < BLOCKSIZE) { // Too small to parallelize.
+      for(int i = 0; i < batch.size(); i++) {
+        assign[i] = nearest(batch.get(i), means, df);
+      }
+      return batch.size() * (long) means.length;
+    }
+    ParallelExecutor.runBlocks(batch.size(), BLOCKSIZE, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        assign[i] = nearest(batch.get(i), means, df);
+      }
+      return null;
+    });
+    return batch.size() * (long) means.length;
+  }
+
+  /**
+   * Find the nearest center.
+   *
+   * @param fv Vector
+   * @param means Centers
+   * @param df Distance function
+   * @return Index of the nearest center
+   */
+  protected static int nearest(NumberVector fv, double[][] means, NumberVectorDistanceFunction<?> df) {
+    final boolean sqeuclid = df instanceof SquaredEuclideanDistanceFunction;
+    double mindist = Double.POSITIVE_INFINITY;
+    int minIndex = 0;
+    for(int i = 0; i < means.length; i++) {
+      final DoubleVector mean = DoubleVector.wrap(means[i]);
+      double dist = sqeuclid ? squaredEuclidean(fv, mean) : df.distance(fv, mean);
+      if(dist < mindist) {
+        minIndex = i;
+        mindist = dist;
+      }
+    }
+    return minIndex;
+  }
+
+  /**
+   * Move the centers towards the assigned vectors, using a per-center learning
+   * rate of one over the number of points assigned so far.
+   *
+   * @param batch Batch of vectors
+   * @param assign Assignment of the batch
+   * @param means Centers to update
+   * @param counts Number of points assigned to each center so far
+   */
+  protected static void updateMeans(List<? extends NumberVector> batch, int[] assign, double[][] means, long[] counts) {
+    for(int i = 0; i < batch.size(); i++) {
+      updateMean(batch.get(i), means[assign[i]], ++counts[assign[i]]);
+    }
+  }
+
+  /**
+   * Move a center towards a vector, with a learning rate of one over the
+   * number of points assigned so far.
+   *
+   * @param fv Vector
+   * @param mean Center to update
+   * @param count Number of points assigned to the center, including fv
+   */
+  protected static void updateMean(NumberVector fv, double[] mean, long count) {
+    final double eta = 1. / count;
+    for(int d = 0; d < mean.length; d++) {
+      mean[d] += eta * (fv.doubleValue(d) - mean[d]);
+    }
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractKMeans.Instance {
+    /**
+     * Distance function.
+     */
+    NumberVectorDistanceFunction<?> df;
+
+    /**
+     * Mini-batch size.
+     */
+    int batchsize;
+
+    /**
+     * Random generator.
+     */
+    Random rnd;
+
+    /**
+     * Number of points assigned to each center so far.
+     */
+    long[] counts;
+
+    /**
+     * Assignment of the current batch.
+     */
+    int[] batchassign;
+
+    /**
+     * Vectors of the current batch.
+     */
+    List<NumberVector> batch;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     * @param batchsize Mini-batch size
+     * @param rnd Random generator
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistanceFunction<?> df, double[][] means, int batchsize, Random rnd) {
+      super(relation, df, means);
+      this.df = df;
+      this.batchsize = Math.min(batchsize, relation.size());
+      this.rnd = rnd;
+      this.counts = new long[k];
+      this.batchassign = new int[this.batchsize];
+      this.batch = new ArrayList<>(this.batchsize);
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      DBIDs sample = DBIDUtil.randomSample(ids, batchsize, rnd);
+      batch.clear();
+      for(DBIDIter it = sample.iter(); it.valid(); it.advance()) {
+        batch.add(relation.get(it));
+      }
+      countDistances(assignBatch(batch, means, df, batchassign));
+      updateMeans(batch, batchassign, means, counts);
+      int changed = 0, i = 0;
+      for(DBIDIter it = sample.iter(); it.valid(); it.advance(), i++) {
+        if(assignment.putInt(it, batchassign[i]) != batchassign[i]) {
+          ++changed;
+        }
+      }
+      return changed;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected boolean isDeterministicGivenInitialMeans() {
+    // Batches are drawn from a shared random generator.
+    return false;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Parameter for the mini-batch size.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("kmeans.minibatch.size", "Number of points in each mini-batch.");
+
+    /**
+     * Parameter for the random generator.
+     */
+    public static final OptionID RANDOM_ID = new OptionID("kmeans.minibatch.seed", "Random generator seed for drawing the mini-batches.");
+
+    /**
+     * Mini-batch size.
+     */
+    protected int batchsize;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory random;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter batchsizeP = new IntParameter(BATCHSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(batchsizeP)) {
+        batchsize = batchsizeP.intValue();
+      }
+      RandomParameter randomP = new RandomParameter(RANDOM_ID);
+      if(config.grab(randomP)) {
+        random = randomP.getValue();
+      }
+    }
+
+    @Override
+    protected void getParameterMaxIter(Parameterization config) {
+      // Mini-batches do not converge to zero changes reliably.
+      IntParameter maxiterP = new IntParameter(MAXITER_ID, 100) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(maxiterP)) {
+        maxiter = maxiterP.intValue();
+      }
+    }
+
+    @Override
+    protected KMeansMiniBatch<V> makeInstance() {
+      return new KMeansMiniBatch<>(distanceFunction, k, maxiter, initializer, batchsize, random);
+    }
+  }
+}
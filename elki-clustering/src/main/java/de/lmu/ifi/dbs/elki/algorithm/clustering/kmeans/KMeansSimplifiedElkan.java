@@ -30,6 +30,7 @@ import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
@@ -89,8 +90,8 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
@@ -164,14 +165,25 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
      */
     protected int initialAssignToNearestCluster() {
       assert (k == means.length);
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      return assignBlocks(this::initialAssignBlock, sums);
+    }
+
+    /**
+     * Perform initial cluster assignment for a block of objects.
+     *
+     * @param it Iterator, positioned at the beginning of the block
+     * @param end End offset (exclusive)
+     * @param p Partition for partial results
+     */
+    protected void initialAssignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         NumberVector fv = relation.get(it);
         double[] l = lower.get(it);
         // Check all (other) means:
         double best = Double.POSITIVE_INFINITY;
         int minIndex = -1;
         for(int j = 0; j < k; j++) {
-          double dist = distance(fv, DoubleVector.wrap(means[j]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[j]));
           dist = isSquared ? FastMath.sqrt(dist) : dist;
           l[j] = dist;
           if(dist < best) {
@@ -180,12 +192,9 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
           }
         }
         // Assign to nearest cluster.
-        clusters.get(minIndex).add(it);
-        assignment.putInt(it, minIndex);
+        p.move(it, fv, -1, minIndex);
         upper.putDouble(it, best);
-        plusEquals(sums[minIndex], fv);
       }
-      return relation.size();
     }
 
     /**
@@ -195,8 +204,19 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
      * @return number of objects reassigned
      */
     protected int assignToNearestCluster() {
-      int changed = 0;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      return assignBlocks(this::assignBlock, sums);
+    }
+
+    /**
+     * Reassign a block of objects, but avoid unnecessary computations based on
+     * their bounds.
+     *
+     * @param it Iterator, positioned at the beginning of the block
+     * @param end End offset (exclusive)
+     * @param p Partition for partial results
+     */
+    protected void assignBlock(DBIDArrayIter it, int end, Partition p) {
+      for(; it.valid() && it.getOffset() < end; it.advance()) {
         final int orig = assignment.intValue(it);
         double u = upper.doubleValue(it);
         boolean recompute_u = true; // Elkan's r(x)
@@ -209,7 +229,7 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
             continue; // Condition #3 i-iii not satisfied
           }
           if(recompute_u) { // Need to update bound? #3a
-            u = distance(fv, DoubleVector.wrap(means[cur]));
+            u = p.distance(fv, DoubleVector.wrap(means[cur]));
             u = isSquared ? FastMath.sqrt(u) : u;
             upper.putDouble(it, u);
             recompute_u = false; // Once only
@@ -217,7 +237,7 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
               continue;
             }
           }
-          double dist = distance(fv, DoubleVector.wrap(means[j]));
+          double dist = p.distance(fv, DoubleVector.wrap(means[j]));
           dist = isSquared ? FastMath.sqrt(dist) : dist;
           l[j] = dist;
           if(dist < u) {
@@ -228,14 +248,9 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
         // Object is to be reassigned.
         if(cur != orig) {
           upper.putDouble(it, u); // Remember bound.
-          clusters.get(cur).add(it);
-          clusters.get(orig).remove(it);
-          assignment.putInt(it, cur);
-          plusMinusEquals(sums[cur], sums[orig], fv);
-          ++changed;
+          p.move(it, fv, orig, cur);
         }
       }
-      return changed;
     }
 
     /**
@@ -244,10 +259,13 @@ public class KMeansSimplifiedElkan<V extends NumberVector> extends AbstractKMean
      * @param move Movement of centers
      */
     protected void updateBounds(double[] move) {
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-        upper.increment(it, move[assignment.intValue(it)]);
-        VMath.minusEquals(lower.get(it), move);
-      }
+      processBlocks((start, end) -> {
+        for(DBIDArrayIter it = ids.iter().seek(start); it.valid() && it.getOffset() < end; it.advance()) {
+          upper.increment(it, move[assignment.intValue(it)]);
+          VMath.minusEquals(lower.get(it), move);
+        }
+        return null;
+      });
     }
 
     @Override
@@ -77,8 +77,8 @@ public class KMediansLloyd<V extends NumberVector> extends AbstractKMeans<V, Mea
   }
 
   @Override
-  public Clustering<MeanModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<MeanModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(maxiter);
     return instance.buildMediansResult();
   }
@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
 
 import java.util.Arrays;
+import java.util.List;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMedoidsInitialization;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.LABInitialMeans;
@@ -32,6 +33,7 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -170,10 +172,10 @@ public class KMedoidsFastPAM<V> extends KMedoidsFastPAM1<V> {
       int iteration = 1;
       ArrayModifiableDBIDs bestids = DBIDUtil.newArray(k);
       DBIDVar bestid = DBIDUtil.newVar();
-      double[] best = new double[k], cost = new double[k];
+      double[] best = new double[k];
       for(; maxiter <= 0 || iteration <= maxiter; iteration++) {
         LOG.incrementProcessed(prog);
-        findBestSwaps(m, bestids, best, cost);
+        findBestSwaps(medoids, bestids, best);
         // Convergence check
         int min = argmin(best);
         if(!(best[min] < -1e-12 * tc)) {
@@ -221,31 +223,49 @@ public class KMedoidsFastPAM<V> extends KMedoidsFastPAM1<V> {
     }
 
     /**
-     * Find the best swaps.
+     * Find the best swaps. The non-medoids are partitioned into blocks, which
+     * are processed in parallel; the block results are merged in order, so the
+     * first best swap is chosen as in a sequential scan.
      *
-     * @param m Medoids
+     * @param medoids Medoids
      * @param bestids Storage for best non-medois
      * @param best Storage for best cost
-     * @param cost Scratch space for cost
      */
-    protected void findBestSwaps(DBIDArrayIter m, ArrayModifiableDBIDs bestids, double[] best, double[] cost) {
-      Arrays.fill(best, Double.POSITIVE_INFINITY);
-      // Iterate over all non-medoids:
-      for(DBIDIter h = ids.iter(); h.valid(); h.advance()) {
-        // Compare object to its own medoid.
-        if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
-          continue; // This is a medoid.
-        }
-        // The cost we get back by making the non-medoid h medoid.
-        Arrays.fill(cost, -nearest.doubleValue(h));
-        computeReassignmentCost(h, cost);
+    protected void findBestSwaps(ArrayDBIDs medoids, ArrayModifiableDBIDs bestids, double[] best) {
+      final int k = best.length;
+      List<Swaps> parts = ParallelExecutor.runBlocks(ids.size(), swapBlockSize(ids.size()), (start, end) -> {
+        Swaps swaps = new Swaps(k);
+        DBIDArrayIter m = medoids.iter();
+        double[] cost = new double[k];
+        // Iterate over all non-medoids:
+        for(DBIDArrayIter h = ids.iter().seek(start); h.getOffset() < end; h.advance()) {
+          // Compare object to its own medoid.
+          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
+            continue; // This is a medoid.
+          }
+          // The cost we get back by making the non-medoid h medoid.
+          Arrays.fill(cost, -nearest.doubleValue(h));
+          computeReassignmentCost(h, cost);
 
-        // Find the best possible swap for each medoid:
-        for(int i = 0; i < cost.length; i++) {
-          final double costi = cost[i];
-          if(costi < best[i]) {
-            best[i] = costi;
-            bestids.set(i, h);
+          // Find the best possible swap for each medoid:
+          for(int i = 0; i < k; i++) {
+            final double costi = cost[i];
+            if(costi < swaps.best[i]) {
+              swaps.best[i] = costi;
+              swaps.bestids.set(i, h);
+            }
+          }
+        }
+        return swaps;
+      });
+      // Merge in block order, keeping the first best swap for each medoid.
+      Arrays.fill(best, Double.POSITIVE_INFINITY);
+      DBIDVar tmp = DBIDUtil.newVar();
+      for(Swaps swaps : parts) {
+        for(int i = 0; i < k; i++) {
+          if(swaps.best[i] < best[i]) {
+            best[i] = swaps.best[i];
+            bestids.set(i, swaps.bestids.assignVar(i, tmp));
           }
         }
       }
@@ -303,6 +323,34 @@ public class KMedoidsFastPAM<V> extends KMedoidsFastPAM1<V> {
     }
   }
 
+  /**
+   * Best swaps for each medoid, within one block.
+   *
+   * @author Erich Schubert
+   */
+  private static class Swaps {
+    /**
+     * Best cost change for each medoid.
+     */
+    double[] best;
+
+    /**
+     * Best non-medoid for each medoid.
+     */
+    ArrayModifiableDBIDs bestids;
+
+    /**
+     * Constructor.
+     *
+     * @param k Number of medoids
+     */
+    Swaps(int k) {
+      best = new double[k];
+      Arrays.fill(best, Double.POSITIVE_INFINITY);
+      bestids = DBIDUtil.newArray(k);
+    }
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
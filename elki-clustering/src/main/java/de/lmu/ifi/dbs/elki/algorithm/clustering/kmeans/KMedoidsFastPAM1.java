@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
 
 import java.util.Arrays;
+import java.util.List;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMedoidsInitialization;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
@@ -31,6 +32,7 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.IndefiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.DoubleStatistic;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
@@ -46,6 +48,8 @@ import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
  * can affect the result, see also {@link KMedoidsFastPAM}, which is recommended
  * for usage in practice.
  * <p>
+ * The search for the best swap is partitioned across threads.
+ * <p>
  * Reference:
  * <p>
  * Erich Schubert, Peter J. Rousseeuw<br>
@@ -126,40 +130,17 @@ public class KMedoidsFastPAM1<V> extends KMedoidsPAM<V> {
 
       IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("PAM iteration", LOG) : null;
       // Swap phase
-      DBIDVar bestid = DBIDUtil.newVar();
       DBIDArrayIter m = medoids.iter();
       int iteration = 1;
-      double[] cost = new double[k];
       for(; maxiter <= 0 || iteration <= maxiter; iteration++) {
         LOG.incrementProcessed(prog);
-        double best = Double.POSITIVE_INFINITY;
-        int bestcluster = -1;
-        // Iterate over all non-medoids:
-        for(DBIDIter h = ids.iter(); h.valid(); h.advance()) {
-          // Compare object to its own medoid.
-          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
-            continue; // This is a medoid.
-          }
-          // The cost we get back by making the non-medoid h medoid.
-          Arrays.fill(cost, -nearest.doubleValue(h));
-          computeReassignmentCost(h, cost);
-
-          // Find the best possible swap for h:
-          for(int i = 0; i < k; i++) {
-            final double costi = cost[i];
-            if(costi < best) {
-              best = costi;
-              bestid.set(h);
-              bestcluster = i;
-            }
-          }
-        }
-        if(!(best < -1e-12 * tc)) {
+        Swap best = findBestSwap(medoids);
+        if(!(best.cost < -1e-12 * tc)) {
           break; // Converged
         }
         // Update values for new medoid.
-        updateAssignment(medoids, m, bestid, bestcluster);
-        tc += best;
+        updateAssignment(medoids, m, best.id, best.cluster);
+        tc += best.cost;
         if(LOG.isStatistics()) {
           LOG.statistics(new DoubleStatistic(KEY + ".iteration-" + iteration + ".cost", tc));
         }
@@ -176,6 +157,60 @@ public class KMedoidsFastPAM1<V> extends KMedoidsPAM<V> {
       return tc;
     }
 
+    /**
+     * Find the best swap. The non-medoids are partitioned into blocks, which
+     * are processed in parallel; the block results are merged in order, so the
+     * first best swap is chosen as in a sequential scan.
+     *
+     * @param medoids Current medoids
+     * @return Best swap
+     */
+    protected Swap findBestSwap(ArrayDBIDs medoids) {
+      final int k = medoids.size();
+      List<Swap> parts = ParallelExecutor.runBlocks(ids.size(), swapBlockSize(ids.size()), (start, end) -> {
+        Swap best = new Swap();
+        DBIDArrayIter m = medoids.iter();
+        double[] cost = new double[k];
+        // Iterate over all non-medoids:
+        for(DBIDArrayIter h = ids.iter().seek(start); h.getOffset() < end; h.advance()) {
+          // Compare object to its own medoid.
+          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
+            continue; // This is a medoid.
+          }
+          // The cost we get back by making the non-medoid h medoid.
+          Arrays.fill(cost, -nearest.doubleValue(h));
+          computeReassignmentCost(h, cost);
+
+          // Find the best possible swap for h:
+          for(int i = 0; i < k; i++) {
+            final double costi = cost[i];
+            if(costi < best.cost) {
+              best.cost = costi;
+              best.id.set(h);
+              best.cluster = i;
+            }
+          }
+        }
+        return best;
+      });
+      Swap best = parts.get(0);
+      for(int i = 1; i < parts.size(); i++) {
+        best = parts.get(i).cost < best.cost ? parts.get(i) : best;
+      }
+      return best;
+    }
+
+    /**
+     * Minimum number of swap candidates per parallel block, such that each
+     * block performs a reasonable number of distance computations.
+     *
+     * @param size Number of objects
+     * @return Minimum block size
+     */
+    protected static int swapBlockSize(int size) {
+      return Math.max(1, (1 << 16) / Math.max(1, size));
+    }
+
     /**
      * Returns a list of clusters. The k<sup>th</sup> cluster contains the ids
      * of those objects, that are nearest to the k<sup>th</sup> mean.
@@ -343,6 +378,28 @@ public class KMedoidsFastPAM1<V> extends KMedoidsPAM<V> {
     }
   }
 
+  /**
+   * Candidate swap.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Swap {
+    /**
+     * Change in cost.
+     */
+    double cost = Double.POSITIVE_INFINITY;
+
+    /**
+     * Medoid number to replace.
+     */
+    int cluster = -1;
+
+    /**
+     * Non-medoid to become medoid.
+     */
+    DBIDVar id = DBIDUtil.newVar();
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -199,7 +199,7 @@ public class KMedoidsPAM<V> extends AbstractDistanceBasedAlgorithm<V, Clustering
     /**
      * Ids to process.
      */
-    DBIDs ids;
+    ArrayDBIDs ids;
 
     /**
      * Distance function to use.
@@ -230,7 +230,7 @@ public class KMedoidsPAM<V> extends AbstractDistanceBasedAlgorithm<V, Clustering
      */
     public Instance(DistanceQuery<?> distQ, DBIDs ids, WritableIntegerDataStore assignment) {
       this.distQ = distQ;
-      this.ids = ids;
+      this.ids = DBIDUtil.ensureArray(ids);
       this.assignment = assignment;
       this.nearest = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
       this.second = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
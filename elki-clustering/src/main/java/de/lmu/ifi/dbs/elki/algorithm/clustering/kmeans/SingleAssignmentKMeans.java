@@ -58,8 +58,8 @@ public class SingleAssignmentKMeans<V extends NumberVector> extends AbstractKMea
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
-    Instance instance = new Instance(relation, getDistanceFunction(), initialMeans(database, relation));
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means);
     instance.run(1);
     return instance.buildResult();
   }
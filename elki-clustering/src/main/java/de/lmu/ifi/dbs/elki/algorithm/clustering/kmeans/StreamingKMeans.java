@@ -0,0 +1,365 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.KMeansInitialization;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDRange;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.MaterializedRelation;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.GreaterEqualConstraint;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Single-pass streaming k-means with sequential updates.
+ * <p>
+ * The centers are initialized on a prefix of the data, using any
+ * {@link KMeansInitialization}. Then every point is assigned to the nearest
+ * center once, and the center is moved towards the point with a learning rate
+ * of one over the number of points assigned so far (MacQueen's update). With a
+ * batch size larger than one, the points are assigned in (parallel) batches
+ * before updating the centers, as in mini-batch k-means.
+ * <p>
+ * {@link #run(BundleStreamSource)} consumes a stream directly and only keeps
+ * the prefix used for initialization in memory, so it can process data sets
+ * that do not fit into main memory. When run on a relation, the initialization
+ * uses the entire relation (the initialization size is not used), and a final
+ * pass assigns all points to the nearest center.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+public class StreamingKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(StreamingKMeans.class);
+
+  /**
+   * Number of points used for initialization of a stream.
+   */
+  protected int initsize;
+
+  /**
+   * Batch size, 1 for sequential updates.
+   */
+  protected int batchsize;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction distance function
+   * @param k k parameter
+   * @param initializer Initialization method
+   * @param initsize Number of points used for initialization of a stream, at
+   *        least k
+   * @param batchsize Batch size, 1 for sequential updates
+   */
+  public StreamingKMeans(NumberVectorDistanceFunction<? super V> distanceFunction, int k, KMeansInitialization initializer, int initsize, int batchsize) {
+    super(distanceFunction, k, 1, initializer);
+    this.initsize = initsize;
+    this.batchsize = batchsize;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, getDistanceFunction(), means, batchsize);
+    instance.run(1);
+    instance.assignToNearestCluster();
+    return instance.buildResult();
+  }
+
+  /**
+   * Cluster a data stream in a single pass.
+   *
+   * @param source Data stream
+   * @return Cluster centers
+   */
+  public double[][] run(BundleStreamSource source) {
+    if(initsize < k) {
+      throw new AbortException("The initialization size must be at least k=" + k);
+    }
+    final NumberVectorDistanceFunction<? super V> df = getDistanceFunction();
+    List<NumberVector> buf = new ArrayList<>(initsize);
+    SimpleTypeInformation<?> type = null;
+    int col = -1;
+    double[][] means = null;
+    long[] counts = new long[k];
+    long size = 0, diststat = 0;
+    loop: while(true) {
+      switch(source.nextEvent()){
+      case META_CHANGED:
+        BundleMeta meta = source.getMeta();
+        col = -1;
+        for(int i = 0; i < meta.size(); i++) {
+          if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+            type = meta.get(i);
+            col = i;
+            break;
+          }
+        }
+        break;
+      case NEXT_OBJECT:
+        if(col < 0) {
+          throw new AbortException("No number vector column in the data stream.");
+        }
+        final NumberVector fv = (NumberVector) source.data(col);
+        ++size;
+        if(means != null && batchsize == 1) {
+          updateSingle(fv, means, df, counts);
+          diststat += k;
+          break;
+        }
+        buf.add(fv);
+        if(means == null ? buf.size() >= initsize : buf.size() >= batchsize) {
+          if(means == null) {
+            means = initialize(buf, type);
+          }
+          diststat += update(buf, means, df, counts);
+          buf.clear();
+        }
+        break;
+      case END_OF_STREAM:
+        break loop;
+      }
+    }
+    if(means == null) {
+      if(buf.size() < k) {
+        throw new AbortException("The data stream contains less than k=" + k + " objects.");
+      }
+      means = initialize(buf, type);
+    }
+    diststat += update(buf, means, df, counts);
+    final String key = getClass().getName();
+    LOG.statistics(new LongStatistic(key + ".objects", size));
+    LOG.statistics(new LongStatistic(key + ".distance-computations", diststat));
+    return means;
+  }
+
+  /**
+   * Choose the initial means on the buffered prefix of the stream.
+   *
+   * @param buf Buffered vectors
+   * @param type Vector type
+   * @return Initial means
+   */
+  @SuppressWarnings("unchecked")
+  protected double[][] initialize(List<NumberVector> buf, SimpleTypeInformation<?> type) {
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(buf.size());
+    WritableDataStore<V> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, NumberVector.class);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      store.put(it, (V) buf.get(it.getOffset()));
+    }
+    Relation<V> rel = new MaterializedRelation<>((SimpleTypeInformation<V>) type, ids, "stream prefix", store);
+    double[][] means = initialMeans(new ProxyDatabase(ids, rel), rel);
+    DBIDUtil.deallocateDBIDRange(ids);
+    return means;
+  }
+
+  /**
+   * Process buffered vectors, in batches.
+   *
+   * @param buf Buffered vectors
+   * @param means Centers to update
+   * @param df Distance function
+   * @param counts Number of points assigned to each center so far
+   * @return Number of distance computations
+   */
+  protected long update(List<NumberVector> buf, double[][] means, NumberVectorDistanceFunction<?> df, long[] counts) {
+    if(batchsize == 1) {
+      for(NumberVector fv : buf) {
+        updateSingle(fv, means, df, counts);
+      }
+      return buf.size() * (long) means.length;
+    }
+    int[] assign = new int[Math.min(batchsize, buf.size())];
+    long diststat = 0;
+    for(int start = 0; start < buf.size(); start += batchsize) {
+      List<NumberVector> batch = buf.subList(start, Math.min(start + batchsize, buf.size()));
+      diststat += KMeansMiniBatch.assignBatch(batch, means, df, assign);
+      KMeansMiniBatch.updateMeans(batch, assign, means, counts);
+    }
+    return diststat;
+  }
+
+  /**
+   * Sequential update with a single vector, without the batch overhead.
+   *
+   * @param fv Vector
+   * @param means Centers to update
+   * @param df Distance function
+   * @param counts Number of points assigned to each center so far
+   * @return Index of the nearest center
+   */
+  protected static int updateSingle(NumberVector fv, double[][] means, NumberVectorDistanceFunction<?> df, long[] counts) {
+    final int c = KMeansMiniBatch.nearest(fv, means, df);
+    KMeansMiniBatch.updateMean(fv, means[c], ++counts[c]);
+    return c;
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractKMeans.Instance {
+    /**
+     * Distance function.
+     */
+    NumberVectorDistanceFunction<?> df;
+
+    /**
+     * Batch size.
+     */
+    int batchsize;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     * @param batchsize Batch size, 1 for sequential updates
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistanceFunction<?> df, double[][] means, int batchsize) {
+      super(relation, df, means);
+      this.df = df;
+      this.batchsize = Math.min(batchsize, relation.size());
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      long[] counts = new long[k];
+      if(batchsize == 1) {
+        for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+          assignment.putInt(it, updateSingle(relation.get(it), means, df, counts));
+        }
+        countDistances(ids.size() * (long) k);
+        return ids.size();
+      }
+      List<NumberVector> batch = new ArrayList<>(batchsize);
+      int[] assign = new int[batchsize];
+      DBIDArrayIter it = ids.iter(), it2 = ids.iter();
+      for(int start = 0; start < ids.size(); start += batchsize) {
+        batch.clear();
+        for(it.seek(start); it.valid() && it.getOffset() < start + batchsize; it.advance()) {
+          batch.add(relation.get(it));
+        }
+        countDistances(KMeansMiniBatch.assignBatch(batch, means, df, assign));
+        KMeansMiniBatch.updateMeans(batch, assign, means, counts);
+        int i = 0;
+        for(it2.seek(start); i < batch.size(); it2.advance(), i++) {
+          assignment.putInt(it2, assign[i]);
+        }
+      }
+      return ids.size();
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractKMeans.Parameterizer<V> {
+    /**
+     * Parameter for the number of points used for initialization.
+     */
+    public static final OptionID INITSIZE_ID = new OptionID("kmeans.stream.initsize", "Number of points at the beginning of the stream used for initialization (at least k). Not used when run on a relation, which is initialized on all points.");
+
+    /**
+     * Parameter for the batch size.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("kmeans.stream.batchsize", "Number of points assigned before updating the centers; 1 for sequential updates.");
+
+    /**
+     * Number of points used for initialization.
+     */
+    protected int initsize;
+
+    /**
+     * Batch size.
+     */
+    protected int batchsize;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      getParameterK(config);
+      getParameterInitialization(config);
+      getParameterDistanceFunction(config);
+      IntParameter initsizeP = new IntParameter(INITSIZE_ID, 10000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(k > 0) {
+        initsizeP.addConstraint(new GreaterEqualConstraint(k));
+      }
+      if(config.grab(initsizeP)) {
+        initsize = initsizeP.intValue();
+      }
+      IntParameter batchsizeP = new IntParameter(BATCHSIZE_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(batchsizeP)) {
+        batchsize = batchsizeP.intValue();
+      }
+    }
+
+    @Override
+    protected StreamingKMeans<V> makeInstance() {
+      return new StreamingKMeans<>(distanceFunction, k, initializer, initsize, batchsize);
+    }
+  }
+}
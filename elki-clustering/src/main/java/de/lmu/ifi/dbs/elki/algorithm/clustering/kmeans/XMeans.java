@@ -24,6 +24,7 @@ import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.normalize;
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.timesEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -38,7 +39,10 @@ import de.lmu.ifi.dbs.elki.data.model.MeanModel;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.ProxyDatabase;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.ProxyView;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
@@ -47,6 +51,7 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.MutableProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.StringStatistic;
 import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.WrongParameterValueException;
@@ -67,6 +72,11 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
  * acceleration. Also note that kmax is not a hard threshold - the algorithm
  * can return up to 2*kmax clusters!
  * <p>
+ * The candidate splits of all clusters are independent, and are computed and
+ * evaluated concurrently if the inner k-means only depends on its initial
+ * means. The initial means of the splits are chosen in cluster order, so the
+ * result does not depend on the number of threads.
+ * <p>
  * Reference:
  * <p>
  * D. Pelleg, A. Moore<br>
@@ -159,12 +169,25 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
    */
   @Override
   public Clustering<M> run(Database database, Relation<V> relation) {
+    LOG.statistics(new StringStatistic(KEY + ".initialization", initializer.toString()));
+    return run(database, relation, initializer.chooseInitialMeans(database, relation, k_min, getDistanceFunction()));
+  }
+
+  /**
+   * Run the algorithm on a database and relation.
+   *
+   * @param database Database to process
+   * @param relation Data relation
+   * @param means Initial k_min means
+   * @return Clustering result.
+   */
+  @Override
+  public Clustering<M> run(Database database, Relation<V> relation, double[][] means) {
     MutableProgress prog = LOG.isVerbose() ? new MutableProgress("X-means number of clusters", k_max, LOG) : null;
 
     // Run initial k-means to find at least k_min clusters
     innerKMeans.setK(k_min);
-    LOG.statistics(new StringStatistic(KEY + ".initialization", initializer.toString()));
-    splitInitializer.setInitialMeans(initializer.chooseInitialMeans(database, relation, k_min, getDistanceFunction()));
+    splitInitializer.setInitialMeans(means);
     Clustering<M> clustering = innerKMeans.run(database, relation);
 
     if(prog != null) {
@@ -175,9 +198,7 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     while(clusters.size() <= k_max) {
       // Improve-Structure:
       ArrayList<Cluster<M>> nextClusters = new ArrayList<>();
-      for(Cluster<M> cluster : clusters) {
-        // Try to split this cluster:
-        List<Cluster<M>> childClusterList = splitCluster(cluster, database, relation);
+      for(List<Cluster<M>> childClusterList : splitClusters(clusters, database, relation)) {
         nextClusters.addAll(childClusterList);
         if(childClusterList.size() > 1) {
           k += childClusterList.size() - 1;
@@ -208,6 +229,42 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     return new Clustering<>("X-Means Result", "X-Means", clusters);
   }
 
+  /**
+   * Try to split every cluster, concurrently if the inner k-means permits.
+   *
+   * @param clusters Clusters to split
+   * @param database Database
+   * @param relation Data relation
+   * @return Result of {@link #splitCluster} for each cluster, in order
+   */
+  protected List<List<Cluster<M>>> splitClusters(List<Cluster<M>> clusters, Database database, Relation<V> relation) {
+    final int n = clusters.size();
+    if(!(innerKMeans instanceof AbstractKMeans) || !((AbstractKMeans<V, M>) innerKMeans).isDeterministicGivenInitialMeans()) {
+      List<List<Cluster<M>>> splits = new ArrayList<>(n);
+      for(Cluster<M> cluster : clusters) {
+        splits.add(splitCluster(cluster, database, relation));
+      }
+      return splits;
+    }
+    // Choose the initial means in cluster order, for reproducible random
+    // numbers:
+    final double[][][] inits = new double[n][][];
+    for(int i = 0; i < n; i++) {
+      Cluster<M> cluster = clusters.get(i);
+      inits[i] = cluster.size() <= 1 ? null : splitCentroid(cluster, relation);
+    }
+    innerKMeans.setK(2);
+    @SuppressWarnings("unchecked")
+    final List<Cluster<M>>[] splits = (List<Cluster<M>>[]) new List<?>[n];
+    ParallelExecutor.runBlocks(n, 1, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        splits[i] = splitCluster(clusters.get(i), database, relation, inits[i]);
+      }
+      return null;
+    });
+    return Arrays.asList(splits);
+  }
+
   /**
    * Conditionally splits the clusters based on the information criterion.
    *
@@ -232,7 +289,43 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     splitInitializer.setInitialMeans(splitCentroid(parentCluster, relation));
     innerKMeans.setK(2);
     Clustering<M> childClustering = innerKMeans.run(proxyDB);
+    return chooseSplit(parentClustering, childClustering, relation);
+  }
+
+  /**
+   * Split a cluster with the given initial means, and keep the split if it
+   * improves the information criterion. This does not modify the shared state
+   * of the inner k-means, and hence can run concurrently.
+   *
+   * @param parentCluster Cluster to split
+   * @param database Database
+   * @param relation Data relation
+   * @param init Initial means, {@code null} if the cluster cannot be split
+   * @return Parent cluster when split decreases clustering quality or child
+   *         clusters when split improves clustering.
+   */
+  protected List<Cluster<M>> splitCluster(Cluster<M> parentCluster, Database database, Relation<V> relation, double[][] init) {
+    ArrayList<Cluster<M>> parentClusterList = new ArrayList<Cluster<M>>(1);
+    parentClusterList.add(parentCluster);
+    if(init == null) {
+      return parentClusterList;
+    }
+    Clustering<M> parentClustering = new Clustering<>(parentCluster.getName(), parentCluster.getName(), parentClusterList);
+    ProxyDatabase proxyDB = new ProxyDatabase(parentCluster.getIDs(), database);
+    Relation<V> proxyRel = new ProxyView<>(parentCluster.getIDs(), relation);
+    Clustering<M> childClustering = ((AbstractKMeans<V, M>) innerKMeans).run(proxyDB, proxyRel, init);
+    return chooseSplit(parentClustering, childClustering, relation);
+  }
 
+  /**
+   * Compare the parent cluster and its split using the information criterion.
+   *
+   * @param parentClustering Parent cluster, as clustering
+   * @param childClustering Split of the parent cluster
+   * @param relation Data relation
+   * @return Clusters to keep
+   */
+  private List<Cluster<M>> chooseSplit(Clustering<M> parentClustering, Clustering<M> childClustering, Relation<V> relation) {
     double parentEvaluation = informationCriterion.quality(parentClustering, getDistanceFunction(), relation);
     double childrenEvaluation = informationCriterion.quality(childClustering, getDistanceFunction(), relation);
 
@@ -242,7 +335,7 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     }
 
     // Check if split is an improvement:
-    return (childrenEvaluation > parentEvaluation) ^ informationCriterion.ascending() ? parentClusterList : childClustering.getAllClusters();
+    return (childrenEvaluation > parentEvaluation) ^ informationCriterion.ascending() ? parentClustering.getAllClusters() : childClustering.getAllClusters();
   }
 
   /**
@@ -256,10 +349,18 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     double[] parentCentroid = parentCluster.getModel().getMean();
 
     // Compute size of cluster/region
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(parentCluster.getIDs());
+    final DoubleVector centroid = DoubleVector.wrap(parentCentroid);
     double radius = 0.;
-    for(DBIDIter it = parentCluster.getIDs().iter(); it.valid(); it.advance()) {
-      double d = getDistanceFunction().distance(relation.get(it), DoubleVector.wrap(parentCentroid));
-      radius = (d > radius) ? d : radius;
+    for(double r : ParallelExecutor.runBlocks(ids.size(), (start, end) -> {
+      double max = 0.;
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        double d = getDistanceFunction().distance(relation.get(it), centroid);
+        max = (d > max) ? d : max;
+      }
+      return max;
+    })) {
+      radius = (r > radius) ? r : radius;
     }
 
     // Choose random vector
@@ -282,6 +383,12 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     return innerKMeans.getInputTypeRestriction();
   }
 
+  @Override
+  protected boolean isDeterministicGivenInitialMeans() {
+    // Splitting modifies the inner k-means, and uses a shared random generator.
+    return false;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
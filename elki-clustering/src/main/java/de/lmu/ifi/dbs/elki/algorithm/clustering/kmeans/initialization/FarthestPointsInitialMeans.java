@@ -20,12 +20,16 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.database.Database;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
 import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
 import de.lmu.ifi.dbs.elki.database.datastore.WritableDoubleDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
 import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDRef;
 import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
@@ -34,10 +38,12 @@ import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
 import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.Flag;
+import de.lmu.ifi.dbs.elki.utilities.pairs.DoubleIntPair;
 import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 
 /**
@@ -46,6 +52,9 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
  *
  * Note: this is less random than other initializations, so running multiple
  * times will be more likely to return the same local minima.
+ * <p>
+ * For vector data, each scan runs in parallel blocks, with the same result as a
+ * serial scan.
  *
  * @author Erich Schubert
  * @since 0.6.0
@@ -85,24 +94,40 @@ public class FarthestPointsInitialMeans<O> extends AbstractKMeansInitialization
     NumberVector prevmean = relation.get(first);
     means[0] = prevmean.toArray();
 
-    // Find farthest object each.
+    // Find farthest object each, in parallel blocks.
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    final int minblock = KMeansPlusPlusInitialMeans.minBlockSize(ids);
+    DBIDArrayIter bi = aids.iter();
     DBIDVar best = DBIDUtil.newVar(first);
     for(int i = (dropfirst ? 0 : 1); i < k; i++) {
-      double maxdist = Double.NEGATIVE_INFINITY;
-      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
-        final double prev = store.doubleValue(it);
-        if(prev != prev) {
-          continue; // NaN: already chosen!
-        }
-        double val = Math.min(prev, distanceFunction.distance(prevmean, relation.get(it)));
-        // Don't store distance to first mean, when it will be dropped below.
-        if(i > 0) {
-          store.putDouble(it, val);
-        }
-        if(val > maxdist) {
-          maxdist = val;
-          best.set(it);
+      final NumberVector mean = prevmean;
+      final boolean keep = i > 0;
+      List<DoubleIntPair> parts = ParallelExecutor.runBlocks(aids.size(), minblock, (start, end) -> {
+        DoubleIntPair max = new DoubleIntPair(Double.NEGATIVE_INFINITY, -1);
+        for(DBIDArrayIter it = aids.iter().seek(start); it.valid() && it.getOffset() < end; it.advance()) {
+          final double prev = store.doubleValue(it);
+          if(prev != prev) {
+            continue; // NaN: already chosen!
+          }
+          double val = Math.min(prev, distanceFunction.distance(mean, relation.get(it)));
+          // Don't store distance to first mean, when it will be dropped below.
+          if(keep) {
+            store.putDouble(it, val);
+          }
+          if(val > max.first) {
+            max.first = val;
+            max.second = it.getOffset();
+          }
         }
+        return max;
+      });
+      // Earliest maximum, as in a serial scan:
+      DoubleIntPair max = parts.get(0);
+      for(DoubleIntPair p : parts) {
+        max = p.first > max.first ? p : max;
+      }
+      if(max.second >= 0) {
+        best.set(bi.seek(max.second));
       }
       // Add new mean (and drop the initial mean when desired)
       store.putDouble(best, Double.NaN); // So it won't be chosen twice.
@@ -0,0 +1,386 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Scalable k-means++ initialization (k-means||), which samples many candidates
+ * per pass instead of a single one.
+ * <p>
+ * Starting with a random point, every point is sampled independently with
+ * probability proportional to its distance to the current candidates, with an
+ * expected number of {@code oversampling * k} points per round. After a few
+ * rounds, the candidates are weighted by the number of points closest to
+ * them, and reclustered into k centers with weighted k-means++ and Lloyd
+ * iterations. Each round is a single parallel pass over the data.
+ * <p>
+ * The sampling uses a random stream per point, so the result does not depend
+ * on the number of threads.
+ * <p>
+ * Reference:
+ * <p>
+ * B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii<br>
+ * Scalable K-Means++<br>
+ * Proc. VLDB Endowment 5(7)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Title("k-means||")
+@Reference(authors = "B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii", //
+    title = "Scalable K-Means++", //
+    booktitle = "Proc. VLDB Endowment 5(7)", //
+    url = "https://doi.org/10.14778/2180912.2180915", //
+    bibkey = "DBLP:journals/pvldb/BahmaniMVKV12")
+public class KMeansParallelInitialMeans extends AbstractKMeansInitialization {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(KMeansParallelInitialMeans.class);
+
+  /**
+   * Maximum number of Lloyd iterations when reclustering the candidates.
+   */
+  private static final int RECLUSTER_MAXITER = 100;
+
+  /**
+   * Oversampling factor, relative to k.
+   */
+  protected double oversampling;
+
+  /**
+   * Number of sampling rounds.
+   */
+  protected int rounds;
+
+  /**
+   * Constructor.
+   *
+   * @param rnd Random generator.
+   * @param oversampling Oversampling factor, relative to k
+   * @param rounds Number of sampling rounds
+   */
+  public KMeansParallelInitialMeans(RandomFactory rnd, double oversampling, int rounds) {
+    super(rnd);
+    this.oversampling = oversampling;
+    this.rounds = rounds;
+  }
+
+  @Override
+  public double[][] chooseInitialMeans(Database database, Relation<? extends NumberVector> relation, int k, NumberVectorDistanceFunction<?> distanceFunction) {
+    if(relation.size() < k) {
+      throw new IllegalArgumentException("Cannot choose k=" + k + " means from N=" + relation.size() + " < k objects.");
+    }
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    Random random = rnd.getSingleThreadedRandom();
+    List<NumberVector> cands = new ArrayList<>();
+    cands.add(relation.get(DBIDUtil.randomSample(ids, random)));
+    double[] dist = new double[size];
+    Arrays.fill(dist, Double.POSITIVE_INFINITY);
+    int[] nearest = new int[size];
+    double cost = updateDistances(relation, ids, distanceFunction, cands, 0, dist, nearest);
+    final double ell = oversampling * k;
+    for(int r = 0; r < rounds && cost > 0; r++) {
+      final long seed = random.nextLong();
+      final double scale = ell / cost;
+      List<List<NumberVector>> parts = ParallelExecutor.runBlocks(size, (start, end) -> {
+        List<NumberVector> sample = new ArrayList<>();
+        DBIDArrayIter it = ids.iter();
+        for(int i = start; i < end; i++) {
+          if(dist[i] * scale > uniform(seed, i)) {
+            sample.add(relation.get(it.seek(i)));
+          }
+        }
+        return sample;
+      });
+      final int prev = cands.size();
+      for(List<NumberVector> part : parts) {
+        cands.addAll(part);
+      }
+      cost = updateDistances(relation, ids, distanceFunction, cands, prev, dist, nearest);
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(getClass().getName() + ".candidates", cands.size()));
+    }
+    if(cands.size() <= k) {
+      // Too few candidates (e.g., duplicates): fill with random points.
+      for(DBIDIter it = DBIDUtil.randomSample(ids, k - cands.size(), random).iter(); it.valid(); it.advance()) {
+        cands.add(relation.get(it));
+      }
+      return unboxVectors(cands);
+    }
+    // Weight candidates by the number of points closest to them.
+    double[] weights = new double[cands.size()];
+    for(int i = 0; i < size; i++) {
+      weights[nearest[i]]++;
+    }
+    return recluster(cands, weights, k, distanceFunction, random);
+  }
+
+  /**
+   * Update the distances to the nearest candidate, in parallel.
+   *
+   * @param relation Data relation
+   * @param ids Object ids
+   * @param df Distance function
+   * @param cands Candidates
+   * @param from First new candidate
+   * @param dist Distance to the nearest candidate (updated)
+   * @param nearest Nearest candidate (updated)
+   * @return Sum of distances
+   */
+  private static double updateDistances(Relation<? extends NumberVector> relation, ArrayDBIDs ids, NumberVectorDistanceFunction<?> df, List<NumberVector> cands, int from, double[] dist, int[] nearest) {
+    final int to = cands.size();
+    if(from < to) {
+      ParallelExecutor.runBlocks(ids.size(), (start, end) -> {
+        DBIDArrayIter it = ids.iter();
+        for(int i = start; i < end; i++) {
+          final NumberVector vec = relation.get(it.seek(i));
+          for(int j = from; j < to; j++) {
+            final double d = df.distance(vec, cands.get(j));
+            if(d < dist[i]) {
+              dist[i] = d;
+              nearest[i] = j;
+            }
+          }
+        }
+        return null;
+      });
+    }
+    // Serial sum, independent of the number of threads.
+    double sum = 0.;
+    for(double d : dist) {
+      sum += d;
+    }
+    return sum;
+  }
+
+  /**
+   * Recluster the weighted candidates, using weighted k-means++ and Lloyd
+   * iterations.
+   *
+   * @param cands Candidates
+   * @param weights Candidate weights
+   * @param k Number of centers
+   * @param df Distance function
+   * @param random Random generator
+   * @return Centers
+   */
+  protected static double[][] recluster(List<NumberVector> cands, double[] weights, int k, NumberVectorDistanceFunction<?> df, Random random) {
+    final int m = cands.size();
+    double[][] means = new double[k][];
+    double[] mind = new double[m];
+    Arrays.fill(mind, Double.POSITIVE_INFINITY);
+    int[] assign = new int[m];
+    // Weighted k-means++, starting with a point chosen by weight only.
+    double[] prob = weights.clone();
+    for(int c = 0; c < k; c++) {
+      final int chosen = sample(prob, random);
+      means[c] = cands.get(chosen).toArray();
+      final DoubleVector mean = DoubleVector.wrap(means[c]);
+      final int cur = c;
+      ParallelExecutor.runBlocks(m, (start, end) -> {
+        for(int i = start; i < end; i++) {
+          final double d = df.distance(cands.get(i), mean);
+          if(d < mind[i]) {
+            mind[i] = d;
+            assign[i] = cur;
+          }
+        }
+        return null;
+      });
+      mind[chosen] = 0.;
+      for(int i = 0; i < m; i++) {
+        prob[i] = weights[i] * mind[i];
+      }
+    }
+    // Weighted Lloyd iterations on the candidates.
+    final int dim = means[0].length;
+    double[][] sums = new double[k][dim];
+    double[] wsum = new double[k];
+    for(int iter = 0; iter < RECLUSTER_MAXITER; iter++) {
+      for(int c = 0; c < k; c++) {
+        Arrays.fill(sums[c], 0.);
+      }
+      Arrays.fill(wsum, 0.);
+      for(int i = 0; i < m; i++) {
+        final NumberVector vec = cands.get(i);
+        final double[] sum = sums[assign[i]];
+        for(int d = 0; d < dim; d++) {
+          sum[d] += weights[i] * vec.doubleValue(d);
+        }
+        wsum[assign[i]] += weights[i];
+      }
+      for(int c = 0; c < k; c++) {
+        if(wsum[c] > 0) { // Keep the old mean otherwise.
+          for(int d = 0; d < dim; d++) {
+            means[c][d] = sums[c][d] / wsum[c];
+          }
+        }
+      }
+      List<Integer> changed = ParallelExecutor.runBlocks(m, (start, end) -> {
+        int ch = 0;
+        for(int i = start; i < end; i++) {
+          final NumberVector vec = cands.get(i);
+          double best = Double.POSITIVE_INFINITY;
+          int bestc = 0;
+          for(int c = 0; c < k; c++) {
+            final double d = df.distance(vec, DoubleVector.wrap(means[c]));
+            if(d < best) {
+              best = d;
+              bestc = c;
+            }
+          }
+          if(assign[i] != bestc) {
+            assign[i] = bestc;
+            ++ch;
+          }
+        }
+        return ch;
+      });
+      int total = 0;
+      for(Integer ch : changed) {
+        total += ch;
+      }
+      if(total == 0) {
+        break;
+      }
+    }
+    return means;
+  }
+
+  /**
+   * Sample an index with probability proportional to the given weights.
+   *
+   * @param prob Weights
+   * @param random Random generator
+   * @return Chosen index
+   */
+  private static int sample(double[] prob, Random random) {
+    double total = 0.;
+    for(double p : prob) {
+      total += p;
+    }
+    if(!(total > 0)) {
+      return random.nextInt(prob.length);
+    }
+    double r = random.nextDouble() * total;
+    int last = -1;
+    for(int i = 0; i < prob.length; i++) {
+      if(prob[i] > 0) {
+        last = i;
+        if((r -= prob[i]) < 0) {
+          return i;
+        }
+      }
+    }
+    return last; // Rare case, due to floating point math
+  }
+
+  /**
+   * Uniform random number in [0;1) for a point in a round, independent of the
+   * partitioning (SplitMix64 finalizer).
+   *
+   * @param seed Round seed
+   * @param i Point offset
+   * @return Random number
+   */
+  private static double uniform(long seed, int i) {
+    long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z ^= z >>> 31;
+    return (z >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer extends AbstractKMeansInitialization.Parameterizer {
+    /**
+     * Oversampling factor, relative to k.
+     */
+    public static final OptionID OVERSAMPLING_ID = new OptionID("kmeans.parallel.oversampling", "Expected number of candidates sampled in each round, relative to k.");
+
+    /**
+     * Number of sampling rounds.
+     */
+    public static final OptionID ROUNDS_ID = new OptionID("kmeans.parallel.rounds", "Number of sampling rounds.");
+
+    /**
+     * Oversampling factor, relative to k.
+     */
+    protected double oversampling;
+
+    /**
+     * Number of sampling rounds.
+     */
+    protected int rounds;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      DoubleParameter oversamplingP = new DoubleParameter(OVERSAMPLING_ID, 2.) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE);
+      if(config.grab(oversamplingP)) {
+        oversampling = oversamplingP.doubleValue();
+      }
+      IntParameter roundsP = new IntParameter(ROUNDS_ID, 5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(roundsP)) {
+        rounds = roundsP.intValue();
+      }
+    }
+
+    @Override
+    protected KMeansParallelInitialMeans makeInstance() {
+      return new KMeansParallelInitialMeans(rnd, oversampling, rounds);
+    }
+  }
+}
@@ -34,6 +34,7 @@ import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.logging.LoggingUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
@@ -41,6 +42,9 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 /**
  * K-Means++ initialization for k-means.
  * <p>
+ * The weight updates of the vector-based initialization run in parallel; the
+ * chosen means are the same as with a serial update.
+ * <p>
  * Reference:
  * <p>
  * D. Arthur, S. Vassilvitskii<br>
@@ -59,6 +63,11 @@ import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
     bibkey = "DBLP:conf/soda/ArthurV07")
 @Alias("de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeansPlusPlusInitialMeans")
 public class KMeansPlusPlusInitialMeans<O> extends AbstractKMeansInitialization implements KMedoidsInitialization<O> {
+  /**
+   * Minimum block size for parallel weight updates.
+   */
+  static final int PARALLEL_BLOCKSIZE = 1024;
+
   /**
    * Constructor.
    *
@@ -117,14 +126,15 @@ public class KMeansPlusPlusInitialMeans<O> extends AbstractKMeansInitialization
    * @return Weight sum
    */
   static double initialWeights(WritableDoubleDataStore weights, DBIDs ids, NumberVector first, DistanceQuery<? super NumberVector> distQ) {
-    double weightsum = 0.;
-    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
-      // Distance will usually already be squared
-      double weight = distQ.distance(first, it);
-      weights.putDouble(it, weight);
-      weightsum += weight;
-    }
-    return weightsum;
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    ParallelExecutor.runBlocks(aids.size(), minBlockSize(ids), (start, end) -> {
+      for(DBIDArrayIter it = aids.iter().seek(start); it.valid() && it.getOffset() < end; it.advance()) {
+        // Distance will usually already be squared
+        weights.putDouble(it, distQ.distance(first, it));
+      }
+      return null;
+    });
+    return sumWeights(weights, ids);
   }
 
   /**
@@ -275,22 +285,49 @@ public class KMeansPlusPlusInitialMeans<O> extends AbstractKMeansInitialization
    * @return Weight sum
    */
   private static double updateWeights(WritableDoubleDataStore weights, DBIDs ids, NumberVector latest, DistanceQuery<? super NumberVector> distQ) {
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+    ParallelExecutor.runBlocks(aids.size(), minBlockSize(ids), (start, end) -> {
+      for(DBIDArrayIter it = aids.iter().seek(start); it.valid() && it.getOffset() < end; it.advance()) {
+        double weight = weights.doubleValue(it);
+        if(weight <= 0.) {
+          continue; // Duplicate, or already chosen.
+        }
+        double newweight = distQ.distance(latest, it);
+        if(newweight < weight) {
+          weights.putDouble(it, newweight);
+        }
+      }
+      return null;
+    });
+    return sumWeights(weights, ids);
+  }
+
+  /**
+   * Sum the weights, in the same order as a serial update would.
+   *
+   * @param weights Weight list
+   * @param ids IDs
+   * @return Weight sum
+   */
+  private static double sumWeights(WritableDoubleDataStore weights, DBIDs ids) {
     double weightsum = 0.;
     for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
-      double weight = weights.doubleValue(it);
-      if(weight <= 0.) {
-        continue; // Duplicate, or already chosen.
-      }
-      double newweight = distQ.distance(latest, it);
-      if(newweight < weight) {
-        weights.putDouble(it, newweight);
-        weight = newweight;
-      }
-      weightsum += weight;
+      weightsum += weights.doubleValue(it);
     }
     return weightsum;
   }
 
+  /**
+   * Minimum block size for the parallel weight updates. Only array-backed data
+   * stores can be written concurrently, otherwise a single block is used.
+   *
+   * @param ids IDs
+   * @return Minimum block size
+   */
+  static int minBlockSize(DBIDs ids) {
+    return ids instanceof DBIDRange ? PARALLEL_BLOCKSIZE : Math.max(1, ids.size());
+  }
+
   /**
    * Parameterization class.
    *
@@ -73,9 +73,8 @@ public class ParallelLloydKMeans<V extends NumberVector> extends AbstractKMeans<
   }
 
   @Override
-  public Clustering<KMeansModel> run(Database database, Relation<V> relation) {
+  public Clustering<KMeansModel> run(Database database, Relation<V> relation, double[][] means) {
     DBIDs ids = relation.getDBIDs();
-    double[][] means = initialMeans(database, relation);
 
     // Store for current cluster assignment.
     WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
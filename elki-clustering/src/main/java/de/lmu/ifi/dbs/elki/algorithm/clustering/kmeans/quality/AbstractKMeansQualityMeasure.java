@@ -29,12 +29,14 @@ import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
 import de.lmu.ifi.dbs.elki.data.model.MeanModel;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.database.relation.RelationUtil;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
 import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 
 import net.jafama.FastMath;
@@ -98,14 +100,22 @@ public abstract class AbstractKMeansQualityMeasure<O extends NumberVector> imple
       return ((KMeansModel) model).getVarianceContribution();
     }
     // Re-compute:
-    DBIDs ids = cluster.getIDs();
-    DoubleVector mean = DoubleVector.wrap(model.getMean());
-
-    boolean squared = distanceFunction.isSquared();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(cluster.getIDs());
+    final DoubleVector mean = DoubleVector.wrap(model.getMean());
+
+    final boolean squared = distanceFunction.isSquared();
+    final double[] dists = new double[ids.size()];
+    ParallelExecutor.runBlocks(ids.size(), (start, end) -> {
+      for(DBIDArrayIter iter = ids.iter().seek(start); iter.getOffset() < end; iter.advance()) {
+        double dist = distanceFunction.distance(relation.get(iter), mean);
+        dists[iter.getOffset()] = squared ? dist : dist * dist;
+      }
+      return null;
+    });
+    // Aggregate in serial order, for reproducible results.
     double variance = 0.;
-    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      double dist = distanceFunction.distance(relation.get(iter), mean);
-      variance += squared ? dist : dist * dist;
+    for(double dist : dists) {
+      variance += dist;
     }
     return variance;
   }
@@ -24,10 +24,12 @@ import de.lmu.ifi.dbs.elki.data.Cluster;
 import de.lmu.ifi.dbs.elki.data.Clustering;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.model.MeanModel;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
-import de.lmu.ifi.dbs.elki.database.ids.DBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDArrayIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
 import de.lmu.ifi.dbs.elki.database.relation.Relation;
 import de.lmu.ifi.dbs.elki.distance.distancefunction.NumberVectorDistanceFunction;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 
 /**
  * Class for computing the average overall distance.
@@ -42,15 +44,25 @@ public class WithinClusterMeanDistanceQualityMeasure implements KMeansQualityMea
   public <V extends NumberVector> double quality(Clustering<? extends MeanModel> clustering, NumberVectorDistanceFunction<? super V> distanceFunction, Relation<V> relation) {
     double clusterDistanceSum = 0;
     for(Cluster<? extends MeanModel> cluster : clustering.getAllClusters()) {
-      DBIDs ids = cluster.getIDs();
+      final ArrayDBIDs ids = DBIDUtil.ensureArray(cluster.getIDs());
 
-      // Compute sum of pairwise distances:
-      double clusterPairwiseDistanceSum = 0;
-      for(DBIDIter iter1 = ids.iter(); iter1.valid(); iter1.advance()) {
-        NumberVector obj1 = relation.get(iter1);
-        for(DBIDIter iter2 = ids.iter(); iter2.valid(); iter2.advance()) {
-          clusterPairwiseDistanceSum += distanceFunction.distance(obj1, relation.get(iter2));
+      // Compute sum of pairwise distances, one row per object:
+      final double[] rowsums = new double[ids.size()];
+      ParallelExecutor.runBlocks(ids.size(), 1, (start, end) -> {
+        DBIDArrayIter iter2 = ids.iter();
+        for(DBIDArrayIter iter1 = ids.iter().seek(start); iter1.getOffset() < end; iter1.advance()) {
+          NumberVector obj1 = relation.get(iter1);
+          double rowsum = 0;
+          for(iter2.seek(0); iter2.valid(); iter2.advance()) {
+            rowsum += distanceFunction.distance(obj1, relation.get(iter2));
+          }
+          rowsums[iter1.getOffset()] = rowsum;
         }
+        return null;
+      });
+      double clusterPairwiseDistanceSum = 0;
+      for(double rowsum : rowsums) {
+        clusterPairwiseDistanceSum += rowsum;
       }
       clusterDistanceSum += clusterPairwiseDistanceSum / (ids.size() * ids.size());
     }
@@ -0,0 +1,259 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.optics;
+
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreFactory;
+import de.lmu.ifi.dbs.elki.database.datastore.DataStoreUtil;
+import de.lmu.ifi.dbs.elki.database.datastore.WritableIntegerDataStore;
+import de.lmu.ifi.dbs.elki.database.ids.*;
+import de.lmu.ifi.dbs.elki.database.query.distance.DistanceQuery;
+import de.lmu.ifi.dbs.elki.database.query.range.RangeQuery;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.DistanceFunction;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
+import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
+import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.heap.UpdatableHeap;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+
+/**
+ * The OPTICS algorithm for density-based hierarchical clustering, with all
+ * range queries precomputed in parallel.
+ * <p>
+ * All epsilon-range queries are run in bulk on multiple threads first (and
+ * can use an index), and only the neighborhoods of core points are kept.
+ * The ordering step is the same heap-based expansion as in {@link OPTICSHeap},
+ * and produces the same cluster order, but it only performs cheap lookups.
+ * <p>
+ * This trades memory for run time: all neighborhoods of core points are
+ * stored at the same time, so epsilon should be chosen small enough.
+ * <p>
+ * Reference:
+ * <p>
+ * Mihael Ankerst, Markus M. Breunig, Hans-Peter Kriegel, Jörg Sander<br>
+ * OPTICS: Ordering Points to Identify the Clustering Structure<br>
+ * Proc. ACM SIGMOD Int. Conf. on Management of Data (SIGMOD '99)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @navassoc - produces - ClusterOrder
+ * @has - - - OPTICSHeapEntry
+ *
+ * @param <O> the type of objects handled by the algorithm
+ */
+@Title("OPTICS: Density-Based Hierarchical Clustering (with parallel bulk range queries)")
+@Reference(authors = "Mihael Ankerst, Markus M. Breunig, Hans-Peter Kriegel, Jörg Sander", //
+    title = "OPTICS: Ordering Points to Identify the Clustering Structure", //
+    booktitle = "Proc. ACM SIGMOD Int. Conf. on Management of Data (SIGMOD '99)", //
+    url = "https://doi.org/10.1145/304181.304187", //
+    bibkey = "DBLP:conf/sigmod/AnkerstBKS99")
+public class ParallelOPTICS<O> extends AbstractOPTICS<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelOPTICS.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distanceFunction Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts value
+   */
+  public ParallelOPTICS(DistanceFunction<? super O> distanceFunction, double epsilon, int minpts) {
+    super(distanceFunction, epsilon, minpts);
+  }
+
+  @Override
+  public ClusterOrder run(Database db, Relation<O> relation) {
+    return new Instance(db, relation).run();
+  }
+
+  /**
+   * Instance for processing a single data set.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance {
+    /**
+     * Processed flags, by offset.
+     */
+    private boolean[] processed;
+
+    /**
+     * Offsets of the objects.
+     */
+    private WritableIntegerDataStore offsets;
+
+    /**
+     * Sorted neighborhoods of core points, by offset; {@code null} otherwise.
+     */
+    private DoubleDBIDList[] neighborhoods;
+
+    /**
+     * Heap of candidates.
+     */
+    UpdatableHeap<OPTICSHeapEntry> heap;
+
+    /**
+     * Output cluster order.
+     */
+    ClusterOrder clusterOrder;
+
+    /**
+     * IDs to process.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Progress for logging.
+     */
+    FiniteProgress progress;
+
+    /**
+     * Range query.
+     */
+    RangeQuery<O> rangeQuery;
+
+    /**
+     * Constructor for a single data set.
+     *
+     * @param db Database
+     * @param relation Data relation
+     */
+    public Instance(Database db, Relation<O> relation) {
+      ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      processed = new boolean[ids.size()];
+      offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+      clusterOrder = new ClusterOrder(ids, "OPTICS Clusterorder", "optics-clusterorder");
+      progress = LOG.isVerbose() ? new FiniteProgress("OPTICS", ids.size(), LOG) : null;
+      DistanceQuery<O> dq = db.getDistanceQuery(relation, getDistanceFunction());
+      rangeQuery = db.getRangeQuery(dq, epsilon);
+      heap = new UpdatableHeap<>();
+    }
+
+    /**
+     * Process the data set.
+     *
+     * @return Cluster order result.
+     */
+    public ClusterOrder run() {
+      computeNeighborhoods();
+      DBIDArrayIter iditer = ids.iter();
+      for(int i = 0; i < processed.length; i++) {
+        if(!processed[i]) {
+          assert (heap.isEmpty());
+          expandClusterOrder(iditer.seek(i));
+        }
+      }
+      LOG.ensureCompleted(progress);
+      offsets.destroy();
+      return clusterOrder;
+    }
+
+    /**
+     * Run all range queries in parallel, and keep the neighborhoods of core
+     * points.
+     */
+    protected void computeNeighborhoods() {
+      final int size = ids.size();
+      for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        offsets.putInt(iter, iter.getOffset());
+      }
+      neighborhoods = new DoubleDBIDList[size];
+      FiniteProgress rprog = LOG.isVerbose() ? new FiniteProgress("Range queries", size, LOG) : null;
+      long stored = 0;
+      for(long c : ParallelExecutor.runBlocks(size, (start, end) -> {
+        DBIDArrayIter iter = ids.iter();
+        long cnt = 0;
+        for(int i = start; i < end; i++) {
+          ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList();
+          rangeQuery.getRangeForDBID(iter.seek(i), epsilon, neighbors);
+          if(neighbors.size() >= minpts) {
+            neighbors.sort();
+            neighborhoods[i] = neighbors;
+            cnt += neighbors.size();
+          }
+          LOG.incrementProcessed(rprog);
+        }
+        return cnt;
+      })) {
+        stored += c;
+      }
+      LOG.ensureCompleted(rprog);
+      LOG.statistics(new LongStatistic(ParallelOPTICS.class.getName() + ".stored-neighbors", stored));
+    }
+
+    /**
+     * OPTICS-function expandClusterOrder.
+     *
+     * @param objectID the currently processed object
+     */
+    protected void expandClusterOrder(DBIDRef objectID) {
+      heap.add(new OPTICSHeapEntry(DBIDUtil.deref(objectID), null, Double.POSITIVE_INFINITY));
+
+      while(!heap.isEmpty()) {
+        final OPTICSHeapEntry current = heap.poll();
+        clusterOrder.add(current.objectID, current.reachability, current.predecessorID);
+        final int off = offsets.intValue(current.objectID);
+        processed[off] = true;
+
+        DoubleDBIDList neighbors = neighborhoods[off];
+        if(neighbors != null) {
+          neighborhoods[off] = null; // No longer needed.
+          DoubleDBIDListIter neighbor = neighbors.iter();
+          final double coreDistance = neighbor.seek(minpts - 1).doubleValue();
+
+          for(neighbor.seek(0); neighbor.valid(); neighbor.advance()) {
+            if(processed[offsets.intValue(neighbor)]) {
+              continue;
+            }
+            double reachability = MathUtil.max(neighbor.doubleValue(), coreDistance);
+            heap.add(new OPTICSHeapEntry(DBIDUtil.deref(neighbor), current.objectID, reachability));
+          }
+        }
+        LOG.incrementProcessed(progress);
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer<O> extends AbstractOPTICS.Parameterizer<O> {
+    @Override
+    protected ParallelOPTICS<O> makeInstance() {
+      return new ParallelOPTICS<>(distanceFunction, epsilon, minpts);
+    }
+  }
+}
@@ -25,7 +25,7 @@
 package de.lmu.ifi.dbs.elki.index.preprocessed.fastoptics;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.optics.FastOPTICS;
@@ -39,6 +39,7 @@ import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.logging.statistics.LongStatistic;
 import de.lmu.ifi.dbs.elki.math.MathUtil;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
@@ -101,6 +102,16 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
    */
   private static final float sizeTolerance = 2f / 3;
 
+  /**
+   * Number of point partitions for building the neighbor sets in parallel.
+   */
+  private static final int NEIGHBOR_PARTITIONS = 64;
+
+  /**
+   * Number of sets processed at once for density estimation.
+   */
+  private static final int DENSITY_CHUNK = 4096;
+
   /**
    * minimum size for which a point set is further partitioned (roughly
    * corresponds to minPts in OPTICS)
@@ -144,6 +155,10 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
   /**
    * Create random projections, project points and put points into sets of size
    * about minSplitSize/2
+   * <p>
+   * The projections and the splits are computed in parallel. Every split uses
+   * its own random generator, seeded sequentially, so the result does not
+   * depend on the number of threads.
    *
    * @param points points to process
    * @param minSplitSize minimum size for which a point set is further
@@ -163,16 +178,13 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
 
     LOG.statistics(new LongStatistic(PREFIX + ".partition-size", nPointSetSplits));
     LOG.statistics(new LongStatistic(PREFIX + ".num-projections", nProject1d));
-    splitsets = new ArrayList<>();
-
-    // perform projections of points
-    projectedPoints = new DoubleDataStore[nProject1d];
-    DoubleDataStore[] tmpPro = new DoubleDataStore[nProject1d];
 
+    // Draw the random projections sequentially, for reproducibility.
     Random rand = rnd.getSingleThreadedRandom();
-    FiniteProgress projp = LOG.isVerbose() ? new FiniteProgress("Random projections", nProject1d, LOG) : null;
+    final double[][] rps = new double[nProject1d][];
+    WritableDoubleDataStore[] pros = new WritableDoubleDataStore[nProject1d];
     for(int j = 0; j < nProject1d; j++) {
-      double[] currRp = new double[dim];
+      double[] currRp = rps[j] = new double[dim];
       double sum = 0;
       for(int i = 0; i < dim; i++) {
         double fl = rand.nextDouble() - 0.5;
@@ -183,21 +195,30 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
       for(int i = 0; i < dim; i++) {
         currRp[i] /= sum;
       }
-      WritableDoubleDataStore currPro = DataStoreUtil.makeDoubleStorage(ptList, DataStoreFactory.HINT_HOT);
-
-      for(DBIDIter it = ptList.iter(); it.valid(); it.advance()) {
-        NumberVector vecPt = points.get(it);
-        // Dot product:
-        double sum2 = 0;
-        for(int i = 0; i < dim; i++) {
-          sum2 += currRp[i] * vecPt.doubleValue(i);
+      pros[j] = DataStoreUtil.makeDoubleStorage(ptList, DataStoreFactory.HINT_HOT);
+    }
+    // Project the points, in parallel. Every projection is written by a
+    // single thread only.
+    FiniteProgress projp = LOG.isVerbose() ? new FiniteProgress("Random projections", nProject1d, LOG) : null;
+    ParallelExecutor.runBlocks(nProject1d, 1, (start, end) -> {
+      for(int j = start; j < end; j++) {
+        final double[] currRp = rps[j];
+        final WritableDoubleDataStore currPro = pros[j];
+        for(DBIDIter it = ptList.iter(); it.valid(); it.advance()) {
+          NumberVector vecPt = points.get(it);
+          // Dot product:
+          double sum2 = 0;
+          for(int i = 0; i < dim; i++) {
+            sum2 += currRp[i] * vecPt.doubleValue(i);
+          }
+          currPro.put(it, sum2);
         }
-        currPro.put(it, sum2);
+        LOG.incrementProcessed(projp);
       }
-      projectedPoints[j] = currPro;
-      LOG.incrementProcessed(projp);
-    }
+      return null;
+    });
     LOG.ensureCompleted(projp);
+    projectedPoints = pros;
     // Log the number of scalar projections performed.
     long numprod = nProject1d * (long) ptList.size();
     LOG.statistics(new LongStatistic(PREFIX + ".num-scalar-products", numprod));
@@ -207,7 +228,10 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
     for(int j = 0; j < nProject1d; j++) {
       proind.add(j);
     }
-    FiniteProgress splitp = LOG.isVerbose() ? new FiniteProgress("Splitting data", nPointSetSplits, LOG) : null;
+    // Shuffle the projections, and choose a seed for each split sequentially.
+    DoubleDataStore[] tmpPro = new DoubleDataStore[nProject1d];
+    final DoubleDataStore[][] order = new DoubleDataStore[nPointSetSplits][];
+    final long[] seeds = new long[nPointSetSplits];
     for(int avgP = 0; avgP < nPointSetSplits; avgP++) {
       // shuffle projections
       for(int i = 0; i < nProject1d; i++) {
@@ -225,10 +249,22 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
         projectedPoints[cind] = tmpPro[i];
         i++;
       }
-
-      // split point set
-      splitupNoSort(DBIDUtil.newArray(ptList), 0, size, 0, rand);
-      LOG.incrementProcessed(splitp);
+      order[avgP] = projectedPoints.clone();
+      seeds[avgP] = rand.nextLong();
+    }
+    // Split the point sets in parallel, but collect in sequential order.
+    FiniteProgress splitp = LOG.isVerbose() ? new FiniteProgress("Splitting data", nPointSetSplits, LOG) : null;
+    splitsets = new ArrayList<>();
+    for(List<ArrayDBIDs> part : ParallelExecutor.runBlocks(nPointSetSplits, 1, (start, end) -> {
+      List<ArrayDBIDs> sets = new ArrayList<>();
+      for(int avgP = start; avgP < end; avgP++) {
+        Random r = new RandomFactory(seeds[avgP]).getSingleThreadedRandom();
+        splitupNoSort(DBIDUtil.newArray(ptList), 0, size, 0, order[avgP], r, sets);
+        LOG.incrementProcessed(splitp);
+      }
+      return sets;
+    })) {
+      splitsets.addAll(part);
     }
     LOG.ensureCompleted(splitp);
   }
@@ -241,19 +277,21 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
    * @param end Interval end in the ind array
    * @param dim depth of projection (how many times point set has been split
    *        already)
+   * @param pro Projections to use, in the order of splitting
    * @param rand Random generator
+   * @param sets Output list of sets
    */
-  public void splitupNoSort(ArrayModifiableDBIDs ind, int begin, int end, int dim, Random rand) {
+  public void splitupNoSort(ArrayModifiableDBIDs ind, int begin, int end, int dim, DoubleDataStore[] pro, Random rand, List<ArrayDBIDs> sets) {
     final int nele = end - begin;
-    dim = dim % projectedPoints.length;// choose a projection of points
-    DoubleDataStore tpro = projectedPoints[dim];
+    dim = dim % pro.length;// choose a projection of points
+    DoubleDataStore tpro = pro[dim];
 
     // save set such that used for density or neighborhood computation
     // sets should be roughly minSplitSize
     if(nele > minSplitSize * (1 - sizeTolerance) && nele < minSplitSize * (1 + sizeTolerance)) {
       // sort set, since need median element later
       ind.sort(begin, end, new DataStoreUtil.AscendingByDoubleDataStore(tpro));
-      splitsets.add(DBIDUtil.newArray(ind.slice(begin, end)));
+      sets.add(DBIDUtil.newArray(ind.slice(begin, end)));
     }
 
     // compute splitting element
@@ -270,8 +308,8 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
       // position used for splitting the projected points into two
       // sets used for recursive splitting
       int splitpos = minInd + 1;
-      splitupNoSort(ind, begin, splitpos, dim + 1, rand);
-      splitupNoSort(ind, splitpos, end, dim + 1, rand);
+      splitupNoSort(ind, begin, splitpos, dim + 1, pro, rand, sets);
+      splitupNoSort(ind, splitpos, end, dim + 1, pro, rand, sets);
     }
   }
 
@@ -376,31 +414,63 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
       neighs.put(it, DBIDUtil.newHashSet());
     }
 
-    FiniteProgress splitp = LOG.isVerbose() ? new FiniteProgress("Processing splits for neighborhoods", splitsets.size(), LOG) : null;
-    // go through all sets
-    Iterator<ArrayDBIDs> it1 = splitsets.iterator();
+    // Bucket the (point, neighbor) pairs by the partition of the point, in a
+    // single pass over all sets. Every partition is then updated by a single
+    // thread only, in the same insertion order as a sequential scan.
+    final ArrayModifiableDBIDs[] pairs = new ArrayModifiableDBIDs[NEIGHBOR_PARTITIONS];
+    for(int p = 0; p < NEIGHBOR_PARTITIONS; p++) {
+      pairs[p] = DBIDUtil.newArray();
+    }
     DBIDVar v = DBIDUtil.newVar();
-    while(it1.hasNext()) {
-      ArrayDBIDs pinSet = it1.next();
-
+    for(ArrayDBIDs pinSet : splitsets) {
       final int indoff = pinSet.size() >> 1; // middle point of projection
       pinSet.assignVar(indoff, v);
-      // add all points as neighbors to middle point
-      neighs.get(v).addDBIDs(pinSet);
-
-      // and the the middle point to all other points in set
+      final ArrayModifiableDBIDs own = pairs[partition(v)];
       for(DBIDIter it = pinSet.iter(); it.valid(); it.advance()) {
-        neighs.get(it).add(v);
+        // add all points as neighbors to middle point
+        own.add(v);
+        own.add(it);
+        // and the the middle point to all other points in set
+        if(!DBIDUtil.equal(it, v)) {
+          final ArrayModifiableDBIDs other = pairs[partition(it)];
+          other.add(it);
+          other.add(v);
+        }
       }
-      LOG.incrementProcessed(splitp);
     }
+
+    FiniteProgress splitp = LOG.isVerbose() ? new FiniteProgress("Processing splits for neighborhoods", NEIGHBOR_PARTITIONS, LOG) : null;
+    ParallelExecutor.runBlocks(NEIGHBOR_PARTITIONS, 1, (start, end) -> {
+      for(int p = start; p < end; p++) {
+        for(DBIDArrayIter it = pairs[p].iter(); it.valid(); it.advance()) {
+          final ModifiableDBIDs n = neighs.get(it); // point
+          n.add(it.advance()); // neighbor
+        }
+        pairs[p] = null; // Free memory early.
+        LOG.incrementProcessed(splitp);
+      }
+      return null;
+    });
     LOG.ensureCompleted(splitp);
     return neighs;
   }
 
+  /**
+   * Partition of a point, for building the neighbor sets in parallel.
+   *
+   * @param id Point
+   * @return Partition number
+   */
+  private static int partition(DBIDRef id) {
+    return (DBIDUtil.asInteger(id) & 0x7FFFFFFF) % NEIGHBOR_PARTITIONS;
+  }
+
   /**
    * Compute for each point a density estimate as inverse of average distance to
    * a point in a projected set
+   * <p>
+   * The distances are computed in parallel on chunks of sets, and aggregated
+   * in the original order.
    *
    * @return for each point average distance to point in a set
    */
@@ -409,24 +479,45 @@ public class RandomProjectedNeighborsAndDensities<V extends NumberVector> {
     WritableIntegerDataStore nDists = DataStoreUtil.makeIntegerStorage(points.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
     FiniteProgress splitp = LOG.isVerbose() ? new FiniteProgress("Processing splits for density estimation", splitsets.size(), LOG) : null;
     DBIDVar v = DBIDUtil.newVar();
-    for(Iterator<ArrayDBIDs> it1 = splitsets.iterator(); it1.hasNext();) {
-      ArrayDBIDs pinSet = it1.next();
-      final int len = pinSet.size();
-      final int indoff = len >> 1;
-      pinSet.assignVar(indoff, v);
-      V midpoint = points.get(v);
-      for(DBIDArrayIter it = pinSet.iter(); it.getOffset() < len; it.advance()) {
-        if(DBIDUtil.equal(it, v)) {
-          continue;
+    final int numsets = splitsets.size();
+    final double[][] dists = new double[Math.min(numsets, DENSITY_CHUNK)][];
+    for(int chunk = 0; chunk < numsets; chunk += DENSITY_CHUNK) {
+      final int cstart = chunk, cend = Math.min(chunk + DENSITY_CHUNK, numsets);
+      // Distances to the middle point, in parallel.
+      ParallelExecutor.runBlocks(cend - cstart, 1, (start, end) -> {
+        DBIDVar mid = DBIDUtil.newVar();
+        for(int i = start; i < end; i++) {
+          ArrayDBIDs pinSet = splitsets.get(cstart + i);
+          final int len = pinSet.size();
+          pinSet.assignVar(len >> 1, mid);
+          V midpoint = points.get(mid);
+          double[] d = dists[i] = new double[len];
+          for(DBIDArrayIter it = pinSet.iter(); it.valid(); it.advance()) {
+            d[it.getOffset()] = DBIDUtil.equal(it, mid) ? 0. : EuclideanDistanceFunction.STATIC.distance(points.get(it), midpoint);
+          }
+        }
+        return null;
+      });
+      // Aggregate sequentially, for reproducible sums.
+      for(int i = cstart; i < cend; i++) {
+        ArrayDBIDs pinSet = splitsets.get(i);
+        final int len = pinSet.size();
+        final int indoff = len >> 1;
+        pinSet.assignVar(indoff, v);
+        final double[] d = dists[i - cstart];
+        for(DBIDArrayIter it = pinSet.iter(); it.getOffset() < len; it.advance()) {
+          if(DBIDUtil.equal(it, v)) {
+            continue;
+          }
+          double dist = d[it.getOffset()];
+          ++distanceComputations;
+          davg.increment(v, dist);
+          nDists.increment(v, 1);
+          davg.increment(it, dist);
+          nDists.increment(it, 1);
         }
-        double dist = EuclideanDistanceFunction.STATIC.distance(points.get(it), midpoint);
-        ++distanceComputations;
-        davg.increment(v, dist);
-        nDists.increment(v, 1);
-        davg.increment(it, dist);
-        nDists.increment(it, 1);
+        LOG.incrementProcessed(splitp);
       }
-      LOG.incrementProcessed(splitp);
     }
     LOG.ensureCompleted(splitp);
     for(DBIDIter it = points.getDBIDs().iter(); it.valid(); it.advance()) {
@@ -0,0 +1,71 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.math.statistics.kernelfunctions.TriweightKernelDensityFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for approximate mean-shift clustering.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class MeanShiftClusteringTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testTriweight() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<?> result = new ELKIBuilder<MeanShiftClustering<DoubleVector>>(MeanShiftClustering.class) //
+        .with(NaiveMeanShiftClustering.Parameterizer.KERNEL_ID, TriweightKernelDensityFunction.class) //
+        .with(NaiveMeanShiftClustering.Parameterizer.RANGE_ID, 0.2) //
+        .build().run(db);
+    testFMeasure(db, result, 0.95773648);
+    testClusterSizes(result, new int[] { 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 55, 106, 152 });
+  }
+
+  @Test
+  public void testMinBinFreq() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<?> result = new ELKIBuilder<MeanShiftClustering<DoubleVector>>(MeanShiftClustering.class) //
+        .with(NaiveMeanShiftClustering.Parameterizer.RANGE_ID, 0.2) //
+        .with(MeanShiftClustering.Parameterizer.BINSIZE_ID, 0.1) //
+        .with(MeanShiftClustering.Parameterizer.MINBINFREQ_ID, 3) //
+        .build().run(db);
+    testFMeasure(db, result, 0.96597822);
+    testClusterSizes(result, new int[] { 19, 54, 105, 152 });
+  }
+
+  @Test
+  public void testMeanShiftClusteringOnSingleLinkDataset() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> result = new ELKIBuilder<MeanShiftClustering<DoubleVector>>(MeanShiftClustering.class) //
+        .with(NaiveMeanShiftClustering.Parameterizer.RANGE_ID, 25) //
+        .with(MeanShiftClustering.Parameterizer.BINSIZE_ID, 10) //
+        .build().run(db);
+    testFMeasure(db, result, 0.93866264);
+    testClusterSizes(result, new int[] { 200, 211, 227 });
+  }
+}
@@ -20,13 +20,24 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.em;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
 import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
 import de.lmu.ifi.dbs.elki.data.Clustering;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -162,4 +173,42 @@ public class EMTest extends AbstractClusterAlgorithmTest {
     testFMeasure(db, result, 0.9357286);
     testClusterSizes(result, new int[] { 103, 104, 208, 295 });
   }
+
+  @Test
+  public void testParallelEStep() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    checkParallelEStep(db, rel, new ELKIBuilder<MultivariateGaussianModelFactory<DoubleVector>>(MultivariateGaussianModelFactory.class) //
+        .with(KMeans.SEED_ID, 0).build());
+    checkParallelEStep(db, rel, new ELKIBuilder<DiagonalGaussianModelFactory<DoubleVector>>(DiagonalGaussianModelFactory.class) //
+        .with(KMeans.SEED_ID, 0).build());
+    checkParallelEStep(db, rel, new ELKIBuilder<SphericalGaussianModelFactory<DoubleVector>>(SphericalGaussianModelFactory.class) //
+        .with(KMeans.SEED_ID, 0).build());
+  }
+
+  /**
+   * Compare the E step merged from parallel blocks to the sequential E step.
+   *
+   * @param db Database
+   * @param rel Relation, with more than one block of objects
+   * @param factory Model factory
+   */
+  private static void checkParallelEStep(Database db, Relation<DoubleVector> rel, EMClusterModelFactory<DoubleVector, ?> factory) {
+    final int k = 5;
+    List<? extends EMClusterModel<?>> seq = factory.buildInitialModels(db, rel, k, SquaredEuclideanDistanceFunction.STATIC);
+    List<? extends EMClusterModel<?>> par = factory.buildInitialModels(db, rel, k, SquaredEuclideanDistanceFunction.STATIC);
+    assertTrue("Models do not support partial aggregation.", EM.isMergeable(par));
+    ArrayDBIDs ids = DBIDUtil.ensureArray(rel.getDBIDs());
+    double[] probs = new double[ids.size() * k];
+    EM.assignProbabilitiesToInstances(rel, ids, seq, probs);
+    EM.recomputeCovarianceMatrices(rel, ids, probs, seq, 0., false);
+    EM.recomputeCovarianceMatrices(rel, ids, probs, par, 0., true);
+    for(int i = 0; i < k; i++) {
+      assertEquals("Weight differs.", seq.get(i).getWeight(), par.get(i).getWeight(), 1e-15);
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        DoubleVector vec = rel.get(it);
+        assertEquals("Density differs.", seq.get(i).estimateLogDensity(vec), par.get(i).estimateLogDensity(vec), 1e-10);
+      }
+    }
+  }
 }
@@ -0,0 +1,128 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.em;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.KMeans;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.EMModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for stepwise EM.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class StepwiseEMTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testMultivariate() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<StepwiseEM<DoubleVector, ?>>(StepwiseEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Parameterizer.K_ID, 6) //
+        .with(StepwiseEM.Parameterizer.BATCHSIZE_ID, 50) //
+        .with(StepwiseEM.Parameterizer.RANDOM_ID, 0) //
+        .build().run(db);
+    testFMeasure(db, result, 0.70322023);
+    testClusterSizes(result, new int[] { 42, 68, 103, 134, 155, 208 });
+  }
+
+  @Test
+  public void testDiagonal() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<StepwiseEM<DoubleVector, ?>>(StepwiseEM.class) //
+        .with(KMeans.SEED_ID, 3) //
+        .with(EM.Parameterizer.K_ID, 5) //
+        .with(EM.Parameterizer.INIT_ID, DiagonalGaussianModelFactory.class) //
+        .with(StepwiseEM.Parameterizer.BATCHSIZE_ID, 50) //
+        .with(StepwiseEM.Parameterizer.RANDOM_ID, 0) //
+        .build().run(db);
+    testFMeasure(db, result, 0.57538045);
+    testClusterSizes(result, new int[] { 46, 85, 130, 132, 317 });
+  }
+
+  @Test
+  public void testSpherical() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<StepwiseEM<DoubleVector, ?>>(StepwiseEM.class) //
+        .with(KMeans.SEED_ID, 1) //
+        .with(EM.Parameterizer.K_ID, 4) //
+        .with(EM.Parameterizer.INIT_ID, SphericalGaussianModelFactory.class) //
+        .with(StepwiseEM.Parameterizer.BATCHSIZE_ID, 50) //
+        .with(StepwiseEM.Parameterizer.RANDOM_ID, 0) //
+        .build().run(db);
+    testFMeasure(db, result, 0.56071774);
+    testClusterSizes(result, new int[] { 11, 126, 254, 319 });
+  }
+
+  @Test
+  public void testStream() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<NumberVector> vecs = new ArrayList<>(rel.size());
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      vecs.add(rel.get(it));
+    }
+    MultipleObjectsBundle bundle = MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), vecs);
+    StepwiseEM<NumberVector, EMModel> em = new ELKIBuilder<StepwiseEM<NumberVector, EMModel>>(StepwiseEM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Parameterizer.K_ID, 6) //
+        .with(StepwiseEM.Parameterizer.INITSIZE_ID, 200) //
+        .with(StepwiseEM.Parameterizer.BATCHSIZE_ID, 100) //
+        .build();
+    StepwiseEM.Mixture<EMModel> mixture = em.run(bundle.asStream());
+    assertEquals("Number of batches", 8, mixture.getSteps());
+    assertEquals("Total weight", 1., totalWeight(mixture), 1e-10);
+    // Continue with the same data again:
+    em.update(mixture, bundle.asStream());
+    assertEquals("Number of batches", 16, mixture.getSteps());
+    assertEquals("Total weight", 1., totalWeight(mixture), 1e-10);
+  }
+
+  /**
+   * Sum of the cluster weights.
+   *
+   * @param mixture Mixture model
+   * @return Total weight
+   */
+  private static double totalWeight(StepwiseEM.Mixture<?> mixture) {
+    double sum = 0.;
+    for(EMClusterModel<?> m : mixture.getModels()) {
+      sum += m.getWeight();
+    }
+    return sum;
+  }
+}
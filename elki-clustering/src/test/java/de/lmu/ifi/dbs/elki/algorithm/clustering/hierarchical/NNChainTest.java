@@ -28,6 +28,7 @@ import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.extraction.CutDendr
 import de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.linkage.*;
 import de.lmu.ifi.dbs.elki.data.Clustering;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -71,6 +72,62 @@ public class NNChainTest extends AbstractClusterAlgorithmTest {
     testClusterSizes(clustering, new int[] { 200, 211, 227 });
   }
 
+  /**
+   * Run agglomerative hierarchical clustering with batched merges of
+   * reciprocal nearest neighbors on multiple threads, which must not change
+   * the result.
+   */
+  @Test
+  public void testWardBatch() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    ParallelCore.getCore().setParallelism(4);
+    try {
+      Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+          .with(CutDendrogramByNumberOfClusters.Parameterizer.MINCLUSTERS_ID, 3) //
+          .with(AbstractAlgorithm.ALGORITHM_ID, NNChain.class) //
+          .with(AGNES.Parameterizer.LINKAGE_ID, WardLinkage.class) //
+          .with(NNChain.Parameterizer.BATCH_ID) //
+          .build().run(db);
+      testFMeasure(db, clustering, 0.93866265);
+      testClusterSizes(clustering, new int[] { 200, 211, 227 });
+    }
+    finally {
+      ParallelCore.getCore().setParallelism(0);
+    }
+  }
+
+  /**
+   * Run agglomerative hierarchical clustering with a single precision matrix.
+   */
+  @Test
+  public void testWardFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Parameterizer.MINCLUSTERS_ID, 3) //
+        .with(AbstractAlgorithm.ALGORITHM_ID, NNChain.class) //
+        .with(AGNES.Parameterizer.LINKAGE_ID, WardLinkage.class) //
+        .with(AGNES.Parameterizer.STORAGE_ID, MatrixParadigm.Storage.FLOAT) //
+        .build().run(db);
+    testFMeasure(db, clustering, 0.93866265);
+    testClusterSizes(clustering, new int[] { 200, 211, 227 });
+  }
+
+  /**
+   * Run agglomerative hierarchical clustering with a memory-mapped matrix.
+   */
+  @Test
+  public void testWardMapped() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Parameterizer.MINCLUSTERS_ID, 3) //
+        .with(AbstractAlgorithm.ALGORITHM_ID, NNChain.class) //
+        .with(AGNES.Parameterizer.LINKAGE_ID, WardLinkage.class) //
+        .with(AGNES.Parameterizer.STORAGE_ID, MatrixParadigm.Storage.MAPPED_DOUBLE) //
+        .build().run(db);
+    testFMeasure(db, clustering, 0.93866265);
+    testClusterSizes(clustering, new int[] { 200, 211, 227 });
+  }
+
   /**
    * Run agglomerative hierarchical clustering with fixed parameters and compare
    * the result to a golden standard.
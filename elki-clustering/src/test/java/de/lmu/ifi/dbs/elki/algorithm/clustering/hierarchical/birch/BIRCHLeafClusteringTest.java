@@ -20,11 +20,23 @@
  */
 package de.lmu.ifi.dbs.elki.algorithm.clustering.hierarchical.birch;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
 import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -44,6 +56,39 @@ public class BIRCHLeafClusteringTest extends AbstractClusterAlgorithmTest {
     testClusterSizes(clustering, new int[] { 200, 211, 227 });
   }
 
+  @Test
+  public void testDiameterPartitions() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(BIRCHLeafClustering.class) //
+        .with(CFTree.Factory.Parameterizer.ABSORPTION_ID, DiameterCriterion.class) //
+        .with(CFTree.Factory.Parameterizer.MAXLEAVES_ID, 4) //
+        .with(CFTree.Factory.Parameterizer.PARTITIONS_ID, 4) //
+        .build().run(db);
+    testFMeasure(db, clustering, 0.93896);
+    testClusterSizes(clustering, new int[] { 200, 209, 229 });
+  }
+
+  @Test
+  public void testStream() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<NumberVector> vecs = new ArrayList<>(rel.size());
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      vecs.add(rel.get(it));
+    }
+    CFTree.Factory factory = new ELKIBuilder<>(CFTree.Factory.class) //
+        .with(CFTree.Factory.Parameterizer.MAXLEAVES_ID, 4).build();
+    // Same order of insertion, and an absolute number of leaves:
+    CFTree streamed = factory.newTree(MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), vecs).asStream());
+    CFTree expected = factory.newTree(rel.getDBIDs(), rel);
+    assertEquals("Number of leaves", expected.leaves, streamed.leaves);
+    for(CFTree.LeafIterator it1 = expected.leafIterator(), it2 = streamed.leafIterator(); it1.valid(); it1.advance(), it2.advance()) {
+      assertTrue("Fewer leaves", it2.valid());
+      assertEquals("Leaf size", it1.get().n, it2.get().n);
+      assertArrayEquals("Leaf sum", it1.get().ls, it2.get().ls, 0.);
+    }
+  }
+
   @Test
   public void testRadius() {
     Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
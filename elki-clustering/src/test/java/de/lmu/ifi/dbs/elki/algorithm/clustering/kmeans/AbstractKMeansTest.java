@@ -0,0 +1,117 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.FloatVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.SparseDoubleVector;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+
+/**
+ * Test the raw array kernels of k-means against the generic number vector
+ * code path, which must give exactly the same results.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class AbstractKMeansTest {
+  /**
+   * Test the distance kernel.
+   */
+  @Test
+  public void testSquaredEuclidean() {
+    Random r = new Random(0L);
+    for(int dim = 1; dim < 20; dim++) {
+      double[] a = randomArray(r, dim), b = randomArray(r, dim);
+      DoubleVector mean = DoubleVector.wrap(b);
+      for(NumberVector v : vectors(a)) {
+        assertEquals(SquaredEuclideanDistanceFunction.STATIC.distance(v, mean), AbstractKMeans.squaredEuclidean(v, mean), 0.);
+      }
+    }
+    // Mismatching dimensionality uses the generic code.
+    DoubleVector v1 = DoubleVector.wrap(new double[] { 1, 2 });
+    DoubleVector v2 = DoubleVector.wrap(new double[] { 1, 2, 3 });
+    assertEquals(9., AbstractKMeans.squaredEuclidean(v1, v2), 0.);
+  }
+
+  /**
+   * Test the aggregation kernels.
+   */
+  @Test
+  public void testPlusMinusEquals() {
+    Random r = new Random(0L);
+    final int dim = 13;
+    double[] a = randomArray(r, dim);
+    for(NumberVector v : vectors(a)) {
+      double[] expectadd = randomArray(r, dim), expectsub = randomArray(r, dim);
+      double[] add = expectadd.clone(), sub = expectsub.clone();
+      for(int d = 0; d < dim; d++) {
+        expectadd[d] += v.doubleValue(d);
+        expectsub[d] -= v.doubleValue(d);
+      }
+      double[] add2 = add.clone(), sub2 = sub.clone();
+      AbstractKMeans.plusEquals(add, v);
+      AbstractKMeans.minusEquals(sub, v);
+      assertArrayEquals(expectadd, add, 0.);
+      assertArrayEquals(expectsub, sub, 0.);
+      AbstractKMeans.plusMinusEquals(add2, sub2, v);
+      assertArrayEquals(expectadd, add2, 0.);
+      assertArrayEquals(expectsub, sub2, 0.);
+    }
+  }
+
+  /**
+   * Produce the same vector in different representations.
+   *
+   * @param a Values
+   * @return Double, float, and sparse vectors
+   */
+  private static NumberVector[] vectors(double[] a) {
+    float[] f = new float[a.length];
+    for(int d = 0; d < a.length; d++) {
+      f[d] = (float) a[d];
+    }
+    return new NumberVector[] { DoubleVector.copy(a), new FloatVector(f), new SparseDoubleVector(a) };
+  }
+
+  /**
+   * Random array.
+   *
+   * @param r Random generator
+   * @param dim Dimensionality
+   * @return Array
+   */
+  private static double[] randomArray(Random r, int dim) {
+    double[] a = new double[dim];
+    for(int d = 0; d < dim; d++) {
+      a[d] = r.nextGaussian() * 10;
+    }
+    return a;
+  }
+}
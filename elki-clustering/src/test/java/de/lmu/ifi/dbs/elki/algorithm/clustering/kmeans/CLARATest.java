@@ -27,6 +27,7 @@ import de.lmu.ifi.dbs.elki.data.Clustering;
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.model.MedoidModel;
 import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -53,4 +54,30 @@ public class CLARATest extends AbstractClusterAlgorithmTest {
     testFMeasure(db, result, 0.998005);
     testClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
   }
+
+  /**
+   * Independent samples are processed in batches by the number of threads;
+   * the result must not depend on it.
+   */
+  @Test
+  public void testIndependentSamples() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    for(int p : new int[] { 1, 3 }) {
+      try {
+        ParallelCore.getCore().setParallelism(p);
+        Clustering<MedoidModel> result = new ELKIBuilder<CLARA<DoubleVector>>(CLARA.class) //
+            .with(KMeans.K_ID, 6) //
+            .with(CLARA.Parameterizer.RANDOM_ID, 1) //
+            .with(CLARA.Parameterizer.NUMSAMPLES_ID, 5) //
+            .with(CLARA.Parameterizer.SAMPLESIZE_ID, 30) //
+            .with(CLARA.Parameterizer.NOKEEPMED_ID) //
+            .build().run(db);
+        testFMeasure(db, result, 0.5472979);
+        testClusterSizes(result, new int[] { 25, 61, 80, 98, 192, 254 });
+      }
+      finally {
+        ParallelCore.getCore().setParallelism(0);
+      }
+    }
+  }
 }
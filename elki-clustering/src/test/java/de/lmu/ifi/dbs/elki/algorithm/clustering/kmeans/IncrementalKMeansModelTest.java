@@ -0,0 +1,113 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test the incremental k-means model against an exhaustive search for the
+ * nearest center.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class IncrementalKMeansModelTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Assign the data to a k-means result, and update the model.
+   */
+  @Test
+  public void testIncrementalKMeansModel() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    Clustering<KMeansModel> result = new ELKIBuilder<KMeansLloyd<DoubleVector>>(KMeansLloyd.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .build().run(db);
+    IncrementalKMeansModel model = IncrementalKMeansModel.of(result, SquaredEuclideanDistanceFunction.STATIC);
+    assertEquals(5, model.getK());
+    List<NumberVector> data = new ArrayList<>();
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      data.add(rel.get(it));
+    }
+    for(NumberVector v : data) {
+      assertEquals(exhaustive(model, v), model.nearest(v));
+    }
+    int[] assign = model.nearest(data, new int[data.size()]);
+    long[] sizes = new long[model.getK()];
+    for(int i = 0; i < assign.length; i++) {
+      ++sizes[assign[i]];
+    }
+    for(int i = 0; i < model.getK(); i++) {
+      assertEquals(result.getAllClusters().get(i).size(), sizes[i]);
+      assertEquals(sizes[i], model.getCount(i));
+    }
+    // Move the centers by single updates, without refreshing the bounds:
+    for(int i = data.size() - 1; i >= 0; i -= 3) {
+      NumberVector v = data.get(i);
+      int expect = exhaustive(model, v);
+      assertEquals(expect, model.learn(v));
+      for(int j = 0; j < data.size(); j += 7) {
+        assertEquals(exhaustive(model, data.get(j)), model.nearest(data.get(j)));
+      }
+    }
+    model.learn(data, assign);
+    for(NumberVector v : data) {
+      assertEquals(exhaustive(model, v), model.nearest(v));
+    }
+  }
+
+  /**
+   * Find the nearest center by exhaustive search.
+   *
+   * @param model Model
+   * @param v Vector
+   * @return Nearest center
+   */
+  private static int exhaustive(IncrementalKMeansModel model, NumberVector v) {
+    int best = 0;
+    double bestd = Double.POSITIVE_INFINITY;
+    for(int i = 0; i < model.getK(); i++) {
+      double d = SquaredEuclideanDistanceFunction.STATIC.distance(v, DoubleVector.wrap(model.getMean(i)));
+      if(d < bestd) {
+        best = i;
+        bestd = d;
+      }
+    }
+    return best;
+  }
+}
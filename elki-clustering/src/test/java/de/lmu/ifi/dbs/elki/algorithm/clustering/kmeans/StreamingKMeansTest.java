@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.algorithm.clustering.AbstractClusterAlgorithmTest;
+import de.lmu.ifi.dbs.elki.algorithm.clustering.kmeans.initialization.RandomlyChosenInitialMeans;
+import de.lmu.ifi.dbs.elki.data.Cluster;
+import de.lmu.ifi.dbs.elki.data.Clustering;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.model.KMeansModel;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.database.Database;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDIter;
+import de.lmu.ifi.dbs.elki.database.relation.Relation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.distance.distancefunction.minkowski.SquaredEuclideanDistanceFunction;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Regression test for streaming k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class StreamingKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testStreamingKMeans() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<StreamingKMeans<DoubleVector>>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .build().run(db);
+    testFMeasure(db, result, 0.9786179361486301);
+    testClusterSizes(result, new int[] { 189, 200, 200, 200, 211 });
+  }
+
+  @Test
+  public void testStreamingKMeansBatch() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<StreamingKMeans<DoubleVector>>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .with(StreamingKMeans.Parameterizer.BATCHSIZE_ID, 50) //
+        .build().run(db);
+    testFMeasure(db, result, 0.9920806335493161);
+    testClusterSizes(result, new int[] { 196, 200, 200, 200, 204 });
+  }
+
+  @Test
+  public void testStream() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<DoubleVector> vecs = new ArrayList<>(rel.size());
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      vecs.add(rel.get(it));
+    }
+    double[][] means = makeStreamingKMeans().run(MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), vecs).asStream());
+    // Same initial centers and the same order, so the same centers (but the
+    // initial centers may be drawn in a different order):
+    Clustering<KMeansModel> result = makeStreamingKMeans().run(db, rel);
+    assertEquals("Number of centers", 5, means.length);
+    Arrays.sort(means, (a, b) -> Double.compare(a[0], b[0]));
+    List<double[]> expected = new ArrayList<>();
+    for(Cluster<KMeansModel> c : result.getAllClusters()) {
+      expected.add(c.getModel().getMean());
+    }
+    expected.sort((a, b) -> Double.compare(a[0], b[0]));
+    for(int i = 0; i < means.length; i++) {
+      assertArrayEquals("Center " + i, expected.get(i), means[i], 1e-15);
+    }
+  }
+
+  @Test(expected = AbortException.class)
+  public void testInitSizeParameter() {
+    new ELKIBuilder<StreamingKMeans<DoubleVector>>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(StreamingKMeans.Parameterizer.INITSIZE_ID, 4) //
+        .build();
+  }
+
+  @Test(expected = AbortException.class)
+  public void testInitSizeStream() {
+    StreamingKMeans<DoubleVector> km = new StreamingKMeans<>(SquaredEuclideanDistanceFunction.STATIC, 5, new RandomlyChosenInitialMeans<>(RandomFactory.DEFAULT), 4, 1);
+    km.run(MultipleObjectsBundle.makeSimple(TypeUtil.DOUBLE_VECTOR_FIELD, new ArrayList<DoubleVector>()).asStream());
+  }
+
+  /**
+   * Make a new instance, with a fresh random generator.
+   *
+   * @return Streaming k-means instance
+   */
+  private static StreamingKMeans<DoubleVector> makeStreamingKMeans() {
+    return new ELKIBuilder<StreamingKMeans<DoubleVector>>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .build();
+  }
+}
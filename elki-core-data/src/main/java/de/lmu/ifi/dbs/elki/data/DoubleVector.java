@@ -103,6 +103,18 @@ public class DoubleVector implements NumberVector {
     return values.clone();
   }
 
+  /**
+   * Access the backing array, without copying (the inverse of
+   * {@link #wrap(double[])}).
+   * 
+   * Note: the array must not be modified!
+   * 
+   * @return Values array
+   */
+  public double[] unwrap() {
+    return values;
+  }
+
   @Override
   public String toString() {
     StringBuilder featureLine = new StringBuilder();
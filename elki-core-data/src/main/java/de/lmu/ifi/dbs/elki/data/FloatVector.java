@@ -116,6 +116,17 @@ public class FloatVector implements NumberVector {
     return data;
   }
 
+  /**
+   * Access the backing array, without copying.
+   * 
+   * Note: the array must not be modified!
+   * 
+   * @return Values array
+   */
+  public float[] unwrap() {
+    return values;
+  }
+
   @Override
   public String toString() {
     StringBuilder featureLine = new StringBuilder();
@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.data.projection;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
 
@@ -48,6 +50,26 @@ public interface Projection<IN, OUT> {
    */
   OUT project(IN data);
 
+  /**
+   * Project a block of instances.
+   * <p>
+   * This may be called concurrently on disjoint blocks. Implementations can
+   * override this with a faster, blocked kernel; the default implementation
+   * projects one instance after the other, synchronized on the projection.
+   *
+   * @param data Data to project
+   * @param start First index to project
+   * @param end End index (exclusive)
+   * @param out Output list, projected instances are appended
+   */
+  default void project(List<? extends IN> data, int start, int end, List<? super OUT> out) {
+    synchronized(this) {
+      for(int i = start; i < end; i++) {
+        out.add(project(data.get(i)));
+      }
+    }
+  }
+
   /**
    * Input type information.
    * 
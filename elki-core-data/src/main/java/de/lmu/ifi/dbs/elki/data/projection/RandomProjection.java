@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.data.projection;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.projection.random.AchlioptasRandomProjectionFamily;
 import de.lmu.ifi.dbs.elki.data.projection.random.RandomProjectionFamily;
@@ -106,6 +108,13 @@ public class RandomProjection<V extends NumberVector> implements Projection<V, V
     return factory.newNumberVector(projection.project(data));
   }
 
+  @Override
+  public void project(List<? extends V> data, int start, int end, List<? super V> out) {
+    for(double[] vec : projection.project(data, start, end)) {
+      out.add(factory.newNumberVector(vec));
+    }
+  }
+
   @Override
   public TypeInformation getInputDataTypeInformation() {
     return TypeUtil.NUMBER_VECTOR_FIELD;
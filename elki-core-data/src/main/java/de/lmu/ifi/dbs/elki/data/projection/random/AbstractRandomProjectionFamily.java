@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.data.projection.random;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
@@ -57,12 +58,20 @@ public abstract class AbstractRandomProjectionFamily implements RandomProjection
    * output dimensionality, the column dimensionality is the input
    * dimensionality.
    *
-   * It is <b>not thread safe</b> because it uses an internal buffer to store a
-   * local copy of the vector.
+   * Projecting a single vector is <b>not thread safe</b> because it uses an
+   * internal buffer to store a local copy of the vector. Projecting a block of
+   * vectors is thread safe, and uses a blocked kernel: a tile of vectors is
+   * copied to local buffers, and each row of the matrix is then applied to the
+   * entire tile while in cache.
    *
    * @author Erich Schubert
    */
   public static class MatrixProjection implements Projection {
+    /**
+     * Number of vectors processed at once by the blocked kernel.
+     */
+    private static final int TILE = 64;
+
     /**
      * Projection matrix.
      */
@@ -81,7 +90,7 @@ public abstract class AbstractRandomProjectionFamily implements RandomProjection
     public MatrixProjection(double[][] matrix) {
       super();
       this.matrix = matrix;
-      this.buf = new double[matrix.length];
+      this.buf = new double[matrix.length > 0 ? matrix[0].length : 0];
     }
 
     @Override
@@ -116,6 +125,47 @@ public abstract class AbstractRandomProjectionFamily implements RandomProjection
       return ret;
     }
 
+    @Override
+    public double[][] project(List<? extends NumberVector> in, int start, int end) {
+      final int odim = matrix.length, idim = buf.length;
+      double[][] ret = new double[end - start][];
+      double[][] tile = new double[Math.min(TILE, end - start)][idim];
+      int[] pos = new int[tile.length];
+      for(int t = start; t < end; t += TILE) {
+        final int tend = Math.min(t + TILE, end);
+        // Copy the dense vectors of this tile into the local buffers.
+        int n = 0;
+        for(int i = t; i < tend; i++) {
+          final NumberVector vec = in.get(i);
+          if(vec instanceof SparseNumberVector) {
+            ret[i - start] = projectSparse((SparseNumberVector) vec, new double[odim]);
+            continue;
+          }
+          final double[] row = tile[n];
+          final int dim = Math.min(idim, vec.getDimensionality());
+          for(int d = 0; d < dim; d++) {
+            row[d] = vec.doubleValue(d);
+          }
+          Arrays.fill(row, dim, idim, 0.);
+          ret[i - start] = new double[odim];
+          pos[n++] = i - start;
+        }
+        // Apply each row of the matrix to the whole tile.
+        for(int o = 0; o < odim; o++) {
+          final double[] mrow = matrix[o];
+          for(int j = 0; j < n; j++) {
+            final double[] row = tile[j];
+            double v = 0.;
+            for(int d = 0; d < idim; d++) {
+              v += mrow[d] * row[d];
+            }
+            ret[pos[j]][o] = v;
+          }
+        }
+      }
+      return ret;
+    }
+
     /**
      * Project, exploiting sparsity; but the transposed matrix layout would have
      * been better. For projections where you expect sparse input, consider the
@@ -20,6 +20,8 @@
  */
 package de.lmu.ifi.dbs.elki.data.projection.random;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 
 /**
@@ -66,6 +68,28 @@ public interface RandomProjectionFamily {
      */
     double[] project(NumberVector in, double[] buffer);
 
+    /**
+     * Project a block of vectors.
+     * <p>
+     * Unlike the other methods, this may be called concurrently on disjoint
+     * blocks. The default implementation projects one vector after the other,
+     * synchronized on the projection.
+     *
+     * @param in Input vectors
+     * @param start First index to project
+     * @param end End index (exclusive)
+     * @return Projected vectors, one array each
+     */
+    default double[][] project(List<? extends NumberVector> in, int start, int end) {
+      double[][] ret = new double[end - start][];
+      synchronized(this) {
+        for(int i = start; i < end; i++) {
+          ret[i - start] = project(in.get(i));
+        }
+      }
+      return ret;
+    }
+
     /**
      * Get the output dimensionality.
      *
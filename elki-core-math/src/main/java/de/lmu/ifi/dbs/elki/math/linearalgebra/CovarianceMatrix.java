@@ -229,6 +229,49 @@ public class CovarianceMatrix {
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  /**
+   * Merge the data of another covariance matrix builder, e.g., one computed on
+   * a different partition of the data.
+   * <p>
+   * This uses the pairwise update of Chan et al., and yields the same result
+   * as adding all values to a single builder, up to numerical precision.
+   *
+   * @param other Other covariance matrix builder
+   */
+  public void put(CovarianceMatrix other) {
+    assert (other.mean.length == mean.length);
+    if(other.wsum <= 0.) {
+      return;
+    }
+    if(wsum <= 0.) {
+      System.arraycopy(other.mean, 0, mean, 0, mean.length);
+      for(int i = 0; i < mean.length; i++) {
+        System.arraycopy(other.elements[i], 0, elements[i], 0, mean.length);
+      }
+      wsum = other.wsum;
+      return;
+    }
+    final double nwsum = wsum + other.wsum;
+    final double f = wsum * other.wsum / nwsum, g = other.wsum / nwsum;
+    // Differences of the means
+    for(int i = 0; i < mean.length; i++) {
+      nmea[i] = other.mean[i] - mean[i];
+    }
+    // Update covariance matrix
+    for(int i = 0; i < mean.length; i++) {
+      final double[] row = elements[i], orow = other.elements[i];
+      final double di = nmea[i] * f;
+      for(int j = 0; j < mean.length; j++) {
+        row[j] += orow[j] + di * nmea[j];
+      }
+    }
+    // Update means
+    for(int i = 0; i < mean.length; i++) {
+      mean[i] += nmea[i] * g;
+    }
+    wsum = nwsum;
+  }
+
   /**
    * Get the weight sum, to test whether the covariance matrix can be
    * materialized.
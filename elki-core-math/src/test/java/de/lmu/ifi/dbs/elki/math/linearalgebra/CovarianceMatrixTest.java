@@ -0,0 +1,65 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.math.linearalgebra;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test {@link CovarianceMatrix}.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class CovarianceMatrixTest {
+  @Test
+  public void testMerge() {
+    final int dim = 4, size = 1000;
+    Random r = new Random(0L);
+    CovarianceMatrix full = new CovarianceMatrix(dim);
+    CovarianceMatrix[] parts = new CovarianceMatrix[] { new CovarianceMatrix(dim), new CovarianceMatrix(dim), new CovarianceMatrix(dim) };
+    double[] buf = new double[dim];
+    for(int i = 0; i < size; i++) {
+      for(int d = 0; d < dim; d++) {
+        buf[d] = r.nextGaussian() * (d + 1) + d * 10;
+      }
+      full.put(buf);
+      // Leave the last partition empty.
+      parts[i < 300 ? 0 : 1].put(buf);
+    }
+    CovarianceMatrix merged = new CovarianceMatrix(dim);
+    for(CovarianceMatrix part : parts) {
+      merged.put(part);
+    }
+    assertEquals("Weight does not agree", full.getWeight(), merged.getWeight(), 0.);
+    double[] m1 = full.getMeanVector(), m2 = merged.getMeanVector();
+    double[][] c1 = full.makeSampleMatrix(), c2 = merged.makeSampleMatrix();
+    for(int i = 0; i < dim; i++) {
+      assertEquals("Mean does not agree", m1[i], m2[i], 1e-12);
+      for(int j = 0; j < dim; j++) {
+        assertEquals("Covariance does not agree", c1[i][j], c2[i][j], 1e-10);
+      }
+    }
+  }
+}
@@ -30,8 +30,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}.
  * 
- * TODO: make configurable how many threads are used.
- * 
  * @author Erich Schubert
  * @since 0.7.0
  */
@@ -87,6 +85,34 @@ public class ParallelCore {
     return executor != null ? executor.getMaximumPoolSize() : processors;
   }
 
+  /**
+   * Set the desired level of parallelism.
+   *
+   * @param processors Number of threads to use, or 0 to use all processors
+   */
+  public synchronized void setParallelism(int processors) {
+    final int p = processors > 0 ? processors : ALL_PROCESSORS;
+    final int old = getParallelism();
+    this.processors = p;
+    if(executor == null || p == old) {
+      return;
+    }
+    // The core pool size must never exceed the maximum pool size.
+    final boolean active = connected.get() > 0;
+    if(p > old) {
+      executor.setMaximumPoolSize(p);
+      if(active) {
+        executor.setCorePoolSize(p);
+      }
+    }
+    else {
+      if(active) {
+        executor.setCorePoolSize(p);
+      }
+      executor.setMaximumPoolSize(p);
+    }
+  }
+
   /**
    * Submit a task to the executor core.
    * 
@@ -21,6 +21,7 @@
 package de.lmu.ifi.dbs.elki.parallel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -95,6 +96,131 @@ public final class ParallelExecutor {
     }
   }
 
+  /**
+   * Minimum block size for {@link #runBlocks}, to avoid the thread overhead on
+   * small inputs.
+   */
+  private static final int MIN_BLOCKSIZE = 1024;
+
+  /**
+   * Maximum number of blocks for {@link #runBlocks}. The partitioning only
+   * depends on the data size, not on the number of threads, so that results
+   * merged from the blocks do not depend on the number of CPUs.
+   */
+  private static final int MAX_BLOCKS = 64;
+
+  /**
+   * Flag to detect nested parallelism, which then runs in the current thread
+   * (otherwise, the pool threads could end up waiting for each other).
+   */
+  private static final ThreadLocal<Boolean> IN_BLOCK = new ThreadLocal<>();
+
+  /**
+   * Run a task on consecutive blocks of the index range [0;size), on all
+   * available CPUs.
+   * <p>
+   * Each block produces a partial result (e.g., per-thread sums), which are
+   * returned in block order, so that the caller can merge them
+   * deterministically.
+   *
+   * @param size Number of elements to process
+   * @param task Task to run on each block
+   * @param <T> Partial result type
+   * @return Partial results, in block order
+   */
+  public static <T> List<T> runBlocks(int size, BlockTask<T> task) {
+    return runBlocks(size, MIN_BLOCKSIZE, task);
+  }
+
+  /**
+   * Run a task on consecutive blocks of the index range [0;size), on all
+   * available CPUs.
+   * <p>
+   * Each block produces a partial result (e.g., per-block sums), which are
+   * returned in block order, so that the caller can merge them
+   * deterministically. The block boundaries only depend on the size and the
+   * minimum block size, so the results are the same for any number of
+   * threads (when run on a single thread, or nested inside another block, the
+   * blocks are processed sequentially).
+   *
+   * @param size Number of elements to process
+   * @param minblock Minimum block size, for expensive tasks this can be small
+   * @param task Task to run on each block
+   * @param <T> Partial result type
+   * @return Partial results, in block order
+   */
+  public static <T> List<T> runBlocks(int size, int minblock, BlockTask<T> task) {
+    int numparts = Math.max(1, Math.min(MAX_BLOCKS, size / Math.max(minblock, 1)));
+    if(numparts == 1) {
+      return Collections.singletonList(task.run(0, size));
+    }
+    final int blocksize = (size + (numparts - 1)) / numparts;
+    numparts = (size + (blocksize - 1)) / blocksize;
+    ParallelCore core = ParallelCore.getCore();
+    if(core.getParallelism() == 1 || IN_BLOCK.get() != null) {
+      List<T> results = new ArrayList<>(numparts);
+      for(int start = 0; start < size; start += blocksize) {
+        results.add(task.run(start, Math.min(start + blocksize, size)));
+      }
+      return results;
+    }
+    core.connect();
+    try {
+      List<Future<T>> parts = new ArrayList<>(numparts);
+      for(int i = 0; i < numparts; i++) {
+        final int start = i * blocksize, end = Math.min(start + blocksize, size);
+        parts.add(core.submit(new Callable<T>() {
+          @Override
+          public T call() {
+            IN_BLOCK.set(Boolean.TRUE);
+            try {
+              return task.run(start, end);
+            }
+            finally {
+              IN_BLOCK.remove();
+            }
+          }
+        }));
+      }
+      List<T> results = new ArrayList<>(numparts);
+      for(Future<T> fut : parts) {
+        results.add(fut.get());
+      }
+      return results;
+    }
+    catch(ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  /**
+   * Task processing a consecutive block of indexes.
+   *
+   * @author Erich Schubert
+   *
+   * @param <T> Partial result type
+   */
+  @FunctionalInterface
+  public interface BlockTask<T> {
+    /**
+     * Process the block [start;end).
+     *
+     * @param start First index
+     * @param end End index (exclusive)
+     * @return Partial result
+     */
+    T run(int start, int end);
+  }
+
   /**
    * Run for an array part, without step size.
    *
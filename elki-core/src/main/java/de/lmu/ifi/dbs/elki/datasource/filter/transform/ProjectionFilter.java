@@ -20,10 +20,18 @@
  */
 package de.lmu.ifi.dbs.elki.datasource.filter.transform;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.projection.Projection;
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.database.ids.ArrayModifiableDBIDs;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
 import de.lmu.ifi.dbs.elki.datasource.filter.AbstractStreamConversionFilter;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
@@ -31,6 +39,10 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Apply a projection to the data.
+ * <p>
+ * The stream is read ahead in blocks of bounded size, and each block is
+ * projected in parallel, using the blocked kernel of the projection (if
+ * available). Memory usage thus does not depend on the data set size.
  * 
  * @author Erich Schubert
  * @since 0.6.0
@@ -46,6 +58,41 @@ public class ProjectionFilter<I, O> extends AbstractStreamConversionFilter<I, O>
    */
   Projection<I, O> projection;
 
+  /**
+   * Number of objects to read ahead and project at once.
+   */
+  private static final int BLOCKSIZE = 1 << 14;
+
+  /**
+   * Input objects of the current block.
+   */
+  private List<I> inbuf = new ArrayList<>();
+
+  /**
+   * Other columns of the current block.
+   */
+  private List<Object[]> rowbuf = new ArrayList<>();
+
+  /**
+   * Projected objects of the current block.
+   */
+  private List<O> outbuf = new ArrayList<>();
+
+  /**
+   * DBIDs of the current block, if provided by the source.
+   */
+  private ArrayModifiableDBIDs idbuf;
+
+  /**
+   * Position within the current block.
+   */
+  private int pos = 0;
+
+  /**
+   * Event that ended the current block, not yet passed on.
+   */
+  private Event pending = null;
+
   /**
    * Constructor.
    * 
@@ -56,6 +103,99 @@ public class ProjectionFilter<I, O> extends AbstractStreamConversionFilter<I, O>
     this.projection = projection;
   }
 
+  @Override
+  public BundleStreamSource init(BundleStreamSource source) {
+    inbuf.clear();
+    rowbuf.clear();
+    outbuf.clear();
+    idbuf = null;
+    pos = 0;
+    pending = null;
+    return super.init(source);
+  }
+
+  @Override
+  public Event nextEvent() {
+    if(++pos < outbuf.size()) {
+      return Event.NEXT_OBJECT;
+    }
+    if(pending == null) {
+      if(column < 0) {
+        return super.nextEvent(); // Nothing to project (yet).
+      }
+      readBlock();
+      if(!outbuf.isEmpty()) {
+        return Event.NEXT_OBJECT;
+      }
+    }
+    Event ev = pending;
+    pending = null;
+    if(ev == Event.META_CHANGED) {
+      updateMeta();
+    }
+    return ev;
+  }
+
+  /**
+   * Read ahead the next block of objects, and project them in parallel.
+   */
+  private void readBlock() {
+    inbuf.clear();
+    rowbuf.clear();
+    outbuf.clear();
+    pos = 0;
+    final boolean hasids = source.hasDBIDs();
+    idbuf = hasids ? DBIDUtil.newArray() : null;
+    DBIDVar var = hasids ? DBIDUtil.newVar() : null;
+    while(inbuf.size() < BLOCKSIZE) {
+      Event ev = source.nextEvent();
+      if(ev != Event.NEXT_OBJECT) {
+        pending = ev;
+        break;
+      }
+      Object[] row = new Object[source.getMeta().size()];
+      for(int c = 0; c < row.length; c++) {
+        row[c] = c != column ? source.data(c) : null;
+      }
+      rowbuf.add(row);
+      @SuppressWarnings("unchecked")
+      final I obj = (I) source.data(column);
+      inbuf.add(obj);
+      if(hasids) {
+        source.assignDBID(var);
+        idbuf.add(var);
+      }
+    }
+    for(List<O> part : ParallelExecutor.runBlocks(inbuf.size(), (start, end) -> {
+      List<O> out = new ArrayList<>(end - start);
+      projection.project(inbuf, start, end, out);
+      return out;
+    })) {
+      outbuf.addAll(part);
+    }
+  }
+
+  @Override
+  public Object data(int rnum) {
+    if(outbuf.isEmpty()) {
+      return super.data(rnum);
+    }
+    return rnum == column ? outbuf.get(pos) : rowbuf.get(pos)[rnum];
+  }
+
+  @Override
+  public boolean assignDBID(DBIDVar var) {
+    if(outbuf.isEmpty()) {
+      return super.assignDBID(var);
+    }
+    if(idbuf == null) {
+      var.unset();
+      return false;
+    }
+    idbuf.assignVar(pos, var);
+    return true;
+  }
+
   @Override
   protected O filterSingleObject(I obj) {
     return projection.project(obj);
@@ -0,0 +1,176 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.datastructures.unionfind;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+
+/**
+ * Lock-free union-find for a fixed range of primitive integers, which can be
+ * shared by multiple threads.
+ * <p>
+ * Compared to {@link WeightedQuickUnionInteger}, components are not linked by
+ * weight, but always by index: the root with the larger index is attached to
+ * the one with the smaller index using a compare-and-set operation. Path
+ * halving is also performed with compare-and-set. Because of this, the root of
+ * each component is its smallest element, independent of the order in which
+ * the union operations were performed.
+ * <p>
+ * Reference:
+ * <p>
+ * R. J. Anderson, H. Woll<br>
+ * Wait-free parallel algorithms for the union-find problem<br>
+ * Proc. 23rd Annual ACM Symposium on Theory of Computing (STOC)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Reference(authors = "R. J. Anderson, H. Woll", //
+    title = "Wait-free parallel algorithms for the union-find problem", //
+    booktitle = "Proc. 23rd Annual ACM Symposium on Theory of Computing (STOC)", //
+    url = "https://doi.org/10.1145/103418.103458", //
+    bibkey = "DBLP:conf/stoc/AndersonW91")
+public class ConcurrentQuickUnionInteger {
+  /**
+   * Parent element
+   */
+  private final AtomicIntegerArray parent;
+
+  /**
+   * Constructor.
+   *
+   * @param size Number of elements, each initially in its own component
+   */
+  public ConcurrentQuickUnionInteger(int size) {
+    parent = new AtomicIntegerArray(size);
+    for(int i = 0; i < size; i++) {
+      parent.lazySet(i, i);
+    }
+  }
+
+  /**
+   * Find the parent of an object.
+   * <p>
+   * If other threads perform union operations at the same time, the result is
+   * the root at some point during the execution of this method.
+   *
+   * @param cur Current entry
+   * @return Parent entry
+   */
+  public int find(int cur) {
+    assert (cur >= 0 && cur < parent.length());
+    int p = parent.get(cur);
+    while(cur != p) {
+      final int gp = parent.get(p);
+      if(gp != p) {
+        // Path halving. Failure is fine, another thread changed the parent.
+        parent.compareAndSet(cur, p, gp);
+      }
+      cur = gp;
+      p = parent.get(cur);
+    }
+    return cur;
+  }
+
+  /**
+   * Join the components of elements p and q.
+   *
+   * @param first First element
+   * @param second Second element
+   * @return Component id.
+   */
+  public int union(int first, int second) {
+    while(true) {
+      int firstComponent = find(first), secondComponent = find(second);
+      if(firstComponent == secondComponent) {
+        return firstComponent;
+      }
+      // Always attach the larger index to the smaller index.
+      if(firstComponent < secondComponent) {
+        if(parent.compareAndSet(secondComponent, secondComponent, firstComponent)) {
+          return firstComponent;
+        }
+      }
+      else if(parent.compareAndSet(firstComponent, firstComponent, secondComponent)) {
+        return secondComponent;
+      }
+      // Another thread modified one of the roots, retry.
+      first = firstComponent;
+      second = secondComponent;
+    }
+  }
+
+  /**
+   * Test if two components are connected.
+   * <p>
+   * Components are never split, so if this returns {@code true}, the elements
+   * remain connected. A result of {@code false} may become outdated by
+   * concurrent union operations.
+   *
+   * @param first First element
+   * @param second Second element
+   * @return {@code true} if they are in the same component.
+   */
+  public boolean isConnected(int first, int second) {
+    while(true) {
+      first = find(first);
+      second = find(second);
+      if(first == second) {
+        return true;
+      }
+      // Only valid if the first is still a root.
+      if(parent.get(first) == first) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Collect all component root elements.
+   * <p>
+   * This should only be called when no union operations are in progress.
+   *
+   * @return Root elements
+   */
+  public IntList getRoots() {
+    IntList roots = new IntArrayList();
+    for(int i = 0, size = parent.length(); i < size; i++) {
+      // roots or one element in component
+      if(parent.get(i) == i) {
+        roots.add(i);
+      }
+    }
+    return roots;
+  }
+
+  /**
+   * Number of elements.
+   *
+   * @return Size
+   */
+  public int size() {
+    return parent.length();
+  }
+}
@@ -34,7 +34,6 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParameter;
 
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
 /**
  * Joins multiple data sources by their label
@@ -68,58 +67,33 @@ public class ExternalIDJoinDatabaseConnection extends AbstractDatabaseConnection
 
   @Override
   public MultipleObjectsBundle loadData() {
+    // Load the sources one after another; each source parallelizes internally.
     List<MultipleObjectsBundle> bundles = new ArrayList<>(sources.size());
     for(DatabaseConnection dbc : sources) {
       bundles.add(dbc.loadData());
     }
 
     MultipleObjectsBundle first = bundles.get(0);
-    Object2IntOpenHashMap<ExternalID> labelmap = new Object2IntOpenHashMap<>(first.dataLength());
-    labelmap.defaultReturnValue(-1);
     // Process first bundle
-    {
-      // Identify a label column
-      final int lblcol;
-      {
-        int lblc = -1;
-        for(int i = 0; i < first.metaLength(); i++) {
-          if(TypeUtil.EXTERNALID.isAssignableFromType(first.meta(i))) {
-            lblc = i;
-            break;
-          }
-        }
-        lblcol = lblc; // make static
-      }
-      if(lblcol == -1) {
-        throw new AbortException("No external ID column found in primary source.");
-      }
-      for(int i = 0; i < first.dataLength(); i++) {
-        ExternalID data = (ExternalID) first.data(i, lblcol);
-        if(data == null) {
-          LOG.debug("Object without ID encountered.");
-          continue;
-        }
-        int old = labelmap.put(data, i);
-        if(old != -1) {
-          LOG.debug("Duplicate id encountered: " + data + " in rows " + old + " and " + i);
-        }
+    final int lblcol = findExternalIDColumn(first);
+    if(lblcol == -1) {
+      throw new AbortException("No external ID column found in primary source.");
+    }
+    if(LOG.isDebugging()) {
+      final int nulls = HashJoin.countNulls(first.getColumn(lblcol));
+      if(nulls > 0) {
+        LOG.debug("Objects without ID encountered: " + nulls);
       }
     }
+    HashJoin join = new HashJoin(first.getColumn(lblcol));
+    if(join.getDuplicates() > 0) {
+      LOG.debug("Duplicate ids encountered: " + join.getDuplicates());
+    }
     // Process additional columns
     for(int c = 1; c < sources.size(); c++) {
       MultipleObjectsBundle cur = bundles.get(c);
-      final int lblcol;
-      {
-        int lblc = -1;
-        for(int i = 0; i < cur.metaLength(); i++) {
-          if(TypeUtil.EXTERNALID.isAssignableFromType(cur.meta(i))) {
-            lblc = i;
-            break;
-          }
-        }
-        lblcol = lblc; // make static
-      }
-      if(lblcol == -1) {
+      final int curcol = findExternalIDColumn(cur);
+      if(curcol == -1) {
         StringBuilder buf = new StringBuilder();
         for(int i = 0; i < cur.metaLength(); i++) {
           if(buf.length() > 0) {
@@ -129,42 +103,22 @@ public class ExternalIDJoinDatabaseConnection extends AbstractDatabaseConnection
         }
         throw new AbortException("No external ID column found in source " + (c + 1) + " to join with. Got: " + buf.toString());
       }
-      // Destination columns
-      List<ArrayList<Object>> dcol = new ArrayList<>(cur.metaLength());
-      for(int i = 0; i < cur.metaLength(); i++) {
-        // Skip the label columns
-        if(i == lblcol) {
-          dcol.add(null);
-          continue;
-        }
-        ArrayList<Object> newcol = new ArrayList<>(first.dataLength());
-        // Pre-fill with nulls.
-        for(int j = 0; j < first.dataLength(); j++) {
-          newcol.add(null);
-        }
-        first.appendColumn(cur.meta(i), newcol);
-        dcol.add(newcol);
+      final int nulls = HashJoin.countNulls(cur.getColumn(curcol));
+      if(nulls > 0) {
+        LOG.warning("Objects without ID encountered in source " + (c + 1) + ": " + nulls);
       }
-      for(int i = 0; i < cur.dataLength(); i++) {
-        ExternalID data = (ExternalID) cur.data(i, lblcol);
-        if(data == null) {
-          LOG.warning("Object without label encountered.");
-          continue;
-        }
-        int row = labelmap.getInt(data);
-        if(row == -1) {
-          LOG.debug("ID not found for join: " + data + " in row " + i);
-          continue;
+      final int[] rows = join.probe(cur.getColumn(curcol));
+      if(LOG.isDebugging()) {
+        int missing = 0;
+        for(int row : rows) {
+          missing += row < 0 ? 1 : 0;
         }
-        for(int d = 0; d < cur.metaLength(); d++) {
-          if(d == lblcol) {
-            continue;
-          }
-          List<Object> col = dcol.get(d);
-          assert (col != null);
-          col.set(row, cur.data(i, d));
+        missing -= nulls;
+        if(missing > 0) {
+          LOG.debug("IDs not found for join in source " + (c + 1) + ": " + missing);
         }
       }
+      HashJoin.appendColumns(first, cur, curcol, rows);
     }
     for(int i = 0; i < first.dataLength(); i++) {
       for(int d = 0; d < first.metaLength(); d++) {
@@ -190,6 +144,21 @@ public class ExternalIDJoinDatabaseConnection extends AbstractDatabaseConnection
     return first;
   }
 
+  /**
+   * Find the first external ID column.
+   *
+   * @param bundle Bundle
+   * @return Column number, or -1
+   */
+  private static int findExternalIDColumn(MultipleObjectsBundle bundle) {
+    for(int i = 0; i < bundle.metaLength(); i++) {
+      if(TypeUtil.EXTERNALID.isAssignableFromType(bundle.meta(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
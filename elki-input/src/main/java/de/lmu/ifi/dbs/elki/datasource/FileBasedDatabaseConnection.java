@@ -21,26 +21,44 @@
 package de.lmu.ifi.dbs.elki.datasource;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import de.lmu.ifi.dbs.elki.datasource.filter.ObjectFilter;
-import de.lmu.ifi.dbs.elki.datasource.parser.ArffParser;
 import de.lmu.ifi.dbs.elki.datasource.parser.NumberVectorLabelParser;
 import de.lmu.ifi.dbs.elki.datasource.parser.Parser;
+import de.lmu.ifi.dbs.elki.datasource.parser.StreamingArffParser;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
 import de.lmu.ifi.dbs.elki.utilities.io.FileUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.FileParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 
 /**
  * File based database connection based on the parser to be set.
+ * <p>
+ * Optionally, only a random sample of the lines is read, by seeking to random
+ * offsets of the (uncompressed) file. This only reads the sampled lines, but a
+ * line is chosen with probability proportional to its length, which is close
+ * to uniform if the lines have similar length.
+ * Leading empty, comment ({@code #}, {@code %}), and ARFF header ({@code @})
+ * lines are always kept.
  * 
  * @author Arthur Zimek
  * @since 0.1
@@ -68,6 +86,29 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
     }, filters, parser);
   }
 
+  /**
+   * Constructor.
+   * 
+   * @param filters Filters, can be null
+   * @param parser the parser to provide a database
+   * @param infile File to load the data from
+   * @param samplesize Number of lines to sample by offset, 0 to read all
+   * @param rnd Random generator for sampling
+   */
+  public FileBasedDatabaseConnection(List<ObjectFilter> filters, Parser parser, File infile, int samplesize, RandomFactory rnd) {
+    super(() -> {
+      try {
+        if(samplesize > 0) {
+          return sampleLines(infile, samplesize, rnd.getSingleThreadedRandom());
+        }
+        return new BufferedInputStream(FileUtil.tryGzipInput(new FileInputStream(infile)));
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not load input file: " + infile, e);
+      }
+    }, filters, parser);
+  }
+
   /**
    * Constructor.
    * 
@@ -97,6 +138,135 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
     super(in, filters, parser);
   }
 
+  /**
+   * Read a sample of the lines of a file, by seeking to random offsets.
+   *
+   * @param infile Input file
+   * @param samplesize Number of offsets to sample
+   * @param random Random generator
+   * @return Stream of the header and the sampled lines, in file order
+   * @throws IOException on read errors
+   */
+  protected static InputStream sampleLines(File infile, int samplesize, Random random) throws IOException {
+    try (FileChannel ch = FileChannel.open(infile.toPath(), StandardOpenOption.READ)) {
+      final long len = ch.size();
+      ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+      if(ch.read(buf, 0) >= 2 && (buf.get(0) & 0xFF) == 0x1F && (buf.get(1) & 0xFF) == 0x8B) {
+        throw new AbortException("Sampling by offset is not possible for compressed files.");
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      // Keep the header lines.
+      long hend = 0;
+      while(hend < len) {
+        line.reset();
+        long next = copyLine(ch, hend, buf, line);
+        if(!isHeaderLine(line.toByteArray())) {
+          break;
+        }
+        line.writeTo(out);
+        hend = next;
+      }
+      // Sorted random offsets, for sequential access.
+      long[] offsets = new long[samplesize];
+      for(int i = 0; i < samplesize; i++) {
+        offsets[i] = hend + (long) (random.nextDouble() * (len - hend));
+      }
+      Arrays.sort(offsets);
+      long last = -1;
+      for(long off : offsets) {
+        final long start = lineStart(ch, hend, off, buf);
+        if(start == last) {
+          continue;
+        }
+        copyLine(ch, start, buf, out);
+        last = start;
+      }
+      return new ByteArrayInputStream(out.toByteArray());
+    }
+  }
+
+  /**
+   * Copy a line of a file.
+   *
+   * @param ch File channel
+   * @param pos Start position
+   * @param buf Buffer to use
+   * @param out Output, may be {@code null} to only skip the line
+   * @return Position after the end of the line
+   * @throws IOException on read errors
+   */
+  private static long copyLine(FileChannel ch, long pos, ByteBuffer buf, ByteArrayOutputStream out) throws IOException {
+    boolean copied = false;
+    while(true) {
+      buf.clear();
+      final int read = ch.read(buf, pos);
+      if(read <= 0) {
+        if(out != null && copied) {
+          out.write('\n'); // Terminate the last line.
+        }
+        return pos;
+      }
+      final byte[] arr = buf.array();
+      for(int i = 0; i < read; i++) {
+        if(arr[i] == '\n') {
+          if(out != null) {
+            out.write(arr, 0, i + 1);
+          }
+          return pos + i + 1;
+        }
+      }
+      if(out != null) {
+        out.write(arr, 0, read);
+      }
+      copied = true;
+      pos += read;
+    }
+  }
+
+  /**
+   * Find the start of the line containing a position.
+   *
+   * @param ch File channel
+   * @param min Minimum position (start of the first line)
+   * @param pos Position
+   * @param buf Buffer to use
+   * @return Start of the line containing the position
+   * @throws IOException on read errors
+   */
+  private static long lineStart(FileChannel ch, long min, long pos, ByteBuffer buf) throws IOException {
+    while(pos > min) {
+      final long begin = Math.max(min, pos - buf.capacity());
+      buf.clear();
+      buf.limit((int) (pos - begin));
+      final int read = ch.read(buf, begin);
+      final byte[] arr = buf.array();
+      for(int i = read - 1; i >= 0; i--) {
+        if(arr[i] == '\n') {
+          return begin + i + 1;
+        }
+      }
+      pos = begin;
+    }
+    return min;
+  }
+
+  /**
+   * Test for empty, comment, and ARFF header lines.
+   *
+   * @param line Line
+   * @return {@code true} if the line belongs to the header
+   */
+  private static boolean isHeaderLine(byte[] line) {
+    for(byte b : line) {
+      if(b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+        continue;
+      }
+      return b == '#' || b == '%' || b == '@';
+    }
+    return true;
+  }
+
   /**
    * Parameterization class.
    * 
@@ -108,11 +278,31 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
      */
     public static final OptionID INPUT_ID = new OptionID("dbc.in", "The name of the input file to be parsed.");
 
+    /**
+     * Number of lines to sample by file offset.
+     */
+    public static final OptionID SAMPLE_ID = new OptionID("dbc.sample", "Only read a random sample of approximately this many lines, by seeking to random file offsets. The file must not be compressed.");
+
+    /**
+     * Random seed for sampling.
+     */
+    public static final OptionID SEED_ID = new OptionID("dbc.sample.seed", "Random generator seed for sampling by file offset.");
+
     /**
      * Input stream to process.
      */
     protected File infile;
 
+    /**
+     * Number of lines to sample, 0 to read all.
+     */
+    protected int samplesize = 0;
+
+    /**
+     * Random generator for sampling.
+     */
+    protected RandomFactory rnd;
+
     @Override
     protected void makeOptions(Parameterization config) {
       Class<? extends Parser> defaultParser = NumberVectorLabelParser.class;
@@ -122,7 +312,17 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
         infile = inputParam.getValue();
         String nam = infile.getName();
         if(nam != null && (nam.endsWith(".arff") || nam.endsWith(".arff.gz"))) {
-          defaultParser = ArffParser.class;
+          defaultParser = StreamingArffParser.class;
+        }
+      }
+      IntParameter sampleP = new IntParameter(SAMPLE_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true);
+      if(config.grab(sampleP)) {
+        samplesize = sampleP.intValue();
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
         }
       }
       configParser(config, Parser.class, defaultParser);
@@ -131,7 +331,7 @@ public class FileBasedDatabaseConnection extends InputStreamDatabaseConnection {
 
     @Override
     protected FileBasedDatabaseConnection makeInstance() {
-      return new FileBasedDatabaseConnection(filters, parser, infile);
+      return new FileBasedDatabaseConnection(filters, parser, infile, samplesize, rnd);
     }
   }
 }
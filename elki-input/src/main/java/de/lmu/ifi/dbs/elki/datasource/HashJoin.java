@@ -0,0 +1,352 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Hash join of data sources on string keys (labels or external IDs).
+ * <p>
+ * Instead of hashing boxed strings, keys are represented by 64-bit hashes in
+ * primitive hash maps, partitioned by hash so that the build phase runs in
+ * parallel. Each match is verified against the original key, and the rare
+ * collisions of different keys are kept in a small overflow table, so the
+ * join is exact. The probe phase, and writing the joined columns, also run in
+ * parallel.
+ * <p>
+ * Strings, external IDs and other objects are joined by their string
+ * representation; label lists by any of their labels (the first matching label
+ * when probing).
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class HashJoin {
+  /**
+   * Key column of the primary source.
+   */
+  private final List<?> keys;
+
+  /**
+   * Hash maps, one per partition.
+   */
+  private final Long2IntOpenHashMap[] maps;
+
+  /**
+   * Overflow maps for hash collisions, one per partition.
+   */
+  private final List<Object2IntOpenHashMap<String>> overflow;
+
+  /**
+   * Partition mask.
+   */
+  private final int mask;
+
+  /**
+   * Number of duplicate keys in the primary source.
+   */
+  private int duplicates = 0;
+
+  /**
+   * Build the hash table on the key column of the primary source.
+   *
+   * @param keys Key column, may contain {@code null} values
+   */
+  public HashJoin(List<?> keys) {
+    this.keys = keys;
+    final int parts = Integer.highestOneBit(Math.max(1, ParallelCore.getCore().getParallelism() * 2 - 1));
+    this.mask = parts - 1;
+    this.maps = new Long2IntOpenHashMap[parts];
+    this.overflow = new ArrayList<>(parts);
+    for(int p = 0; p < parts; p++) {
+      Object2IntOpenHashMap<String> o = new Object2IntOpenHashMap<>();
+      o.defaultReturnValue(-1);
+      overflow.add(o);
+    }
+    // Hash all keys in parallel.
+    final List<Hashes> blocks = ParallelExecutor.runBlocks(keys.size(), (start, end) -> {
+      Hashes h = new Hashes(end - start);
+      for(int i = start; i < end; i++) {
+        final Object data = keys.get(i);
+        for(int j = 0, n = numKeys(data); j < n; j++) {
+          h.hashes.add(hash(key(data, j)));
+          h.rows.add(i);
+        }
+      }
+      return h;
+    });
+    // Build each partition in parallel, in input order.
+    final int expected = keys.size() / parts + 1;
+    List<Integer> dupes = ParallelExecutor.runBlocks(parts, 1, (start, end) -> {
+      int dup = 0;
+      for(int p = start; p < end; p++) {
+        maps[p] = new Long2IntOpenHashMap(expected);
+        maps[p].defaultReturnValue(-1);
+        for(Hashes h : blocks) {
+          for(int k = 0, n = h.hashes.size(); k < n; k++) {
+            final long hash = h.hashes.getLong(k);
+            if(partition(hash) == p) {
+              dup += put(p, hash, h.rows.getInt(k)) ? 1 : 0;
+            }
+          }
+        }
+      }
+      return dup;
+    });
+    for(Integer d : dupes) {
+      duplicates += d;
+    }
+  }
+
+  /**
+   * Insert a key into a partition.
+   *
+   * @param p Partition
+   * @param hash Key hash
+   * @param row Row
+   * @return {@code true} if the key was a duplicate
+   */
+  private boolean put(int p, long hash, int row) {
+    final int old = maps[p].put(hash, row);
+    if(old < 0) {
+      return false;
+    }
+    final String key = keyWithHash(keys.get(row), hash);
+    if(key.equals(keyWithHash(keys.get(old), hash))) {
+      return true; // The later row replaces the earlier one.
+    }
+    // Different key with the same hash: keep the earlier key in the overflow.
+    final Object2IntOpenHashMap<String> o = overflow.get(p);
+    o.put(keyWithHash(keys.get(old), hash), old);
+    return o.removeInt(key) >= 0;
+  }
+
+  /**
+   * Get the number of duplicate keys in the primary source.
+   *
+   * @return Number of duplicates
+   */
+  public int getDuplicates() {
+    return duplicates;
+  }
+
+  /**
+   * Count the {@code null} keys of a key column, which cannot be joined.
+   *
+   * @param column Key column
+   * @return Number of {@code null} values
+   */
+  public static int countNulls(List<?> column) {
+    int nulls = 0;
+    for(Object data : column) {
+      nulls += data == null ? 1 : 0;
+    }
+    return nulls;
+  }
+
+  /**
+   * Find the matching rows of the primary source, in parallel.
+   *
+   * @param column Key column of the other source
+   * @return Row in the primary source, or -1 if not found (or {@code null})
+   */
+  public int[] probe(List<?> column) {
+    final int[] rows = new int[column.size()];
+    ParallelExecutor.runBlocks(column.size(), (start, end) -> {
+      for(int i = start; i < end; i++) {
+        rows[i] = lookup(column.get(i));
+      }
+      return null;
+    });
+    return rows;
+  }
+
+  /**
+   * Find the matching row of a single key object.
+   *
+   * @param data Key object
+   * @return Row, or -1
+   */
+  private int lookup(Object data) {
+    for(int j = 0, n = numKeys(data); j < n; j++) {
+      final String key = key(data, j);
+      final long hash = hash(key);
+      final int p = partition(hash);
+      final int row = maps[p].get(hash);
+      if(row >= 0 && key.equals(keyWithHash(keys.get(row), hash))) {
+        return row;
+      }
+      final Object2IntOpenHashMap<String> o = overflow.get(p);
+      final int orow = o.isEmpty() ? -1 : o.getInt(key);
+      if(orow >= 0) {
+        return orow;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Append the columns of another source to the primary source, except its key
+   * column. The columns are written in parallel.
+   *
+   * @param first Primary source, columns will be appended
+   * @param cur Other source
+   * @param keycol Key column of the other source
+   * @param rows Matching rows, from {@link #probe}
+   */
+  public static void appendColumns(MultipleObjectsBundle first, MultipleObjectsBundle cur, int keycol, int[] rows) {
+    final int size = first.dataLength(), ncol = cur.metaLength();
+    List<List<List<Object>>> blocks = ParallelExecutor.runBlocks(ncol, 1, (start, end) -> {
+      List<List<Object>> out = new ArrayList<>(end - start);
+      for(int c = start; c < end; c++) {
+        if(c == keycol) {
+          out.add(null);
+          continue;
+        }
+        final List<?> in = cur.getColumn(c);
+        List<Object> col = new ArrayList<>(Collections.nCopies(size, null));
+        for(int i = 0; i < rows.length; i++) {
+          if(rows[i] >= 0) {
+            col.set(rows[i], in.get(i));
+          }
+        }
+        out.add(col);
+      }
+      return out;
+    });
+    int c = 0;
+    for(List<List<Object>> block : blocks) {
+      for(List<Object> col : block) {
+        if(c != keycol) {
+          first.appendColumn(cur.meta(c), col);
+        }
+        c++;
+      }
+    }
+  }
+
+  /**
+   * Partition of a hash.
+   *
+   * @param hash Hash
+   * @return Partition
+   */
+  private int partition(long hash) {
+    return (int) (hash >>> 40) & mask;
+  }
+
+  /**
+   * Number of keys of a key object.
+   *
+   * @param data Key object
+   * @return Number of keys
+   */
+  private static int numKeys(Object data) {
+    return data == null ? 0 : data instanceof LabelList ? ((LabelList) data).size() : 1;
+  }
+
+  /**
+   * Get a key of a key object.
+   *
+   * @param data Key object
+   * @param j Key number
+   * @return Key
+   */
+  private static String key(Object data, int j) {
+    return data instanceof LabelList ? ((LabelList) data).get(j) : data.toString();
+  }
+
+  /**
+   * Find the key of a key object with the given hash.
+   *
+   * @param data Key object
+   * @param hash Hash
+   * @return Key, or {@code null}
+   */
+  private static String keyWithHash(Object data, long hash) {
+    if(!(data instanceof LabelList)) {
+      return data.toString();
+    }
+    final LabelList ll = (LabelList) data;
+    for(int j = 0; j < ll.size(); j++) {
+      if(hash(ll.get(j)) == hash) {
+        return ll.get(j);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 64-bit string hash (FNV-1a, with a final avalanche step).
+   *
+   * @param s String
+   * @return Hash
+   */
+  protected static long hash(String s) {
+    long h = 0xcbf29ce484222325L;
+    for(int i = 0, l = s.length(); i < l; i++) {
+      h = (h ^ s.charAt(i)) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    return h ^ (h >>> 33);
+  }
+
+  /**
+   * Hashes of a block of rows.
+   *
+   * @author Erich Schubert
+   */
+  private static class Hashes {
+    /**
+     * Key hashes.
+     */
+    final LongArrayList hashes;
+
+    /**
+     * Rows of the keys.
+     */
+    final IntArrayList rows;
+
+    /**
+     * Constructor.
+     *
+     * @param size Expected size
+     */
+    Hashes(int size) {
+      hashes = new LongArrayList(size);
+      rows = new IntArrayList(size);
+    }
+  }
+}
@@ -23,7 +23,6 @@ package de.lmu.ifi.dbs.elki.datasource;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.lmu.ifi.dbs.elki.data.LabelList;
 import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.datasource.filter.FilterUtil;
 import de.lmu.ifi.dbs.elki.datasource.filter.ObjectFilter;
@@ -33,7 +32,6 @@ import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParameter;
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
 /**
  * Joins multiple data sources by their label
@@ -67,110 +65,46 @@ public class LabelJoinDatabaseConnection extends AbstractDatabaseConnection {
 
   @Override
   public MultipleObjectsBundle loadData() {
+    // Load the sources one after another; each source parallelizes internally.
     List<MultipleObjectsBundle> bundles = new ArrayList<>(sources.size());
     for(DatabaseConnection dbc : sources) {
       bundles.add(dbc.loadData());
     }
 
     MultipleObjectsBundle first = bundles.get(0);
-    Object2IntOpenHashMap<String> labelmap = new Object2IntOpenHashMap<>(first.dataLength());
-    labelmap.defaultReturnValue(-1);
     // Process first bundle
-    {
-      // Identify a label column
-      final int lblcol = FilterUtil.findLabelColumn(first);
-      if(lblcol == -1) {
-        throw new AbortException("No label column found in first source, cannot join (do you want to use " + ExternalIDJoinDatabaseConnection.class.getSimpleName() + " instead?)");
-      }
-      for(int i = 0; i < first.dataLength(); i++) {
-        Object data = first.data(i, lblcol);
-        if(data == null) {
-          LOG.warning("Object without label encountered.");
-          continue;
-        }
-        if(data instanceof String) {
-          int old = labelmap.put((String) data, i);
-          if(old != -1) {
-            LOG.warning("Duplicate label encountered: " + data + " in rows " + old + " and " + i);
-          }
-        }
-        else if(data instanceof LabelList) {
-          final LabelList ll = (LabelList) data;
-          for(int j = 0; j < ll.size(); j++) {
-            String lbl = ll.get(j);
-            int old = labelmap.put(lbl, i);
-            if(old != -1) {
-              LOG.warning("Duplicate label encountered: " + lbl + " in rows " + old + " and " + i);
-            }
-          }
-        }
-        else {
-          String lbl = data.toString();
-          int old = labelmap.put(lbl, i);
-          if(old != -1) {
-            LOG.warning("Duplicate label encountered: " + lbl + " in rows " + old + " and " + i);
-          }
-        }
-      }
+    final int lblcol = FilterUtil.findLabelColumn(first);
+    if(lblcol == -1) {
+      throw new AbortException("No label column found in first source, cannot join (do you want to use " + ExternalIDJoinDatabaseConnection.class.getSimpleName() + " instead?)");
+    }
+    final int firstnulls = HashJoin.countNulls(first.getColumn(lblcol));
+    if(firstnulls > 0) {
+      LOG.warning("Objects without label encountered: " + firstnulls);
+    }
+    HashJoin join = new HashJoin(first.getColumn(lblcol));
+    if(join.getDuplicates() > 0) {
+      LOG.warning("Duplicate labels encountered: " + join.getDuplicates());
     }
     // Process additional columns
     for(int c = 1; c < sources.size(); c++) {
       MultipleObjectsBundle cur = bundles.get(c);
-      final int lblcol = FilterUtil.findLabelColumn(cur);
-      if(lblcol == -1) {
+      final int curcol = FilterUtil.findLabelColumn(cur);
+      if(curcol == -1) {
         throw new AbortException("No label column found in source " + (c + 1) + ", cannot join (do you want to use " + ExternalIDJoinDatabaseConnection.class.getSimpleName() + " instead?)");
       }
-      // Destination columns
-      List<ArrayList<Object>> dcol = new ArrayList<>(cur.metaLength());
-      for(int i = 0; i < cur.metaLength(); i++) {
-        // Skip the label columns
-        if(i == lblcol) {
-          dcol.add(null);
-          continue;
-        }
-        ArrayList<Object> newcol = new ArrayList<>(first.dataLength());
-        // Pre-fill with nulls.
-        for(int j = 0; j < first.dataLength(); j++) {
-          newcol.add(null);
-        }
-        first.appendColumn(cur.meta(i), newcol);
-        dcol.add(newcol);
+      final int nulls = HashJoin.countNulls(cur.getColumn(curcol));
+      if(nulls > 0) {
+        LOG.warning("Objects without label encountered in source " + (c + 1) + ": " + nulls);
       }
-      for(int i = 0; i < cur.dataLength(); i++) {
-        Object data = cur.data(i, lblcol);
-        if(data == null) {
-          LOG.warning("Object without label encountered.");
-          continue;
-        }
-        int row = -1;
-        if(data instanceof String) {
-          row = labelmap.getInt(data);
-        }
-        else if(data instanceof LabelList) {
-          final LabelList ll = (LabelList) data;
-          for(int j = 0; j < ll.size(); j++) {
-            row = labelmap.getInt(ll.get(j));
-            if(row >= 0) {
-              break;
-            }
-          }
-        }
-        else {
-          row = labelmap.getInt(data.toString());
-        }
-        if(row < 0) {
-          LOG.warning("Label not found for join: " + data + " in row " + i);
-          continue;
-        }
-        for(int d = 0; d < cur.metaLength(); d++) {
-          if(d == lblcol) {
-            continue;
-          }
-          List<Object> col = dcol.get(d);
-          assert (col != null);
-          col.set(row, cur.data(i, d));
-        }
+      final int[] rows = join.probe(cur.getColumn(curcol));
+      int missing = -nulls;
+      for(int row : rows) {
+        missing += row < 0 ? 1 : 0;
+      }
+      if(missing > 0) {
+        LOG.warning("Labels not found for join in source " + (c + 1) + ": " + missing);
       }
+      HashJoin.appendColumns(first, cur, curcol, rows);
     }
     for(int i = 0; i < first.dataLength(); i++) {
       for(int d = 0; d < first.metaLength(); d++) {
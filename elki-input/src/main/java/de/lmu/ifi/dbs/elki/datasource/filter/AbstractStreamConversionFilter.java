@@ -43,7 +43,7 @@ public abstract class AbstractStreamConversionFilter<I, O> extends AbstractStrea
   /**
    * The column to filter.
    */
-  int column = -1;
+  protected int column = -1;
   
   @Override
   public BundleMeta getMeta() {
@@ -65,27 +65,34 @@ public abstract class AbstractStreamConversionFilter<I, O> extends AbstractStrea
   public Event nextEvent() {
     Event ev = source.nextEvent();
     if(ev == Event.META_CHANGED) {
-      if(meta == null) {
-        meta = new BundleMeta();
-      }
-      BundleMeta origmeta = source.getMeta();
-      for(int i = meta.size(); i < origmeta.size(); i++) {
-        if(column < 0) {
+      updateMeta();
+    }
+    return ev;
+  }
+
+  /**
+   * Update the filtered meta after the source meta has changed.
+   */
+  protected void updateMeta() {
+    if(meta == null) {
+      meta = new BundleMeta();
+    }
+    BundleMeta origmeta = source.getMeta();
+    for(int i = meta.size(); i < origmeta.size(); i++) {
+      if(column < 0) {
+        @SuppressWarnings("unchecked")
+        SimpleTypeInformation<Object> type = (SimpleTypeInformation<Object>) origmeta.get(i);
+        // Test whether this type matches
+        if(getInputTypeRestriction().isAssignableFromType(type)) {
           @SuppressWarnings("unchecked")
-          SimpleTypeInformation<Object> type = (SimpleTypeInformation<Object>) origmeta.get(i);
-          // Test whether this type matches
-          if(getInputTypeRestriction().isAssignableFromType(type)) {
-            @SuppressWarnings("unchecked")
-            final SimpleTypeInformation<I> castType = (SimpleTypeInformation<I>) type;
-            meta.add(convertedType(castType));
-            column = i;
-            continue;
-          }
+          final SimpleTypeInformation<I> castType = (SimpleTypeInformation<I>) type;
+          meta.add(convertedType(castType));
+          column = i;
+          continue;
         }
-        meta.add(origmeta.get(i));
       }
+      meta.add(origmeta.get(i));
     }
-    return ev;
   }
 
   /**
@@ -0,0 +1,198 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.filter.normalization.columnwise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.datasource.filter.FilterUtil;
+import de.lmu.ifi.dbs.elki.datasource.filter.normalization.NonNumericFeaturesException;
+import de.lmu.ifi.dbs.elki.datasource.filter.normalization.Normalization;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+/**
+ * Abstract base class for attribute-wise normalizations, which first collect
+ * statistics on each column, then transform every vector.
+ * <p>
+ * The transformation pass runs in parallel on blocks of the data, and
+ * transforms a single array per vector in-place, which is then wrapped without
+ * copying if possible. The input vectors are never modified, as they may share
+ * their arrays with the caller (e.g., {@link DoubleVector#wrap}).
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @param <V> vector type
+ */
+public abstract class AbstractAttributeWiseNormalization<V extends NumberVector> implements Normalization<V> {
+  /**
+   * Number vector factory.
+   */
+  protected NumberVector.Factory<V> factory;
+
+  @Override
+  public MultipleObjectsBundle filter(MultipleObjectsBundle objects) {
+    if(objects.dataLength() == 0) {
+      return objects;
+    }
+    for(int r = 0; r < objects.metaLength(); r++) {
+      SimpleTypeInformation<?> type = (SimpleTypeInformation<?>) objects.meta(r);
+      if(!TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(type)) {
+        continue;
+      }
+      @SuppressWarnings("unchecked")
+      final List<V> castColumn = (List<V>) objects.getColumn(r);
+      @SuppressWarnings("unchecked")
+      final VectorFieldTypeInformation<V> castType = (VectorFieldTypeInformation<V>) type;
+      factory = FilterUtil.guessFactory(castType);
+      prepare(castColumn, castType.getDimensionality());
+      normalizeColumn(castColumn);
+    }
+    return objects;
+  }
+
+  /**
+   * Collect the statistics of a column, if necessary.
+   *
+   * @param column Data column
+   * @param dim Dimensionality
+   */
+  protected abstract void prepare(List<V> column, int dim);
+
+  /**
+   * Normalize a vector in-place.
+   *
+   * @param vec Vector to normalize
+   */
+  protected abstract void normalizeInPlace(double[] vec);
+
+  /**
+   * Restore a vector in-place.
+   *
+   * @param vec Vector to restore
+   * @throws NonNumericFeaturesException if the dimensionality does not match.
+   */
+  protected abstract void restoreInPlace(double[] vec) throws NonNumericFeaturesException;
+
+  /**
+   * Normalization scan, in parallel blocks.
+   *
+   * @param column Column to normalize
+   */
+  protected void normalizeColumn(final List<V> column) {
+    final Logging log = getLogger();
+    if(log.isVerbose()) {
+      log.verbose("Data normalization of " + column.size() + " vectors.");
+    }
+    ParallelExecutor.runBlocks(column.size(), (start, end) -> {
+      for(int i = start; i < end; i++) {
+        double[] buf = column.get(i).toArray();
+        normalizeInPlace(buf);
+        column.set(i, wrap(buf));
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public V restore(V featureVector) throws NonNumericFeaturesException {
+    double[] buf = featureVector.toArray();
+    restoreInPlace(buf);
+    return wrap(buf);
+  }
+
+  /**
+   * Produce the output vector, without copying the array again if possible.
+   *
+   * @param buf Array, not modified afterwards
+   * @return Vector
+   */
+  @SuppressWarnings("unchecked")
+  protected V wrap(double[] buf) {
+    // DoubleVector would clone the array.
+    return factory == DoubleVector.FACTORY ? (V) DoubleVector.wrap(buf) : factory.newNumberVector(buf);
+  }
+
+  /**
+   * Draw a random sample (without replacement) of the column, for approximate
+   * statistics in constant memory. The sample is in the original order.
+   *
+   * @param column Data column
+   * @param samplesize Sample size
+   * @param rnd Random generator
+   * @return Sample, or the column itself if it is not larger than the sample
+   *         size
+   */
+  protected static <V> List<V> sample(List<V> column, int samplesize, RandomFactory rnd) {
+    final int size = column.size();
+    if(samplesize <= 0 || size <= samplesize) {
+      return column;
+    }
+    Random r = rnd.getSingleThreadedRandom();
+    int[] idx;
+    // As in DBIDUtil.randomSample: constructive vs. destructive sampling
+    if(samplesize < size >> 2) {
+      IntOpenHashSet seen = new IntOpenHashSet(samplesize);
+      while(seen.size() < samplesize) {
+        seen.add(r.nextInt(size));
+      }
+      idx = seen.toIntArray();
+    }
+    else {
+      // The size is bounded by 4 * samplesize here.
+      idx = new int[size];
+      for(int i = 0; i < size; i++) {
+        idx[i] = i;
+      }
+      for(int i = 0; i < samplesize; i++) {
+        final int j = i + r.nextInt(size - i), tmp = idx[j];
+        idx[j] = idx[i];
+        idx[i] = tmp;
+      }
+      idx = Arrays.copyOf(idx, samplesize);
+    }
+    Arrays.sort(idx);
+    List<V> sample = new ArrayList<>(samplesize);
+    for(int i : idx) {
+      sample.add(column.get(i));
+    }
+    return sample;
+  }
+
+  /**
+   * Get the class logger.
+   *
+   * @return Logger
+   */
+  protected abstract Logging getLogger();
+}
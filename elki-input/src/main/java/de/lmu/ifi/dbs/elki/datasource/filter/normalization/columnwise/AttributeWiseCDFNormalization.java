@@ -20,29 +20,28 @@
  */
 package de.lmu.ifi.dbs.elki.datasource.filter.normalization.columnwise;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
-import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
-import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
-import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
-import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
-import de.lmu.ifi.dbs.elki.datasource.filter.FilterUtil;
-import de.lmu.ifi.dbs.elki.datasource.filter.normalization.Normalization;
+import de.lmu.ifi.dbs.elki.datasource.filter.normalization.NonNumericFeaturesException;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.statistics.distribution.Distribution;
 import de.lmu.ifi.dbs.elki.math.statistics.distribution.UniformDistribution;
 import de.lmu.ifi.dbs.elki.math.statistics.distribution.estimator.DistributionEstimator;
 import de.lmu.ifi.dbs.elki.math.statistics.distribution.estimator.meta.BestFitEstimator;
 import de.lmu.ifi.dbs.elki.math.statistics.tests.KolmogorovSmirnovTest;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.NumberArrayAdapter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
 import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 
 /**
  * Class to perform and undo a normalization on real vectors by estimating the
@@ -56,6 +55,10 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParamet
  * S. Aksoy, R. M. Haralick
  * <p>
  * but they do not detail how to obtain an appropriate function `F`.
+ * <p>
+ * For large data sets, the distributions can be fitted to a random sample of
+ * the given size, which needs constant memory; the dimensions are then
+ * analyzed in parallel.
  *
  * @author Erich Schubert
  * @since 0.6.0
@@ -64,9 +67,8 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.ObjectListParamet
  * @assoc - - - NumberVector
  * @assoc - - - DistributionEstimator
  */
-// TODO: extract superclass AbstractAttributeWiseNormalization
 @Alias({ "de.lmu.ifi.dbs.elki.datasource.filter.normalization.AttributeWiseCDFNormalization" })
-public class AttributeWiseCDFNormalization<V extends NumberVector> implements Normalization<V> {
+public class AttributeWiseCDFNormalization<V extends NumberVector> extends AbstractAttributeWiseNormalization<V> {
   /**
    * Class logger.
    */
@@ -83,9 +85,14 @@ public class AttributeWiseCDFNormalization<V extends NumberVector> implements No
   protected List<Distribution> dists;
 
   /**
-   * Number vector factory.
+   * Sample size for approximate statistics, 0 for exact statistics.
+   */
+  protected int samplesize;
+
+  /**
+   * Random generator for sampling.
    */
-  protected NumberVector.Factory<V> factory;
+  protected RandomFactory rnd;
 
   /**
    * Constructor.
@@ -93,59 +100,82 @@ public class AttributeWiseCDFNormalization<V extends NumberVector> implements No
    * @param estimators Distribution estimators
    */
   public AttributeWiseCDFNormalization(List<DistributionEstimator<?>> estimators) {
+    this(estimators, 0, RandomFactory.DEFAULT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param estimators Distribution estimators
+   * @param samplesize Sample size for approximate statistics, 0 for exact
+   * @param rnd Random generator for sampling
+   */
+  public AttributeWiseCDFNormalization(List<DistributionEstimator<?>> estimators, int samplesize, RandomFactory rnd) {
     super();
     this.estimators = estimators;
+    this.samplesize = samplesize;
+    this.rnd = rnd;
   }
 
   @Override
-  public MultipleObjectsBundle filter(MultipleObjectsBundle objects) {
-    if(objects.dataLength() == 0) {
-      return objects;
+  protected void prepare(final List<V> column, final int dim) {
+    final List<V> data = sample(column, samplesize, rnd);
+    final Distribution[] fitted = new Distribution[dim];
+    if(data == column) {
+      // Exact: analyze dimensions sequentially, to not multiply the memory
+      // needed for goodness of fit testing.
+      fitDimensions(column, data, 0, dim, fitted);
     }
-    for(int r = 0; r < objects.metaLength(); r++) {
-      SimpleTypeInformation<?> type = (SimpleTypeInformation<?>) objects.meta(r);
-      final List<?> column = (List<?>) objects.getColumn(r);
-      if(!TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(type)) {
-        continue;
-      }
-      @SuppressWarnings("unchecked")
-      final List<V> castColumn = (List<V>) column;
-      // Get the replacement type information
-      @SuppressWarnings("unchecked")
-      final VectorFieldTypeInformation<V> castType = (VectorFieldTypeInformation<V>) type;
-      factory = FilterUtil.guessFactory(castType);
-
-      // Scan to find the best
-      final int dim = castType.getDimensionality();
-      dists = new ArrayList<>(dim);
-      // Scratch space for testing:
-      double[] test = estimators.size() > 1 ? new double[castColumn.size()] : null;
+    else {
+      // Approximate: the scratch arrays are small, analyze dimensions in
+      // parallel.
+      ParallelExecutor.runBlocks(dim, 1, (start, end) -> fitDimensions(column, data, start, end, fitted));
+    }
+    dists = Arrays.asList(fitted);
+  }
 
-      // We iterate over dimensions, this kind of filter needs fast random
-      // access.
-      Adapter adapter = new Adapter();
-      for(int d = 0; d < dim; d++) {
-        adapter.dim = d;
-        Distribution dist = findBestFit(castColumn, adapter, d, test);
-        // Special handling for constant distributions:
-        // We want them to remain 0, instead of - usually - becoming constant .5
-        if(dist instanceof UniformDistribution) {
-          dist = constantZero(castColumn, adapter) ? new UniformDistribution(0., 1.) : dist;
-        }
-        dists.add(dist);
+  /**
+   * Fit the distributions of a range of dimensions.
+   *
+   * @param column Data column
+   * @param data Data used for fitting (column, or sample)
+   * @param start First dimension
+   * @param end End dimension (exclusive)
+   * @param fitted Output array
+   * @return {@code null}
+   */
+  private Void fitDimensions(List<V> column, List<V> data, int start, int end, Distribution[] fitted) {
+    // Scratch space for testing:
+    double[] test = estimators.size() > 1 ? new double[data.size()] : null;
+    Adapter adapter = new Adapter();
+    for(int d = start; d < end; d++) {
+      adapter.dim = d;
+      Distribution dist = findBestFit(data, adapter, d, test);
+      // Special handling for constant distributions:
+      // We want them to remain 0, instead of - usually - becoming constant .5
+      if(dist instanceof UniformDistribution) {
+        dist = constantZero(column, adapter) ? new UniformDistribution(0., 1.) : dist;
       }
+      fitted[d] = dist;
+    }
+    return null;
+  }
 
-      // Normalization scan
-      double[] buf = new double[dim];
-      for(int i = 0; i < objects.dataLength(); i++) {
-        final V obj = castColumn.get(i);
-        for(int d = 0; d < dim; d++) {
-          buf[d] = dists.get(d).cdf(obj.doubleValue(d));
-        }
-        castColumn.set(i, factory.newNumberVector(buf));
-      }
+  @Override
+  protected void normalizeInPlace(double[] vec) {
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = dists.get(d).cdf(vec[d]);
+    }
+  }
+
+  @Override
+  protected void restoreInPlace(double[] vec) throws NonNumericFeaturesException {
+    if(vec.length != dists.size()) {
+      throw new NonNumericFeaturesException("Attributes cannot be resized: current dimensionality: " + vec.length + " former dimensionality: " + dists.size());
+    }
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = dists.get(d).quantile(vec[d]);
     }
-    return objects;
   }
 
   /**
@@ -232,6 +262,11 @@ public class AttributeWiseCDFNormalization<V extends NumberVector> implements No
     return result.toString();
   }
 
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
   /**
    * Array adapter class for vectors.
    *
@@ -282,6 +317,16 @@ public class AttributeWiseCDFNormalization<V extends NumberVector> implements No
      */
     private List<DistributionEstimator<?>> estimators;
 
+    /**
+     * Sample size for approximate statistics, 0 for exact statistics.
+     */
+    protected int samplesize;
+
+    /**
+     * Random generator for sampling.
+     */
+    protected RandomFactory rnd;
+
     @Override
     protected void makeOptions(Parameterization config) {
       super.makeOptions(config);
@@ -290,11 +335,22 @@ public class AttributeWiseCDFNormalization<V extends NumberVector> implements No
       if(config.grab(estP)) {
         estimators = estP.instantiateClasses(config);
       }
+      IntParameter sampleP = new IntParameter(AttributeWiseMADNormalization.Parameterizer.SAMPLE_SIZE_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(sampleP)) {
+        samplesize = sampleP.intValue();
+      }
+      if(samplesize > 0) {
+        RandomParameter rndP = new RandomParameter(AttributeWiseMADNormalization.Parameterizer.SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
     }
 
     @Override
     protected AttributeWiseCDFNormalization<V> makeInstance() {
-      return new AttributeWiseCDFNormalization<>(estimators);
+      return new AttributeWiseCDFNormalization<>(estimators, samplesize, rnd != null ? rnd : RandomFactory.DEFAULT);
     }
   }
 }
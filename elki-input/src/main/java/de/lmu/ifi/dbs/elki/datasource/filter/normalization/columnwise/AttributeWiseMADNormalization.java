@@ -23,19 +23,21 @@ package de.lmu.ifi.dbs.elki.datasource.filter.normalization.columnwise;
 import java.util.List;
 
 import de.lmu.ifi.dbs.elki.data.NumberVector;
-import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
-import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
-import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
-import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
-import de.lmu.ifi.dbs.elki.datasource.filter.FilterUtil;
 import de.lmu.ifi.dbs.elki.datasource.filter.normalization.NonNumericFeaturesException;
-import de.lmu.ifi.dbs.elki.datasource.filter.normalization.Normalization;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.logging.progress.FiniteProgress;
 import de.lmu.ifi.dbs.elki.math.statistics.distribution.NormalDistribution;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.datastructures.QuickSelect;
 import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
 
 /**
  * Median Absolute Deviation is used for scaling the data set as follows:
@@ -45,6 +47,10 @@ import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
  *
  * This is similar to z-standardization of data sets, except that it is more
  * robust towards outliers, and only slightly more expensive to compute.
+ * <p>
+ * For large data sets, the median and MAD can be estimated from a random
+ * sample of the given size. This needs constant memory, and the dimensions are
+ * then analyzed in parallel.
  *
  * @author Erich Schubert
  * @since 0.6.0
@@ -52,19 +58,13 @@ import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
  *
  * @assoc - - - NumberVector
  */
-// TODO: extract superclass AbstractAttributeWiseNormalization
 @Alias({ "de.lmu.ifi.dbs.elki.datasource.filter.normalization.AttributeWiseMADNormalization" })
-public class AttributeWiseMADNormalization<V extends NumberVector> implements Normalization<V> {
+public class AttributeWiseMADNormalization<V extends NumberVector> extends AbstractAttributeWiseNormalization<V> {
   /**
    * Class logger.
    */
   private static final Logging LOG = Logging.getLogger(AttributeWiseMADNormalization.class);
 
-  /**
-   * Number vector factory.
-   */
-  protected NumberVector.Factory<V> factory;
-
   /**
    * Stores the median in each dimension.
    */
@@ -75,99 +75,117 @@ public class AttributeWiseMADNormalization<V extends NumberVector> implements No
    */
   private double[] imadsigma = new double[0];
 
+  /**
+   * Sample size for approximate statistics, 0 for exact statistics.
+   */
+  private int samplesize;
+
+  /**
+   * Random generator for sampling.
+   */
+  private RandomFactory rnd;
+
   /**
    * Constructor.
    */
   public AttributeWiseMADNormalization() {
+    this(0, RandomFactory.DEFAULT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param samplesize Sample size for approximate statistics, 0 for exact
+   * @param rnd Random generator for sampling
+   */
+  public AttributeWiseMADNormalization(int samplesize, RandomFactory rnd) {
     super();
+    this.samplesize = samplesize;
+    this.rnd = rnd;
   }
 
   @Override
-  public MultipleObjectsBundle filter(MultipleObjectsBundle objects) {
-    if(objects.dataLength() == 0) {
-      return objects;
-    }
-    for(int r = 0; r < objects.metaLength(); r++) {
-      SimpleTypeInformation<?> type = (SimpleTypeInformation<?>) objects.meta(r);
-      final List<?> column = (List<?>) objects.getColumn(r);
-      if(!TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(type)) {
-        continue;
-      }
-      @SuppressWarnings("unchecked")
-      final List<V> castColumn = (List<V>) column;
-      // Get the replacement type information
-      @SuppressWarnings("unchecked")
-      final VectorFieldTypeInformation<V> castType = (VectorFieldTypeInformation<V>) type;
-      factory = FilterUtil.guessFactory(castType);
-
-      // Scan to find the best
-      final int dim = castType.getDimensionality();
-      median = new double[dim];
-      imadsigma = new double[dim];
-      // Scratch space for testing:
-      double[] test = new double[castColumn.size()];
-
-      FiniteProgress dprog = LOG.isVerbose() ? new FiniteProgress("Analyzing data", dim, LOG) : null;
-      // We iterate over dimensions, this kind of filter needs fast random
-      // access.
+  protected void prepare(List<V> column, final int dim) {
+    final List<V> data = sample(column, samplesize, rnd);
+    median = new double[dim];
+    imadsigma = new double[dim];
+    FiniteProgress dprog = LOG.isVerbose() ? new FiniteProgress("Analyzing data", dim, LOG) : null;
+    if(data == column) {
+      // Exact: We iterate over dimensions, this kind of filter needs fast
+      // random access. Only one scratch array of full size is used.
+      double[] test = new double[data.size()];
       for(int d = 0; d < dim; d++) {
-        for(int i = 0; i < test.length; i++) {
-          test[i] = castColumn.get(i).doubleValue(d);
-        }
-        final double med = QuickSelect.median(test);
-        median[d] = med;
-        int zeros = 0;
-        for(int i = 0; i < test.length; i++) {
-          if((test[i] = Math.abs(test[i] - med)) == 0.) {
-            zeros++;
-          }
-        }
-        // Rescale the true MAD for the best standard deviation estimate:
-        if(zeros < (test.length >>> 1)) {
-          imadsigma[d] = NormalDistribution.PHIINV075 / QuickSelect.median(test);
-        }
-        else if(zeros == test.length) {
-          LOG.warning("Constant attribute detected. Using MAD=1.");
-          imadsigma[d] = 1.; // Does not matter. Constant distribution.
-        }
-        else {
-          // We have more than 50% zeros, so the regular MAD estimate does not
-          // work. Generalize the MAD approach to use the 50% non-zero value:
-          final int rank = zeros + ((test.length - zeros) >> 1);
-          final double rel = .5 + rank * .5 / test.length;
-          imadsigma[d] = NormalDistribution.quantile(0., 1., rel) / QuickSelect.quickSelect(test, rank);
-          LOG.warning("Near-constant attribute detected. Using modified MAD.");
-        }
+        analyzeDimension(data, d, test);
         LOG.incrementProcessed(dprog);
       }
-      LOG.ensureCompleted(dprog);
-
-      FiniteProgress nprog = LOG.isVerbose() ? new FiniteProgress("Data normalization", objects.dataLength(), LOG) : null;
-      // Normalization scan
-      double[] buf = new double[dim];
-      for(int i = 0; i < objects.dataLength(); i++) {
-        final V obj = castColumn.get(i);
-        for(int d = 0; d < dim; d++) {
-          buf[d] = normalize(d, obj.doubleValue(d));
+    }
+    else {
+      // Approximate: the scratch arrays are small, analyze dimensions in
+      // parallel.
+      ParallelExecutor.runBlocks(dim, 1, (start, end) -> {
+        double[] test = new double[data.size()];
+        for(int d = start; d < end; d++) {
+          analyzeDimension(data, d, test);
+          LOG.incrementProcessed(dprog);
         }
-        castColumn.set(i, factory.newNumberVector(buf));
-        LOG.incrementProcessed(nprog);
+        return null;
+      });
+    }
+    LOG.ensureCompleted(dprog);
+  }
+
+  /**
+   * Compute median and MAD of a single dimension.
+   *
+   * @param data Data column (or sample)
+   * @param d Dimension
+   * @param test Scratch space, of the same size as the data
+   */
+  private void analyzeDimension(List<V> data, int d, double[] test) {
+    for(int i = 0; i < test.length; i++) {
+      test[i] = data.get(i).doubleValue(d);
+    }
+    final double med = QuickSelect.median(test);
+    median[d] = med;
+    int zeros = 0;
+    for(int i = 0; i < test.length; i++) {
+      if((test[i] = Math.abs(test[i] - med)) == 0.) {
+        zeros++;
       }
-      LOG.ensureCompleted(nprog);
     }
-    return objects;
+    // Rescale the true MAD for the best standard deviation estimate:
+    if(zeros < (test.length >>> 1)) {
+      imadsigma[d] = NormalDistribution.PHIINV075 / QuickSelect.median(test);
+    }
+    else if(zeros == test.length) {
+      LOG.warning("Constant attribute detected. Using MAD=1.");
+      imadsigma[d] = 1.; // Does not matter. Constant distribution.
+    }
+    else {
+      // We have more than 50% zeros, so the regular MAD estimate does not
+      // work. Generalize the MAD approach to use the 50% non-zero value:
+      final int rank = zeros + ((test.length - zeros) >> 1);
+      final double rel = .5 + rank * .5 / test.length;
+      imadsigma[d] = NormalDistribution.quantile(0., 1., rel) / QuickSelect.quickSelect(test, rank);
+      LOG.warning("Near-constant attribute detected. Using modified MAD.");
+    }
+  }
+
+  @Override
+  protected void normalizeInPlace(double[] vec) {
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = normalize(d, vec[d]);
+    }
   }
 
   @Override
-  public V restore(V featureVector) throws NonNumericFeaturesException {
-    if(featureVector.getDimensionality() != median.length) {
-      throw new NonNumericFeaturesException("Attributes cannot be resized: current dimensionality: " + featureVector.getDimensionality() + " former dimensionality: " + median.length);
+  protected void restoreInPlace(double[] vec) throws NonNumericFeaturesException {
+    if(vec.length != median.length) {
+      throw new NonNumericFeaturesException("Attributes cannot be resized: current dimensionality: " + vec.length + " former dimensionality: " + median.length);
     }
-    double[] values = new double[featureVector.getDimensionality()];
-    for(int d = 0; d < featureVector.getDimensionality(); d++) {
-      values[d] = restore(d, featureVector.doubleValue(d));
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = restore(d, vec[d]);
     }
-    return factory.newNumberVector(values);
   }
 
   /**
@@ -198,4 +216,57 @@ public class AttributeWiseMADNormalization<V extends NumberVector> implements No
         .append("normalization median: ").append(FormatUtil.format(median)).append('\n') //
         .append("normalization scaling factor: ").append(FormatUtil.format(imadsigma)).toString();
   }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer<V extends NumberVector> extends AbstractParameterizer {
+    /**
+     * Sample size for approximate statistics.
+     */
+    public static final OptionID SAMPLE_SIZE_ID = new OptionID("normalize.samplesize", "Sample size used to estimate the statistics of each attribute approximately in constant memory. 0 uses all data.");
+
+    /**
+     * Random seed for sampling.
+     */
+    public static final OptionID SEED_ID = new OptionID("normalize.seed", "Random seed for sampling.");
+
+    /**
+     * Sample size for approximate statistics, 0 for exact statistics.
+     */
+    protected int samplesize;
+
+    /**
+     * Random generator for sampling.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter sampleP = new IntParameter(SAMPLE_SIZE_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT);
+      if(config.grab(sampleP)) {
+        samplesize = sampleP.intValue();
+      }
+      if(samplesize > 0) {
+        RandomParameter rndP = new RandomParameter(SEED_ID);
+        if(config.grab(rndP)) {
+          rnd = rndP.getValue();
+        }
+      }
+    }
+
+    @Override
+    protected AttributeWiseMADNormalization<V> makeInstance() {
+      return new AttributeWiseMADNormalization<>(samplesize, rnd != null ? rnd : RandomFactory.DEFAULT);
+    }
+  }
 }
@@ -20,14 +20,14 @@
  */
 package de.lmu.ifi.dbs.elki.datasource.filter.normalization.columnwise;
 
+import java.util.Arrays;
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
-import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
-import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
-import de.lmu.ifi.dbs.elki.datasource.filter.AbstractVectorConversionFilter;
 import de.lmu.ifi.dbs.elki.datasource.filter.normalization.NonNumericFeaturesException;
-import de.lmu.ifi.dbs.elki.datasource.filter.normalization.Normalization;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.LinearEquationSystem;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
@@ -41,6 +41,9 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleListParamet
  * Class to perform and undo a normalization on real vectors with respect to
  * a given minimum and maximum in each dimension. This class performs a linear
  * scaling on the data.
+ * <p>
+ * The minima and maxima are collected with partial results per block, which
+ * are merged afterwards.
  * 
  * @author Elke Achtert
  * @since 0.4.0
@@ -51,7 +54,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleListParamet
 @Alias({ "de.lmu.ifi.dbs.elki.datasource.filter.normalization.AttributeWiseMinMaxNormalization", //
     "de.lmu.ifi.dbs.elki.datasource.filter.AttributeWiseMinMaxNormalization" })
 @Priority(Priority.RECOMMENDED)
-public class AttributeWiseMinMaxNormalization<V extends NumberVector> extends AbstractVectorConversionFilter<V, V> implements Normalization<V> {
+public class AttributeWiseMinMaxNormalization<V extends NumberVector> extends AbstractAttributeWiseNormalization<V> {
   /**
    * Class logger.
    */
@@ -92,58 +95,61 @@ public class AttributeWiseMinMaxNormalization<V extends NumberVector> extends Ab
   }
 
   @Override
-  protected boolean prepareStart(SimpleTypeInformation<V> in) {
-    return (minima.length == 0 || maxima.length == 0);
-  }
-
-  @Override
-  protected void prepareProcessInstance(V featureVector) {
-    // First object? Then initialize.
-    if(minima.length == 0 || maxima.length == 0) {
-      int dimensionality = featureVector.getDimensionality();
-      minima = new double[dimensionality];
-      maxima = new double[dimensionality];
-      for(int i = 0; i < dimensionality; i++) {
-        maxima[i] = -Double.MAX_VALUE;
-        minima[i] = Double.MAX_VALUE;
-      }
-    }
-    if(minima.length != featureVector.getDimensionality()) {
-      throw new IllegalArgumentException("FeatureVectors differ in length.");
+  protected void prepare(final List<V> column, final int dim) {
+    if(minima.length != 0 && maxima.length != 0) {
+      return;
     }
-    for(int d = 0; d < featureVector.getDimensionality(); d++) {
-      final double val = featureVector.doubleValue(d);
-      if(val < Double.POSITIVE_INFINITY && val > maxima[d]) {
-        maxima[d] = val;
+    // Collect partial minima and maxima in parallel, then merge.
+    List<double[][]> parts = ParallelExecutor.runBlocks(column.size(), (start, end) -> {
+      double[] pmin = new double[dim], pmax = new double[dim];
+      Arrays.fill(pmin, Double.MAX_VALUE);
+      Arrays.fill(pmax, -Double.MAX_VALUE);
+      for(int i = start; i < end; i++) {
+        final V featureVector = column.get(i);
+        if(featureVector.getDimensionality() != dim) {
+          throw new IllegalArgumentException("FeatureVectors differ in length.");
+        }
+        for(int d = 0; d < dim; d++) {
+          final double val = featureVector.doubleValue(d);
+          if(val < Double.POSITIVE_INFINITY && val > pmax[d]) {
+            pmax[d] = val;
+          }
+          if(val > Double.NEGATIVE_INFINITY && val < pmin[d]) {
+            pmin[d] = val;
+          }
+        }
       }
-      if(val > Double.NEGATIVE_INFINITY && val < minima[d]) {
-        minima[d] = val;
+      return new double[][] { pmin, pmax };
+    });
+    double[] mins = parts.get(0)[0], maxs = parts.get(0)[1];
+    for(double[][] part : parts.subList(1, parts.size())) {
+      for(int d = 0; d < dim; d++) {
+        mins[d] = part[0][d] < mins[d] ? part[0][d] : mins[d];
+        maxs[d] = part[1][d] > maxs[d] ? part[1][d] : maxs[d];
       }
     }
+    minima = mins;
+    maxima = maxs;
   }
 
   @Override
-  protected V filterSingleObject(V featureVector) {
-    if(minima.length != featureVector.getDimensionality()) {
+  protected void normalizeInPlace(double[] vec) {
+    if(minima.length != vec.length) {
       throw new IllegalArgumentException("FeatureVectors and given Minima/Maxima differ in length.");
     }
-    double[] values = new double[featureVector.getDimensionality()];
-    for(int d = 0; d < featureVector.getDimensionality(); d++) {
-      values[d] = (featureVector.doubleValue(d) - minima[d]) / factor(d);
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = (vec[d] - minima[d]) / factor(d);
     }
-    return factory.newNumberVector(values);
   }
 
   @Override
-  public V restore(V featureVector) throws NonNumericFeaturesException {
-    if(featureVector.getDimensionality() != maxima.length || featureVector.getDimensionality() != minima.length) {
-      throw new NonNumericFeaturesException("Attributes cannot be resized: current dimensionality: " + featureVector.getDimensionality() + " former dimensionality: " + maxima.length);
+  protected void restoreInPlace(double[] vec) throws NonNumericFeaturesException {
+    if(vec.length != maxima.length || vec.length != minima.length) {
+      throw new NonNumericFeaturesException("Attributes cannot be resized: current dimensionality: " + vec.length + " former dimensionality: " + maxima.length);
     }
-    double[] values = new double[featureVector.getDimensionality()];
-    for(int d = 0; d < featureVector.getDimensionality(); d++) {
-      values[d] = featureVector.doubleValue(d) * factor(d) + minima[d];
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = vec[d] * factor(d) + minima[d];
     }
-    return factory.newNumberVector(values);
   }
 
   /**
@@ -188,22 +194,11 @@ public class AttributeWiseMinMaxNormalization<V extends NumberVector> extends Ab
         .toString();
   }
 
-  @Override
-  protected SimpleTypeInformation<? super V> convertedType(SimpleTypeInformation<V> in) {
-    initializeOutputType(in);
-    return in;
-  }
-
   @Override
   protected Logging getLogger() {
     return LOG;
   }
 
-  @Override
-  protected SimpleTypeInformation<? super V> getInputTypeRestriction() {
-    return TypeUtil.NUMBER_VECTOR_FIELD;
-  }
-
   /**
    * Parameterization class.
    * 
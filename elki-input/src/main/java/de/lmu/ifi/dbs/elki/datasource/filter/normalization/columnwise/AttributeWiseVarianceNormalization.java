@@ -20,15 +20,14 @@
  */
 package de.lmu.ifi.dbs.elki.datasource.filter.normalization.columnwise;
 
+import java.util.List;
+
 import de.lmu.ifi.dbs.elki.data.NumberVector;
-import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
-import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
-import de.lmu.ifi.dbs.elki.datasource.filter.AbstractVectorConversionFilter;
 import de.lmu.ifi.dbs.elki.datasource.filter.normalization.NonNumericFeaturesException;
-import de.lmu.ifi.dbs.elki.datasource.filter.normalization.Normalization;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.LinearEquationSystem;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.io.FormatUtil;
@@ -47,6 +46,9 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleListParamet
  * unbiased estimate ({@link MeanVariance#getSampleStddev()}) is more
  * appropriate, it will not ensure this interesting property. For large data,
  * the difference will be small anyway.
+ * <p>
+ * The statistics are collected with one {@link MeanVariance} per block and
+ * dimension, which are merged afterwards.
  *
  * @author Erich Schubert
  * @since 0.4.0
@@ -57,7 +59,7 @@ import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.DoubleListParamet
 @Alias({ "de.lmu.ifi.dbs.elki.datasource.filter.normalization.AttributeWiseVarianceNormalization", //
     "z", "de.lmu.ifi.dbs.elki.datasource.filter.AttributeWiseVarianceNormalization" })
 @Priority(Priority.RECOMMENDED)
-public class AttributeWiseVarianceNormalization<V extends NumberVector> extends AbstractVectorConversionFilter<V, V> implements Normalization<V> {
+public class AttributeWiseVarianceNormalization<V extends NumberVector> extends AbstractAttributeWiseNormalization<V> {
   /**
    * Class logger.
    */
@@ -73,11 +75,6 @@ public class AttributeWiseVarianceNormalization<V extends NumberVector> extends
    */
   private double[] stddev;
 
-  /**
-   * Temporary storage used during initialization.
-   */
-  MeanVariance[] mvs = null;
-
   /**
    * Constructor.
    */
@@ -98,34 +95,37 @@ public class AttributeWiseVarianceNormalization<V extends NumberVector> extends
   }
 
   @Override
-  protected boolean prepareStart(SimpleTypeInformation<V> in) {
-    return (mean == null || stddev == null || mean.length == 0 || stddev.length == 0);
-  }
-
-  @Override
-  protected void prepareProcessInstance(V featureVector) {
-    // First object? Then init. (We didn't have a dimensionality before!)
-    if(mvs == null || mvs.length == 0) {
-      mvs = MeanVariance.newArray(featureVector.getDimensionality());
+  protected void prepare(final List<V> column, final int dim) {
+    if(mean != null && stddev != null && mean.length != 0 && stddev.length != 0) {
+      return;
     }
-    for(int d = 0; d < featureVector.getDimensionality(); d++) {
-      final double v = featureVector.doubleValue(d);
-      if(v > Double.NEGATIVE_INFINITY && v < Double.POSITIVE_INFINITY) {
-        mvs[d].put(v);
+    // Collect partial statistics in parallel, then merge.
+    List<MeanVariance[]> parts = ParallelExecutor.runBlocks(column.size(), (start, end) -> {
+      MeanVariance[] mvs = MeanVariance.newArray(dim);
+      for(int i = start; i < end; i++) {
+        final V featureVector = column.get(i);
+        for(int d = 0; d < dim; d++) {
+          final double v = featureVector.doubleValue(d);
+          if(v > Double.NEGATIVE_INFINITY && v < Double.POSITIVE_INFINITY) {
+            mvs[d].put(v);
+          }
+        }
+      }
+      return mvs;
+    });
+    MeanVariance[] mvs = parts.get(0);
+    for(MeanVariance[] part : parts.subList(1, parts.size())) {
+      for(int d = 0; d < dim; d++) {
+        mvs[d].put(part[d]);
       }
     }
-  }
-
-  @Override
-  protected void prepareComplete() {
     StringBuilder buf = LOG.isVerbose() ? new StringBuilder(300) : null;
-    final int dimensionality = mvs.length;
-    mean = new double[dimensionality];
-    stddev = new double[dimensionality];
+    mean = new double[dim];
+    stddev = new double[dim];
     if(buf != null) {
       buf.append("Normalization parameters: ");
     }
-    for(int d = 0; d < dimensionality; d++) {
+    for(int d = 0; d < dim; d++) {
       mean[d] = mvs[d].getMean();
       stddev[d] = mvs[d].getNaiveStddev();
       stddev[d] = stddev[d] > Double.MIN_NORMAL ? stddev[d] : 1.;
@@ -133,31 +133,26 @@ public class AttributeWiseVarianceNormalization<V extends NumberVector> extends
         buf.append(" m: ").append(mean[d]).append(" v: ").append(stddev[d]);
       }
     }
-    mvs = null;
     if(buf != null) {
       LOG.debugFine(buf.toString());
     }
   }
 
   @Override
-  protected V filterSingleObject(V featureVector) {
-    double[] values = new double[featureVector.getDimensionality()];
-    for(int d = 0; d < featureVector.getDimensionality(); d++) {
-      values[d] = normalize(d, featureVector.doubleValue(d));
+  protected void normalizeInPlace(double[] vec) {
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = normalize(d, vec[d]);
     }
-    return factory.newNumberVector(values);
   }
 
   @Override
-  public V restore(V featureVector) throws NonNumericFeaturesException {
-    if(featureVector.getDimensionality() != mean.length) {
-      throw new NonNumericFeaturesException("Attributes cannot be resized: current dimensionality: " + featureVector.getDimensionality() + " former dimensionality: " + mean.length);
+  protected void restoreInPlace(double[] vec) throws NonNumericFeaturesException {
+    if(vec.length != mean.length) {
+      throw new NonNumericFeaturesException("Attributes cannot be resized: current dimensionality: " + vec.length + " former dimensionality: " + mean.length);
     }
-    double[] values = new double[featureVector.getDimensionality()];
-    for(int d = 0; d < featureVector.getDimensionality(); d++) {
-      values[d] = restore(d, featureVector.doubleValue(d));
+    for(int d = 0; d < vec.length; d++) {
+      vec[d] = restore(d, vec[d]);
     }
-    return factory.newNumberVector(values);
   }
 
   /**
@@ -212,22 +207,11 @@ public class AttributeWiseVarianceNormalization<V extends NumberVector> extends
         .toString();
   }
 
-  @Override
-  protected SimpleTypeInformation<? super V> convertedType(SimpleTypeInformation<V> in) {
-    initializeOutputType(in);
-    return in;
-  }
-
   @Override
   protected Logging getLogger() {
     return LOG;
   }
 
-  @Override
-  protected SimpleTypeInformation<? super V> getInputTypeRestriction() {
-    return TypeUtil.NUMBER_VECTOR_FIELD;
-  }
-
   /**
    * Parameterization class.
    * 
@@ -0,0 +1,336 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.filter.selection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.dbs.elki.database.ids.DBID;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDUtil;
+import de.lmu.ifi.dbs.elki.database.ids.DBIDVar;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleStreamSource;
+import de.lmu.ifi.dbs.elki.datasource.filter.AbstractStreamFilter;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Reference;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.OptionID;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.constraints.CommonConstraints;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.IntParameter;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.RandomParameter;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Draw a uniform random sample of exactly the given size (or the entire data,
+ * if smaller) from a stream, using reservoir sampling.
+ * <p>
+ * The input is consumed in a single pass, keeping only the sample in memory.
+ * The sample is then emitted in the original stream order.
+ * <p>
+ * Reference:
+ * <p>
+ * J. S. Vitter<br>
+ * Random sampling with a reservoir<br>
+ * ACM Transactions on Mathematical Software 11(1)
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ *
+ * @composed - - - Reservoir
+ */
+@Reference(authors = "J. S. Vitter", //
+    title = "Random sampling with a reservoir", //
+    booktitle = "ACM Transactions on Mathematical Software 11(1)", //
+    url = "https://doi.org/10.1145/3147.3165", //
+    bibkey = "DBLP:journals/toms/Vitter85")
+public class ReservoirSamplingStreamFilter extends AbstractStreamFilter {
+  /**
+   * Sample size.
+   */
+  protected int samplesize;
+
+  /**
+   * Random generator factory.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Random generator, of the current stream.
+   */
+  protected Random random;
+
+  /**
+   * Sampled objects, in stream order.
+   */
+  private List<Sample> sample = null;
+
+  /**
+   * Current position in the sample.
+   */
+  private int pos = -1;
+
+  /**
+   * Constructor.
+   *
+   * @param samplesize Sample size
+   * @param rnd Random generator
+   */
+  public ReservoirSamplingStreamFilter(int samplesize, RandomFactory rnd) {
+    super();
+    this.samplesize = samplesize;
+    this.rnd = rnd;
+  }
+
+  @Override
+  public BundleStreamSource init(BundleStreamSource source) {
+    // Reset the state of any previous stream.
+    this.random = rnd.getSingleThreadedRandom();
+    this.sample = null;
+    this.pos = -1;
+    return super.init(source);
+  }
+
+  @Override
+  public BundleMeta getMeta() {
+    return source.getMeta();
+  }
+
+  @Override
+  public Object data(int rnum) {
+    final Object[] row = sample.get(pos).row;
+    // Objects seen before a meta change may have fewer columns.
+    return rnum < row.length ? row[rnum] : null;
+  }
+
+  @Override
+  public boolean assignDBID(DBIDVar var) {
+    final DBID id = sample.get(pos).id;
+    if(id == null) {
+      var.unset();
+      return false;
+    }
+    var.set(id);
+    return true;
+  }
+
+  @Override
+  public Event nextEvent() {
+    if(sample == null) {
+      sample = collect();
+      Collections.sort(sample);
+      pos = -1;
+      if(source.getMeta() != null) {
+        return Event.META_CHANGED;
+      }
+    }
+    return ++pos < sample.size() ? Event.NEXT_OBJECT : Event.END_OF_STREAM;
+  }
+
+  /**
+   * Consume the entire input, and collect the sample.
+   *
+   * @return Sample, in arbitrary order
+   */
+  protected List<Sample> collect() {
+    Reservoir reservoir = new Reservoir(samplesize);
+    long seq = 0;
+    for(Event ev = source.nextEvent(); ev != Event.END_OF_STREAM; ev = source.nextEvent()) {
+      if(ev == Event.NEXT_OBJECT) {
+        final int slot = reservoir.offer(random);
+        if(slot >= 0) {
+          reservoir.put(slot, readObject(seq));
+        }
+        ++seq;
+      }
+    }
+    return reservoir.items;
+  }
+
+  /**
+   * Copy the current object of the source.
+   *
+   * @param seq Sequence number in the stream
+   * @return Sample object
+   */
+  protected Sample readObject(long seq) {
+    Object[] row = new Object[source.getMeta().size()];
+    for(int i = 0; i < row.length; i++) {
+      row[i] = source.data(i);
+    }
+    DBID id = null;
+    if(source.hasDBIDs()) {
+      DBIDVar var = DBIDUtil.newVar();
+      id = source.assignDBID(var) ? DBIDUtil.deref(var) : null;
+    }
+    return new Sample(seq, row, id);
+  }
+
+  /**
+   * A sampled object.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Sample implements Comparable<Sample> {
+    /**
+     * Position in the input stream.
+     */
+    final long seq;
+
+    /**
+     * Object data.
+     */
+    final Object[] row;
+
+    /**
+     * Object ID, may be {@code null}.
+     */
+    final DBID id;
+
+    /**
+     * Constructor.
+     *
+     * @param seq Position in the input stream
+     * @param row Object data
+     * @param id Object ID
+     */
+    protected Sample(long seq, Object[] row, DBID id) {
+      this.seq = seq;
+      this.row = row;
+      this.id = id;
+    }
+
+    @Override
+    public int compareTo(Sample o) {
+      return Long.compare(seq, o.seq);
+    }
+  }
+
+  /**
+   * Reservoir of fixed capacity (Algorithm R), growing only as objects arrive.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Reservoir {
+    /**
+     * Capacity.
+     */
+    final int capacity;
+
+    /**
+     * Number of objects offered so far.
+     */
+    long seen = 0;
+
+    /**
+     * Current sample.
+     */
+    final ArrayList<Sample> items;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Capacity
+     */
+    protected Reservoir(int capacity) {
+      this.capacity = capacity;
+      this.items = new ArrayList<>();
+    }
+
+    /**
+     * Offer the next object to the reservoir.
+     *
+     * @param random Random generator
+     * @return Slot to store the object in, or -1 if not sampled
+     */
+    protected int offer(Random random) {
+      ++seen;
+      if(items.size() < capacity) {
+        return items.size();
+      }
+      // Uniform in [0; seen), also for more than 2^31 objects.
+      final long j = (long) (random.nextDouble() * seen);
+      return j < capacity ? (int) j : -1;
+    }
+
+    /**
+     * Store a sampled object.
+     *
+     * @param slot Slot, as returned by {@link #offer}
+     * @param s Sample object
+     */
+    protected void put(int slot, Sample s) {
+      if(slot == items.size()) {
+        items.add(s);
+      }
+      else {
+        items.set(slot, s);
+      }
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Option ID for the sample size
+     */
+    public static final OptionID SIZE_ID = new OptionID("reservoir.size", "Number of objects to sample.");
+
+    /**
+     * Option ID for random seed
+     */
+    public static final OptionID SEED_ID = new OptionID("reservoir.seed", "Random generator seed for sampling.");
+
+    /**
+     * Sample size
+     */
+    protected int samplesize;
+
+    /**
+     * Random generator
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      IntParameter sizeP = new IntParameter(SIZE_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      if(config.grab(sizeP)) {
+        samplesize = sizeP.intValue();
+      }
+      RandomParameter rndP = new RandomParameter(SEED_ID);
+      if(config.grab(rndP)) {
+        rnd = rndP.getValue();
+      }
+    }
+
+    @Override
+    protected ReservoirSamplingStreamFilter makeInstance() {
+      return new ReservoirSamplingStreamFilter(samplesize, rnd);
+    }
+  }
+}
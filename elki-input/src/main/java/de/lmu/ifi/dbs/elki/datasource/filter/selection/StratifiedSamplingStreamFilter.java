@@ -0,0 +1,146 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.filter.selection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.lmu.ifi.dbs.elki.datasource.filter.FilterUtil;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Draw a random sample stratified by the class label, i.e., each label is
+ * represented in the sample proportionally to its frequency in the stream.
+ * <p>
+ * The input is consumed in a single pass, with one reservoir per label. Because
+ * the label frequencies are only known at the end of the stream, each reservoir
+ * has the capacity of the full sample size, but only grows as objects of its
+ * label arrive; memory is thus bounded by the sample size times the number of
+ * distinct labels, and by the data size. Each reservoir is then
+ * reduced to its share of the sample (by largest remainder), and the sample is
+ * emitted in the original stream order.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class StratifiedSamplingStreamFilter extends ReservoirSamplingStreamFilter {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(StratifiedSamplingStreamFilter.class);
+
+  /**
+   * Constructor.
+   *
+   * @param samplesize Sample size
+   * @param rnd Random generator
+   */
+  public StratifiedSamplingStreamFilter(int samplesize, RandomFactory rnd) {
+    super(samplesize, rnd);
+  }
+
+  @Override
+  protected List<Sample> collect() {
+    Map<String, Reservoir> strata = new HashMap<>();
+    int lblcol = -1;
+    long seq = 0;
+    for(Event ev = source.nextEvent(); ev != Event.END_OF_STREAM; ev = source.nextEvent()) {
+      if(ev == Event.META_CHANGED) {
+        if(lblcol < 0) {
+          lblcol = FilterUtil.findLabelColumn(source.getMeta());
+        }
+        continue;
+      }
+      if(ev != Event.NEXT_OBJECT) {
+        continue;
+      }
+      final Object l = lblcol >= 0 ? source.data(lblcol) : null;
+      final String key = l != null ? l.toString() : "";
+      Reservoir reservoir = strata.get(key);
+      if(reservoir == null) {
+        strata.put(key, reservoir = new Reservoir(samplesize));
+      }
+      final int slot = reservoir.offer(random);
+      if(slot >= 0) {
+        reservoir.put(slot, readObject(seq));
+      }
+      ++seq;
+    }
+    if(lblcol < 0) {
+      LOG.warning("Stratified sampling was used, but never saw a label relation!");
+    }
+    return allocate(new ArrayList<>(strata.values()), seq);
+  }
+
+  /**
+   * Reduce each stratum to its proportional share of the sample.
+   *
+   * @param strata Strata reservoirs
+   * @param total Total number of objects seen
+   * @return Combined sample
+   */
+  private List<Sample> allocate(List<Reservoir> strata, long total) {
+    final int size = (int) Math.min(samplesize, total);
+    // Proportional quotas, rounded down.
+    int[] quota = new int[strata.size()];
+    double[] rem = new double[strata.size()];
+    int assigned = 0;
+    for(int i = 0; i < quota.length; i++) {
+      final double share = strata.get(i).seen * (double) size / total;
+      quota[i] = (int) share;
+      rem[i] = share - quota[i];
+      assigned += quota[i];
+    }
+    // Distribute the remainder by the largest remainders.
+    for(; assigned < size; assigned++) {
+      int best = 0;
+      for(int i = 1; i < rem.length; i++) {
+        best = rem[i] > rem[best] ? i : best;
+      }
+      quota[best]++;
+      rem[best] = -1.;
+    }
+    List<Sample> sample = new ArrayList<>(size);
+    for(int i = 0; i < quota.length; i++) {
+      final List<Sample> items = strata.get(i).items;
+      // A random subset of a uniform sample is a uniform sample.
+      Collections.shuffle(items, random);
+      sample.addAll(items.subList(0, Math.min(quota[i], items.size())));
+    }
+    return sample;
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer extends ReservoirSamplingStreamFilter.Parameterizer {
+    @Override
+    protected StratifiedSamplingStreamFilter makeInstance() {
+      return new StratifiedSamplingStreamFilter(samplesize, rnd);
+    }
+  }
+}
@@ -21,12 +21,15 @@
 package de.lmu.ifi.dbs.elki.datasource.filter.transform;
 
 import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.plusTimesEquals;
-import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.times;
 
+import java.util.List;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.NumberVector;
 import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
 import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.datasource.filter.AbstractVectorConversionFilter;
 import de.lmu.ifi.dbs.elki.logging.Logging;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.CovarianceMatrix;
@@ -34,6 +37,7 @@ import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.EigenPair;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCAResult;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.PCARunner;
 import de.lmu.ifi.dbs.elki.math.linearalgebra.pca.filter.EigenPairFilter;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
 import de.lmu.ifi.dbs.elki.utilities.Alias;
 import de.lmu.ifi.dbs.elki.utilities.Priority;
 import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
@@ -61,6 +65,9 @@ import net.jafama.FastMath;
  * TODO: design an API (and implementation) that allows plugging in efficient
  * solvers that do not need to decompose the entire matrix. This may, however,
  * require external dependencies such as jBlas.
+ * <p>
+ * Both the covariance accumulation and the projection run in parallel on blocks
+ * of the data; partial covariance matrixes are merged in block order.
  * 
  * @author Erich Schubert
  * @since 0.5.0
@@ -140,6 +147,52 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
     this.mode = mode;
   }
 
+  @Override
+  public MultipleObjectsBundle filter(MultipleObjectsBundle objects) {
+    if(objects.dataLength() == 0) {
+      return objects;
+    }
+    MultipleObjectsBundle bundle = new MultipleObjectsBundle();
+    for(int r = 0; r < objects.metaLength(); r++) {
+      SimpleTypeInformation<?> type = (SimpleTypeInformation<?>) objects.meta(r);
+      @SuppressWarnings("unchecked")
+      final List<O> column = (List<O>) objects.getColumn(r);
+      if(!getInputTypeRestriction().isAssignableFromType(type)) {
+        bundle.appendColumn(type, column);
+        continue;
+      }
+      @SuppressWarnings("unchecked")
+      final SimpleTypeInformation<O> castType = (SimpleTypeInformation<O>) type;
+      prepareStart(castType);
+      final int dim = covmat.getDimensionality();
+      // Accumulate partial covariance matrixes in parallel, and merge them.
+      List<CovarianceMatrix> parts = ParallelExecutor.runBlocks(column.size(), (start, end) -> {
+        CovarianceMatrix part = new CovarianceMatrix(dim);
+        for(int i = start; i < end; i++) {
+          part.put(column.get(i));
+        }
+        return part;
+      });
+      for(CovarianceMatrix part : parts) {
+        covmat.put(part);
+      }
+      prepareComplete();
+      bundle.appendColumn(convertedType(castType), column);
+      if(LOG.isVerbose()) {
+        LOG.verbose("Projecting " + column.size() + " vectors.");
+      }
+      // Projection, with one scratch buffer per block.
+      ParallelExecutor.runBlocks(column.size(), (start, end) -> {
+        double[] tmp = new double[dim];
+        for(int i = start; i < end; i++) {
+          column.set(i, project(column.get(i), tmp));
+        }
+        return null;
+      });
+    }
+    return bundle;
+  }
+
   @Override
   protected boolean prepareStart(SimpleTypeInformation<O> in) {
     if(!(in instanceof VectorFieldTypeInformation)) {
@@ -179,11 +232,33 @@ public class GlobalPrincipalComponentAnalysisTransform<O extends NumberVector> e
 
   @Override
   protected O filterSingleObject(O obj) {
+    return project(obj, buf);
+  }
+
+  /**
+   * Project a single vector.
+   *
+   * @param obj Vector to project
+   * @param tmp Scratch buffer of the input dimensionality
+   * @return Projected vector
+   */
+  @SuppressWarnings("unchecked")
+  private O project(O obj, double[] tmp) {
     // Shift by mean and copy to scratch buffer
     for(int i = 0; i < mean.length; i++) {
-      buf[i] = obj.doubleValue(i) - mean[i];
+      tmp[i] = obj.doubleValue(i) - mean[i];
+    }
+    final double[] ret = new double[proj.length];
+    for(int o = 0; o < proj.length; o++) {
+      final double[] row = proj[o];
+      double v = 0.;
+      for(int i = 0; i < tmp.length; i++) {
+        v += row[i] * tmp[i];
+      }
+      ret[o] = v;
     }
-    return factory.newNumberVector(times(proj, buf));
+    // DoubleVector would clone the array.
+    return factory == DoubleVector.FACTORY ? (O) DoubleVector.wrap(ret) : factory.newNumberVector(ret);
   }
 
   @Override
@@ -26,6 +26,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StreamTokenizer;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -174,7 +175,7 @@ public class ArffParser implements Parser {
       int[] targ = new int[names.size()];
       TypeInformation[] elkitypes = new TypeInformation[names.size()];
       int[] dimsize = new int[names.size()];
-      processColumnTypes(names, types, targ, elkitypes, dimsize);
+      processColumnTypes(magic_eid, magic_class, names, types, targ, elkitypes, dimsize);
 
       // Prepare bundle:
       // This is a bit complicated to produce vector fields.
@@ -531,13 +532,16 @@ public class ArffParser implements Parser {
    * this will for example merge successive numerical columns into a single
    * vector.
    *
+   * @param magic_eid Magic to recognize external IDs, may be {@code null}
+   * @param magic_class Magic to recognize class labels, may be {@code null}
    * @param names Attribute names
    * @param types Attribute types
    * @param targ Target dimension mapping (ARFF to ELKI), return value
    * @param etyp ELKI type information, return value
    * @param dims Number of successive dimensions, return value
    */
-  private void processColumnTypes(ArrayList<String> names, ArrayList<String> types, int[] targ, TypeInformation[] etyp, int[] dims) {
+  static void processColumnTypes(Matcher magic_eid, Matcher magic_class, List<String> names, List<String> types, int[] targ, TypeInformation[] etyp, int[] dims) {
+    final Matcher numeric = ARFF_NUMERIC.pattern().matcher("");
     int next = 0;
     for(int i = 0; i < targ.length; i++) {
       if(magic_eid != null && magic_eid.reset(names.get(i)).matches()) {
@@ -556,7 +560,7 @@ public class ArffParser implements Parser {
         next++;
         continue;
       }
-      else if(ARFF_NUMERIC.reset(types.get(i)).matches()) {
+      else if(numeric.reset(types.get(i)).matches()) {
         // Create a number vector field
         if(next > 0 && TypeUtil.NUMBER_VECTOR_FIELD.equals(etyp[next - 1])) {
           targ[i] = next - 1;
@@ -0,0 +1,731 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.lmu.ifi.dbs.elki.data.ClassLabel;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.ExternalID;
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.data.SimpleClassLabel;
+import de.lmu.ifi.dbs.elki.data.SparseDoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.SimpleTypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeInformation;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.BundleMeta;
+import de.lmu.ifi.dbs.elki.logging.Logging;
+import de.lmu.ifi.dbs.elki.parallel.ParallelExecutor;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.DoubleArray;
+import de.lmu.ifi.dbs.elki.utilities.datastructures.arraylike.IntegerArray;
+import de.lmu.ifi.dbs.elki.utilities.documentation.Title;
+import de.lmu.ifi.dbs.elki.utilities.exceptions.AbortException;
+import de.lmu.ifi.dbs.elki.utilities.io.BufferedLineReader;
+import de.lmu.ifi.dbs.elki.utilities.io.Tokenizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.AbstractParameterizer;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameterization.Parameterization;
+import de.lmu.ifi.dbs.elki.utilities.optionhandling.parameters.PatternParameter;
+
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+/**
+ * Streaming parser for WEKA .arff files.
+ * <p>
+ * In contrast to {@link ArffParser}, this parser does not buffer the data
+ * section, and does not use a {@link java.io.StreamTokenizer}. The header is
+ * parsed once in {@link #initStream}, the instances are then read in chunks of
+ * lines, which are tokenized in parallel blocks with the same
+ * {@link Tokenizer} used by the CSV parsers, and are streamed to the filters
+ * one at a time, in file order.
+ * <p>
+ * Dense and sparse ("{index value, ...}") instances are supported, but must
+ * not be mixed within one file. Sparse indexes must be given in ascending
+ * order, as required by the ARFF specification. Omitted class label and
+ * external ID values of sparse instances default to the first nominal value
+ * of the attribute, as in the ARFF specification. Comments are only
+ * recognized on lines of their own.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+@Title("Streaming ARFF File Format Parser")
+public class StreamingArffParser extends AbstractStreamingParser {
+  /**
+   * Logger.
+   */
+  private static final Logging LOG = Logging.getLogger(StreamingArffParser.class);
+
+  /**
+   * Column separator of the ARFF data section: comma or whitespace.
+   */
+  private static final Pattern ARFF_SEPARATOR = Pattern.compile("\\s*[,\\s]\\s*");
+
+  /**
+   * Format of the ARFF data section: comma or whitespace separated, with
+   * single and double quotes, and "%" comments (or blank lines).
+   */
+  public static final CSVReaderFormat ARFF_FORMAT = new CSVReaderFormat(ARFF_SEPARATOR, CSVReaderFormat.QUOTE_CHARS, Pattern.compile("^\\s*(%.*)?$"));
+
+  /**
+   * Number of lines to read and parse at once.
+   */
+  private static final int CHUNK_SIZE = 1 << 14;
+
+  /**
+   * Minimum number of lines per parallel block.
+   */
+  private static final int MIN_BLOCK = 1 << 10;
+
+  /**
+   * Pattern to recognize external ids.
+   */
+  Matcher magic_eid;
+
+  /**
+   * Pattern to recognize class label columns.
+   */
+  Matcher magic_class;
+
+  /**
+   * Header matchers (not shared with {@link ArffParser}, for thread safety).
+   */
+  Matcher relation = ArffParser.ARFF_HEADER_RELATION.pattern().matcher(""), //
+      attribute = ArffParser.ARFF_HEADER_ATTRIBUTE.pattern().matcher(""), //
+      data = ArffParser.ARFF_HEADER_DATA.pattern().matcher(""), //
+      comment = ArffParser.ARFF_COMMENT.pattern().matcher("");
+
+  /**
+   * Target column of each ARFF attribute.
+   */
+  int[] targ;
+
+  /**
+   * ELKI type of each output column.
+   */
+  TypeInformation[] etyp;
+
+  /**
+   * Number of ARFF attributes in each output column.
+   */
+  int[] dimsize;
+
+  /**
+   * First ARFF attribute of each output column.
+   */
+  int[] colstart;
+
+  /**
+   * Number of output columns.
+   */
+  int outdim;
+
+  /**
+   * Attribute names.
+   */
+  ArrayList<String> names = new ArrayList<>();
+
+  /**
+   * Metadata.
+   */
+  BundleMeta meta;
+
+  /**
+   * Default value (first nominal value) of each ARFF attribute, or null.
+   */
+  String[] defaults;
+
+  /**
+   * Current object.
+   */
+  Object[] cur;
+
+  /**
+   * Parser state: 0 = no data yet, 1 = dense, 2 = sparse.
+   */
+  int state;
+
+  /**
+   * Event to report next.
+   */
+  Event nextevent;
+
+  /**
+   * Lines of the current chunk.
+   */
+  String[] lines = new String[CHUNK_SIZE];
+
+  /**
+   * Line numbers of the current chunk, for error reporting.
+   */
+  int[] linenos = new int[CHUNK_SIZE];
+
+  /**
+   * Parsed objects of the current chunk.
+   */
+  Object[][] chunk = new Object[CHUNK_SIZE][];
+
+  /**
+   * Position in, and length of the current chunk.
+   */
+  int pos, len;
+
+  /**
+   * Constructor.
+   *
+   * @param magic_eid Magic to recognize external IDs
+   * @param magic_class Magic to recognize class labels
+   */
+  public StreamingArffParser(Pattern magic_eid, Pattern magic_class) {
+    super(ARFF_FORMAT);
+    this.magic_eid = magic_eid != null ? magic_eid.matcher("") : null;
+    this.magic_class = magic_class != null ? magic_class.matcher("") : null;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param magic_eid Magic to recognize external IDs
+   * @param magic_class Magic to recognize class labels
+   */
+  public StreamingArffParser(String magic_eid, String magic_class) {
+    this(Pattern.compile(magic_eid, Pattern.CASE_INSENSITIVE), Pattern.compile(magic_class, Pattern.CASE_INSENSITIVE));
+  }
+
+  @Override
+  public void initStream(InputStream in) {
+    super.initStream(in);
+    meta = null;
+    state = 0;
+    nextevent = null;
+    pos = len = 0;
+    try {
+      readHeader();
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error in parser", e);
+    }
+  }
+
+  /**
+   * Read the ARFF header, up to and including the "@data" line.
+   *
+   * @throws IOException on IO errors
+   */
+  private void readHeader() throws IOException {
+    names.clear();
+    ArrayList<String> types = new ArrayList<>();
+    boolean hasrelation = false;
+    while(true) {
+      if(!reader.nextLine()) {
+        throw new AbortException((hasrelation ? "@data" : "@relation") + " not found in file.");
+      }
+      CharSequence line = trim(reader.getBuffer());
+      if(line.length() == 0 || comment.reset(line).matches()) {
+        continue;
+      }
+      if(!hasrelation) {
+        if(!relation.reset(line).matches()) {
+          throw new AbortException("Expected relation declaration: " + line);
+        }
+        hasrelation = true;
+        continue;
+      }
+      if(data.reset(line).matches()) {
+        break;
+      }
+      if(!attribute.reset(line).matches()) {
+        throw new AbortException("Unrecognized line: " + line);
+      }
+      String name = attribute.group(1);
+      final char first = name.charAt(0), last = name.charAt(name.length() - 1);
+      if((first == '\'' || first == '"') && first == last) {
+        name = name.substring(1, name.length() - 1);
+      }
+      names.add(name);
+      types.add(attribute.group(2));
+    }
+    final int numattr = names.size();
+    targ = new int[numattr];
+    etyp = new TypeInformation[numattr];
+    dimsize = new int[numattr];
+    ArffParser.processColumnTypes(magic_eid, magic_class, names, types, targ, etyp, dimsize);
+    outdim = numattr > 0 ? targ[numattr - 1] + 1 : 0;
+    colstart = new int[outdim];
+    for(int i = numattr - 1; i >= 0; i--) {
+      colstart[targ[i]] = i;
+    }
+    defaults = new String[numattr];
+    for(int i = 0; i < numattr; i++) {
+      defaults[i] = firstNominal(types.get(i));
+    }
+  }
+
+  /**
+   * Get the first value of a nominal attribute type "{a, b, ...}".
+   *
+   * @param type Attribute type
+   * @return First nominal value, or {@code null}
+   */
+  private String firstNominal(String type) {
+    int s = 0, e = type.length();
+    while(s < e && type.charAt(s) <= ' ') {
+      ++s;
+    }
+    while(e > s && type.charAt(e - 1) <= ' ') {
+      --e;
+    }
+    if(e - s < 2 || type.charAt(s) != '{' || type.charAt(e - 1) != '}') {
+      return null;
+    }
+    ++s;
+    while(s < e - 1 && type.charAt(s) <= ' ') {
+      ++s;
+    }
+    tokenizer.initialize(type, s, e - 1);
+    return tokenizer.valid() && !tokenizer.isEmpty() ? tokenizer.getSubstring() : null;
+  }
+
+  /**
+   * Trim whitespace (including line feeds) from a line.
+   *
+   * @param line Input line
+   * @return Trimmed subsequence
+   */
+  private static CharSequence trim(CharSequence line) {
+    int s = 0, e = BufferedLineReader.lengthWithoutLinefeed(line);
+    while(s < e && line.charAt(s) <= ' ') {
+      ++s;
+    }
+    while(e > s && line.charAt(e - 1) <= ' ') {
+      --e;
+    }
+    return line.subSequence(s, e);
+  }
+
+  @Override
+  public BundleMeta getMeta() {
+    return meta;
+  }
+
+  @Override
+  public Event nextEvent() {
+    if(nextevent != null) {
+      Event ret = nextevent;
+      nextevent = null;
+      return ret;
+    }
+    if(pos == len) {
+      final boolean first = state == 0;
+      if(!readChunk()) {
+        return Event.END_OF_STREAM;
+      }
+      if(first) {
+        buildMeta(state == 2);
+        nextevent = Event.NEXT_OBJECT;
+        cur = chunk[pos];
+        chunk[pos++] = null;
+        return Event.META_CHANGED;
+      }
+    }
+    cur = chunk[pos];
+    chunk[pos++] = null;
+    return Event.NEXT_OBJECT;
+  }
+
+  /**
+   * Read the next chunk of lines, and parse them in parallel.
+   *
+   * @return {@code false} at the end of the stream
+   */
+  private boolean readChunk() {
+    pos = len = 0;
+    try {
+      while(len < CHUNK_SIZE && reader.nextLineExceptComments()) {
+        final CharSequence buf = reader.getBuffer();
+        int s = 0, e = BufferedLineReader.lengthWithoutLinefeed(buf);
+        while(s < e && buf.charAt(s) <= ' ') {
+          ++s;
+        }
+        while(e > s && buf.charAt(e - 1) <= ' ') {
+          --e;
+        }
+        final boolean sparse = buf.charAt(s) == '{';
+        if(state == (sparse ? 1 : 2)) {
+          throw new AbortException("Mixing dense and sparse vectors is currently not allowed.");
+        }
+        state = sparse ? 2 : 1;
+        lines[len] = buf.subSequence(s, e).toString();
+        linenos[len++] = reader.getLineNumber();
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Error while parsing line " + reader.getLineNumber() + ".", e);
+    }
+    if(len == 0) {
+      return false;
+    }
+    ParallelExecutor.runBlocks(len, MIN_BLOCK, (start, end) -> {
+      LineParser parser = new LineParser();
+      for(int i = start; i < end; i++) {
+        chunk[i] = parser.parse(lines[i], linenos[i]);
+        lines[i] = null;
+      }
+      return null;
+    });
+    return true;
+  }
+
+  /**
+   * Parser for single instances, one per parallel block.
+   *
+   * @author Erich Schubert
+   */
+  private class LineParser {
+    /**
+     * Tokenizer.
+     */
+    Tokenizer tokenizer = new Tokenizer(ARFF_SEPARATOR, CSVReaderFormat.QUOTE_CHARS);
+
+    /**
+     * Current row.
+     */
+    Object[] row;
+
+    /**
+     * Current line number.
+     */
+    int lineno;
+
+    /**
+     * (Reused) buffer for building label lists.
+     */
+    ArrayList<String> labels = new ArrayList<>();
+
+    /**
+     * (Reused) buffers for sparse vectors.
+     */
+    IntegerArray sparseidx = new IntegerArray();
+
+    /**
+     * (Reused) buffers for sparse vectors.
+     */
+    DoubleArray sparseval = new DoubleArray();
+
+    /**
+     * (Reused) buffer for sparse string values.
+     */
+    String[] sparsestr = new String[targ.length];
+
+    /**
+     * For String unification.
+     */
+    ObjectOpenHashSet<String> unique = new ObjectOpenHashSet<>();
+
+    /**
+     * Parse a single (trimmed) instance.
+     *
+     * @param buf Line
+     * @param lineno Line number
+     * @return Parsed object
+     */
+    Object[] parse(String buf, int lineno) {
+      this.lineno = lineno;
+      row = new Object[outdim];
+      final int e = buf.length();
+      if(buf.charAt(0) == '{') {
+        if(buf.charAt(e - 1) != '}') {
+          throw new AbortException("Sparse instance not terminated in line " + lineno);
+        }
+        parseSparse(buf, 1, e - 1);
+      }
+      else {
+        parseDense(buf, 0, e);
+      }
+      return row;
+    }
+
+    /**
+     * Parse a dense instance.
+     *
+     * @param buf Line buffer
+     * @param s Start
+     * @param e End
+     */
+    private void parseDense(CharSequence buf, int s, int e) {
+      tokenizer.initialize(buf, s, e);
+      for(int out = 0; out < outdim; out++) {
+        final int dim = dimsize[out];
+        if(TypeUtil.NUMBER_VECTOR_FIELD.equals(etyp[out])) {
+          double[] vec = new double[dim];
+          for(int k = 0; k < dim; k++, tokenizer.advance()) {
+            checkValid();
+            if(isMissing(buf)) {
+              vec[k] = Double.NaN;
+              continue;
+            }
+            try {
+              vec[k] = tokenizer.getDouble();
+            }
+            catch(NumberFormatException ex) {
+              throw new AbortException("Expected number value, got: " + tokenizer.getSubstring() + " in line " + lineno);
+            }
+          }
+          row[out] = DoubleVector.wrap(vec);
+          continue;
+        }
+        // All other types are string based.
+        labels.clear();
+        for(int k = 0; k < dim; k++, tokenizer.advance()) {
+          checkValid();
+          labels.add(unique.addOrGet(tokenizer.getSubstring()));
+        }
+        row[out] = makeStringObject(out, labels);
+      }
+      if(tokenizer.valid()) {
+        throw new AbortException("Too many values in line " + lineno);
+      }
+    }
+
+    /**
+     * Parse a sparse instance.
+     *
+     * @param buf Line buffer
+     * @param s Start (after the opening brace)
+     * @param e End (before the closing brace)
+     */
+    private void parseSparse(CharSequence buf, int s, int e) {
+      tokenizer.initialize(buf, s, e);
+      int out = 0, prev = -1;
+      for(; tokenizer.valid(); tokenizer.advance()) {
+        if(tokenizer.isEmpty()) {
+          continue; // Empty instance "{}"
+        }
+        final int idx;
+        try {
+          idx = tokenizer.getIntBase10();
+        }
+        catch(NumberFormatException ex) {
+          throw new AbortException("Expected attribute index, got: " + tokenizer.getSubstring() + " in line " + lineno);
+        }
+        if(idx <= prev || idx >= targ.length) {
+          throw new AbortException("Invalid, duplicate, or unsorted sparse index " + idx + " in line " + lineno);
+        }
+        prev = idx;
+        tokenizer.advance();
+        checkValid();
+        // Finish all output columns before the current index.
+        for(; out < targ[idx]; out++) {
+          finishSparseColumn(out);
+        }
+        if(TypeUtil.NUMBER_VECTOR_FIELD.equals(etyp[out])) {
+          if(isMissing(buf)) {
+            sparseidx.add(idx - colstart[out]);
+            sparseval.add(Double.NaN);
+            continue;
+          }
+          try {
+            final double v = tokenizer.getDouble();
+            if(v != 0.) {
+              sparseidx.add(idx - colstart[out]);
+              sparseval.add(v);
+            }
+          }
+          catch(NumberFormatException ex) {
+            throw new AbortException("Expected number value, got: " + tokenizer.getSubstring() + " in line " + lineno);
+          }
+        }
+        else {
+          sparsestr[idx] = unique.addOrGet(tokenizer.getSubstring());
+        }
+      }
+      for(; out < outdim; out++) {
+        finishSparseColumn(out);
+      }
+    }
+
+    /**
+     * Build the output object of a sparse instance.
+     *
+     * @param out Output column
+     */
+    private void finishSparseColumn(int out) {
+      final int dim = dimsize[out], start = colstart[out];
+      if(TypeUtil.NUMBER_VECTOR_FIELD.equals(etyp[out])) {
+        row[out] = new SparseDoubleVector(sparseidx.toArray(), sparseval.toArray(), dim);
+        sparseidx.clear();
+        sparseval.clear();
+        return;
+      }
+      labels.clear();
+      for(int k = 0; k < dim; k++) {
+        String lbl = sparsestr[start + k];
+        if(lbl != null) {
+          labels.add(lbl);
+          sparsestr[start + k] = null;
+        }
+        else if(!TypeUtil.LABELLIST.equals(etyp[out])) {
+          // Omitted nominal values default to the first value.
+          if(defaults[start + k] == null) {
+            throw new AbortException(etyp[out] + " column not set in sparse instance in line " + lineno);
+          }
+          labels.add(defaults[start + k]);
+        }
+      }
+      row[out] = makeStringObject(out, labels);
+    }
+
+    /**
+     * Build a string based object (labels, class labels, external IDs).
+     *
+     * @param out Output column
+     * @param labels Labels
+     * @return Object
+     */
+    private Object makeStringObject(int out, ArrayList<String> labels) {
+      if(TypeUtil.LABELLIST.equals(etyp[out])) {
+        return LabelList.make(labels);
+      }
+      if(TypeUtil.EXTERNALID.equals(etyp[out])) {
+        return new ExternalID(labels.get(0));
+      }
+      if(TypeUtil.CLASSLABEL.equals(etyp[out])) {
+        return new SimpleClassLabel(labels.get(0));
+      }
+      throw new AbortException("Unsupported type for column " + out + ": " + etyp[out]);
+    }
+
+    /**
+     * Ensure the tokenizer has another token.
+     */
+    private void checkValid() {
+      if(!tokenizer.valid()) {
+        throw new AbortException("Too few values in line " + lineno);
+      }
+    }
+
+    /**
+     * Test for the missing value marker "?".
+     *
+     * @param buf Line buffer
+     * @return {@code true} if the current token is a missing value.
+     */
+    private boolean isMissing(CharSequence buf) {
+      return !tokenizer.isQuoted() && tokenizer.getEnd() - tokenizer.getStart() == 1 && buf.charAt(tokenizer.getStart()) == '?';
+    }
+  }
+
+  /**
+   * Build the bundle metadata.
+   *
+   * @param sparse Flag to create sparse vectors
+   */
+  private void buildMeta(boolean sparse) {
+    meta = new BundleMeta(outdim);
+    for(int out = 0; out < outdim; out++) {
+      final int dim = dimsize[out], start = colstart[out];
+      if(TypeUtil.NUMBER_VECTOR_FIELD.equals(etyp[out])) {
+        String[] colnames = names.subList(start, start + dim).toArray(new String[dim]);
+        meta.add(sparse ? new VectorFieldTypeInformation<>(SparseDoubleVector.FACTORY, dim, colnames) //
+            : new VectorFieldTypeInformation<>(DoubleVector.FACTORY, dim, colnames));
+      }
+      else if(TypeUtil.LABELLIST.equals(etyp[out])) {
+        StringBuilder label = new StringBuilder(names.get(start));
+        for(int i = 1; i < dim; i++) {
+          label.append(' ').append(names.get(start + i));
+        }
+        meta.add(new SimpleTypeInformation<>(LabelList.class, label.toString()));
+      }
+      else if(TypeUtil.EXTERNALID.equals(etyp[out])) {
+        meta.add(new SimpleTypeInformation<>(ExternalID.class, names.get(start)));
+      }
+      else if(TypeUtil.CLASSLABEL.equals(etyp[out])) {
+        meta.add(new SimpleTypeInformation<>(ClassLabel.class, names.get(start)));
+      }
+      else {
+        throw new AbortException("Unsupported type for column " + out + ": " + etyp[out]);
+      }
+    }
+  }
+
+  @Override
+  public Object data(int rnum) {
+    return cur[rnum];
+  }
+
+  @Override
+  public void cleanup() {
+    super.cleanup();
+    Arrays.fill(chunk, null);
+    pos = len = 0;
+    if(magic_eid != null) {
+      magic_eid.reset("");
+    }
+    if(magic_class != null) {
+      magic_class.reset("");
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Parameterizer extends AbstractParameterizer {
+    /**
+     * Pattern to recognize external ids
+     */
+    Pattern magic_eid;
+
+    /**
+     * Pattern to recognize class label columns
+     */
+    Pattern magic_class;
+
+    @Override
+    protected void makeOptions(Parameterization config) {
+      super.makeOptions(config);
+      PatternParameter eidP = new PatternParameter(ArffParser.Parameterizer.MAGIC_EID_ID, ArffParser.DEFAULT_ARFF_MAGIC_EID);
+      if(config.grab(eidP)) {
+        magic_eid = eidP.getValue();
+      }
+      PatternParameter classP = new PatternParameter(ArffParser.Parameterizer.MAGIC_CLASS_ID, ArffParser.DEFAULT_ARFF_MAGIC_CLASS);
+      if(config.grab(classP)) {
+        magic_class = classP.getValue();
+      }
+    }
+
+    @Override
+    protected StreamingArffParser makeInstance() {
+      return new StreamingArffParser(magic_eid, magic_class);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.ExternalID;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test joining data sources by external IDs.
+ *
+ * @author Erich Schubert
+ */
+public class ExternalIDJoinDatabaseConnectionTest extends AbstractDataSourceTest {
+  @Test
+  public void testDuplicatesAndMissing() {
+    VectorFieldTypeInformation<DoubleVector> type = new VectorFieldTypeInformation<>(DoubleVector.FACTORY, 1);
+    MultipleObjectsBundle first = MultipleObjectsBundle.makeSimple( //
+        TypeUtil.EXTERNALID, Arrays.asList(new ExternalID("a"), new ExternalID("b"), new ExternalID("c"), new ExternalID("a")), //
+        type, Arrays.asList(vec(1), vec(2), vec(3), vec(4)));
+    MultipleObjectsBundle second = MultipleObjectsBundle.makeSimple( //
+        type, Arrays.asList(vec(10), vec(20), vec(30), vec(40)), //
+        TypeUtil.EXTERNALID, Arrays.asList(new ExternalID("c"), new ExternalID("a"), new ExternalID("d"), new ExternalID("c")));
+    MultipleObjectsBundle joined = new ExternalIDJoinDatabaseConnection(null, Arrays.asList( //
+        new MultipleObjectsBundleDatabaseConnection(first), //
+        new MultipleObjectsBundleDatabaseConnection(second))).loadData();
+    assertEquals("Rows", 4, joined.dataLength());
+    assertEquals("Columns", 3, joined.metaLength());
+    // Duplicate in the primary source: the later row is joined.
+    assertNull(joined.data(0, 2));
+    assertEquals(20., get(joined, 3, 2, DoubleVector.class).doubleValue(0), 0.);
+    // Missing in the other source:
+    assertNull(joined.data(1, 2));
+    // Duplicate in the other source: the later row is used.
+    assertEquals(40., get(joined, 2, 2, DoubleVector.class).doubleValue(0), 0.);
+  }
+
+  /**
+   * Make a one-dimensional vector.
+   *
+   * @param v Value
+   * @return Vector
+   */
+  private static DoubleVector vec(double v) {
+    return DoubleVector.wrap(new double[] { v });
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.ExternalID;
+import de.lmu.ifi.dbs.elki.data.LabelList;
+
+/**
+ * Test the hash join used by the join database connections.
+ *
+ * @author Erich Schubert
+ */
+public class HashJoinTest {
+  @Test
+  public void testDuplicatesAndMissing() {
+    HashJoin join = new HashJoin(Arrays.asList("a", "b", "a", null, "c"));
+    assertEquals("Duplicates", 1, join.getDuplicates());
+    int[] rows = join.probe(Arrays.asList("a", "b", "c", "d", null));
+    assertArrayEquals("Later duplicates should replace earlier rows.", new int[] { 2, 1, 4, -1, -1 }, rows);
+    assertEquals("Null keys", 1, HashJoin.countNulls(Arrays.asList("a", null, "b")));
+  }
+
+  @Test
+  public void testExternalIDs() {
+    HashJoin join = new HashJoin(Arrays.asList(new ExternalID("x"), new ExternalID("y"), new ExternalID("x")));
+    assertEquals("Duplicates", 1, join.getDuplicates());
+    int[] rows = join.probe(Arrays.asList(new ExternalID("y"), new ExternalID("z"), new ExternalID("x")));
+    assertArrayEquals(new int[] { 1, -1, 2 }, rows);
+  }
+
+  @Test
+  public void testLabelLists() {
+    HashJoin join = new HashJoin(Arrays.asList(LabelList.make(Arrays.asList("a", "b")), LabelList.make(Arrays.asList("c"))));
+    assertEquals("Duplicates", 0, join.getDuplicates());
+    int[] rows = join.probe(Arrays.asList("b", LabelList.make(Arrays.asList("d", "c")), "d", LabelList.EMPTY_LABELS));
+    assertArrayEquals(new int[] { 0, 1, -1, -1 }, rows);
+  }
+
+  @Test
+  public void testLarge() {
+    final int size = 100000;
+    List<String> keys = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) {
+      keys.add("key" + (i % (size - 100)));
+    }
+    HashJoin join = new HashJoin(keys);
+    assertEquals("Duplicates", 100, join.getDuplicates());
+    List<String> probe = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) {
+      probe.add("key" + i);
+    }
+    int[] rows = join.probe(probe);
+    for(int i = 0; i < size; i++) {
+      assertEquals("Row of key" + i, i < 100 ? i + size - 100 : i < size - 100 ? i : -1, rows[i]);
+    }
+  }
+}
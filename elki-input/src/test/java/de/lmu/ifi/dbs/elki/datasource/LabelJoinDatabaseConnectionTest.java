@@ -0,0 +1,85 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+
+/**
+ * Test joining data sources by labels.
+ *
+ * @author Erich Schubert
+ */
+public class LabelJoinDatabaseConnectionTest extends AbstractDataSourceTest {
+  @Test
+  public void testDuplicatesAndMissing() {
+    VectorFieldTypeInformation<DoubleVector> type = new VectorFieldTypeInformation<>(DoubleVector.FACTORY, 1);
+    MultipleObjectsBundle first = MultipleObjectsBundle.makeSimple( //
+        TypeUtil.LABELLIST, Arrays.asList(labels("a", "x"), labels("b"), labels("c"), labels("a")), //
+        type, Arrays.asList(vec(1), vec(2), vec(3), vec(4)));
+    MultipleObjectsBundle second = MultipleObjectsBundle.makeSimple( //
+        TypeUtil.LABELLIST, Arrays.asList(labels("c"), labels("y", "x"), labels("d"), labels("c")), //
+        type, Arrays.asList(vec(10), vec(20), vec(30), vec(40)));
+    MultipleObjectsBundle joined = new LabelJoinDatabaseConnection(null, Arrays.asList( //
+        new MultipleObjectsBundleDatabaseConnection(first), //
+        new MultipleObjectsBundleDatabaseConnection(second))).loadData();
+    assertEquals("Rows", 4, joined.dataLength());
+    assertEquals("Columns", 3, joined.metaLength());
+    // Joined by the second label:
+    assertEquals(20., get(joined, 0, 2, DoubleVector.class).doubleValue(0), 0.);
+    // Duplicate label "a" in the primary source, not referenced:
+    assertNull(joined.data(3, 2));
+    // Missing in the other source:
+    assertNull(joined.data(1, 2));
+    // Duplicate in the other source: the later row is used.
+    assertEquals(40., get(joined, 2, 2, DoubleVector.class).doubleValue(0), 0.);
+  }
+
+  /**
+   * Make a label list.
+   *
+   * @param labels Labels
+   * @return Label list
+   */
+  private static LabelList labels(String... labels) {
+    return LabelList.make(Arrays.asList(labels));
+  }
+
+  /**
+   * Make a one-dimensional vector.
+   *
+   * @param v Value
+   * @return Vector
+   */
+  private static DoubleVector vec(double v) {
+    return DoubleVector.wrap(new double[] { v });
+  }
+}
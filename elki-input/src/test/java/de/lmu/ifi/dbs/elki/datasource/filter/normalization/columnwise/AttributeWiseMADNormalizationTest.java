@@ -70,4 +70,32 @@ public class AttributeWiseMADNormalizationTest extends AbstractDataSourceTest {
       assertEquals("~50% of the values in each column should be -1 to +1", .5, counts[col][3] / (double) bundle.dataLength(), 0.);
     }
   }
+
+  /**
+   * Test with approximate statistics from a sample.
+   */
+  @Test
+  public void sampled() {
+    String filename = UNITTEST + "normalization-test-1.csv";
+    AttributeWiseMADNormalization<DoubleVector> filter = new ELKIBuilder<AttributeWiseMADNormalization<DoubleVector>>(AttributeWiseMADNormalization.class) //
+        .with(AttributeWiseMADNormalization.Parameterizer.SAMPLE_SIZE_ID, 500) //
+        .with(AttributeWiseMADNormalization.Parameterizer.SEED_ID, 0L).build();
+    MultipleObjectsBundle bundle = readBundle(filename, filter);
+    int dim = getFieldDimensionality(bundle, 0, TypeUtil.NUMBER_VECTOR_FIELD);
+
+    int[][] counts = new int[dim][4];
+    for(int row = 0; row < bundle.dataLength(); row++) {
+      DoubleVector d = get(bundle, row, 0, DoubleVector.class);
+      for(int col = 0; col < dim; col++) {
+        final double val = d.doubleValue(col);
+        counts[col][val > 0. ? 0 : 1]++;
+        counts[col][Math.abs(val) >= NormalDistribution.PHIINV075 ? 2 : 3]++;
+      }
+    }
+    // The sample estimates are only approximately the exact median and MAD.
+    for(int col = 0; col < dim; col++) {
+      assertEquals("~50% of the values in each column should be positive", .5, counts[col][0] / (double) bundle.dataLength(), .05);
+      assertEquals("~50% of the values in each column should be > 1 or < -1", .5, counts[col][2] / (double) bundle.dataLength(), .05);
+    }
+  }
 }
@@ -23,14 +23,20 @@ package de.lmu.ifi.dbs.elki.datasource.filter.normalization.columnwise;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
 import de.lmu.ifi.dbs.elki.data.DoubleVector;
 import de.lmu.ifi.dbs.elki.data.type.FieldTypeInformation;
 import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
 import de.lmu.ifi.dbs.elki.datasource.AbstractDataSourceTest;
 import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
 import de.lmu.ifi.dbs.elki.math.MeanVariance;
+import de.lmu.ifi.dbs.elki.parallel.ParallelCore;
 import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
 
 /**
@@ -96,4 +102,63 @@ public class AttributeWiseVarianceNormalizationTest extends AbstractDataSourceTe
       assertEquals("Variance not as expected", 1., mvs[col].getNaiveVariance(), 1e-15);
     }
   }
+
+  /**
+   * Test that the parallel statistics do not depend on the number of threads,
+   * and that the input arrays are not modified.
+   */
+  @Test
+  public void testParallelism() {
+    final int size = 10000, dim = 3;
+    Random r = new Random(0L);
+    double[][] data = new double[size][dim];
+    for(int i = 0; i < size; i++) {
+      for(int d = 0; d < dim; d++) {
+        data[i][d] = r.nextGaussian() * (d + 1) + d * 1e6;
+      }
+    }
+    double[][] seq, par;
+    try {
+      ParallelCore.getCore().setParallelism(1);
+      seq = normalize(data);
+      ParallelCore.getCore().setParallelism(4);
+      par = normalize(data);
+    }
+    finally {
+      ParallelCore.getCore().setParallelism(0);
+    }
+    for(int i = 0; i < size; i++) {
+      for(int d = 0; d < dim; d++) {
+        assertEquals("Results depend on the number of threads", seq[i][d], par[i][d], 0.);
+      }
+    }
+    // The (wrapped) input arrays must not have been modified.
+    Random r2 = new Random(0L);
+    for(int i = 0; i < size; i++) {
+      for(int d = 0; d < dim; d++) {
+        assertEquals("Input data was modified", r2.nextGaussian() * (d + 1) + d * 1e6, data[i][d], 0.);
+      }
+    }
+  }
+
+  /**
+   * Normalize wrapped arrays with a new filter.
+   *
+   * @param data Input data
+   * @return Normalized data
+   */
+  private static double[][] normalize(double[][] data) {
+    List<DoubleVector> vecs = new ArrayList<>(data.length);
+    for(double[] row : data) {
+      vecs.add(DoubleVector.wrap(row));
+    }
+    MultipleObjectsBundle bundle = MultipleObjectsBundle.makeSimple(new VectorFieldTypeInformation<>(DoubleVector.FACTORY, data[0].length), vecs);
+    AttributeWiseVarianceNormalization<DoubleVector> filter = new ELKIBuilder<AttributeWiseVarianceNormalization<DoubleVector>>(AttributeWiseVarianceNormalization.class).build();
+    bundle = filter.filter(bundle);
+    double[][] result = new double[data.length][];
+    for(int i = 0; i < data.length; i++) {
+      result[i] = ((DoubleVector) bundle.data(i, 0)).toArray();
+    }
+    return result;
+  }
 }
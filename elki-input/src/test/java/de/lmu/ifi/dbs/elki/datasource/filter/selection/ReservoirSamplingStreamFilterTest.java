@@ -0,0 +1,90 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.filter.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDataSourceTest;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test the reservoir sampling filter.
+ *
+ * @author Erich Schubert
+ */
+public class ReservoirSamplingStreamFilterTest extends AbstractDataSourceTest {
+  @Test
+  public void parameters() {
+    String filename = UNITTEST + "normalization-test-1.csv";
+    ReservoirSamplingStreamFilter filter = new ELKIBuilder<>(ReservoirSamplingStreamFilter.class) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SIZE_ID, 42) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SEED_ID, 0) //
+        .build();
+    MultipleObjectsBundle filteredBundle = readBundle(filename, filter);
+    // Load the test data again without a filter.
+    MultipleObjectsBundle unfilteredBundle = readBundle(filename);
+    // Ensure the first column are the vectors.
+    assertEquals("Dimensionality", getFieldDimensionality(unfilteredBundle, 0, TypeUtil.NUMBER_VECTOR_FIELD), getFieldDimensionality(filteredBundle, 0, TypeUtil.NUMBER_VECTOR_FIELD));
+
+    // Verify that exactly 42 values were sampled.
+    assertEquals("Unexpected bundle length", 42, filteredBundle.dataLength());
+    // Verify that the sample is in the original order.
+    for(int i = 0, j = 0; i < filteredBundle.dataLength(); i++, j++) {
+      double[] v = get(filteredBundle, i, 0, DoubleVector.class).toArray();
+      while(j < unfilteredBundle.dataLength() && !Arrays.equals(v, get(unfilteredBundle, j, 0, DoubleVector.class).toArray())) {
+        j++;
+      }
+      assertTrue("Sample not in stream order", j < unfilteredBundle.dataLength());
+    }
+  }
+
+  @Test
+  public void largerThanData() {
+    String filename = UNITTEST + "normalization-test-1.csv";
+    ReservoirSamplingStreamFilter filter = new ELKIBuilder<>(ReservoirSamplingStreamFilter.class) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SIZE_ID, 5000) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SEED_ID, 0) //
+        .build();
+    MultipleObjectsBundle filteredBundle = readBundle(filename, filter);
+    MultipleObjectsBundle unfilteredBundle = readBundle(filename);
+    assertEquals("Unexpected bundle length", unfilteredBundle.dataLength(), filteredBundle.dataLength());
+  }
+
+  @Test
+  public void reuse() {
+    MultipleObjectsBundle unfilteredBundle = readBundle(UNITTEST + "normalization-test-1.csv");
+    ReservoirSamplingStreamFilter filter = new ELKIBuilder<>(ReservoirSamplingStreamFilter.class) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SIZE_ID, 42) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SEED_ID, 0) //
+        .build();
+    assertEquals("Unexpected bundle length", 42, filter.filter(unfilteredBundle).dataLength());
+    // The filter must not retain the state of the previous stream.
+    assertEquals("Unexpected bundle length", 42, filter.filter(unfilteredBundle).dataLength());
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.filter.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.LabelList;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDataSourceTest;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test the stratified sampling filter.
+ *
+ * @author Erich Schubert
+ */
+public class StratifiedSamplingStreamFilterTest extends AbstractDataSourceTest {
+  @Test
+  public void parameters() {
+    String filename = UNITTEST + "label-selection-test-1.csv";
+    StratifiedSamplingStreamFilter filter = new ELKIBuilder<>(StratifiedSamplingStreamFilter.class) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SIZE_ID, 10) //
+        .with(ReservoirSamplingStreamFilter.Parameterizer.SEED_ID, 0) //
+        .build();
+    MultipleObjectsBundle filteredBundle = readBundle(filename, filter);
+    assertEquals("Unexpected bundle length", 10, filteredBundle.dataLength());
+
+    // 8 yes, 7 no, 2 maybe, and three singletons in the input.
+    Map<String, Integer> counts = new HashMap<>();
+    for(int i = 0; i < filteredBundle.dataLength(); i++) {
+      counts.merge(get(filteredBundle, i, 1, LabelList.class).toString(), 1, Integer::sum);
+    }
+    assertEquals("Unexpected number of 'yes'", 4, counts.get("yes").intValue());
+    assertEquals("Unexpected number of 'maybe'", 1, counts.get("maybe").intValue());
+    final int no = counts.get("no").intValue();
+    assertTrue("Unexpected number of 'no'", no == 3 || no == 4);
+  }
+}
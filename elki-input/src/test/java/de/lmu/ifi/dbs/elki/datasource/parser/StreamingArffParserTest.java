@@ -0,0 +1,165 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.ClassLabel;
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.NumberVector;
+import de.lmu.ifi.dbs.elki.data.SimpleClassLabel;
+import de.lmu.ifi.dbs.elki.data.SparseDoubleVector;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.datasource.AbstractDataSourceTest;
+import de.lmu.ifi.dbs.elki.datasource.InputStreamDatabaseConnection;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.utilities.ELKIBuilder;
+
+/**
+ * Test the streaming ARFF format parser.
+ *
+ * @author Erich Schubert
+ */
+public class StreamingArffParserTest extends AbstractDataSourceTest {
+  @Test
+  public void dense() throws IOException {
+    String filename = UNITTEST + "parsertest.arff";
+    Parser parser = new ELKIBuilder<>(StreamingArffParser.class).build();
+    MultipleObjectsBundle bundle;
+    try (InputStream is = open(filename);
+        InputStreamDatabaseConnection dbc = new InputStreamDatabaseConnection(is, null, parser)) {
+      bundle = dbc.loadData();
+    }
+
+    // Ensure that the filter has correctly formed the bundle.
+    // We expect that the bundle's first column is a number vector field.
+    // We expect that the bundle's second column is a LabelList
+
+    // Ensure the first column are the vectors.
+    assertTrue("Test file not as expected", TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(bundle.meta(0)));
+    assertTrue("Test file not as expected", TypeUtil.CLASSLABEL.isAssignableFromType(bundle.meta(1)));
+    assertTrue("Test file not as expected", TypeUtil.LABELLIST.isAssignableFromType(bundle.meta(2)));
+    assertTrue("Test file not as expected", TypeUtil.EXTERNALID.isAssignableFromType(bundle.meta(3)));
+
+    assertEquals("Length", 11, bundle.dataLength());
+    assertEquals("Length", 4, ((NumberVector) bundle.data(0, 0)).getDimensionality());
+
+    // Dense missing values are supposed to be NaN
+    NumberVector nv = (NumberVector) bundle.data(10, 0);
+    assertTrue("Expected NaN for missing data", Double.isNaN(nv.doubleValue(1)));
+    assertTrue("Expected NaN for missing data", Double.isNaN(nv.doubleValue(3)));
+
+    // Ensure that the third column are the LabelList objects.
+    assertEquals("Unexpected data type", DoubleVector.class, bundle.data(0, 0).getClass());
+    assertEquals("Unexpected data type", SimpleClassLabel.class, bundle.data(0, 1).getClass());
+  }
+
+  @Test
+  public void sparse() throws IOException {
+    String filename = UNITTEST + "parsertest.sparse.arff";
+    Parser parser = new ELKIBuilder<>(StreamingArffParser.class).build();
+    MultipleObjectsBundle bundle;
+    try (InputStream is = open(filename);
+        InputStreamDatabaseConnection dbc = new InputStreamDatabaseConnection(is, null, parser)) {
+      bundle = dbc.loadData();
+    }
+
+    // Ensure that the filter has correctly formed the bundle.
+    // We expect that the bundle's first column is a number vector field.
+    // We expect that the bundle's second column is a LabelList
+
+    // Ensure the first column are the vectors.
+    assertTrue("Test file not as expected", TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(bundle.meta(0)));
+    assertTrue("Test file not as expected", TypeUtil.CLASSLABEL.isAssignableFromType(bundle.meta(1)));
+
+    assertEquals("Length", 2, bundle.dataLength());
+    assertEquals("Length", 4, ((NumberVector) bundle.data(0, 0)).getDimensionality());
+
+    // Sparse missing values are supposed to be 0.
+    NumberVector nv = (NumberVector) bundle.data(1, 0);
+    assertEquals("Not 0 for missing data", 0., nv.doubleValue(0), 0.);
+    assertEquals("Not 0 for missing data", 0., nv.doubleValue(2), 0.);
+    assertEquals("Sparse value not parsed", 3., nv.doubleValue(1), 0.);
+    assertEquals("Sparse value not parsed", .2, nv.doubleValue(3), 0.);
+
+    // Ensure that the third column are the LabelList objects.
+    assertEquals("Unexpected data type", SparseDoubleVector.class, bundle.data(0, 0).getClass());
+    assertEquals("Unexpected data type", SimpleClassLabel.class, bundle.data(0, 1).getClass());
+  }
+
+  @Test
+  public void sparseNominalDefault() throws IOException {
+    String data = "@relation test\n@attribute a numeric\n@attribute b numeric\n" //
+        + "@attribute class {'first', second}\n@data\n" //
+        + "{0 1, 2 second}\n{1 2}\n";
+    MultipleObjectsBundle bundle = parse(new ELKIBuilder<>(StreamingArffParser.class).build(), data);
+    assertEquals("Length", 2, bundle.dataLength());
+    assertEquals("Class not parsed", "second", bundle.data(0, 1).toString());
+    // Omitted nominal values are the first value:
+    assertEquals("Omitted class not defaulted", "first", bundle.data(1, 1).toString());
+  }
+
+  @Test
+  public void chunks() throws IOException {
+    // More lines than a single chunk, to parse multiple chunks and blocks.
+    StringBuilder buf = new StringBuilder(1 << 20);
+    buf.append("@relation test\n@attribute x numeric\n@attribute y numeric\n@attribute class {a,b,c}\n@data\n");
+    final int size = 40000;
+    for(int i = 0; i < size; i++) {
+      buf.append(i).append(',').append(i * .5).append(',').append((char) ('a' + i % 3)).append('\n');
+      if(i % 1000 == 0) {
+        buf.append("% comment\n");
+      }
+    }
+    String data = buf.toString();
+    MultipleObjectsBundle stream = parse(new ELKIBuilder<>(StreamingArffParser.class).build(), data);
+    MultipleObjectsBundle ref = parse(new ELKIBuilder<>(ArffParser.class).build(), data);
+    assertEquals("Length", size, stream.dataLength());
+    assertEquals("Length", ref.dataLength(), stream.dataLength());
+    for(int i = 0; i < size; i++) {
+      NumberVector v = (NumberVector) stream.data(i, 0), r = (NumberVector) ref.data(i, 0);
+      assertEquals("Order not preserved", i, v.doubleValue(0), 0.);
+      assertEquals("Value differs", r.doubleValue(1), v.doubleValue(1), 0.);
+      assertEquals("Label differs", ((ClassLabel) ref.data(i, 1)).toString(), ((ClassLabel) stream.data(i, 1)).toString());
+    }
+  }
+
+  /**
+   * Parse a string.
+   *
+   * @param parser Parser
+   * @param data Data
+   * @return Bundle
+   */
+  private static MultipleObjectsBundle parse(Parser parser, String data) throws IOException {
+    try (InputStream is = new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+        InputStreamDatabaseConnection dbc = new InputStreamDatabaseConnection(is, null, parser)) {
+      return dbc.loadData();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.datasource.filter.transform;
+
+import static de.lmu.ifi.dbs.elki.math.linearalgebra.VMath.squareSum;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.lmu.ifi.dbs.elki.data.DoubleVector;
+import de.lmu.ifi.dbs.elki.data.projection.RandomProjection;
+import de.lmu.ifi.dbs.elki.data.projection.random.GaussianRandomProjectionFamily;
+import de.lmu.ifi.dbs.elki.data.type.TypeUtil;
+import de.lmu.ifi.dbs.elki.data.type.VectorFieldTypeInformation;
+import de.lmu.ifi.dbs.elki.datasource.bundle.MultipleObjectsBundle;
+import de.lmu.ifi.dbs.elki.utilities.random.RandomFactory;
+
+/**
+ * Test the blocked projection filter against projecting each vector.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ProjectionFilterTest {
+  /**
+   * Number of objects; more than two read-ahead blocks, and not a multiple of
+   * the tile size of the matrix projection.
+   */
+  private static final int SIZE = 40001;
+
+  @Test
+  public void testReducing() {
+    testProjection(10, 3);
+  }
+
+  @Test
+  public void testExpanding() {
+    testProjection(3, 10);
+  }
+
+  /**
+   * Project random data, and compare to the single vector projection.
+   *
+   * @param idim Input dimensionality
+   * @param odim Output dimensionality
+   */
+  private void testProjection(int idim, int odim) {
+    Random rnd = new Random(0L);
+    List<DoubleVector> vecs = new ArrayList<>(SIZE);
+    List<String> labels = new ArrayList<>(SIZE);
+    for(int i = 0; i < SIZE; i++) {
+      double[] v = new double[idim];
+      if(i < idim) {
+        v[i] = 1.; // Unit vectors first, to check all dimensions are used.
+      }
+      else {
+        for(int d = 0; d < idim; d++) {
+          v[d] = rnd.nextDouble();
+        }
+      }
+      vecs.add(DoubleVector.wrap(v));
+      labels.add("obj" + i);
+    }
+    MultipleObjectsBundle bundle = MultipleObjectsBundle.makeSimple(new VectorFieldTypeInformation<>(DoubleVector.FACTORY, idim), vecs, TypeUtil.STRING, labels);
+
+    RandomProjection<DoubleVector> proj = new RandomProjection<>(odim, new GaussianRandomProjectionFamily(new RandomFactory(0L)));
+    MultipleObjectsBundle filtered = new ProjectionFilter<>(proj).filter(bundle);
+    assertEquals("Objects lost", SIZE, filtered.dataLength());
+    assertEquals("Dimensionality not changed", odim, ((VectorFieldTypeInformation<?>) filtered.meta(0)).getDimensionality());
+    for(int i = 0; i < SIZE; i++) {
+      double[] expect = proj.project(vecs.get(i)).toArray();
+      assertArrayEquals("Projection differs at " + i, expect, ((DoubleVector) filtered.data(i, 0)).toArray(), 1e-12);
+      assertEquals("Labels misaligned", labels.get(i), filtered.data(i, 1));
+    }
+    for(int d = 0; d < idim; d++) {
+      assertTrue("Input dimension " + d + " ignored", squareSum(((DoubleVector) filtered.data(d, 0)).toArray()) > 0.);
+    }
+  }
+}
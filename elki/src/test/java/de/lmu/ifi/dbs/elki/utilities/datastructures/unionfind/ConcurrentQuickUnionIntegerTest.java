@@ -0,0 +1,114 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2018
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.lmu.ifi.dbs.elki.utilities.datastructures.unionfind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the concurrent union find.
+ *
+ * @author Erich Schubert
+ * @since 0.7.5
+ */
+public class ConcurrentQuickUnionIntegerTest {
+  @Test
+  public void testTree() {
+    ConcurrentQuickUnionInteger uf = new ConcurrentQuickUnionInteger(8);
+    assertFalse(uf.isConnected(0, 7));
+    uf.union(0, 1);
+    assertTrue(uf.isConnected(0, 1));
+    uf.union(2, 3);
+    assertFalse(uf.isConnected(0, 2));
+    uf.union(0, 2);
+    assertTrue(uf.isConnected(3, 1));
+    uf.union(5, 4);
+    uf.union(7, 6);
+    uf.union(6, 4);
+    assertFalse(uf.isConnected(0, 4));
+    assertEquals(4, uf.find(7));
+    uf.union(7, 3);
+    for(int i = 0; i < 8; i++) {
+      assertEquals(0, uf.find(i));
+    }
+    assertEquals(1, uf.getRoots().size());
+  }
+
+  @Test
+  public void testBruteForce() {
+    final Random r = new Random(0L);
+    final int size = 100;
+    ConcurrentQuickUnionInteger uf = new ConcurrentQuickUnionInteger(size);
+    int[] c = new int[size];
+    for(int i = 0; i < size; i++) {
+      c[i] = i;
+    }
+    int numc = size;
+    while(numc > 1) {
+      // Two randoms, with o1 < o2
+      int o2 = r.nextInt(size - 1) + 1, o1 = r.nextInt(o2);
+      final int c1 = c[o1], c2 = c[o2];
+      assertEquals(c1 == c2, uf.isConnected(o1, o2));
+      uf.union(o2, o1);
+      if(c1 != c2) {
+        for(int j = 0; j < size; j++) {
+          if(c[j] == c2) {
+            c[j] = c1;
+          }
+        }
+        --numc;
+      }
+      assertEquals(numc, uf.getRoots().size());
+    }
+  }
+
+  @Test
+  public void testConcurrent() throws InterruptedException {
+    final int size = 7000, nthreads = 4;
+    ConcurrentQuickUnionInteger uf = new ConcurrentQuickUnionInteger(size);
+    Thread[] threads = new Thread[nthreads];
+    for(int t = 0; t < nthreads; t++) {
+      final long seed = t;
+      // Join all elements with the same remainder modulo 7.
+      threads[t] = new Thread(() -> {
+        Random r = new Random(seed);
+        for(int i = 0; i < size; i++) {
+          int a = r.nextInt(size), b = (a + 7 * (1 + r.nextInt(10))) % size;
+          uf.union(a, b);
+          uf.union(i, (i + 7) % size);
+        }
+      });
+      threads[t].start();
+    }
+    for(Thread t : threads) {
+      t.join();
+    }
+    assertEquals(7, uf.getRoots().size());
+    for(int i = 0; i < size; i++) {
+      assertEquals(i % 7, uf.find(i));
+    }
+  }
+}